@@ -79,6 +79,31 @@ public class IzPackTask extends Task implements PackagerListener
      */
     private int compressionLevel;
 
+    /**
+     * Holds value of property packThreads.
+     */
+    private int packThreads;
+
+    /**
+     * Holds value of property bufferSize.
+     */
+    private int bufferSize;
+
+    /**
+     * Holds value of property incremental.
+     */
+    private boolean incremental;
+
+    /**
+     * Holds value of property streaming.
+     */
+    private boolean streaming;
+
+    /**
+     * Holds value of property metrics.
+     */
+    private boolean metrics;
+
     /**
      * Holds value of property installerType.
      */
@@ -112,6 +137,7 @@ public class IzPackTask extends Task implements PackagerListener
         izPackDir = null;
         compression = "default";
         compressionLevel = -1;
+        packThreads = 1;
     }
 
 
@@ -209,7 +235,7 @@ public class IzPackTask extends Task implements PackagerListener
             ClassLoader loader = new URLClassLoader(getUrlsForClassloader());
             Class runableClass = loader.loadClass("com.izforge.izpack.ant.IzpackAntRunnable");
             Constructor constructor = runableClass.getConstructors()[0];
-            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, mkdirs, compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir);
+            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, mkdirs, compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir, packThreads, bufferSize, incremental, streaming, metrics);
             final Thread thread = new Thread((Runnable) instance);
             thread.setContextClassLoader(loader);
             thread.start();
@@ -356,6 +382,46 @@ public class IzPackTask extends Task implements PackagerListener
         this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * @param packThreads The number of threads used to compress packs. 0 uses one thread per processor.
+     */
+    public void setPackThreads(int packThreads)
+    {
+        this.packThreads = packThreads;
+    }
+
+    /**
+     * @param bufferSize The size in bytes of the buffer used to read the files of packs. 0 uses the default size.
+     */
+    public void setBufferSize(int bufferSize)
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param incremental If true, packs whose inputs are unchanged are copied from the previously built installer.
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
+    /**
+     * @param streaming If true, the files of packs are compiled as they are read from the installation file.
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @param metrics If true, the time and throughput of each compiler phase are written to a JSON report.
+     */
+    public void setMetrics(boolean metrics)
+    {
+        this.metrics = metrics;
+    }
+
     /**
      * Ant will call this for each &lt;property&gt; tag to the IzPack task.
      */
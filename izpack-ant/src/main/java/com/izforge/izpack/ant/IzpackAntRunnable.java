@@ -24,10 +24,16 @@ public class IzpackAntRunnable implements Runnable
 
     public IzpackAntRunnable(String compression, String kind, String input, String configText, String basedir,
                              String output, boolean mkdirs, int compressionLevel, Properties properties,
-                             Boolean inheritAll, Hashtable antProjectProperties, String izPackDir)
+                             Boolean inheritAll, Hashtable antProjectProperties, String izPackDir, int packThreads,
+                             int bufferSize, boolean incremental, boolean streaming, boolean metrics)
     {
         this.compilerData = new CompilerData(compression, kind, input, configText, basedir, output, mkdirs,
                                              compressionLevel);
+        this.compilerData.setPackThreads(packThreads);
+        this.compilerData.setBufferSize(bufferSize);
+        this.compilerData.setIncremental(incremental);
+        this.compilerData.setStreaming(streaming);
+        this.compilerData.setMetrics(metrics);
         this.input = input;
         this.properties = properties;
         this.inheritAll = inheritAll;
@@ -24,13 +24,20 @@ package com.izforge.izpack.api.adaptator.impl;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import org.w3c.dom.*;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+import org.w3c.dom.events.MutationEvent;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
@@ -44,21 +51,34 @@ public class XMLElementImpl implements IXMLElement
 {
 
     /**
-     * The dom element embedded by the XMLElement
+     * The key of the user data holding the children of an element.
+     * <p/>
+     * The children are stored on the dom element rather than in the XMLElement, so that they are shared by all the
+     * XMLElements wrapping the same element, and a change made through one is seen by the others. They are only
+     * stored if the document supports mutation events, so that they can be discarded however the element is changed.
      */
-    private Element element;
+    private static final String CHILDREN_KEY = "izpack.children";
 
     /**
-     * A flag to notice any changement made to the element.
-     * It is used to generate the childrenList.
+     * Discards the children of an element when a child node is inserted or removed.
      */
-    private boolean hasChanged = true;
+    private static final EventListener CHILDREN_LISTENER = new EventListener()
+    {
+        public void handleEvent(Event event)
+        {
+            // events bubble up from descendants, so only handle those for the element's own children
+            Node node = (Node) event.getCurrentTarget();
+            if (((MutationEvent) event).getRelatedNode() == node)
+            {
+                node.setUserData(CHILDREN_KEY, null, null);
+            }
+        }
+    };
 
     /**
-     * List of the children elements.
-     * It is generated as it is called.
+     * The dom element embedded by the XMLElement
      */
-    private List<IXMLElement> childrenList;
+    private Element element;
 
     /**
      * Create a new root element in a new document.
@@ -128,14 +148,20 @@ public class XMLElementImpl implements IXMLElement
 
     public void addChild(IXMLElement child)
     {
-        hasChanged = true;
+        // appending a child removes it from its previous parent, if any
+        Node previous = child.getElement().getParentNode();
+        if (previous != null)
+        {
+            previous.setUserData(CHILDREN_KEY, null, null);
+        }
         element.appendChild(child.getElement());
+        childrenChanged();
     }
 
     public void removeChild(IXMLElement child)
     {
-        hasChanged = true;
         element.removeChild(child.getElement());
+        childrenChanged();
     }
 
     public boolean hasChildren()
@@ -150,38 +176,55 @@ public class XMLElementImpl implements IXMLElement
         return false;
     }
 
-    private void initChildrenList()
+    /**
+     * Returns the children of the element, building them if the element has changed.
+     * <p/>
+     * If the document doesn't support mutation events, the children are built each time, as changes made to the
+     * element other than via this class cannot be detected.
+     *
+     * @return the children
+     */
+    private Children getChildrenOf()
     {
-        if (hasChanged)
+        Children children = (Children) element.getUserData(CHILDREN_KEY);
+        if (children == null)
         {
-            hasChanged = false;
-            childrenList = new ArrayList<IXMLElement>();
-            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+            children = new Children(element);
+            Document document = element.getOwnerDocument();
+            if (element instanceof EventTarget && document != null
+                    && document.getImplementation().hasFeature("MutationEvents", "2.0"))
             {
-                if (child.getNodeType() == Node.ELEMENT_NODE)
-                {
-                    childrenList.add(new XMLElementImpl(child));
-                }
+                // duplicate registrations of the same listener are discarded
+                EventTarget target = (EventTarget) element;
+                target.addEventListener("DOMNodeInserted", CHILDREN_LISTENER, false);
+                target.addEventListener("DOMNodeRemoved", CHILDREN_LISTENER, false);
+                element.setUserData(CHILDREN_KEY, children, null);
             }
         }
+        return children;
+    }
+
+    /**
+     * Discards the children of the element, after they have been changed.
+     */
+    private void childrenChanged()
+    {
+        element.setUserData(CHILDREN_KEY, null, null);
     }
 
     public int getChildrenCount()
     {
-        initChildrenList();
-        return childrenList.size();
+        return getChildrenOf().list.size();
     }
 
     public List<IXMLElement> getChildren()
     {
-        initChildrenList();
-        return childrenList;
+        return getChildrenOf().list;
     }
 
     public IXMLElement getChildAtIndex(int index)
     {
-        initChildrenList();
-        return childrenList.get(index);
+        return getChildrenOf().list.get(index);
     }
 
     public IXMLElement getFirstChildNamed(String name)
@@ -197,15 +240,7 @@ public class XMLElementImpl implements IXMLElement
 
     public List<IXMLElement> getChildrenNamed(String name)
     {
-        List<IXMLElement> res = new ArrayList<IXMLElement>();
-        for (IXMLElement child : getChildren())
-        {
-            if (child.getName() != null && child.getName().equals(name))
-            {
-                res.add(new XMLElementImpl(child.getElement()));
-            }
-        }
-        return res;
+        return new ArrayList<IXMLElement>(getChildrenOf().getNamed(name));
     }
 
     public String getAttribute(String name)
@@ -326,6 +361,7 @@ public class XMLElementImpl implements IXMLElement
             this.element.removeChild(child);
         }
         element.appendChild(element.getOwnerDocument().createTextNode(content));
+        childrenChanged();
     }
 
     public Node getElement()
@@ -370,4 +406,58 @@ public class XMLElementImpl implements IXMLElement
         }
         return hashCode;
     }
+
+    /**
+     * The child elements of an element, indexed on name.
+     */
+    private static class Children
+    {
+
+        /**
+         * The child elements, in document order.
+         */
+        private final List<IXMLElement> list = new ArrayList<IXMLElement>();
+
+        /**
+         * The child elements, keyed on name. Built when first required.
+         */
+        private Map<String, List<IXMLElement>> named;
+
+        public Children(Element element)
+        {
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+            {
+                if (child.getNodeType() == Node.ELEMENT_NODE)
+                {
+                    list.add(new XMLElementImpl(child));
+                }
+            }
+        }
+
+        /**
+         * Returns the child elements with the specified name.
+         *
+         * @param name the element name
+         * @return the child elements, in document order
+         */
+        public synchronized List<IXMLElement> getNamed(String name)
+        {
+            if (named == null)
+            {
+                named = new HashMap<String, List<IXMLElement>>();
+                for (IXMLElement child : list)
+                {
+                    List<IXMLElement> children = named.get(child.getName());
+                    if (children == null)
+                    {
+                        children = new ArrayList<IXMLElement>();
+                        named.put(child.getName(), children);
+                    }
+                    children.add(child);
+                }
+            }
+            List<IXMLElement> result = named.get(name);
+            return (result != null) ? result : Collections.<IXMLElement>emptyList();
+        }
+    }
 }
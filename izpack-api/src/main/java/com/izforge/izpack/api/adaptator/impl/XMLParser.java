@@ -31,6 +31,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -96,6 +97,18 @@ public class XMLParser implements IXMLParser
     private String parsedItem = null;
 
     public XMLParser()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructs an <tt>XMLParser</tt> that passes the parsed document through a filter before building the tree.
+     * <p/>
+     * This allows callers to leave out parts of large documents that they process separately.
+     *
+     * @param contentFilter the filter. May be <tt>null</tt>
+     */
+    public XMLParser(XMLFilterImpl contentFilter)
     {
         try
         {
@@ -103,6 +116,11 @@ public class XMLParser implements IXMLParser
             saxParserFactory.setNamespaceAware(true);
             saxParserFactory.setXIncludeAware(true);
             XMLReader xmlReader = saxParserFactory.newSAXParser().getXMLReader();
+            if (contentFilter != null)
+            {
+                contentFilter.setParent(xmlReader);
+                xmlReader = contentFilter;
+            }
             filter = new LineNumberFilter(xmlReader);
 
         }
@@ -125,6 +125,34 @@ public class Info implements Serializable
 
     private boolean pack200Compression;
 
+    /**
+     * The no. of threads used to write files while unpacking. If <tt>0</tt>, files are written by the unpacking
+     * thread.
+     */
+    private int unpackWriters = 0;
+
+    /**
+     * The no. of threads used to unpack packs concurrently. If <tt>1</tt> or less, packs are unpacked sequentially.
+     */
+    private int unpackThreads = 1;
+
+    /**
+     * The no. of threads used to parse files once all packs have been unpacked. If <tt>1</tt> or less, files are
+     * parsed sequentially.
+     */
+    private int parsers = 1;
+
+    /**
+     * Determines if parsable files are parsed as they are unpacked, where possible.
+     */
+    private boolean inlineParsing = false;
+
+    /**
+     * Determines if large and incompressible pack files are stored in their own installer entries, rather than in
+     * the pack stream.
+     */
+    private boolean packBlocks = false;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -398,6 +426,117 @@ public class Info implements Serializable
         return pack200Compression;
     }
 
+    /**
+     * Sets the no. of threads used to write files while unpacking.
+     * <p/>
+     * If non-zero, pack data is decompressed by the unpacking thread and written to the target files by the writer
+     * threads, so that decompression and disk I/O overlap. Writer threads aren't used when packs are unpacked
+     * concurrently.
+     *
+     * @param unpackWriters the no. of writer threads, or <tt>0</tt> to write files on the unpacking thread
+     */
+    public void setUnpackWriters(int unpackWriters)
+    {
+        this.unpackWriters = unpackWriters;
+    }
+
+    /**
+     * Returns the no. of threads used to write files while unpacking.
+     *
+     * @return the no. of writer threads, or <tt>0</tt> if files are written on the unpacking thread
+     */
+    public int getUnpackWriters()
+    {
+        return unpackWriters;
+    }
+
+    /**
+     * Sets the no. of threads used to unpack packs concurrently.
+     *
+     * @param unpackThreads the no. of threads. If <tt>1</tt> or less, packs are unpacked sequentially
+     */
+    public void setUnpackThreads(int unpackThreads)
+    {
+        this.unpackThreads = unpackThreads;
+    }
+
+    /**
+     * Returns the no. of threads used to unpack packs concurrently.
+     *
+     * @return the no. of threads. If <tt>1</tt> or less, packs are unpacked sequentially
+     */
+    public int getUnpackThreads()
+    {
+        return unpackThreads;
+    }
+
+    /**
+     * Sets the no. of threads used to parse files once all packs have been unpacked.
+     *
+     * @param parsers the no. of threads. If <tt>1</tt> or less, files are parsed sequentially
+     */
+    public void setParsers(int parsers)
+    {
+        this.parsers = parsers;
+    }
+
+    /**
+     * Returns the no. of threads used to parse files once all packs have been unpacked.
+     *
+     * @return the no. of threads. If <tt>1</tt> or less, files are parsed sequentially
+     */
+    public int getParsers()
+    {
+        return parsers;
+    }
+
+    /**
+     * Determines if parsable files are parsed as they are unpacked.
+     * <p/>
+     * This only applies to parsable files that have no condition and no OS constraints; the remainder are parsed
+     * once all packs have been unpacked.
+     *
+     * @param inlineParsing if <tt>true</tt>, parse files as they are unpacked
+     */
+    public void setInlineParsing(boolean inlineParsing)
+    {
+        this.inlineParsing = inlineParsing;
+    }
+
+    /**
+     * Determines if parsable files are parsed as they are unpacked.
+     *
+     * @return <tt>true</tt> if files are parsed as they are unpacked, where possible
+     */
+    public boolean isInlineParsing()
+    {
+        return inlineParsing;
+    }
+
+    /**
+     * Determines if large and incompressible pack files are stored in their own installer entries, rather than in
+     * the pack stream.
+     * <p/>
+     * These can be read by the installer without reading the preceding pack data, but require an unpacker that
+     * supports them.
+     *
+     * @param packBlocks if <tt>true</tt>, store large and incompressible files in their own entries
+     */
+    public void setPackBlocks(boolean packBlocks)
+    {
+        this.packBlocks = packBlocks;
+    }
+
+    /**
+     * Determines if large and incompressible pack files are stored in their own installer entries.
+     *
+     * @return <tt>true</tt> if large and incompressible files are stored in their own entries
+     */
+    public boolean isPackBlocks()
+    {
+        return packBlocks;
+    }
+
     /**
      * This class represents an author.
      *
@@ -22,6 +22,7 @@ package com.izforge.izpack.api.data;
 import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -134,6 +135,12 @@ public class Pack implements Serializable
      */
     private List<String> validators = new ArrayList<String>();
 
+    /**
+     * The names of the other packs that install files to the same target paths as this pack, where the files may
+     * not be overwritten unconditionally. May be {@code null}
+     */
+    private Set<String> sharedTargetPacks;
+
     /**
      * If {@code true}, denotes that the pack should not be displayed.
      */
@@ -554,6 +561,35 @@ public class Pack implements Serializable
         return validators;
     }
 
+    /**
+     * Adds a pack that installs files to the same target paths as this pack, where the files may not be overwritten
+     * unconditionally.
+     * <p/>
+     * The installed files then depend on the order the packs are unpacked in, so such packs are unpacked
+     * sequentially.
+     *
+     * @param packName the name of the other pack
+     */
+    public void addSharedTargetPack(String packName)
+    {
+        if (sharedTargetPacks == null)
+        {
+            sharedTargetPacks = new HashSet<String>();
+        }
+        sharedTargetPacks.add(packName);
+    }
+
+    /**
+     * Returns the names of the packs that install files to the same target paths as this pack, where the files may
+     * not be overwritten unconditionally.
+     *
+     * @return the pack names
+     */
+    public Set<String> getSharedTargetPacks()
+    {
+        return (sharedTargetPacks != null) ? sharedTargetPacks : Collections.<String>emptySet();
+    }
+
     /**
      * Determines if the pack should be hidden.
      *
@@ -23,6 +23,7 @@ package com.izforge.izpack.api.data;
 
 
 import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.util.FileUtil;
 
 import java.io.File;
@@ -31,6 +32,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipEntry;
 
 /**
  * Encloses information about a packed file. This class abstracts the way file data is stored to
@@ -43,6 +45,41 @@ public class PackFile implements Serializable
 
     static final long serialVersionUID = -834377078706854909L;
 
+    /**
+     * Record flag indicating the file is a directory.
+     */
+    private static final int DIRECTORY = 1;
+
+    /**
+     * Record flag indicating later pack files are back references to the data of the file.
+     */
+    private static final int BACK_REFERENCED = 1 << 1;
+
+    /**
+     * Record flag indicating the file is a back reference.
+     */
+    private static final int BACK_REFERENCE = 1 << 2;
+
+    /**
+     * Record flag indicating the file is a pack200 compressed jar.
+     */
+    private static final int PACK200_JAR = 1 << 3;
+
+    /**
+     * Record flag indicating the stream resource holds the data as is.
+     */
+    private static final int STREAM_STORED = 1 << 4;
+
+    /**
+     * Record flag indicating the file has additional attributes.
+     */
+    private static final int ADDITIONALS = 1 << 5;
+
+    /**
+     * Record flag indicating the file is parsed as it is unpacked.
+     */
+    private static final int PARSABLE = 1 << 6;
+
     /**
      * Only available when compiling. Makes no sense when installing, use relativePath instead.
      */
@@ -109,16 +146,47 @@ public class PackFile implements Serializable
 
     public long offsetInPreviousPack = -1;
 
+    /**
+     * The index of the referenced file in the previous pack, or <tt>-1</tt> if it is not known.
+     */
+    private int previousPackFileIndex = -1;
+
+    /**
+     * Determines if later pack files are back references to the data of this file.
+     */
+    private boolean backReferenced = false;
+
     /**
      * True if the file is a Jar and pack200 compression us activated.
      */
     private boolean pack200Jar = false;
 
+    /**
+     * The name of the installer resource holding the file data, or <tt>null</tt> if it is stored in the pack stream.
+     */
+    private String streamResourceName = null;
+
+    /**
+     * Determines if the stream resource holds the file data as is, rather than encoded by the pack compressor.
+     */
+    private boolean streamStored = false;
+
     /**
      * condition for this packfile
      */
     private String condition = null;
 
+    /**
+     * The type of the variables to substitute as the file is unpacked, or <tt>null</tt> if the file isn't parsed as
+     * it is unpacked.
+     */
+    private SubstitutionType parseType = null;
+
+    /**
+     * The encoding of the file to parse as it is unpacked, or <tt>null</tt> for the default.
+     */
+    private String parseEncoding = null;
+
     /**
      * Constructs and initializes from a source file.
      *
@@ -203,12 +271,181 @@ public class PackFile implements Serializable
         this(src, FileUtil.getRelativeFileName(src, baseDir), target, osList, override, overrideRenameTo, blockable, additionals);
     }
 
+    /**
+     * Constructs and initializes from an entry of an archive.
+     * <p/>
+     * The source path is that of the archive; the length, last-modification time and type are those of the entry.
+     *
+     * @param baseDir          the base directory of the file selection/compilation or null
+     * @param archive          the archive containing the entry
+     * @param entry            the archive entry which this PackFile describes
+     * @param target           the path to install the file to
+     * @param osList           OS constraints
+     * @param override         what to do when the file already exists
+     * @param overrideRenameTo the rename target when the file already exists
+     * @param blockable        whether the file may be blocked by the operating system
+     * @param additionals      additional attributes
+     * @throws IOException if the archive does not exist, or the size of the entry is unknown
+     */
+    public PackFile(File baseDir, File archive, ZipEntry entry, String target, List<OsModel> osList,
+                    OverrideType override, String overrideRenameTo, Blockable blockable, Map additionals)
+            throws IOException
+    {
+        this(archive, FileUtil.getRelativeFileName(archive, baseDir), target, osList, override, overrideRenameTo,
+             blockable, additionals);
+        this.isDirectory = entry.isDirectory();
+        if (isDirectory)
+        {
+            this.length = 0;
+        }
+        else
+        {
+            if (entry.getSize() < 0)
+            {
+                throw new IOException("Unknown size of " + entry.getName() + " in " + archive);
+            }
+            this.length = entry.getSize();
+        }
+        this.size = this.length;
+        this.mtime = entry.getTime();
+    }
+
+    /**
+     * Constructs and initializes from a record written by {@link #writeRecord(PackFileWriter)}.
+     *
+     * @param in the reader to read the record from
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if a class of the additional attributes cannot be found
+     */
+    PackFile(PackFileReader in) throws IOException, ClassNotFoundException
+    {
+        int flags = (int) in.readVarLong();
+        this.isDirectory = (flags & DIRECTORY) != 0;
+        this.backReferenced = (flags & BACK_REFERENCED) != 0;
+        this.pack200Jar = (flags & PACK200_JAR) != 0;
+        this.streamStored = (flags & STREAM_STORED) != 0;
+        this.relativePath = in.readPath();
+        this.targetPath = in.readPath();
+        this.osConstraints = in.readOsConstraints();
+        this.length = in.readVarLong();
+        this.mtime = in.readSignedVarLong();
+        this.override = in.readEnum(OverrideType.class);
+        this.overrideRenameTo = in.readString();
+        this.blockable = in.readEnum(Blockable.class);
+        if ((flags & BACK_REFERENCE) != 0)
+        {
+            this.previousPackId = in.readString();
+            this.offsetInPreviousPack = in.readSignedVarLong();
+            this.previousPackFileIndex = (int) in.readSignedVarLong();
+        }
+        this.streamResourceName = in.readPath();
+        this.condition = in.readString();
+        if ((flags & PARSABLE) != 0)
+        {
+            this.parseType = in.readEnum(SubstitutionType.class);
+            this.parseEncoding = in.readString();
+        }
+        if ((flags & ADDITIONALS) != 0)
+        {
+            this.additionals = (Map) in.readObject();
+        }
+    }
+
+    /**
+     * Writes this as a compact record.
+     * <p/>
+     * Subclasses that add state must override this, and provide a constructor to read it.
+     *
+     * @param out the writer to write to
+     * @throws IOException for any I/O error
+     */
+    void writeRecord(PackFileWriter out) throws IOException
+    {
+        int flags = 0;
+        flags |= isDirectory ? DIRECTORY : 0;
+        flags |= backReferenced ? BACK_REFERENCED : 0;
+        flags |= isBackReference() ? BACK_REFERENCE : 0;
+        flags |= pack200Jar ? PACK200_JAR : 0;
+        flags |= streamStored ? STREAM_STORED : 0;
+        flags |= (additionals != null) ? ADDITIONALS : 0;
+        flags |= isParsable() ? PARSABLE : 0;
+        out.writeVarLong(flags);
+        out.writePath(relativePath);
+        out.writePath(targetPath);
+        out.writeOsConstraints(osConstraints);
+        out.writeVarLong(length);
+        out.writeSignedVarLong(mtime);
+        out.writeEnum(override);
+        out.writeString(overrideRenameTo);
+        out.writeEnum(blockable);
+        if (isBackReference())
+        {
+            out.writeString(previousPackId);
+            out.writeSignedVarLong(offsetInPreviousPack);
+            out.writeSignedVarLong(previousPackFileIndex);
+        }
+        out.writePath(streamResourceName);
+        out.writeString(condition);
+        if (isParsable())
+        {
+            out.writeEnum(parseType);
+            out.writeString(parseEncoding);
+        }
+        if (additionals != null)
+        {
+            out.writeObject(additionals);
+        }
+    }
+
     public void setPreviousPackFileRef(String previousPackId, Long offsetInPreviousPack)
     {
         this.previousPackId = previousPackId;
         this.offsetInPreviousPack = offsetInPreviousPack;
     }
 
+    /**
+     * Makes this file a back reference to the data of a file in a previous pack.
+     *
+     * @param previousPackId       the name of the previous pack
+     * @param offsetInPreviousPack the offset of the file data in the previous pack stream
+     * @param previousPackFileIndex the index of the referenced file in the previous pack
+     */
+    public void setPreviousPackFileRef(String previousPackId, Long offsetInPreviousPack, int previousPackFileIndex)
+    {
+        setPreviousPackFileRef(previousPackId, offsetInPreviousPack);
+        this.previousPackFileIndex = previousPackFileIndex;
+    }
+
+    /**
+     * Returns the index of the referenced file in the previous pack.
+     *
+     * @return the index, or <tt>-1</tt> if this is not a back reference, or the index is not known
+     */
+    public int getPreviousPackFileIndex()
+    {
+        return previousPackFileIndex;
+    }
+
+    /**
+     * Determines if later pack files are back references to the data of this file.
+     *
+     * @return <tt>true</tt> if this file is back referenced
+     */
+    public boolean isBackReferenced()
+    {
+        return backReferenced;
+    }
+
+    /**
+     * Determines if later pack files are back references to the data of this file.
+     *
+     * @param backReferenced if <tt>true</tt>, the file is back referenced
+     */
+    public void setBackReferenced(boolean backReferenced)
+    {
+        this.backReferenced = backReferenced;
+    }
+
     /**
      * The target operating system constraints of this file
      */
@@ -339,6 +576,94 @@ public class PackFile implements Serializable
         this.pack200Jar = pack200Jar;
     }
 
+    /**
+     * Returns the name of the installer resource holding the file data.
+     *
+     * @return the resource name, or <tt>null</tt> if the data is stored in the pack stream
+     */
+    public String getStreamResourceName()
+    {
+        return streamResourceName;
+    }
+
+    /**
+     * Sets the name of the installer resource holding the file data.
+     * <p/>
+     * Files stored in their own resource can be read without reading the pack stream preceding them.
+     *
+     * @param streamResourceName the resource name, or <tt>null</tt> if the data is stored in the pack stream
+     */
+    public void setStreamResourceName(String streamResourceName)
+    {
+        this.streamResourceName = streamResourceName;
+    }
+
+    /**
+     * Determines if the stream resource holds the file data as is.
+     * <p/>
+     * Data that doesn't compress is stored rather than encoded with the pack compressor, so it must be read without
+     * the pack decoder.
+     *
+     * @return <tt>true</tt> if the data is stored as is, <tt>false</tt> if it is encoded by the pack compressor
+     */
+    public boolean isStreamStored()
+    {
+        return streamStored;
+    }
+
+    /**
+     * Determines if the stream resource holds the file data as is.
+     *
+     * @param streamStored if <tt>true</tt>, the data is stored as is, otherwise it is encoded by the pack compressor
+     */
+    public void setStreamStored(boolean streamStored)
+    {
+        this.streamStored = streamStored;
+    }
+
+    /**
+     * Determines if the file is parsed as it is unpacked, rather than once all packs have been unpacked.
+     *
+     * @return <tt>true</tt> if the file is parsed as it is unpacked
+     */
+    public boolean isParsable()
+    {
+        return parseType != null;
+    }
+
+    /**
+     * Returns the type of the variables to substitute as the file is unpacked.
+     *
+     * @return the substitution type, or <tt>null</tt> if the file isn't parsed as it is unpacked
+     */
+    public SubstitutionType getParseType()
+    {
+        return parseType;
+    }
+
+    /**
+     * Returns the encoding of the file to parse as it is unpacked.
+     *
+     * @return the encoding, or <tt>null</tt> for the default
+     */
+    public String getParseEncoding()
+    {
+        return parseEncoding;
+    }
+
+    /**
+     * Makes the file parsed as it is unpacked.
+     *
+     * @param type     the type of the variables to substitute, or <tt>null</tt> if the file isn't parsed as it is
+     *                 unpacked
+     * @param encoding the encoding of the file, or <tt>null</tt> for the default
+     */
+    public void setParsable(SubstitutionType type, String encoding)
+    {
+        this.parseType = type;
+        this.parseEncoding = encoding;
+    }
+
     public void setLoosePackInfo(boolean loose)
     {
         if (loose)
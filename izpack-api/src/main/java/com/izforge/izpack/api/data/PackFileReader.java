@@ -0,0 +1,285 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+
+/**
+ * Reads {@link PackFile} meta-data written by the {@link PackFileWriter}.
+ * <p/>
+ * Streams of serialized pack files, as written by earlier versions, are also supported.
+ */
+public class PackFileReader
+{
+
+    /**
+     * The stream to read from.
+     */
+    private final ObjectInput in;
+
+    /**
+     * Determines if the stream holds compact records, rather than serialized pack files.
+     */
+    private boolean compact;
+
+    /**
+     * The strings read so far.
+     */
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * The OS constraint lists read so far.
+     */
+    private final List<List<OsModel>> osConstraints = new ArrayList<List<OsModel>>();
+
+
+    /**
+     * Constructs a <tt>PackFileReader</tt>.
+     *
+     * @param in the stream to read from
+     */
+    public PackFileReader(ObjectInput in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Reads the header that precedes the pack files.
+     *
+     * @return the no. of pack files
+     * @throws IOException if the header cannot be read, or the record format isn't supported
+     */
+    public int readHeader() throws IOException
+    {
+        int value = in.readInt();
+        if (value == PackFileWriter.MAGIC)
+        {
+            int version = in.readInt();
+            if (version != PackFileWriter.VERSION)
+            {
+                throw new IOException("Unsupported pack file format version: " + version);
+            }
+            compact = true;
+            value = in.readInt();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a pack file.
+     *
+     * @return the pack file
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if a class of a serialized object cannot be found
+     */
+    public PackFile read() throws IOException, ClassNotFoundException
+    {
+        if (!compact)
+        {
+            return (PackFile) in.readObject();
+        }
+        int type = in.readUnsignedByte();
+        switch (type)
+        {
+            case PackFileWriter.PACK_FILE:
+                return new PackFile(this);
+            case PackFileWriter.XPACK_FILE:
+                return new XPackFile(this);
+            case PackFileWriter.SERIALIZED:
+                return (PackFile) in.readObject();
+            default:
+                throw new StreamCorruptedException("Invalid pack file record type: " + type);
+        }
+    }
+
+    /**
+     * Reads an unsigned variable length integer.
+     *
+     * @return the value
+     * @throws IOException for any I/O error
+     */
+    long readVarLong() throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length integer");
+    }
+
+    /**
+     * Reads a zig-zag encoded signed variable length integer.
+     *
+     * @return the value
+     * @throws IOException for any I/O error
+     */
+    long readSignedVarLong() throws IOException
+    {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @return the string. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    String readString() throws IOException
+    {
+        int tag = readTag();
+        String result;
+        if (tag == PackFileWriter.NULL)
+        {
+            result = null;
+        }
+        else if (tag == PackFileWriter.NEW)
+        {
+            result = in.readUTF();
+            strings.add(result);
+        }
+        else
+        {
+            result = get(strings, tag);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a path.
+     *
+     * @return the path. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    String readPath() throws IOException
+    {
+        String parent = readString();
+        return (parent != null) ? parent + in.readUTF() : null;
+    }
+
+    /**
+     * Reads OS constraints.
+     * <p/>
+     * Pack files with the same constraints share the same list.
+     *
+     * @return the constraints. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    List<OsModel> readOsConstraints() throws IOException
+    {
+        int tag = readTag();
+        List<OsModel> result;
+        if (tag == PackFileWriter.NULL)
+        {
+            result = null;
+        }
+        else if (tag == PackFileWriter.NEW)
+        {
+            int size = (int) readVarLong();
+            result = new ArrayList<OsModel>(size);
+            for (int i = 0; i < size; ++i)
+            {
+                result.add(new OsModel(readString(), readString(), readString(), readString(), readString()));
+            }
+            osConstraints.add(result);
+        }
+        else
+        {
+            result = get(osConstraints, tag);
+        }
+        return result;
+    }
+
+    /**
+     * Reads an enum constant.
+     *
+     * @param type the enum type
+     * @return the constant. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    <T extends Enum<T>> T readEnum(Class<T> type) throws IOException
+    {
+        int value = (int) readVarLong();
+        T[] constants = type.getEnumConstants();
+        if (value < 0 || value > constants.length)
+        {
+            throw new StreamCorruptedException("Invalid " + type.getSimpleName() + ": " + value);
+        }
+        return (value != 0) ? constants[value - 1] : null;
+    }
+
+    /**
+     * Reads a serialized object.
+     *
+     * @return the object
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if the class of the object cannot be found
+     */
+    Object readObject() throws IOException, ClassNotFoundException
+    {
+        return in.readObject();
+    }
+
+    /**
+     * Reads a string or OS constraint list tag.
+     *
+     * @return the tag
+     * @throws IOException for any I/O error
+     */
+    private int readTag() throws IOException
+    {
+        long tag = readVarLong();
+        if (tag < 0 || tag > Integer.MAX_VALUE)
+        {
+            throw new StreamCorruptedException("Invalid reference: " + tag);
+        }
+        return (int) tag;
+    }
+
+    /**
+     * Returns a previously read value, given its reference tag.
+     *
+     * @param values the values read so far
+     * @param tag    the reference tag
+     * @return the corresponding value
+     * @throws StreamCorruptedException if the tag doesn't refer to a value read so far
+     */
+    private <T> T get(List<T> values, int tag) throws StreamCorruptedException
+    {
+        int index = tag - PackFileWriter.NEW - 1;
+        if (index >= values.size())
+        {
+            throw new StreamCorruptedException("Invalid reference: " + tag);
+        }
+        return values.get(index);
+    }
+}
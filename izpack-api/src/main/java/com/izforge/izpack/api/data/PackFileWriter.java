@@ -0,0 +1,283 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+
+/**
+ * Writes {@link PackFile} meta-data to a pack stream as compact binary records.
+ * <p/>
+ * Records are written as variable length integers, with strings and OS constraints that repeat within the stream
+ * written once and referred to by index thereafter. Target paths are split so that files in the same directory
+ * share their parent path.
+ * <p/>
+ * The records are preceded by a header identifying the format, so that the {@link PackFileReader} can also read
+ * streams of serialized pack files.
+ */
+public class PackFileWriter
+{
+
+    /**
+     * Identifies a stream of compact records. As it is negative, it cannot be mistaken for a file count.
+     */
+    static final int MAGIC = 0xFACEF11E;
+
+    /**
+     * The record format version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Record type of a {@link PackFile}.
+     */
+    static final int PACK_FILE = 0;
+
+    /**
+     * Record type of an {@link XPackFile}.
+     */
+    static final int XPACK_FILE = 1;
+
+    /**
+     * Record type of any other pack file, which is serialized.
+     */
+    static final int SERIALIZED = 2;
+
+    /**
+     * Tag for a <tt>null</tt> string or OS constraint list.
+     */
+    static final int NULL = 0;
+
+    /**
+     * Tag for a string or OS constraint list that is written in full. Tags above this are indexes into the table of
+     * those already written.
+     */
+    static final int NEW = 1;
+
+    /**
+     * The stream to write to.
+     */
+    private final ObjectOutput out;
+
+    /**
+     * The strings written so far, and their indexes.
+     */
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    /**
+     * The OS constraint lists written so far, keyed on their content, and their indexes.
+     */
+    private final Map<List<String>, Integer> osConstraints = new HashMap<List<String>, Integer>();
+
+
+    /**
+     * Constructs a <tt>PackFileWriter</tt>.
+     *
+     * @param out the stream to write to
+     */
+    public PackFileWriter(ObjectOutput out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Writes the header that precedes the pack files.
+     *
+     * @param count the no. of pack files that will be written
+     * @throws IOException for any I/O error
+     */
+    public void writeHeader(int count) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(count);
+    }
+
+    /**
+     * Writes a pack file.
+     *
+     * @param file the pack file to write
+     * @throws IOException for any I/O error
+     */
+    public void write(PackFile file) throws IOException
+    {
+        Class<?> type = file.getClass();
+        if (type == PackFile.class)
+        {
+            out.write(PACK_FILE);
+            file.writeRecord(this);
+        }
+        else if (type == XPackFile.class)
+        {
+            out.write(XPACK_FILE);
+            file.writeRecord(this);
+        }
+        else
+        {
+            out.write(SERIALIZED);
+            out.writeObject(file);
+        }
+    }
+
+    /**
+     * Writes an unsigned variable length integer.
+     *
+     * @param value the value to write. Negative values are written in 10 bytes
+     * @throws IOException for any I/O error
+     */
+    void writeVarLong(long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Writes a signed variable length integer, zig-zag encoded so that small negative values are written compactly.
+     *
+     * @param value the value to write
+     * @throws IOException for any I/O error
+     */
+    void writeSignedVarLong(long value) throws IOException
+    {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a string, or a reference to it if it has already been written.
+     *
+     * @param value the string to write. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    void writeString(String value) throws IOException
+    {
+        if (value == null)
+        {
+            writeVarLong(NULL);
+        }
+        else
+        {
+            Integer index = strings.get(value);
+            if (index != null)
+            {
+                writeVarLong(NEW + 1 + index);
+            }
+            else
+            {
+                strings.put(value, strings.size());
+                writeVarLong(NEW);
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    /**
+     * Writes a path.
+     * <p/>
+     * The parent path is written via {@link #writeString(String)}, so it is shared with other files in the same
+     * directory. The name is written in full.
+     *
+     * @param path the path to write, using '/' as separator. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    void writePath(String path) throws IOException
+    {
+        if (path == null)
+        {
+            writeString(null);
+        }
+        else
+        {
+            int index = path.lastIndexOf('/') + 1;
+            writeString(path.substring(0, index));
+            out.writeUTF(path.substring(index));
+        }
+    }
+
+    /**
+     * Writes OS constraints, or a reference to them if the same constraints have already been written.
+     *
+     * @param constraints the constraints to write. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    void writeOsConstraints(List<OsModel> constraints) throws IOException
+    {
+        if (constraints == null)
+        {
+            writeVarLong(NULL);
+        }
+        else
+        {
+            List<String> key = new ArrayList<String>();
+            for (OsModel model : constraints)
+            {
+                key.addAll(Arrays.asList(model.getArch(), model.getFamily(), model.getJre(), model.getName(),
+                                         model.getVersion()));
+            }
+            Integer index = osConstraints.get(key);
+            if (index != null)
+            {
+                writeVarLong(NEW + 1 + index);
+            }
+            else
+            {
+                osConstraints.put(key, osConstraints.size());
+                writeVarLong(NEW);
+                writeVarLong(constraints.size());
+                for (String value : key)
+                {
+                    writeString(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes an enum constant.
+     *
+     * @param value the constant to write. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    void writeEnum(Enum<?> value) throws IOException
+    {
+        writeVarLong(value != null ? value.ordinal() + 1 : 0);
+    }
+
+    /**
+     * Writes a serialized object.
+     *
+     * @param value the object to write
+     * @throws IOException for any I/O error
+     */
+    void writeObject(Object value) throws IOException
+    {
+        out.writeObject(value);
+    }
+}
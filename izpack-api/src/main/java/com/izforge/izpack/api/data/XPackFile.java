@@ -72,6 +72,19 @@ public class XPackFile extends PackFile implements Comparable<XPackFile>
         this.setCondition(file.getCondition());
     }
 
+    /**
+     * Constructs an <tt>XPackFile</tt> from a record written by {@link #writeRecord(PackFileWriter)}.
+     *
+     * @param in the reader to read the record from
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if a class of the additional attributes cannot be found
+     */
+    XPackFile(PackFileReader in) throws IOException, ClassNotFoundException
+    {
+        super(in);
+        this.position = in.readVarLong();
+    }
+
     /**
      * Returns the position of the file in the archive.
      *
@@ -92,6 +105,19 @@ public class XPackFile extends PackFile implements Comparable<XPackFile>
         this.position = position;
     }
 
+    /**
+     * Writes this as a compact record.
+     *
+     * @param out the writer to write to
+     * @throws IOException for any I/O error
+     */
+    @Override
+    void writeRecord(PackFileWriter out) throws IOException
+    {
+        super.writeRecord(out);
+        out.writeVarLong(position);
+    }
+
     public int compareTo(XPackFile arg0)
     {
         return this.getTargetPath().compareTo(arg0.getTargetPath());
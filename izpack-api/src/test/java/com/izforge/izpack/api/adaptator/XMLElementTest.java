@@ -27,6 +27,7 @@ import com.izforge.izpack.api.adaptator.impl.XMLParser;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.w3c.dom.Node;
 
 import java.io.FileNotFoundException;
 import java.util.List;
@@ -118,4 +119,55 @@ public class XMLElementTest
         List<IXMLElement> list = element.getChildrenNamed("modifier");
         Assert.assertEquals(list.size(), 7);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetFirstChildNamedSearchesDescendants()
+    {
+        IXMLElement guiprefs = root.getFirstChildNamed("guiprefs");
+        IXMLElement modifier = guiprefs.getChildrenNamed("modifier").get(0);
+        Assert.assertEquals(modifier.getElement(), root.getFirstChildNamed("modifier").getElement());
+        Assert.assertTrue(root.getChildrenNamed("modifier").isEmpty());
+    }
+
+    @Test
+    public void testChildrenReflectDirectDomChanges()
+    {
+        IXMLElement guiprefs = root.getFirstChildNamed("guiprefs");
+        List<IXMLElement> modifiers = guiprefs.getChildrenNamed("modifier");
+        Assert.assertEquals(7, modifiers.size());
+
+        Node element = guiprefs.getElement();
+        element.removeChild(modifiers.get(0).getElement());
+        Assert.assertEquals(6, guiprefs.getChildrenNamed("modifier").size());
+
+        element.appendChild(element.getOwnerDocument().createElement("modifier"));
+        element.appendChild(element.getOwnerDocument().createElement("modifier"));
+        Assert.assertEquals(8, guiprefs.getChildrenNamed("modifier").size());
+
+        // changes to grandchildren don't affect the children
+        int count = guiprefs.getChildrenCount();
+        modifiers.get(1).getElement().appendChild(element.getOwnerDocument().createElement("modifier"));
+        Assert.assertEquals(count, guiprefs.getChildrenCount());
+        Assert.assertEquals(8, guiprefs.getChildrenNamed("modifier").size());
+    }
+
+    @Test
+    public void testChildrenSharedBetweenElements()
+    {
+        IXMLElement wrapper = new XMLElementImpl(root.getElement());
+        int count = root.getChildrenNamed("child").size();
+        wrapper.addChild(new XMLElementImpl("child", root));
+        Assert.assertEquals(count + 1, root.getChildrenNamed("child").size());
+    }
+
+    @Test
+    public void testMovedChildRemovedFromPreviousParent()
+    {
+        IXMLElement info = root.getFirstChildNamed("info");
+        IXMLElement guiprefs = root.getFirstChildNamed("guiprefs");
+        IXMLElement modifier = guiprefs.getFirstChildNamed("modifier");
+        info.addChild(modifier);
+        Assert.assertEquals(6, guiprefs.getChildrenNamed("modifier").size());
+        Assert.assertEquals(1, info.getChildrenNamed("modifier").size());
+    }
+}
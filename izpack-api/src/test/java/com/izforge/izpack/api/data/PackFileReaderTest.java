@@ -0,0 +1,263 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+/**
+ * Tests the {@link PackFileReader} and {@link PackFileWriter}.
+ */
+public class PackFileReaderTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The base directory of the source files.
+     */
+    private File baseDir;
+
+    /**
+     * A source file.
+     */
+    private File source;
+
+
+    @Before
+    public void setUp() throws IOException
+    {
+        baseDir = temporaryFolder.newFolder("base");
+        source = new File(baseDir, "file.txt");
+        FileOutputStream out = new FileOutputStream(source);
+        out.write(new byte[1234]);
+        out.close();
+    }
+
+    /**
+     * Verifies that pack files are read as they were written.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadCompact() throws Exception
+    {
+        List<OsModel> unix = Arrays.asList(new OsModel(null, "unix", null, null, null));
+        PackFile file1 = new PackFile(baseDir, source, "$INSTALL_PATH/lib/a.txt", unix, OverrideType.OVERRIDE_FALSE,
+                                      "*.bak", Blockable.BLOCKABLE_AUTO);
+        file1.setCondition("cond");
+        file1.setBackReferenced(true);
+        file1.setParsable(SubstitutionType.TYPE_SHELL, "UTF-8");
+        PackFile file2 = new PackFile(source, "file.txt", "$INSTALL_PATH/lib/b.txt",
+                                      Arrays.asList(new OsModel(null, "unix", null, null, null)),
+                                      OverrideType.OVERRIDE_UPDATE, null, Blockable.BLOCKABLE_NONE,
+                                      Collections.singletonMap("key", "value"));
+        file2.setPreviousPackFileRef("pack1", 1000L, 3);
+        file2.setStreamResourceName("packs/block-0");
+        file2.setStreamStored(true);
+        file2.setPack200Jar(true);
+        XPackFile file3 = new XPackFile(baseDir, source, "readme.txt", null, OverrideType.OVERRIDE_TRUE, null,
+                                        Blockable.BLOCKABLE_NONE);
+        file3.setArchiveFilePosition(123456789012L);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        PackFileWriter writer = new PackFileWriter(out);
+        writer.writeHeader(3);
+        writer.write(file1);
+        writer.write(file2);
+        writer.write(file3);
+        out.writeInt(42);
+        out.close();
+
+        ObjectInputStream in = read(bytes);
+        PackFileReader reader = new PackFileReader(in);
+        assertEquals(3, reader.readHeader());
+        PackFile read1 = reader.read();
+        PackFile read2 = reader.read();
+        PackFile read3 = reader.read();
+        assertEquals(42, in.readInt());
+
+        checkEquals(file1, read1);
+        checkEquals(file2, read2);
+        checkEquals(file3, read3);
+        assertEquals("value", read2.getAdditionals().get("key"));
+        assertEquals(123456789012L, ((XPackFile) read3).getArchiveFilePosition());
+
+        // identical OS constraints are shared
+        assertSame(read1.osConstraints(), read2.osConstraints());
+        assertEquals("unix", read1.osConstraints().get(0).getFamily());
+    }
+
+    /**
+     * Verifies that streams of serialized pack files can be read.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadSerialized() throws Exception
+    {
+        PackFile file = new PackFile(baseDir, source, "$INSTALL_PATH/file.txt", null, OverrideType.OVERRIDE_TRUE,
+                                     null, Blockable.BLOCKABLE_NONE);
+        file.setPreviousPackFileRef("pack1", 20L, 0);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeInt(1);
+        out.writeObject(file);
+        out.close();
+
+        PackFileReader reader = new PackFileReader(read(bytes));
+        assertEquals(1, reader.readHeader());
+        checkEquals(file, reader.read());
+    }
+
+    /**
+     * Verifies that an unsupported record format is detected.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnsupportedVersion() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeInt(PackFileWriter.MAGIC);
+        out.writeInt(PackFileWriter.VERSION + 1);
+        out.writeInt(0);
+        out.close();
+
+        try
+        {
+            new PackFileReader(read(bytes)).readHeader();
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            assertTrue(expected.getMessage().contains("version"));
+        }
+    }
+
+    /**
+     * Verifies that compact records are smaller than serialized pack files.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompactSmallerThanSerialized() throws Exception
+    {
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        ObjectOutputStream compactOut = new ObjectOutputStream(compact);
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream serializedOut = new ObjectOutputStream(serialized);
+        PackFileWriter writer = new PackFileWriter(compactOut);
+        writer.writeHeader(100);
+        serializedOut.writeInt(100);
+        for (int i = 0; i < 100; ++i)
+        {
+            PackFile file = new PackFile(baseDir, source, "$INSTALL_PATH/lib/file" + i + ".txt", null,
+                                         OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE);
+            writer.write(file);
+            serializedOut.writeObject(file);
+        }
+        compactOut.close();
+        serializedOut.close();
+        assertTrue(compact.size() * 2 < serialized.size());
+    }
+
+    /**
+     * Verifies that two pack files have the same persistent state.
+     *
+     * @param expected the expected pack file
+     * @param actual   the actual pack file
+     */
+    private void checkEquals(PackFile expected, PackFile actual)
+    {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getRelativeSourcePath(), actual.getRelativeSourcePath());
+        assertEquals(expected.getTargetPath(), actual.getTargetPath());
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected.lastModified(), actual.lastModified());
+        assertEquals(expected.isDirectory(), actual.isDirectory());
+        assertEquals(expected.override(), actual.override());
+        assertEquals(expected.overrideRenameTo(), actual.overrideRenameTo());
+        assertEquals(expected.blockable(), actual.blockable());
+        assertEquals(expected.getCondition(), actual.getCondition());
+        assertEquals(expected.isBackReference(), actual.isBackReference());
+        assertEquals(expected.isBackReferenced(), actual.isBackReferenced());
+        assertEquals(expected.previousPackId, actual.previousPackId);
+        assertEquals(expected.offsetInPreviousPack, actual.offsetInPreviousPack);
+        assertEquals(expected.getPreviousPackFileIndex(), actual.getPreviousPackFileIndex());
+        assertEquals(expected.isPack200Jar(), actual.isPack200Jar());
+        assertEquals(expected.getStreamResourceName(), actual.getStreamResourceName());
+        assertEquals(expected.isStreamStored(), actual.isStreamStored());
+        assertEquals(expected.isParsable(), actual.isParsable());
+        assertEquals(expected.getParseType(), actual.getParseType());
+        assertEquals(expected.getParseEncoding(), actual.getParseEncoding());
+        if (expected.osConstraints() == null)
+        {
+            assertNull(actual.osConstraints());
+        }
+        else
+        {
+            assertEquals(expected.osConstraints().size(), actual.osConstraints().size());
+        }
+        assertFalse(actual.getAdditionals() == null && expected.getAdditionals() != null);
+    }
+
+    /**
+     * Returns a stream to read the bytes written to a stream.
+     *
+     * @param bytes the bytes
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    private ObjectInputStream read(ByteArrayOutputStream bytes) throws IOException
+    {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
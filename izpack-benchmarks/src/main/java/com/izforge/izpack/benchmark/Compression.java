@@ -0,0 +1,59 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmark;
+
+import com.izforge.izpack.compiler.compressor.BZip2PackCompressor;
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
+import com.izforge.izpack.compiler.compressor.LZ4PackCompressor;
+import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.compressor.RawPackCompressor;
+import com.izforge.izpack.compiler.compressor.XZPackCompressor;
+import com.izforge.izpack.merge.MergeManager;
+
+/**
+ * The pack compressors to benchmark.
+ */
+public enum Compression
+{
+    DEFAULT, BZIP2, XZ, LZ4, RAW;
+
+    /**
+     * Creates the compressor.
+     *
+     * @param mergeManager the merge manager, used to add decoders to the installer
+     * @return a new compressor
+     */
+    public PackCompressor create(MergeManager mergeManager)
+    {
+        switch (this)
+        {
+            case BZIP2:
+                return new BZip2PackCompressor(mergeManager);
+            case XZ:
+                return new XZPackCompressor(mergeManager);
+            case LZ4:
+                return new LZ4PackCompressor();
+            case RAW:
+                return new RawPackCompressor();
+            default:
+                return new DefaultPackCompressor();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmark;
+
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+
+/**
+ * Progress handler that ignores progress, and fails on errors so that a broken benchmark doesn't go unnoticed.
+ */
+public class NullProgressHandler implements AbstractUIProgressHandler
+{
+
+    @Override
+    public void startAction(String name, int no_of_steps)
+    {
+    }
+
+    @Override
+    public void stopAction()
+    {
+    }
+
+    @Override
+    public void nextStep(String step_name, int step_no, int no_of_substeps)
+    {
+    }
+
+    @Override
+    public void setSubStepNo(int no_of_substeps)
+    {
+    }
+
+    @Override
+    public void progress(int substep_no, String message)
+    {
+    }
+
+    @Override
+    public void emitNotification(String message)
+    {
+    }
+
+    @Override
+    public boolean emitWarning(String title, String message)
+    {
+        return true;
+    }
+
+    @Override
+    public void emitError(String title, String message)
+    {
+        throw new IllegalStateException(title + ": " + message);
+    }
+
+    @Override
+    public void emitErrorAndBlockNext(String title, String message)
+    {
+        emitError(title, message);
+    }
+
+    @Override
+    public int askQuestion(String title, String question, int choices)
+    {
+        return ANSWER_YES;
+    }
+
+    @Override
+    public int askQuestion(String title, String question, int choices, int default_choice)
+    {
+        return default_choice;
+    }
+}
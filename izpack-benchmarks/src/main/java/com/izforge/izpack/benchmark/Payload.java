@@ -0,0 +1,198 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic payloads to benchmark against.
+ * <p/>
+ * Payloads are generated from a fixed seed, so that each run sees the same data. Compressible files contain text
+ * drawn from a small vocabulary; incompressible files contain random bytes.
+ */
+public enum Payload
+{
+
+    /**
+     * Many small, compressible files.
+     */
+    SMALL_FILES(2000, 1024, 8 * 1024, 0.0),
+
+    /**
+     * A few large, compressible files.
+     */
+    LARGE_FILES(2, 16 * 1024 * 1024, 16 * 1024 * 1024, 0.0),
+
+    /**
+     * Files of varying size, half of which are incompressible.
+     */
+    MIXED(200, 1024, 1024 * 1024, 0.5);
+
+    /**
+     * The no. of files in each directory.
+     */
+    private static final int FILES_PER_DIR = 100;
+
+    /**
+     * The words used to generate compressible content.
+     */
+    private static final String[] WORDS = {"install", "package", "file", "jar", "panel", "pack", "variable",
+            "condition", "resource", "compiler", "the", "a", "of", "and", "to", "in", "is", "for", "with", "on"};
+
+    /**
+     * The no. of files.
+     */
+    private final int count;
+
+    /**
+     * The minimum file size.
+     */
+    private final int minSize;
+
+    /**
+     * The maximum file size.
+     */
+    private final int maxSize;
+
+    /**
+     * The fraction of files that are incompressible.
+     */
+    private final double incompressible;
+
+
+    Payload(int count, int minSize, int maxSize, double incompressible)
+    {
+        this.count = count;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.incompressible = incompressible;
+    }
+
+    /**
+     * Generates the content of the payload files.
+     *
+     * @return the content of each file
+     */
+    public List<byte[]> createData()
+    {
+        Random random = new Random(ordinal());
+        List<byte[]> result = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; ++i)
+        {
+            int size = minSize + random.nextInt(maxSize - minSize + 1);
+            byte[] data = new byte[size];
+            if (random.nextDouble() < incompressible)
+            {
+                random.nextBytes(data);
+            }
+            else
+            {
+                fillText(data, random);
+            }
+            result.add(data);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the payload files to a directory.
+     * <p/>
+     * Files are spread over sub-directories of {@link #FILES_PER_DIR} files each.
+     *
+     * @param dir the directory to write to
+     * @return the files, in the order they were generated
+     * @throws IOException for any I/O error
+     */
+    public List<File> create(File dir) throws IOException
+    {
+        List<byte[]> data = createData();
+        List<File> result = new ArrayList<File>(data.size());
+        for (int i = 0; i < data.size(); ++i)
+        {
+            File parent = new File(dir, "dir" + (i / FILES_PER_DIR));
+            if (!parent.isDirectory() && !parent.mkdirs())
+            {
+                throw new IOException("Failed to create directory: " + parent);
+            }
+            File file = new File(parent, "file" + i + ".dat");
+            OutputStream out = new FileOutputStream(file);
+            try
+            {
+                out.write(data.get(i));
+            }
+            finally
+            {
+                out.close();
+            }
+            result.add(file);
+        }
+        return result;
+    }
+
+    /**
+     * Deletes a directory and its contents.
+     *
+     * @param dir the directory to delete. May be <tt>null</tt>
+     */
+    public static void delete(File dir)
+    {
+        if (dir != null)
+        {
+            File[] children = dir.listFiles();
+            if (children != null)
+            {
+                for (File child : children)
+                {
+                    delete(child);
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Fills a buffer with text.
+     *
+     * @param data   the buffer to fill
+     * @param random the random no. generator
+     */
+    private static void fillText(byte[] data, Random random)
+    {
+        int pos = 0;
+        while (pos < data.length)
+        {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            for (int i = 0; i < word.length() && pos < data.length; ++i)
+            {
+                data[pos++] = (byte) word.charAt(i);
+            }
+            if (pos < data.length)
+            {
+                data[pos++] = (byte) (random.nextInt(10) == 0 ? '\n' : ' ');
+            }
+        }
+    }
+}
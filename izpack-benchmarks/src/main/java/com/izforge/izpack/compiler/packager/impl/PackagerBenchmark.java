@@ -0,0 +1,182 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.benchmark.Compression;
+import com.izforge.izpack.benchmark.Payload;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.merge.MergeManager;
+import com.izforge.izpack.merge.MergeManagerImpl;
+import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.merge.resolve.PathResolver;
+
+/**
+ * Benchmarks {@link Packager#writePacks()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackagerBenchmark
+{
+
+    /**
+     * The payload.
+     */
+    @Param({"SMALL_FILES", "LARGE_FILES", "MIXED"})
+    public Payload payload;
+
+    /**
+     * The pack compression.
+     */
+    @Param({"DEFAULT", "BZIP2", "XZ", "LZ4", "RAW"})
+    public Compression compression;
+
+    /**
+     * The no. of threads to compress packs with.
+     */
+    @Param({"1"})
+    public int packThreads;
+
+    /**
+     * The directory holding the payload and the installer.
+     */
+    private File dir;
+
+    /**
+     * The payload directory.
+     */
+    private File baseDir;
+
+    /**
+     * The payload files.
+     */
+    private List<File> files;
+
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        dir = File.createTempFile("packager", "");
+        dir.delete();
+        baseDir = new File(dir, "payload");
+        files = payload.create(baseDir);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        Payload.delete(dir);
+    }
+
+    /**
+     * Writes the payload as two packs, the second of which repeats a tenth of the files of the first.
+     *
+     * @return the size of the installer
+     * @throws IOException for any I/O error
+     */
+    @Benchmark
+    public long writePacks() throws IOException
+    {
+        File installer = new File(dir, "installer.jar");
+        writeInstaller(installer, baseDir, files, compression, packThreads, new Info());
+        return installer.length();
+    }
+
+    /**
+     * Writes an installer containing the packs of a payload.
+     * <p/>
+     * The payload files are written to a <em>payload</em> pack. A <em>duplicates</em> pack repeats every tenth file,
+     * so that back references are exercised.
+     *
+     * @param installer   the installer to write
+     * @param baseDir     the payload directory
+     * @param files       the payload files
+     * @param compression the pack compression
+     * @param packThreads the no. of threads to compress packs with
+     * @param info        the installation info. This is updated with the pack decoder
+     * @return the packs
+     * @throws IOException for any I/O error
+     */
+    public static PackInfo[] writeInstaller(File installer, File baseDir, List<File> files, Compression compression,
+                                            int packThreads, Info info) throws IOException
+    {
+        PackInfo payload = new PackInfo("payload", "payload", "", true, false, null, true);
+        PackInfo duplicates = new PackInfo("duplicates", "duplicates", "", true, false, null, true);
+        for (int i = 0; i < files.size(); ++i)
+        {
+            File file = files.get(i);
+            String path = file.getParentFile().getName() + "/" + file.getName();
+            payload.addFile(baseDir, file, "$INSTALL_PATH/" + path, null, OverrideType.OVERRIDE_TRUE, null,
+                            Blockable.BLOCKABLE_NONE, null, null);
+            if (i % 10 == 0)
+            {
+                duplicates.addFile(baseDir, file, "$INSTALL_PATH/copy/" + path, null, OverrideType.OVERRIDE_TRUE,
+                                   null, Blockable.BLOCKABLE_NONE, null, null);
+            }
+        }
+
+        CompilerData compilerData = new CompilerData(compression.name().toLowerCase(), "standard", null, null,
+                                                     baseDir.getPath(), installer.getPath(), false, -1);
+        compilerData.setPackThreads(packThreads);
+        MergeManager mergeManager = new MergeManagerImpl(new PathResolver(new MergeableResolver()));
+        JarOutputStream jar = new JarOutputStream(installer);
+        jar.setPreventClose(true);
+        try
+        {
+            Packager packager = new Packager(null, null, jar, compression.create(mergeManager), jar, mergeManager,
+                                             null, null, compilerData);
+            packager.setInfo(info);
+            packager.addPack(payload);
+            packager.addPack(duplicates);
+            packager.writePacks();
+        }
+        finally
+        {
+            jar.closeAlways();
+        }
+        return new PackInfo[]{payload, duplicates};
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+/**
+ * Benchmarks {@link VariableSubstitutorBase#substitute}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VariableSubstitutorBenchmark
+{
+
+    /**
+     * The substitution type.
+     */
+    @Param({"TYPE_PLAIN", "TYPE_JAVA_PROPERTIES", "TYPE_XML", "TYPE_SHELL", "TYPE_ANT"})
+    public SubstitutionType type;
+
+    /**
+     * The no. of lines in the text to substitute.
+     */
+    @Param({"10", "1000"})
+    public int lines;
+
+    /**
+     * The substitutor.
+     */
+    private VariableSubstitutorImpl substitutor;
+
+    /**
+     * The text to substitute.
+     */
+    private String text;
+
+    /**
+     * The text to substitute, as bytes.
+     */
+    private byte[] bytes;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("INSTALL_PATH", "/opt/application");
+        properties.setProperty("APP_NAME", "Application");
+        properties.setProperty("APP_VER", "1.0.0");
+        properties.setProperty("USER_HOME", "/home/user");
+        substitutor = new VariableSubstitutorImpl(properties);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; ++i)
+        {
+            switch (i % 4)
+            {
+                case 0:
+                    builder.append("install.dir=${INSTALL_PATH}/lib/$APP_NAME-${APP_VER}.jar\n");
+                    break;
+                case 1:
+                    builder.append("# a line without any variables, as most lines of configuration files are\n");
+                    break;
+                case 2:
+                    builder.append("home=$USER_HOME ant=@APP_NAME@ unknown=${UNKNOWN} literal=$$ end\n");
+                    break;
+                default:
+                    builder.append("<entry key=\"${APP_NAME}\" value=\"${INSTALL_PATH}\"/>\n");
+            }
+        }
+        text = builder.toString();
+        bytes = text.getBytes("UTF-8");
+    }
+
+    /**
+     * Substitutes variables in a string.
+     *
+     * @return the substituted string
+     */
+    @Benchmark
+    public String substituteString()
+    {
+        return substitutor.substitute(text, type);
+    }
+
+    /**
+     * Substitutes variables in a stream.
+     *
+     * @return the substituted bytes
+     * @throws Exception for any error
+     */
+    @Benchmark
+    public byte[] substituteStream() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        substitutor.substitute(new ByteArrayInputStream(bytes), out, type, "UTF-8");
+        return out.toByteArray();
+    }
+}
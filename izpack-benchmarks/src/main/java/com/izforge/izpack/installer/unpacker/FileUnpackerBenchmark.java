@@ -0,0 +1,144 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.benchmark.NullProgressHandler;
+import com.izforge.izpack.benchmark.Payload;
+import com.izforge.izpack.util.Platforms;
+
+/**
+ * Benchmarks {@link FileUnpacker#copy(PackFile, java.io.InputStream, File)}, via the {@link DefaultFileUnpacker}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileUnpackerBenchmark
+{
+
+    /**
+     * The payload.
+     */
+    @Param({"SMALL_FILES", "LARGE_FILES", "MIXED"})
+    public Payload payload;
+
+    /**
+     * The directory holding the source and target files.
+     */
+    private File dir;
+
+    /**
+     * The payload content.
+     */
+    private List<byte[]> data;
+
+    /**
+     * The pack files describing the payload.
+     */
+    private List<PackFile> packFiles;
+
+    /**
+     * The target of each pack file.
+     */
+    private List<File> targets;
+
+    /**
+     * Never cancels.
+     */
+    private final Cancellable cancellable = new Cancellable()
+    {
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+    };
+
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        dir = File.createTempFile("unpack", "");
+        dir.delete();
+        File source = new File(dir, "source");
+        File target = new File(dir, "target");
+        data = payload.createData();
+        packFiles = new ArrayList<PackFile>();
+        targets = new ArrayList<File>();
+        for (File file : payload.create(source))
+        {
+            String path = file.getParentFile().getName() + "/" + file.getName();
+            packFiles.add(new PackFile(source, file, path, null, OverrideType.OVERRIDE_TRUE, null,
+                                       Blockable.BLOCKABLE_NONE));
+            File targetFile = new File(target, path);
+            targetFile.getParentFile().mkdirs();
+            targets.add(targetFile);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        Payload.delete(dir);
+    }
+
+    /**
+     * Unpacks each payload file to its target.
+     *
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer error
+     */
+    @Benchmark
+    public void copy() throws IOException, InstallerException
+    {
+        for (int i = 0; i < packFiles.size(); ++i)
+        {
+            FileUnpacker unpacker = new DefaultFileUnpacker(cancellable, new NullProgressHandler(), null,
+                                                            Platforms.UNIX, null);
+            unpacker.unpackStream(packFiles.get(i), new ByteArrayInputStream(data.get(i)), targets.get(i));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.ResourceManager;
+import com.izforge.izpack.benchmark.Compression;
+import com.izforge.izpack.benchmark.NullProgressHandler;
+import com.izforge.izpack.benchmark.Payload;
+import com.izforge.izpack.compiler.packager.impl.PackagerBenchmark;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.UpdateCheck;
+import com.izforge.izpack.installer.data.InstallData;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.util.Platforms;
+import com.izforge.izpack.util.os.FileQueue;
+
+/**
+ * Benchmarks {@link UnpackerBase#unpack(com.izforge.izpack.api.data.Pack, int, FileQueue, List, List, List)}, which
+ * unpacks each file of a pack via {@link UnpackerBase#unpack(com.izforge.izpack.api.data.PackFile,
+ * java.io.ObjectInputStream, int, com.izforge.izpack.api.data.Pack, FileQueue)}.
+ * <p/>
+ * The packs are read from an installer written by the {@link PackagerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UnpackerBenchmark
+{
+
+    /**
+     * The payload.
+     */
+    @Param({"SMALL_FILES", "LARGE_FILES", "MIXED"})
+    public Payload payload;
+
+    /**
+     * The pack compression.
+     */
+    @Param({"DEFAULT", "BZIP2", "XZ", "LZ4", "RAW"})
+    public Compression compression;
+
+    /**
+     * The directory holding the payload, the installer, and the installation.
+     */
+    private File dir;
+
+    /**
+     * The installation info.
+     */
+    private Info info;
+
+    /**
+     * The packs.
+     */
+    private PackInfo[] packs;
+
+    /**
+     * The resources, read from the installer.
+     */
+    private ResourceManager resources;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        dir = File.createTempFile("unpacker", "");
+        dir.delete();
+        File baseDir = new File(dir, "payload");
+        List<File> files = payload.create(baseDir);
+        File installer = new File(dir, "installer.jar");
+        info = new Info();
+        packs = PackagerBenchmark.writeInstaller(installer, baseDir, files, compression, 1, info);
+        Payload.delete(baseDir);
+
+        URLClassLoader loader = new URLClassLoader(new URL[]{installer.toURI().toURL()},
+                                                   getClass().getClassLoader());
+        resources = new ResourceManager(new Properties(), loader);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        Payload.delete(dir);
+    }
+
+    /**
+     * Unpacks each pack.
+     *
+     * @return the no. of installed files
+     * @throws Exception for any error
+     */
+    @Benchmark
+    public int unpack() throws Exception
+    {
+        AutomatedInstallData installData = new InstallData(new DefaultVariables());
+        installData.setInstallPath(new File(dir, "install").getPath());
+        installData.setInfo(info);
+        UninstallData uninstallData = new UninstallData();
+        Unpacker unpacker = new Unpacker(installData, resources, null,
+                                         new VariableSubstitutorImpl(installData.getVariables()), uninstallData,
+                                         Platforms.UNIX, null, null, new InstallerListeners());
+        unpacker.setHandler(new NullProgressHandler());
+
+        List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+        List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
+        List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
+        FileQueue queue = null;
+        for (int i = 0; i < packs.length; ++i)
+        {
+            queue = unpacker.unpack(packs[i].getPack(), i, queue, parsables, executables, updateChecks);
+        }
+        return uninstallData.getInstalledFilesList().size();
+    }
+}
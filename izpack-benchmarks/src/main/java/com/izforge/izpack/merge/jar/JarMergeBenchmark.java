@@ -0,0 +1,135 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.izforge.izpack.benchmark.Payload;
+
+/**
+ * Benchmarks {@link JarMerge#merge(List, OutputStream)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JarMergeBenchmark
+{
+
+    /**
+     * The payload.
+     */
+    @Param({"SMALL_FILES", "LARGE_FILES", "MIXED"})
+    public Payload payload;
+
+    /**
+     * The directory holding the jar to merge, and the merged jar.
+     */
+    private File dir;
+
+    /**
+     * The jar to merge.
+     */
+    private File jar;
+
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        dir = File.createTempFile("jarmerge", "");
+        dir.delete();
+        dir.mkdirs();
+        jar = new File(dir, "payload.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try
+        {
+            int i = 0;
+            for (byte[] data : payload.createData())
+            {
+                // split the entries across two packages, so that both mergeables match
+                out.putNextEntry(new ZipEntry((i % 2 == 0 ? "com/a/" : "com/b/") + "file" + i + ".dat"));
+                out.write(data);
+                out.closeEntry();
+                ++i;
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        Payload.delete(dir);
+    }
+
+    /**
+     * Merges two packages of the jar in a single pass.
+     *
+     * @return the size of the merged jar
+     * @throws IOException for any I/O error
+     */
+    @Benchmark
+    public long merge() throws IOException
+    {
+        HashMap<OutputStream, List<String>> content = new HashMap<OutputStream, List<String>>();
+        List<JarMerge> merges = new ArrayList<JarMerge>(Arrays.asList(
+                new JarMerge(jar.getPath(), "com/a", "com/a", content),
+                new JarMerge(jar.getPath(), "com/b", "com/b", content)));
+        File merged = new File(dir, "merged.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(merged));
+        try
+        {
+            JarMerge.merge(merges, out);
+        }
+        finally
+        {
+            out.close();
+        }
+        return merged.length();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.izforge.izpack.benchmark.Payload;
+
+/**
+ * Benchmarks {@link IoHelper#copyStream(java.io.InputStream, OutputStream)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IoHelperBenchmark
+{
+
+    /**
+     * The payload.
+     */
+    @Param({"SMALL_FILES", "LARGE_FILES", "MIXED"})
+    public Payload payload;
+
+    /**
+     * The payload content.
+     */
+    private List<byte[]> data;
+
+
+    @Setup
+    public void setUp()
+    {
+        data = payload.createData();
+    }
+
+    /**
+     * Copies each payload file to a stream that discards its input.
+     *
+     * @param blackhole the black hole, to consume the result
+     * @throws IOException for any I/O error
+     */
+    @Benchmark
+    public void copyStream(Blackhole blackhole) throws IOException
+    {
+        OutputStream out = new NullOutputStream(blackhole);
+        long bytes = 0;
+        for (byte[] bytesIn : data)
+        {
+            bytes += IoHelper.copyStream(new ByteArrayInputStream(bytesIn), out);
+        }
+        blackhole.consume(bytes);
+    }
+
+    /**
+     * Output stream that passes what is written to a black hole.
+     */
+    private static class NullOutputStream extends OutputStream
+    {
+
+        /**
+         * The black hole.
+         */
+        private final Blackhole blackhole;
+
+
+        public NullOutputStream(Blackhole blackhole)
+        {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.izforge.izpack.compiler.packager.impl.generated;
+public class PackagerBenchmark_jmhType extends PackagerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.izforge.izpack.core.substitutor.generated;
+public class VariableSubstitutorBenchmark_jmhType extends VariableSubstitutorBenchmark_jmhType_B3 {
+}
+
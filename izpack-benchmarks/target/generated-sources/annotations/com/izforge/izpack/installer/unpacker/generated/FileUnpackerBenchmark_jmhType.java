@@ -0,0 +1,4 @@
+package com.izforge.izpack.installer.unpacker.generated;
+public class FileUnpackerBenchmark_jmhType extends FileUnpackerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.izforge.izpack.installer.unpacker.generated;
+public class UnpackerBenchmark_jmhType extends UnpackerBenchmark_jmhType_B3 {
+}
+
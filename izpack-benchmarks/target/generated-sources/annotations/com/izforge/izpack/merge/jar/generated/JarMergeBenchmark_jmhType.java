@@ -0,0 +1,4 @@
+package com.izforge.izpack.merge.jar.generated;
+public class JarMergeBenchmark_jmhType extends JarMergeBenchmark_jmhType_B3 {
+}
+
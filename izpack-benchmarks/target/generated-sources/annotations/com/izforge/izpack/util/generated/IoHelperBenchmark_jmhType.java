@@ -0,0 +1,4 @@
+package com.izforge.izpack.util.generated;
+public class IoHelperBenchmark_jmhType extends IoHelperBenchmark_jmhType_B3 {
+}
+
@@ -58,7 +58,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -92,6 +91,7 @@ import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.data.CompilerMetrics;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
 import com.izforge.izpack.compiler.helper.TargetFileSet;
@@ -100,6 +100,8 @@ import com.izforge.izpack.compiler.listener.CompilerListener;
 import com.izforge.izpack.compiler.merge.resolve.ClassPathCrawler;
 import com.izforge.izpack.compiler.merge.resolve.CompilerPathResolver;
 import com.izforge.izpack.compiler.packager.IPackager;
+import com.izforge.izpack.compiler.resource.PackContentFilter;
+import com.izforge.izpack.compiler.resource.PackContentReader;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
 import com.izforge.izpack.core.data.DynamicInstallerRequirementValidatorImpl;
 import com.izforge.izpack.core.data.DynamicVariableImpl;
@@ -122,6 +124,7 @@ import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsConstraintHelper;
+import com.izforge.izpack.util.file.DirectoryCache;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileUtils;
 
@@ -182,6 +185,11 @@ public class CompilerConfig extends Thread
     private ClassPathCrawler classPathCrawler;
     private RulesEngine rules;
 
+    /**
+     * The cache of directory listings shared by the file sets of the packs, while packs are being added.
+     */
+    private DirectoryCache directoryCache;
+
     /**
      * The factory for {@link CompilerListener} instances.
      */
@@ -266,8 +274,18 @@ public class CompilerConfig extends Thread
         // add izpack built in property
         propertyManager.setProperty("basedir", base.toString());
 
+        CompilerMetrics metrics = compilerData.getMetrics();
+        classPathCrawler.setMetrics(metrics);
+
         // We get the XML data tree
+        CompilerMetrics.Timer timer = metrics.start("parse");
         IXMLElement data = resourceFinder.getXMLTree();
+        CompilerMetrics.Phase parse = timer.stop();
+        if (compilerData.getInstallFile() != null)
+        {
+            parse.addBytesIn(new File(compilerData.getInstallFile()).length());
+            parse.addFiles(1);
+        }
 
         // construct compiler listeners to receive all further compiler events
         addCompilerListeners(data);
@@ -276,7 +294,9 @@ public class CompilerConfig extends Thread
         loadPackagingInformation(data);
 
         // Read the properties and perform replacement on the rest of the tree
+        timer = metrics.start("substituteProperties");
         substituteProperties(data);
+        timer.stop();
 
         // We add all the information
         addVariables(data);
@@ -293,14 +313,25 @@ public class CompilerConfig extends Thread
         addListenerJars(data);
         addPanels(data);
         addListeners(data);
+        timer = metrics.start("addPacks");
         addPacks(data);
+        timer.stop();
         addInstallerRequirement(data);
 
         // merge multiple packlang.xml files
         mergePacksLangFiles();
 
         // We ask the packager to create the installer
+        timer = metrics.start("createInstaller");
         compiler.createInstaller();
+        timer.stop().addBytesOut(new File(compilerData.getOutput()).length());
+
+        if (compilerData.isMetrics())
+        {
+            File report = compilerData.getMetricsReport();
+            metrics.write(report);
+            logger.info("Compiler metrics written to " + report);
+        }
     }
 
     /**
@@ -675,7 +706,21 @@ public class CompilerConfig extends Thread
 
         // the actual adding is delegated to addPacksSingle to enable recursive
         // parsing of refpack package definitions
-        addPacksSingle(data);
+        directoryCache = new DirectoryCache();
+        try
+        {
+            File installFile = null;
+            if (compilerData.isStreaming() && compilerData.getInstallFile() != null)
+            {
+                installFile = new File(compilerData.getInstallFile()).getAbsoluteFile();
+            }
+            addPacksSingle(data, installFile);
+        }
+        finally
+        {
+            directoryCache.close();
+            directoryCache = null;
+        }
 
         compiler.checkDependencies();
         compiler.checkExcludes();
@@ -687,10 +732,12 @@ public class CompilerConfig extends Thread
      * Add packs and their contents to the installer without checking the dependencies and includes.
      * <p/> Helper method to recursively add more packs from refpack XML packs definitions
      *
-     * @param data The XML data
+     * @param data        The XML data
+     * @param installFile the installation file to stream the contents of packs from, or <tt>null</tt> if the
+     *                    packs of <tt>data</tt> are complete
      * @throws CompilerException
      */
-    private void addPacksSingle(IXMLElement data) throws CompilerException
+    private void addPacksSingle(IXMLElement data, File installFile) throws CompilerException
     {
         notifyCompilerListener("addPacksSingle", CompilerListener.BEGIN, data);
         // Initialisation
@@ -707,103 +754,24 @@ public class CompilerConfig extends Thread
 
         File baseDir = new File(compilerData.getBasedir());
 
-        for (IXMLElement packElement : packElements)
+        if (installFile != null)
         {
-
-            // Trivial initialisations
-            String name = xmlCompilerHelper.requireAttribute(packElement, "name");
-            String id = packElement.getAttribute("id");
-            String packImgId = packElement.getAttribute("packImgId");
-
-            boolean loose = Boolean.parseBoolean(packElement.getAttribute("loose", "false"));
-            String description = xmlCompilerHelper.requireChildNamed(packElement, "description").getContent();
-            boolean required = xmlCompilerHelper.requireYesNoAttribute(packElement, "required");
-            String group = packElement.getAttribute("group");
-            String installGroups = packElement.getAttribute("installGroups");
-            String excludeGroup = packElement.getAttribute("excludeGroup");
-            boolean uninstall = "yes".equalsIgnoreCase(packElement.getAttribute("uninstall", "yes"));
-            String parent = packElement.getAttribute("parent");
-            boolean hidden = Boolean.parseBoolean(packElement.getAttribute("hidden", "false"));
-
-            String conditionid = packElement.getAttribute("condition");
-
-            if (required && excludeGroup != null)
-            {
-                assertionHelper.parseError(packElement, "Pack, which has excludeGroup can not be required.",
-                                           new Exception(
-                                                   "Pack, which has excludeGroup can not be required."));
-            }
-
-            PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
-                                         uninstall);
-            pack.setOsConstraints(OsConstraintHelper.getOsList(packElement)); // TODO:
-            pack.setParent(parent);
-            pack.setCondition(conditionid);
-            pack.setHidden(hidden);
-
-            // unverified
-            // if the pack belongs to an excludeGroup it's not preselected by default
-            if (excludeGroup == null)
-            {
-                pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", YES));
-            }
-            else
-            {
-                pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", NO));
-            }
-
-            // Set the pack group if specified
-            if (group != null)
-            {
-                pack.setGroup(group);
-            }
-            // Set the pack install groups if specified
-            if (installGroups != null)
-            {
-                StringTokenizer st = new StringTokenizer(installGroups, ",");
-                while (st.hasMoreTokens())
-                {
-                    String igroup = st.nextToken();
-                    pack.addInstallGroup(igroup);
-                }
-            }
-
-            // Set the packImgId if specified
-            if (packImgId != null)
+            addStreamedPacks(baseDir, packElements, installFile);
+        }
+        else
+        {
+            for (IXMLElement packElement : packElements)
             {
-                pack.setPackImgId(packImgId);
-            }
+                PackInfo pack = createPack(packElement);
 
-            List<IXMLElement> parsableChildren = packElement.getChildrenNamed("parsable");
-            processParsableChildren(pack, parsableChildren);
+                processFileChildren(baseDir, packElement, pack);
 
-            List<IXMLElement> executableChildren = packElement.getChildrenNamed("executable");
-            processExecutableChildren(pack, executableChildren);
+                processSingleFileChildren(baseDir, packElement, pack);
 
-            processFileChildren(baseDir, packElement, pack);
+                processFileSetChildren(baseDir, packElement, pack);
 
-            processSingleFileChildren(baseDir, packElement, pack);
-
-            processFileSetChildren(baseDir, packElement, pack);
-
-            processUpdateCheckChildren(packElement, pack);
-
-            // We get the dependencies
-            for (IXMLElement dependsNode : packElement.getChildrenNamed("depends"))
-            {
-                String depName = xmlCompilerHelper.requireAttribute(dependsNode, "packname");
-                pack.addDependency(depName);
-
-            }
-
-            for (IXMLElement validatorNode : packElement.getChildrenNamed("validator"))
-            {
-                String validatorClassName = compiler.findClass(xmlCompilerHelper.requireContent(validatorNode), null);
-                pack.addValidator(validatorClassName);
+                addPack(packElement, pack);
             }
-
-            // We add the pack
-            packager.addPack(pack);
         }
 
         for (IXMLElement refPackElement : refPackElements)
@@ -819,7 +787,7 @@ public class CompilerConfig extends Thread
 
             logger.info("Reading refpack from " + refFileName);
             // Recursively call myself to add all packs and refpacks from the reference XML
-            addPacksSingle(refXMLData);
+            addPacksSingle(refXMLData, null);
         }
 
         for (IXMLElement refPackSet : refPackSets)
@@ -863,7 +831,7 @@ public class CompilerConfig extends Thread
                     IXMLElement refXMLData = this.readRefPackData(refFileName, false);
 
                     // Recursively call myself to add all packs and refpacks from the reference XML
-                    addPacksSingle(refXMLData);
+                    addPacksSingle(refXMLData, null);
                 }
             }
             catch (Exception e)
@@ -875,6 +843,195 @@ public class CompilerConfig extends Thread
         notifyCompilerListener("addPacksSingle", CompilerListener.END, data);
     }
 
+    /**
+     * Adds packs, streaming their contents from the installation file.
+     * <p/>
+     * The pack elements of the installation tree have had their contents left out by a {@link PackContentFilter}.
+     * Their <em>file</em>, <em>singlefile</em> and <em>fileset</em> elements are processed in document order as they
+     * are read, and discarded once added to the pack. This only keeps the elements out of memory; the
+     * pack files they create are held by the pack until it is written.
+     *
+     * @param baseDir      the base directory
+     * @param packElements the pack elements, without their contents
+     * @param installFile  the installation file
+     * @throws CompilerException if the packs cannot be added
+     */
+    private void addStreamedPacks(final File baseDir, final List<IXMLElement> packElements, File installFile)
+            throws CompilerException
+    {
+        PackContentReader reader = new PackContentReader(new PackContentReader.Handler()
+        {
+            private PackInfo pack;
+
+            @Override
+            public void startPack(int index) throws CompilerException
+            {
+                if (index >= packElements.size())
+                {
+                    throw new CompilerException("Pack " + index + " of " + compilerData.getInstallFile()
+                                                        + " not found in installation tree");
+                }
+                pack = createPack(packElements.get(index));
+            }
+
+            @Override
+            public void content(int index, IXMLElement element) throws CompilerException
+            {
+                substituteAllProperties(element);
+                if ("file".equals(element.getName()))
+                {
+                    processFile(baseDir, element, pack);
+                }
+                else if ("singlefile".equals(element.getName()))
+                {
+                    processSingleFile(baseDir, element, pack);
+                }
+                else
+                {
+                    processFileSet(baseDir, readFileSet(element), element, pack);
+                }
+            }
+
+            @Override
+            public void endPack(int index) throws CompilerException
+            {
+                addPack(packElements.get(index), pack);
+                pack = null;
+            }
+        });
+        int count;
+        try
+        {
+            count = reader.read(installFile);
+        }
+        catch (CompilerException exception)
+        {
+            throw exception;
+        }
+        catch (IOException exception)
+        {
+            throw new CompilerException("Failed to read " + installFile + ": " + exception.getMessage(), exception);
+        }
+        if (count != packElements.size())
+        {
+            throw new CompilerException("Read " + count + " packs from " + installFile + " but expected "
+                                                + packElements.size());
+        }
+    }
+
+    /**
+     * Creates a pack from its element.
+     * <p/>
+     * The contents of the pack are added separately.
+     *
+     * @param packElement the pack element
+     * @return a new pack
+     * @throws CompilerException if the element is invalid
+     */
+    private PackInfo createPack(IXMLElement packElement) throws CompilerException
+    {
+        // Trivial initialisations
+        String name = xmlCompilerHelper.requireAttribute(packElement, "name");
+        String id = packElement.getAttribute("id");
+        String packImgId = packElement.getAttribute("packImgId");
+
+        boolean loose = Boolean.parseBoolean(packElement.getAttribute("loose", "false"));
+        String description = xmlCompilerHelper.requireChildNamed(packElement, "description").getContent();
+        boolean required = xmlCompilerHelper.requireYesNoAttribute(packElement, "required");
+        String group = packElement.getAttribute("group");
+        String installGroups = packElement.getAttribute("installGroups");
+        String excludeGroup = packElement.getAttribute("excludeGroup");
+        boolean uninstall = "yes".equalsIgnoreCase(packElement.getAttribute("uninstall", "yes"));
+        String parent = packElement.getAttribute("parent");
+        boolean hidden = Boolean.parseBoolean(packElement.getAttribute("hidden", "false"));
+
+        String conditionid = packElement.getAttribute("condition");
+
+        if (required && excludeGroup != null)
+        {
+            assertionHelper.parseError(packElement, "Pack, which has excludeGroup can not be required.",
+                                       new Exception(
+                                               "Pack, which has excludeGroup can not be required."));
+        }
+
+        PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
+                                     uninstall);
+        pack.setOsConstraints(OsConstraintHelper.getOsList(packElement)); // TODO:
+        pack.setParent(parent);
+        pack.setCondition(conditionid);
+        pack.setHidden(hidden);
+
+        // unverified
+        // if the pack belongs to an excludeGroup it's not preselected by default
+        if (excludeGroup == null)
+        {
+            pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", YES));
+        }
+        else
+        {
+            pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", NO));
+        }
+
+        // Set the pack group if specified
+        if (group != null)
+        {
+            pack.setGroup(group);
+        }
+        // Set the pack install groups if specified
+        if (installGroups != null)
+        {
+            StringTokenizer st = new StringTokenizer(installGroups, ",");
+            while (st.hasMoreTokens())
+            {
+                String igroup = st.nextToken();
+                pack.addInstallGroup(igroup);
+            }
+        }
+
+        // Set the packImgId if specified
+        if (packImgId != null)
+        {
+            pack.setPackImgId(packImgId);
+        }
+
+        List<IXMLElement> parsableChildren = packElement.getChildrenNamed("parsable");
+        processParsableChildren(pack, parsableChildren);
+
+        List<IXMLElement> executableChildren = packElement.getChildrenNamed("executable");
+        processExecutableChildren(pack, executableChildren);
+
+        return pack;
+    }
+
+    /**
+     * Adds a pack to the packager, once its contents have been added.
+     *
+     * @param packElement the pack element
+     * @param pack        the pack
+     * @throws CompilerException if the element is invalid
+     */
+    private void addPack(IXMLElement packElement, PackInfo pack) throws CompilerException
+    {
+        processUpdateCheckChildren(packElement, pack);
+
+        // We get the dependencies
+        for (IXMLElement dependsNode : packElement.getChildrenNamed("depends"))
+        {
+            String depName = xmlCompilerHelper.requireAttribute(dependsNode, "packname");
+            pack.addDependency(depName);
+
+        }
+
+        for (IXMLElement validatorNode : packElement.getChildrenNamed("validator"))
+        {
+            String validatorClassName = compiler.findClass(xmlCompilerHelper.requireContent(validatorNode), null);
+            pack.addValidator(validatorClassName);
+        }
+
+        // We add the pack
+        packager.addPack(pack);
+    }
+
     private void processUpdateCheckChildren(IXMLElement packElement, PackInfo pack) throws CompilerException
     {
         for (IXMLElement updateNode : packElement.getChildrenNamed("updatecheck"))
@@ -905,36 +1062,43 @@ public class CompilerConfig extends Thread
     {
         for (TargetFileSet fs : readFileSets(packElement))
         {
-            try
+            processFileSet(baseDir, fs, packElement, pack);
+        }
+    }
+
+    private void processFileSet(File baseDir, TargetFileSet fs, IXMLElement element, PackInfo pack)
+            throws CompilerException
+    {
+        try
+        {
+            DirectoryScanner scanner = fs.getDirectoryScanner();
+            String[][] includedFilesAndDirs = new String[][]{
+                    scanner.getIncludedDirectories(),
+                    scanner.getIncludedFiles()
+            };
+            for (String[] filesOrDirs : includedFilesAndDirs)
             {
-                String[][] includedFilesAndDirs = new String[][]{
-                        fs.getDirectoryScanner().getIncludedDirectories(),
-                        fs.getDirectoryScanner().getIncludedFiles()
-                };
-                for (String[] filesOrDirs : includedFilesAndDirs)
+                if (filesOrDirs != null)
                 {
-                    if (filesOrDirs != null)
+                    for (String filePath : filesOrDirs)
                     {
-                        for (String filePath : filesOrDirs)
+                        if (!filePath.isEmpty()) // not the basedir itself
                         {
-                            if (!filePath.isEmpty()) // not the basedir itself
-                            {
-                                File file = new File(fs.getDir(), filePath);
-                                String target = new File(fs.getTargetDir(), filePath).getPath();
-                                logger.info("Adding file: " + file + ", as target file=" + target);
-                                pack.addFile(baseDir, file, target, fs.getOsList(), fs
-                                        .getOverride(), fs.getOverrideRenameTo(), fs.getBlockable(),
-                                             fs.getAdditionals(), fs
-                                        .getCondition());
-                            }
+                            File file = new File(fs.getDir(), filePath);
+                            String target = new File(fs.getTargetDir(), filePath).getPath();
+                            logger.info("Adding file: " + file + ", as target file=" + target);
+                            pack.addFile(baseDir, file, target, fs.getOsList(), fs
+                                    .getOverride(), fs.getOverrideRenameTo(), fs.getBlockable(),
+                                         fs.getAdditionals(), fs
+                                    .getCondition());
                         }
                     }
                 }
             }
-            catch (Exception e)
-            {
-                assertionHelper.parseError(packElement, e.getMessage(), e);
-            }
+        }
+        catch (Exception e)
+        {
+            assertionHelper.parseError(element, e.getMessage(), e);
         }
     }
 
@@ -943,44 +1107,49 @@ public class CompilerConfig extends Thread
     {
         for (IXMLElement singleFileNode : packElement.getChildrenNamed("singlefile"))
         {
-            String src = xmlCompilerHelper.requireAttribute(singleFileNode, "src");
-            String target = xmlCompilerHelper.requireAttribute(singleFileNode, "target");
-            List<OsModel> osList = OsConstraintHelper.getOsList(singleFileNode); // TODO: unverified
-            OverrideType override = getOverrideValue(singleFileNode);
-            String overrideRenameTo = getOverrideRenameToValue(singleFileNode);
-            Blockable blockable = getBlockableValue(singleFileNode, osList);
-            Map additionals = getAdditionals(singleFileNode);
-            String condition = singleFileNode.getAttribute("condition");
-            File file = new File(src);
-            if (!file.isAbsolute())
-            {
-                file = new File(compilerData.getBasedir(), src);
-            }
+            processSingleFile(baseDir, singleFileNode, pack);
+        }
+    }
 
-            // if the path does not exist, maybe it contains variables
-            if (!file.exists())
-            {
-                try
-                {
-                    file = new File(variableSubstitutor.substitute(file.getAbsolutePath()));
-                }
-                catch (Exception e)
-                {
-                    assertionHelper.parseWarn(singleFileNode, e.getMessage());
-                }
-                // next existance checking appears in pack.addFile
-            }
+    private void processSingleFile(File baseDir, IXMLElement singleFileNode, PackInfo pack) throws CompilerException
+    {
+        String src = xmlCompilerHelper.requireAttribute(singleFileNode, "src");
+        String target = xmlCompilerHelper.requireAttribute(singleFileNode, "target");
+        List<OsModel> osList = OsConstraintHelper.getOsList(singleFileNode); // TODO: unverified
+        OverrideType override = getOverrideValue(singleFileNode);
+        String overrideRenameTo = getOverrideRenameToValue(singleFileNode);
+        Blockable blockable = getBlockableValue(singleFileNode, osList);
+        Map additionals = getAdditionals(singleFileNode);
+        String condition = singleFileNode.getAttribute("condition");
+        File file = new File(src);
+        if (!file.isAbsolute())
+        {
+            file = new File(compilerData.getBasedir(), src);
+        }
 
+        // if the path does not exist, maybe it contains variables
+        if (!file.exists())
+        {
             try
             {
-                logger.info("Adding file: " + file + ", as target file=" + target);
-                pack.addFile(baseDir, file, target, osList, override, overrideRenameTo, blockable, additionals,
-                             condition);
+                file = new File(variableSubstitutor.substitute(file.getAbsolutePath()));
             }
-            catch (IOException x)
+            catch (Exception e)
             {
-                assertionHelper.parseError(singleFileNode, x.getMessage(), x);
+                assertionHelper.parseWarn(singleFileNode, e.getMessage());
             }
+            // next existance checking appears in pack.addFile
+        }
+
+        try
+        {
+            logger.info("Adding file: " + file + ", as target file=" + target);
+            pack.addFile(baseDir, file, target, osList, override, overrideRenameTo, blockable, additionals,
+                         condition);
+        }
+        catch (IOException x)
+        {
+            assertionHelper.parseError(singleFileNode, x.getMessage(), x);
         }
     }
 
@@ -988,86 +1157,93 @@ public class CompilerConfig extends Thread
     {
         for (IXMLElement fileNode : packElement.getChildrenNamed("file"))
         {
-            String src = xmlCompilerHelper.requireAttribute(fileNode, "src");
-            boolean unpack = Boolean.parseBoolean(fileNode.getAttribute("unpack"));
+            processFile(baseDir, fileNode, pack);
+        }
+    }
 
-            TargetFileSet fs = new TargetFileSet();
-            try
+    private void processFile(File baseDir, IXMLElement fileNode, PackInfo pack) throws CompilerException
+    {
+        String src = xmlCompilerHelper.requireAttribute(fileNode, "src");
+        boolean unpack = Boolean.parseBoolean(fileNode.getAttribute("unpack"));
+
+        TargetFileSet fs = new TargetFileSet();
+        try
+        {
+            File relsrcfile = new File(src);
+            File abssrcfile = FileUtil.getAbsoluteFile(src, compilerData.getBasedir());
+            if (!abssrcfile.exists())
             {
-                File relsrcfile = new File(src);
-                File abssrcfile = FileUtil.getAbsoluteFile(src, compilerData.getBasedir());
-                if (!abssrcfile.exists())
-                {
-                    throw new FileNotFoundException("Source file " + relsrcfile + " not found");
-                }
-                if (relsrcfile.isDirectory())
-                {
-                    fs.setDir(abssrcfile.getParentFile());
-                    fs.createInclude().setName(relsrcfile.getName() + "/**");
-                }
-                else
-                {
-                    fs.setFile(abssrcfile);
-                }
-                fs.setTargetDir(xmlCompilerHelper.requireAttribute(fileNode, "targetdir"));
-                List<OsModel> osList = OsConstraintHelper.getOsList(fileNode); // TODO: unverified
-                fs.setOsList(osList);
-                fs.setOverride(getOverrideValue(fileNode));
-                fs.setOverrideRenameTo(getOverrideRenameToValue(fileNode));
-                fs.setBlockable(getBlockableValue(fileNode, osList));
-                fs.setAdditionals(getAdditionals(fileNode));
-                fs.setCondition(fileNode.getAttribute("condition"));
+                throw new FileNotFoundException("Source file " + relsrcfile + " not found");
+            }
+            if (relsrcfile.isDirectory())
+            {
+                fs.setDir(abssrcfile.getParentFile());
+                fs.createInclude().setName(relsrcfile.getName() + "/**");
+            }
+            else
+            {
+                fs.setFile(abssrcfile);
+            }
+            fs.setTargetDir(xmlCompilerHelper.requireAttribute(fileNode, "targetdir"));
+            List<OsModel> osList = OsConstraintHelper.getOsList(fileNode); // TODO: unverified
+            fs.setOsList(osList);
+            fs.setOverride(getOverrideValue(fileNode));
+            fs.setOverrideRenameTo(getOverrideRenameToValue(fileNode));
+            fs.setBlockable(getBlockableValue(fileNode, osList));
+            fs.setAdditionals(getAdditionals(fileNode));
+            fs.setCondition(fileNode.getAttribute("condition"));
 
-                String boolval = fileNode.getAttribute("casesensitive");
-                if (boolval != null)
-                {
-                    fs.setCaseSensitive(Boolean.parseBoolean(boolval));
-                }
+            String boolval = fileNode.getAttribute("casesensitive");
+            if (boolval != null)
+            {
+                fs.setCaseSensitive(Boolean.parseBoolean(boolval));
+            }
 
-                boolval = fileNode.getAttribute("defaultexcludes");
-                if (boolval != null)
-                {
-                    fs.setDefaultexcludes(Boolean.parseBoolean(boolval));
-                }
+            boolval = fileNode.getAttribute("defaultexcludes");
+            if (boolval != null)
+            {
+                fs.setDefaultexcludes(Boolean.parseBoolean(boolval));
+            }
 
-                boolval = fileNode.getAttribute("followsymlinks");
-                if (boolval != null)
-                {
-                    fs.setFollowSymlinks(Boolean.parseBoolean(boolval));
-                }
+            boolval = fileNode.getAttribute("followsymlinks");
+            if (boolval != null)
+            {
+                fs.setFollowSymlinks(Boolean.parseBoolean(boolval));
+            }
 
-                LinkedList<String> srcfiles = new LinkedList<String>();
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedDirectories());
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedFiles());
-                for (String filePath : srcfiles)
+            fs.setDirectoryCache(directoryCache);
+            DirectoryScanner scanner = fs.getDirectoryScanner();
+            LinkedList<String> srcfiles = new LinkedList<String>();
+            Collections.addAll(srcfiles, scanner.getIncludedDirectories());
+            Collections.addAll(srcfiles, scanner.getIncludedFiles());
+            for (String filePath : srcfiles)
+            {
+                if (!filePath.isEmpty())
                 {
-                    if (!filePath.isEmpty())
+                    abssrcfile = new File(fs.getDir(), filePath);
+                    if (unpack)
                     {
-                        abssrcfile = new File(fs.getDir(), filePath);
-                        if (unpack)
-                        {
-                            logger.info("Adding content from archive: " + abssrcfile);
-                            addArchiveContent(baseDir, abssrcfile, fs.getTargetDir(), fs
-                                    .getOsList(), fs.getOverride(), fs.getOverrideRenameTo(), fs.getBlockable(), pack,
-                                              fs
-                                                      .getAdditionals(), fs.getCondition());
-                        }
-                        else
-                        {
-                            String target = fs.getTargetDir() + "/" + filePath;
-                            logger.info("Adding file: " + abssrcfile + ", as target file=" + target);
-                            pack.addFile(baseDir, abssrcfile, target, fs.getOsList(),
-                                         fs.getOverride(), fs.getOverrideRenameTo(), fs.getBlockable(),
-                                         fs.getAdditionals(),
-                                         fs.getCondition());
-                        }
+                        logger.info("Adding content from archive: " + abssrcfile);
+                        addArchiveContent(baseDir, abssrcfile, fs.getTargetDir(), fs
+                                .getOsList(), fs.getOverride(), fs.getOverrideRenameTo(), fs.getBlockable(), pack,
+                                          fs
+                                                  .getAdditionals(), fs.getCondition());
+                    }
+                    else
+                    {
+                        String target = fs.getTargetDir() + "/" + filePath;
+                        logger.info("Adding file: " + abssrcfile + ", as target file=" + target);
+                        pack.addFile(baseDir, abssrcfile, target, fs.getOsList(),
+                                     fs.getOverride(), fs.getOverrideRenameTo(), fs.getBlockable(),
+                                     fs.getAdditionals(),
+                                     fs.getCondition());
                     }
                 }
             }
-            catch (Exception e)
-            {
-                throw new CompilerException(e.getMessage(), e);
-            }
+        }
+        catch (Exception e)
+        {
+            throw new CompilerException(e.getMessage(), e);
         }
     }
 
@@ -1406,57 +1582,29 @@ public class CompilerConfig extends Thread
                                      String condition) throws IOException
     {
 
-        FileInputStream fin = new FileInputStream(archive);
-        ZipInputStream zin = new ZipInputStream(fin);
-        List<String> allDirList = new ArrayList<String>();
-        while (true)
+        // entries are read from the archive when the packs are written, so nothing is extracted here
+        ZipFile zip = new ZipFile(archive);
+        try
         {
-            ZipEntry zentry = zin.getNextEntry();
-            if (zentry == null)
-            {
-                break;
-            }
-            if (zentry.isDirectory())
-            {
-                // add to all dir listing/empty dir needs to be handle
-                String dName = zentry.getName().substring(0, zentry.getName().length() - 1);
-                allDirList.add(dName);
-                continue;
-            }
-
-            try
-            {
-                File temp = FileUtils.createTempFile("izpack", null);
-                temp.deleteOnExit();
-
-                FileOutputStream out = new FileOutputStream(temp);
-                IoHelper.copyStream(zin, out);
-                out.close();
-
-                String target = targetdir + "/" + zentry.getName();
-                logger.info("Adding file " + zentry.getName() + " from archive as target file=" + target);
-                pack.addFile(baseDir, temp, target, osList, override,
-                             overrideRenameTo, blockable, additionals, condition);
-            }
-            catch (IOException e)
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
             {
-                throw new IOException("Couldn't create temporary file for " + zentry.getName()
-                                              + " in archive " + archive + " (" + e.getMessage() + ")");
+                ZipEntry zentry = entries.nextElement();
+                String name = zentry.getName();
+                if (zentry.isDirectory())
+                {
+                    name = name.substring(0, name.length() - 1);
+                }
+                String target = targetdir + "/" + name;
+                logger.info("Adding file " + name + " from archive as target file=" + target);
+                pack.addArchiveEntry(baseDir, archive, zentry, target, osList, override, overrideRenameTo, blockable,
+                                     additionals, condition);
             }
-
         }
-
-        for (String dirName : allDirList)
+        finally
         {
-            File tmp = new File(dirName);
-            tmp.mkdirs();
-            tmp.deleteOnExit();
-            String target = targetdir + "/" + dirName;
-            logger.info("Adding file: " + tmp + ", as target file=" + target);
-            pack.addFile(baseDir, tmp, target, osList,
-                         override, overrideRenameTo, blockable, additionals, condition);
+            zip.close();
         }
-        fin.close();
     }
 
     /**
@@ -1858,6 +2006,26 @@ public class CompilerConfig extends Thread
         IXMLElement pack200 = root.getFirstChildNamed("pack200");
         info.setPack200Compression(pack200 != null);
 
+        // Unpacking threads
+        IXMLElement unpacking = root.getFirstChildNamed("unpacking");
+        if (unpacking != null && unpacking.hasAttribute("writers"))
+        {
+            info.setUnpackWriters(xmlCompilerHelper.requireIntAttribute(unpacking, "writers"));
+        }
+        if (unpacking != null && unpacking.hasAttribute("threads"))
+        {
+            info.setUnpackThreads(xmlCompilerHelper.requireIntAttribute(unpacking, "threads"));
+        }
+        if (unpacking != null && unpacking.hasAttribute("parsers"))
+        {
+            info.setParsers(xmlCompilerHelper.requireIntAttribute(unpacking, "parsers"));
+        }
+        if (unpacking != null)
+        {
+            info.setInlineParsing(xmlCompilerHelper.validateYesNoAttribute(unpacking, "inlineparsing", NO));
+            info.setPackBlocks(xmlCompilerHelper.validateYesNoAttribute(unpacking, "blocks", NO));
+        }
+
         // Privileged execution
         IXMLElement privileged = root.getFirstChildNamed("run-privileged");
         info.setRequirePrivilegedExecution(privileged != null);
@@ -2994,6 +3162,7 @@ public class CompilerConfig extends Thread
     private TargetFileSet readFileSet(IXMLElement fileSetNode) throws CompilerException
     {
         TargetFileSet fs = new TargetFileSet();
+        fs.setDirectoryCache(directoryCache);
 
         fs.setTargetDir(xmlCompilerHelper.requireAttribute(fileSetNode, "targetdir"));
         List<OsModel> osList = OsConstraintHelper.getOsList(fileSetNode); // TODO: unverified
@@ -20,6 +20,11 @@ public class CliAnalyzer {
     private static final String ARG_OUTPUT = "o";
     private static final String ARG_COMPRESSION_FORMAT = "c";
     private static final String ARG_COMPRESSION_LEVEL = "l";
+    private static final String ARG_PACK_THREADS = "t";
+    private static final String ARG_BUFFER_SIZE = "r";
+    private static final String ARG_INCREMENTAL = "i";
+    private static final String ARG_STREAMING = "s";
+    private static final String ARG_METRICS = "m";
 
 
     /**
@@ -38,9 +43,19 @@ public class CliAnalyzer {
         options.addOption(ARG_KIND, true, "kind : indicates the kind of installer to generate, default is standard");
         options.addOption(ARG_OUTPUT, true, "out  : indicates the output file name default is the xml file name\n");
         options.addOption(ARG_COMPRESSION_FORMAT, true, "compression : indicates the compression format to be used for packs " +
-                "default is the internal deflate compression\n");
+                "(default, bzip2, xz, lz4 or raw). Default is the internal deflate compression\n");
         options.addOption(ARG_COMPRESSION_LEVEL, true, "compression-level : indicates the level for the used compression format"
                 + " if supported. Only integer are valid\n");
+        options.addOption(ARG_PACK_THREADS, true, "threads : indicates the number of threads used to compress packs."
+                + " Default is 1, 0 uses one thread per processor\n");
+        options.addOption(ARG_BUFFER_SIZE, true, "read-buffer : indicates the size in bytes of the buffer used to read"
+                + " the files of packs. Default is " + CompilerData.DEFAULT_BUFFER_SIZE + "\n");
+        options.addOption(ARG_INCREMENTAL, false, "incremental : copies packs whose inputs are unchanged from the"
+                + " previously built installer, rather than compressing them again\n");
+        options.addOption(ARG_STREAMING, false, "streaming : compiles the files of packs as they are read from the"
+                + " installation file, rather than holding their elements in memory\n");
+        options.addOption(ARG_METRICS, false, "metrics : writes the time and throughput of each compiler phase to a"
+                + " JSON report next to the output file\n");
         return options;
     }
 
@@ -84,6 +99,11 @@ public class CliAnalyzer {
         System.out.println("-> Kind        : " + result.getKind());
         System.out.println("-> Compression : " + result.getComprFormat());
         System.out.println("-> Compr. level: " + result.getComprLevel());
+        System.out.println("-> Pack threads: " + result.getPackThreads());
+        System.out.println("-> Read buffer : " + result.getBufferSize());
+        System.out.println("-> Incremental : " + result.isIncremental());
+        System.out.println("-> Streaming   : " + result.isStreaming());
+        System.out.println("-> Metrics     : " + result.isMetrics());
         System.out.println("-> IzPack home : " + CompilerData.IZPACK_HOME);
         System.out.println("");
     }
@@ -139,6 +159,21 @@ public class CliAnalyzer {
         if (commandLine.hasOption(ARG_COMPRESSION_LEVEL)) {
             compilerData.setComprLevel(Integer.parseInt(commandLine.getOptionValue(ARG_COMPRESSION_LEVEL).trim()));
         }
+        if (commandLine.hasOption(ARG_PACK_THREADS)) {
+            compilerData.setPackThreads(Integer.parseInt(commandLine.getOptionValue(ARG_PACK_THREADS).trim()));
+        }
+        if (commandLine.hasOption(ARG_BUFFER_SIZE)) {
+            compilerData.setBufferSize(Integer.parseInt(commandLine.getOptionValue(ARG_BUFFER_SIZE).trim()));
+        }
+        if (commandLine.hasOption(ARG_INCREMENTAL)) {
+            compilerData.setIncremental(true);
+        }
+        if (commandLine.hasOption(ARG_STREAMING)) {
+            compilerData.setStreaming(true);
+        }
+        if (commandLine.hasOption(ARG_METRICS)) {
+            compilerData.setMetrics(true);
+        }
         if (commandLine.hasOption(ARG_IZPACK_HOME)) {
             CompilerData.setIzpackHome(commandLine.getOptionValue(ARG_IZPACK_HOME).trim());
         }
@@ -0,0 +1,65 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.compressor;
+
+import java.io.OutputStream;
+
+import com.izforge.izpack.util.compress.LZ4FrameInputStream;
+import com.izforge.izpack.util.compress.LZ4FrameOutputStream;
+
+
+/**
+ * This class implements the PackCompressor for the compression format "lz4", using the LZ4 frame format.
+ * <p/>
+ * This gives larger installers than the default compression, but the fastest unpacking. The compression level is
+ * ignored.
+ * <p/>
+ * The decoder is part of the IzPack utilities, which are always merged into the installer.
+ */
+public class LZ4PackCompressor extends PackCompressorBase
+{
+
+    private static final String[] THIS_FORMAT_NAMES = {"lz4"};
+    private static final String THIS_DECODER_MAPPER = LZ4FrameInputStream.class.getName();
+    private static final String THIS_ENCODER_CLASS_NAME = LZ4FrameOutputStream.class.getName();
+
+    /**
+     * Constructs an <tt>LZ4PackCompressor</tt>.
+     */
+    public LZ4PackCompressor()
+    {
+        formatNames = THIS_FORMAT_NAMES;
+        decoderMapper = THIS_DECODER_MAPPER;
+        encoderClassName = THIS_ENCODER_CLASS_NAME;
+    }
+
+    /**
+     * Returns a newly created output stream which encodes to the given stream.
+     *
+     * @param os output stream to be used as listener
+     * @return a newly created encoding output stream
+     * @throws Exception if the encoder cannot be created
+     */
+    @Override
+    public OutputStream getOutputStream(OutputStream os) throws Exception
+    {
+        return new LZ4FrameOutputStream(os);
+    }
+}
@@ -22,6 +22,9 @@
 
 package com.izforge.izpack.compiler.compressor;
 
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+
 /**
  * IzPack will be able to support different compression methods for the
  * packs included in the installation jar file.
@@ -38,8 +41,6 @@ public abstract class PackCompressorBase implements PackCompressor
     protected String decoderMapper = null;
     protected String encoderClassName = null;
 
-    protected Class[] paramsClasses = null;
-
     private int level = -1;
 
     /**
@@ -49,6 +50,35 @@ public abstract class PackCompressorBase implements PackCompressor
         super();
     }
 
+    /**
+     * Returns a newly created output stream which encodes to the given stream.
+     * <p/>
+     * The encoder class is loaded by name via reflection. If a compression level has been set, the
+     * <tt>(OutputStream, int)</tt> constructor is used, otherwise the <tt>(OutputStream)</tt> constructor.
+     *
+     * @param os output stream to be used as listener
+     * @return a newly created encoding output stream
+     * @throws Exception if the encoder cannot be created
+     */
+    public OutputStream getOutputStream(OutputStream os) throws Exception
+    {
+        Class<?> encoder = Class.forName(encoderClassName);
+        Class<?>[] paramsClasses;
+        Object[] params;
+        if (getCompressionLevel() >= 0)
+        {
+            paramsClasses = new Class[]{OutputStream.class, Integer.TYPE};
+            params = new Object[]{os, getCompressionLevel()};
+        }
+        else
+        {
+            paramsClasses = new Class[]{OutputStream.class};
+            params = new Object[]{os};
+        }
+        Constructor<?> constructor = encoder.getDeclaredConstructor(paramsClasses);
+        return (OutputStream) constructor.newInstance(params);
+    }
+
     /* (non-Javadoc)
      * @see com.izforge.izpack.compressor.PackCompressor#getEncoderClassName()
      */
@@ -0,0 +1,74 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.compressor;
+
+import java.io.OutputStream;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import com.izforge.izpack.merge.MergeManager;
+
+
+/**
+ * This class implements the PackCompressor for the compression format "xz", which uses LZMA2.
+ * <p/>
+ * This gives the smallest installers, at the cost of slower compression. The compression level is used as the
+ * LZMA2 preset, from 0 to 9.
+ */
+public class XZPackCompressor extends PackCompressorBase
+{
+
+    private static final String[] THIS_FORMAT_NAMES = {"xz", "lzma2"};
+    private static final String THIS_DECODER_MAPPER = "org.tukaani.xz.XZInputStream";
+    private static final String THIS_ENCODER_CLASS_NAME = "org.tukaani.xz.XZOutputStream";
+
+    /**
+     * Constructs an <tt>XZPackCompressor</tt>.
+     *
+     * @param mergeManager the merge manager, used to add the decoder to the installer
+     */
+    public XZPackCompressor(MergeManager mergeManager)
+    {
+        mergeManager.addResourceToMerge("org/tukaani/xz");
+        formatNames = THIS_FORMAT_NAMES;
+        decoderMapper = THIS_DECODER_MAPPER;
+        encoderClassName = THIS_ENCODER_CLASS_NAME;
+    }
+
+    /**
+     * Returns a newly created output stream which encodes to the given stream.
+     *
+     * @param os output stream to be used as listener
+     * @return a newly created encoding output stream
+     * @throws Exception if the encoder cannot be created
+     */
+    @Override
+    public OutputStream getOutputStream(OutputStream os) throws Exception
+    {
+        int level = getCompressionLevel();
+        LZMA2Options options = new LZMA2Options();
+        if (level >= LZMA2Options.PRESET_MIN && level <= LZMA2Options.PRESET_MAX)
+        {
+            options.setPreset(level);
+        }
+        return new XZOutputStream(os, options);
+    }
+}
@@ -20,9 +20,23 @@ public class JarOutputStreamProvider implements Provider
     {
         JarOutputStream jarOutputStream;
         File file = new File(compilerData.getOutput());
+        File previous = compilerData.getPreviousOutput();
+        if (previous.exists() && !compilerData.isIncremental())
+        {
+            previous.delete();
+        }
         if (file.exists())
         {
-            file.delete();
+            // keep the previous installer for an incremental build, so that unchanged packs can be copied from it.
+            // If one is already kept, the last build failed, so the output is incomplete and the kept one is used
+            if (!compilerData.isIncremental() || previous.exists() || !file.renameTo(previous))
+            {
+                file.delete();
+            }
+        }
+        if (!compilerData.isIncremental())
+        {
+            compilerData.getPackIndex().delete();
         }
         if (compilerData.isMkdirs())
         {
@@ -70,6 +70,36 @@ public class CompilerData
      */
     private int comprLevel = -1;
 
+    /**
+     * The no. of threads used to compress packs. A value less than <tt>1</tt> uses one thread per processor.
+     */
+    private int packThreads = 1;
+
+    /**
+     * The size of the buffer used to read the files of packs, in bytes.
+     */
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Determines if unchanged packs are copied from the previously built installer.
+     */
+    private boolean incremental;
+
+    /**
+     * Determines if the contents of packs are streamed from the installation file.
+     */
+    private boolean streaming;
+
+    /**
+     * Determines if a metrics report is written next to the installer.
+     */
+    private boolean metrics;
+
+    /**
+     * The timing and throughput metrics of the compilation.
+     */
+    private final CompilerMetrics compilerMetrics = new CompilerMetrics();
+
     /**
      * External Information
      */
@@ -80,6 +110,11 @@ public class CompilerData
      */
     public final static String IZPACK_VERSION = ResourceBundle.getBundle("version").getString("izpack.version");
 
+    /**
+     * The default size of the buffer used to read the files of packs.
+     */
+    public final static int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
     private final static String IZ_TEST_FILE = "ShellLink.dll";
 
     private final static String IZ_TEST_SUBDIR = "bin" + File.separator + "native" + File.separator + "izpack";
@@ -206,6 +241,161 @@ public class CompilerData
         this.comprLevel = comprLevel;
     }
 
+    /**
+     * Returns the no. of threads used to compress packs.
+     *
+     * @return the no. of pack compression threads. <tt>1</tt> writes packs sequentially
+     */
+    public int getPackThreads()
+    {
+        if (packThreads < 1)
+        {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return packThreads;
+    }
+
+    /**
+     * Sets the no. of threads used to compress packs.
+     *
+     * @param packThreads the no. of threads. A value less than <tt>1</tt> uses one thread per processor
+     */
+    public void setPackThreads(int packThreads)
+    {
+        this.packThreads = packThreads;
+    }
+
+    /**
+     * Returns the size of the buffer used to read the files of packs.
+     *
+     * @return the buffer size, in bytes
+     */
+    public int getBufferSize()
+    {
+        return (bufferSize < 1) ? DEFAULT_BUFFER_SIZE : bufferSize;
+    }
+
+    /**
+     * Sets the size of the buffer used to read the files of packs.
+     * <p/>
+     * Larger buffers make fewer reads of large files.
+     *
+     * @param bufferSize the buffer size, in bytes. A value less than <tt>1</tt> uses {@link #DEFAULT_BUFFER_SIZE}
+     */
+    public void setBufferSize(int bufferSize)
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Determines if the installer is built incrementally.
+     * <p/>
+     * If so, packs whose inputs are unchanged since the previous build are copied from the previous installer
+     * rather than being compressed again.
+     *
+     * @return <tt>true</tt> if the installer is built incrementally
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * Determines if the installer is built incrementally.
+     *
+     * @param incremental if <tt>true</tt>, copy unchanged packs from the previous installer
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Determines if the contents of packs are streamed from the installation file.
+     * <p/>
+     * If so, the <em>file</em>, <em>singlefile</em> and <em>fileset</em> elements of packs are left out of the
+     * installation tree, and are compiled one at a time as they are read. Only the elements are streamed; the
+     * files they add are still held by their packs until the packs are written.
+     *
+     * @return <tt>true</tt> if the contents of packs are streamed
+     */
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+
+    /**
+     * Determines if the contents of packs are streamed from the installation file.
+     *
+     * @param streaming if <tt>true</tt>, stream the contents of packs
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Determines if a metrics report is written next to the installer.
+     *
+     * @return <tt>true</tt> if the metrics report is written
+     */
+    public boolean isMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Determines if a metrics report is written next to the installer.
+     *
+     * @param metrics if <tt>true</tt>, write the metrics report
+     */
+    public void setMetrics(boolean metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the timing and throughput metrics of the compilation.
+     * <p/>
+     * These are collected whether or not the report is written.
+     *
+     * @return the compiler metrics
+     */
+    public CompilerMetrics getMetrics()
+    {
+        return compilerMetrics;
+    }
+
+    /**
+     * Returns the file the metrics report is written to.
+     *
+     * @return the metrics report file
+     */
+    public File getMetricsReport()
+    {
+        return new File(output + ".metrics.json");
+    }
+
+    /**
+     * Returns the file the previous installer is moved to during an incremental build.
+     *
+     * @return the previous installer
+     */
+    public File getPreviousOutput()
+    {
+        return new File(output + ".previous");
+    }
+
+    /**
+     * Returns the file recording the pack inputs of the installer, used by incremental builds.
+     *
+     * @return the pack index file
+     */
+    public File getPackIndex()
+    {
+        return new File(output + ".packindex");
+    }
+
     public Info getExternalInfo()
     {
         return this.externalInfo;
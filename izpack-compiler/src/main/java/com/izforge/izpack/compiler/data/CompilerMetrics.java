@@ -0,0 +1,334 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing and throughput metrics of a compilation.
+ * <p/>
+ * Metrics are collected per phase of the compilation, and per pack. Each phase records the time spent in it, the
+ * bytes read and written, and the no. of files processed. Phases may be updated concurrently; time spent by
+ * concurrent threads on the same phase is summed.
+ */
+public class CompilerMetrics
+{
+
+    /**
+     * Prefix of the phases recording the metrics of each pack.
+     */
+    public static final String PACK_PREFIX = "pack:";
+
+    /**
+     * The phases, in the order they were first used.
+     */
+    private final Map<String, Phase> phases = new LinkedHashMap<String, Phase>();
+
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param name the phase name
+     * @return a timer to stop when the phase, or the part of it being timed, completes
+     */
+    public Timer start(String name)
+    {
+        return new Timer(getPhase(name));
+    }
+
+    /**
+     * Returns a phase, creating it if it doesn't exist.
+     *
+     * @param name the phase name
+     * @return the phase
+     */
+    public synchronized Phase getPhase(String name)
+    {
+        Phase result = phases.get(name);
+        if (result == null)
+        {
+            result = new Phase(name);
+            phases.put(name, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the phases.
+     *
+     * @return the phases, in the order they were first used
+     */
+    public synchronized List<Phase> getPhases()
+    {
+        return new ArrayList<Phase>(phases.values());
+    }
+
+    /**
+     * Writes the metrics as a JSON report.
+     *
+     * @param file the report file
+     * @throws IOException for any I/O error
+     */
+    public void write(File file) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            write(writer);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the metrics as a JSON report.
+     * <p/>
+     * The report is an object with a <em>phases</em> array, holding an object per phase.
+     *
+     * @param writer the writer to write to
+     * @throws IOException for any I/O error
+     */
+    public void write(Writer writer) throws IOException
+    {
+        writer.write("{\n  \"phases\": [");
+        boolean first = true;
+        for (Phase phase : getPhases())
+        {
+            writer.write(first ? "\n" : ",\n");
+            writer.write("    {\"name\": " + quote(phase.getName()));
+            writer.write(", \"timeMillis\": " + phase.getTimeMillis());
+            writer.write(", \"bytesIn\": " + phase.getBytesIn());
+            writer.write(", \"bytesOut\": " + phase.getBytesOut());
+            writer.write(", \"compressionRatio\": " + format(phase.getCompressionRatio()));
+            writer.write(", \"files\": " + phase.getFiles());
+            writer.write(", \"filesPerSecond\": " + format(phase.getFilesPerSecond()) + "}");
+            first = false;
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    /**
+     * Formats a number for the report.
+     *
+     * @param value the value
+     * @return the formatted value, or <tt>null</tt> if it is not a number
+     */
+    private static String format(double value)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            return "null";
+        }
+        return String.format(Locale.ENGLISH, "%.3f", value);
+    }
+
+    /**
+     * Quotes a string for the report.
+     *
+     * @param value the value to quote
+     * @return the quoted value
+     */
+    private static String quote(String value)
+    {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : value.toCharArray())
+        {
+            if (c == '"' || c == '\\')
+            {
+                result.append('\\').append(c);
+            }
+            else if (c < ' ')
+            {
+                result.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * The metrics of a phase.
+     */
+    public static class Phase
+    {
+
+        /**
+         * The phase name.
+         */
+        private final String name;
+
+        /**
+         * The time spent in the phase, in nanoseconds.
+         */
+        private final AtomicLong time = new AtomicLong();
+
+        /**
+         * The no. of bytes read.
+         */
+        private final AtomicLong bytesIn = new AtomicLong();
+
+        /**
+         * The no. of bytes written.
+         */
+        private final AtomicLong bytesOut = new AtomicLong();
+
+        /**
+         * The no. of files processed.
+         */
+        private final AtomicLong files = new AtomicLong();
+
+
+        public Phase(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Adds to the time spent in the phase.
+         *
+         * @param nanos the time, in nanoseconds
+         */
+        public void addTime(long nanos)
+        {
+            time.addAndGet(nanos);
+        }
+
+        public void addBytesIn(long bytes)
+        {
+            bytesIn.addAndGet(bytes);
+        }
+
+        public void addBytesOut(long bytes)
+        {
+            bytesOut.addAndGet(bytes);
+        }
+
+        public void addFiles(long count)
+        {
+            files.addAndGet(count);
+        }
+
+        public long getTimeMillis()
+        {
+            return time.get() / 1000000;
+        }
+
+        public long getBytesIn()
+        {
+            return bytesIn.get();
+        }
+
+        public long getBytesOut()
+        {
+            return bytesOut.get();
+        }
+
+        public long getFiles()
+        {
+            return files.get();
+        }
+
+        /**
+         * Returns the ratio of the bytes written to the bytes read.
+         *
+         * @return the compression ratio, or <tt>NaN</tt> if no bytes were read or written
+         */
+        public double getCompressionRatio()
+        {
+            long in = bytesIn.get();
+            long out = bytesOut.get();
+            return (in != 0 && out != 0) ? (double) out / in : Double.NaN;
+        }
+
+        /**
+         * Returns the no. of files processed per second spent in the phase.
+         *
+         * @return the files per second, or <tt>NaN</tt> if no files were processed or no time was recorded
+         */
+        public double getFilesPerSecond()
+        {
+            long nanos = time.get();
+            long count = files.get();
+            return (nanos != 0 && count != 0) ? count * 1000000000.0 / nanos : Double.NaN;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + ": " + getTimeMillis() + "ms, " + getBytesIn() + " bytes in, " + getBytesOut()
+                    + " bytes out, " + getFiles() + " files";
+        }
+    }
+
+    /**
+     * Times a phase.
+     */
+    public static class Timer
+    {
+
+        /**
+         * The phase being timed.
+         */
+        private final Phase phase;
+
+        /**
+         * The start time, in nanoseconds.
+         */
+        private final long start;
+
+
+        private Timer(Phase phase)
+        {
+            this.phase = phase;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Stops the timer, adding the elapsed time to the phase.
+         *
+         * @return the phase
+         */
+        public Phase stop()
+        {
+            phase.addTime(System.nanoTime() - start);
+            return phase;
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.izforge.izpack.compiler.merge.resolve;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.exception.MergeException;
 import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.compiler.data.CompilerMetrics;
 import com.izforge.izpack.merge.ClassResolver;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.merge.resolve.ResolveUtils;
 import com.izforge.izpack.util.FileUtil;
 
 import java.io.File;
@@ -20,6 +22,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.ZipException;
 
 /**
  * Crawl and store a map of all files in classpath when we can't get package directly
@@ -36,9 +39,30 @@ public class ClassPathCrawler
 
     private static final List<String> acceptedJar = Arrays.asList(".*event.*", ".*panel.*", ".*izpack.*");
 
+    /**
+     * The class path index file. May be <tt>null</tt>.
+     */
+    private final File indexFile;
+
+    /**
+     * The metrics to record the class path crawl in. May be <tt>null</tt>.
+     */
+    private CompilerMetrics metrics;
+
     public ClassPathCrawler(MergeableResolver mergeableResolver)
     {
         this.mergeableResolver = mergeableResolver;
+        this.indexFile = ClassPathIndex.getDefaultFile();
+    }
+
+    /**
+     * Sets the metrics to record the time spent crawling the class path in.
+     *
+     * @param metrics the metrics. May be <tt>null</tt>
+     */
+    public void setMetrics(CompilerMetrics metrics)
+    {
+        this.metrics = metrics;
     }
 
 
@@ -59,12 +83,19 @@ public class ClassPathCrawler
         {
             return;
         }
+        CompilerMetrics.Timer timer = (metrics != null) ? metrics.start("classpath") : null;
         classPathContentCache = new HashMap<String, Set<URL>>();
+        ClassPathIndex index = new ClassPathIndex(indexFile);
+        index.load();
         try
         {
             Set<URL> urls = getClassPathUrl();
             for (URL url : urls)
             {
+                if (addJarContent(index, url))
+                {
+                    continue;
+                }
                 Mergeable mergeable = mergeableResolver.getMergeableFromURL(url);
                 final List<File> files = mergeable.recursivelyListFiles(new FileFilter()
                 {
@@ -86,6 +117,47 @@ public class ClassPathCrawler
         {
             throw new MergeException(e);
         }
+        index.save();
+        if (timer != null)
+        {
+            timer.stop().addFiles(classPathContentCache.size());
+        }
+    }
+
+    /**
+     * Adds the content of a jar on the class path, using the class path index to avoid reading the jar if it
+     * is unchanged since a previous run.
+     *
+     * @param index the class path index
+     * @param url   the class path URL
+     * @return <tt>true</tt> if the URL refers to a jar and its content was added, otherwise <tt>false</tt>
+     * @throws IOException for any I/O error
+     */
+    private boolean addJarContent(ClassPathIndex index, URL url) throws IOException
+    {
+        String jarPath = ResolveUtils.processUrlToJarPath(url);
+        File jar = new File(jarPath);
+        if (!jar.isFile())
+        {
+            return false;
+        }
+        List<String> entries;
+        try
+        {
+            entries = index.getEntries(jar);
+        }
+        catch (ZipException exception)
+        {
+            // not a jar
+            return false;
+        }
+        for (String entry : entries)
+        {
+            // the same file names as JarMerge.recursivelyListFiles()
+            File file = new File(jarPath + "!" + entry);
+            getOrCreateList(classPathContentCache, file.getName()).add(file.toURI().toURL());
+        }
+        return true;
     }
 
     private Set<URL> getOrCreateList(HashMap<String, Set<URL>> classPathContentCache, String key)
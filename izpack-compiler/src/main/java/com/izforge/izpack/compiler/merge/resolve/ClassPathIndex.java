@@ -0,0 +1,297 @@
+package com.izforge.izpack.compiler.merge.resolve;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Persistent index of the entries of the jars on the class path.
+ * <p/>
+ * Jars are identified by their path, size and last modification time, so that the index can be reused across
+ * compiler runs while the jars are unchanged. Jars that aren't in the index, or have changed, are listed from
+ * their central directory. Only the jars used by the last run are kept, so the index doesn't grow with each class
+ * path it has seen.
+ */
+class ClassPathIndex
+{
+
+    /**
+     * System property to specify the index file. If empty, the index isn't persisted.
+     */
+    static final String INDEX_PROPERTY = "izpack.classpath.index";
+
+    /**
+     * The index file format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The index file. May be <tt>null</tt>.
+     */
+    private final File file;
+
+    /**
+     * The indexed jars, keyed on path.
+     */
+    private final Map<String, JarIndex> jars = new HashMap<String, JarIndex>();
+
+    /**
+     * The paths of the jars used since the index was loaded.
+     */
+    private final Set<String> used = new HashSet<String>();
+
+    /**
+     * Determines if the index has changed since it was loaded.
+     */
+    private boolean modified;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ClassPathIndex.class.getName());
+
+
+    /**
+     * Constructs a <tt>ClassPathIndex</tt>.
+     *
+     * @param file the index file. May be <tt>null</tt> if the index isn't persisted
+     */
+    public ClassPathIndex(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the default index file.
+     * <p/>
+     * This is specified by the {@link #INDEX_PROPERTY} system property, defaulting to <em>.izpack/classpath.index</em>
+     * in the user's home directory. The index determines which jars classes are read from, so it isn't kept in
+     * a directory shared with other users.
+     *
+     * @return the index file, or <tt>null</tt> if the index shouldn't be persisted
+     */
+    public static File getDefaultFile()
+    {
+        String path = System.getProperty(INDEX_PROPERTY);
+        if (path == null)
+        {
+            return new File(new File(System.getProperty("user.home"), ".izpack"), "classpath.index");
+        }
+        return (path.length() != 0) ? new File(path) : null;
+    }
+
+    /**
+     * Loads the index.
+     * <p/>
+     * A missing or unreadable index is ignored, and results in the jars being listed again.
+     */
+    public void load()
+    {
+        if (file == null || !file.isFile())
+        {
+            return;
+        }
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION)
+            {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i)
+            {
+                String path = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                int size = in.readInt();
+                if (size < 0)
+                {
+                    throw new IOException("Invalid entry count: " + size);
+                }
+                List<String> entries = new ArrayList<String>(size);
+                for (int j = 0; j < size; ++j)
+                {
+                    entries.add(in.readUTF());
+                }
+                jars.put(path, new JarIndex(length, lastModified, entries));
+            }
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, "Ignoring unreadable class path index " + file, exception);
+            jars.clear();
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns the names of the entries of a jar.
+     *
+     * @param jar the jar
+     * @return the entry names, in central directory order
+     * @throws IOException if the jar cannot be read
+     */
+    public List<String> getEntries(File jar) throws IOException
+    {
+        String path = jar.getAbsolutePath();
+        long length = jar.length();
+        long lastModified = jar.lastModified();
+        used.add(path);
+        JarIndex index = jars.get(path);
+        if (index == null || index.length != length || index.lastModified != lastModified)
+        {
+            index = new JarIndex(length, lastModified, listEntries(jar));
+            jars.put(path, index);
+            modified = true;
+        }
+        return index.entries;
+    }
+
+    /**
+     * Saves the index, if it has changed.
+     * <p/>
+     * Jars that haven't been used since the index was loaded, or no longer exist, are removed. The index is written to a temporary file first, so that concurrent
+     * compiler runs never see a partially written index. Failures are logged and otherwise ignored.
+     */
+    public void save()
+    {
+        if (file == null || (!modified && used.containsAll(jars.keySet())))
+        {
+            return;
+        }
+        File temp = null;
+        DataOutputStream out = null;
+        try
+        {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs())
+            {
+                throw new IOException("Failed to create directory " + dir);
+            }
+            temp = File.createTempFile("izpack-classpath", ".tmp", dir);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            List<String> paths = new ArrayList<String>();
+            for (String path : jars.keySet())
+            {
+                if (used.contains(path) && new File(path).isFile())
+                {
+                    paths.add(path);
+                }
+            }
+            out.writeInt(VERSION);
+            out.writeInt(paths.size());
+            for (String path : paths)
+            {
+                JarIndex index = jars.get(path);
+                out.writeUTF(path);
+                out.writeLong(index.length);
+                out.writeLong(index.lastModified);
+                out.writeInt(index.entries.size());
+                for (String entry : index.entries)
+                {
+                    out.writeUTF(entry);
+                }
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file)))
+            {
+                throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+            temp = null;
+            jars.keySet().retainAll(paths);
+            modified = false;
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, "Failed to save class path index " + file, exception);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(out);
+            if (temp != null && !temp.delete())
+            {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Lists the entries of a jar from its central directory.
+     *
+     * @param jar the jar
+     * @return the entry names
+     * @throws IOException if the jar cannot be read
+     */
+    private List<String> listEntries(File jar) throws IOException
+    {
+        ZipFile zip = new ZipFile(jar);
+        try
+        {
+            List<String> result = new ArrayList<String>(zip.size());
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                result.add(entries.nextElement().getName());
+            }
+            return Collections.unmodifiableList(result);
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    /**
+     * The indexed entries of a jar.
+     */
+    private static class JarIndex
+    {
+
+        /**
+         * The jar size.
+         */
+        private final long length;
+
+        /**
+         * The jar last modification time.
+         */
+        private final long lastModified;
+
+        /**
+         * The entry names.
+         */
+        private final List<String> entries;
+
+        public JarIndex(long length, long lastModified, List<String> entries)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.entries = entries;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads entries of the archives that pack files are added from.
+ * <p/>
+ * Each archive is opened once, and kept open until the reader is closed.
+ */
+class ArchiveReader
+{
+
+    /**
+     * The open archives.
+     */
+    private final Map<File, ZipFile> archives = new HashMap<File, ZipFile>();
+
+
+    /**
+     * Returns a stream to read an archive entry.
+     *
+     * @param archive the archive
+     * @param name    the entry name
+     * @return a new stream
+     * @throws IOException if the archive cannot be opened, or doesn't contain the entry
+     */
+    public synchronized InputStream getInputStream(File archive, String name) throws IOException
+    {
+        ZipFile zip = getArchive(archive);
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null)
+        {
+            throw new FileNotFoundException("No entry " + name + " in " + archive);
+        }
+        return zip.getInputStream(entry);
+    }
+
+    /**
+     * Returns an archive entry.
+     *
+     * @param archive the archive
+     * @param name    the entry name
+     * @return the entry, or <tt>null</tt> if the archive doesn't contain it
+     * @throws IOException if the archive cannot be opened
+     */
+    public synchronized ZipEntry getEntry(File archive, String name) throws IOException
+    {
+        return getArchive(archive).getEntry(name);
+    }
+
+    /**
+     * Returns an archive, opening it if required.
+     *
+     * @param archive the archive file
+     * @return the open archive
+     * @throws IOException if the archive cannot be opened
+     */
+    private ZipFile getArchive(File archive) throws IOException
+    {
+        ZipFile zip = archives.get(archive);
+        if (zip == null)
+        {
+            zip = new ZipFile(archive);
+            archives.put(archive, zip);
+        }
+        return zip;
+    }
+
+    /**
+     * Closes all open archives.
+     */
+    public synchronized void close()
+    {
+        for (ZipFile zip : archives.values())
+        {
+            try
+            {
+                zip.close();
+            }
+            catch (IOException ignore)
+            {
+                // nothing to do
+            }
+        }
+        archives.clear();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Determines if files are already compressed, so that compressing them again would gain nothing.
+ * <p/>
+ * Files are recognised by extension first. Other files are sampled: the start of the file is deflated at the
+ * fastest level, and the file is considered incompressible if this saves less than 5%.
+ */
+class IncompressibleFileDetector
+{
+
+    /**
+     * The extensions of compressed file formats.
+     */
+    private static final Set<String> EXTENSIONS = new HashSet<String>(Arrays.asList(
+            "jar", "war", "ear", "zip", "gz", "tgz", "bz2", "tbz", "xz", "txz", "lz4", "lzma", "7z", "rar", "cab",
+            "png", "jpg", "jpeg", "gif", "mp3", "mp4", "m4a", "m4v", "ogg", "avi", "mkv", "mov", "flac"));
+
+    /**
+     * The size of the sample to deflate.
+     */
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    /**
+     * The ratio of deflated sample size to sample size, above which files are considered incompressible.
+     */
+    private static final double THRESHOLD = 0.95;
+
+
+    /**
+     * Determines if a file is incompressible.
+     *
+     * @param file the file
+     * @return <tt>true</tt> if the file is already compressed
+     * @throws IOException if the file cannot be read
+     */
+    public boolean isIncompressible(SourceFile file) throws IOException
+    {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+        if (index != -1 && EXTENSIONS.contains(name.substring(index + 1).toLowerCase()))
+        {
+            return true;
+        }
+        return isIncompressible(readSample(file));
+    }
+
+    /**
+     * Determines if a sample of data is incompressible.
+     *
+     * @param sample the sample
+     * @return <tt>true</tt> if deflating the sample saves less than 5%
+     */
+    boolean isIncompressible(byte[] sample)
+    {
+        if (sample.length == 0)
+        {
+            return false;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] buffer = new byte[sample.length];
+            int size = 0;
+            while (!deflater.finished() && size < buffer.length)
+            {
+                size += deflater.deflate(buffer, size, buffer.length - size);
+            }
+            return !deflater.finished() || size > sample.length * THRESHOLD;
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads the sample of a file.
+     *
+     * @param file the file
+     * @return the start of the file
+     * @throws IOException if the file cannot be read
+     */
+    private byte[] readSample(SourceFile file) throws IOException
+    {
+        byte[] sample = new byte[(int) Math.min(file.length(), SAMPLE_SIZE)];
+        InputStream in = file.openStream();
+        try
+        {
+            new DataInputStream(in).readFully(sample);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+        return sample;
+    }
+}
@@ -18,8 +18,8 @@
 package com.izforge.izpack.compiler.packager.impl;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.util.List;
 import java.util.Properties;
@@ -32,9 +32,11 @@ import org.apache.tools.zip.ZipEntry;
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackFileWriter;
 import com.izforge.izpack.api.data.XPackFile;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.data.CompilerMetrics;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.resolve.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
@@ -45,7 +47,6 @@ import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
-import com.izforge.izpack.util.IoHelper;
 
 
 /**
@@ -96,6 +97,11 @@ public class MultiVolumePackager extends PackagerBase
      */
     private static final String FIRST_VOLUME_FREE_SPACE = "firstvolumefreespace";
 
+    /**
+     * The reader of the archives that pack files are read from.
+     */
+    private final ArchiveReader archives = new ArchiveReader();
+
     /**
      * The logger.
      */
@@ -232,9 +238,16 @@ public class MultiVolumePackager extends PackagerBase
         {
             throw new IOException("Cannot determine parent directory of " + volume);
         }
-        for (PackInfo packInfo : packs)
+        try
+        {
+            for (PackInfo packInfo : packs)
+            {
+                writePack(packInfo, volumes, targetDir);
+            }
+        }
+        finally
         {
-            writePack(packInfo, volumes, targetDir);
+            archives.close();
         }
 
         volumes.flush();
@@ -258,6 +271,7 @@ public class MultiVolumePackager extends PackagerBase
         pack.setSize(0);
 
         String name = pack.getName();
+        CompilerMetrics.Timer timer = getMetrics().start(CompilerMetrics.PACK_PREFIX + name);
         sendMsg("Writing Pack: " + name, PackagerListener.MSG_VERBOSE);
         logger.fine("Writing Pack: " + name);
         ZipEntry entry = new ZipEntry(RESOURCES_PATH + "packs/pack-" + name);
@@ -291,6 +305,10 @@ public class MultiVolumePackager extends PackagerBase
 
         // Cleanup
         packStream.flush();
+
+        CompilerMetrics.Phase phase = timer.stop();
+        phase.addBytesIn(pack.getSize());
+        phase.addFiles(packInfo.getPackFiles().size());
     }
 
     /**
@@ -310,13 +328,14 @@ public class MultiVolumePackager extends PackagerBase
     {
         // write the file meta-data
         Set<PackFile> files = packInfo.getPackFiles();
-        packStream.writeInt(files.size());
+        PackFileWriter writer = new PackFileWriter(packStream);
+        writer.writeHeader(files.size());
 
         for (PackFile packfile : files)
         {
             XPackFile pf = new XPackFile(packfile);
-            File file = packInfo.getFile(packfile);
-            logger.fine("Next file: " + file.getAbsolutePath());
+            SourceFile file = SourceFile.getSource(packInfo, packfile, archives);
+            logger.fine("Next file: " + file);
 
             if (!pf.isDirectory())
             {
@@ -327,12 +346,28 @@ public class MultiVolumePackager extends PackagerBase
                 else
                 {
                     // just copy the file to the target directory
-                    FileUtils.copyFile(file, new File(targetDir, pf.getRelativeSourcePath()));
+                    File target = new File(targetDir, pf.getRelativeSourcePath());
+                    if (file.isArchiveEntry())
+                    {
+                        InputStream in = file.openStream();
+                        try
+                        {
+                            FileUtils.copyInputStreamToFile(in, target);
+                        }
+                        finally
+                        {
+                            in.close();
+                        }
+                    }
+                    else
+                    {
+                        FileUtils.copyFile(file.getFile(), target);
+                    }
                 }
             }
 
             // write pack file meta-data
-            packStream.writeObject(pf);
+            writer.write(pf);
             packStream.flush(); // make sure it is written
             // even if not written, it counts towards pack size
             pack.addSize(pf.length());
@@ -347,7 +382,7 @@ public class MultiVolumePackager extends PackagerBase
      * @param packFile the pack file
      * @throws IOException for any I/O error
      */
-    private void writePackFile(File file, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
+    private void writePackFile(SourceFile file, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
     {
         long beforePosition = volumes.getFilePointer();
         packFile.setArchiveFilePosition(beforePosition);
@@ -355,8 +390,7 @@ public class MultiVolumePackager extends PackagerBase
         // write the file to the volumes
         int volumeCount = volumes.getVolumes();
 
-        FileInputStream in = new FileInputStream(file);
-        long bytesWritten = IoHelper.copyStream(in, volumes);
+        long bytesWritten = file.copyTo(volumes, getBufferSize());
         long afterPosition = volumes.getFilePointer();
         logger.fine("File (" + packFile.sourcePath + ") " + beforePosition + " <-> " + afterPosition);
 
@@ -374,7 +408,6 @@ public class MultiVolumePackager extends PackagerBase
         {
             throw new IOException("File size mismatch when reading " + file);
         }
-        in.close();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,262 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Records the pack entries of an installer, keyed on a digest of their inputs.
+ * <p/>
+ * Incremental builds use the index of the previous installer to copy entries whose inputs haven't changed, rather
+ * than compressing them again.
+ */
+class PackIndex
+{
+
+    /**
+     * The entries, keyed on input digest.
+     */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PackIndex.class.getName());
+
+
+    /**
+     * Returns the entry with the specified input digest.
+     *
+     * @param key the input digest
+     * @return the corresponding entry, or <tt>null</tt> if none is found
+     */
+    public Entry get(String key)
+    {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param key   the input digest
+     * @param entry the entry
+     */
+    public void put(String key, Entry entry)
+    {
+        entries.put(key, entry);
+    }
+
+    /**
+     * Reads an index.
+     * <p/>
+     * A missing or unreadable index results in an empty index, so that every entry is rebuilt.
+     *
+     * @param file the index file
+     * @return the index
+     */
+    public static PackIndex read(File file)
+    {
+        PackIndex result = new PackIndex();
+        if (file.isFile())
+        {
+            Properties properties = new Properties();
+            InputStream in = null;
+            try
+            {
+                in = new BufferedInputStream(new FileInputStream(file));
+                properties.load(in);
+                for (String key : properties.stringPropertyNames())
+                {
+                    result.put(key, Entry.parse(properties.getProperty(key)));
+                }
+            }
+            catch (Exception exception)
+            {
+                logger.log(Level.WARNING, "Ignoring unreadable pack index " + file, exception);
+                result.entries.clear();
+            }
+            finally
+            {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param file the index file
+     * @throws IOException for any I/O error
+     */
+    public void write(File file) throws IOException
+    {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Entry> entry : entries.entrySet())
+        {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try
+        {
+            properties.store(out, "IzPack pack index");
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * A stored entry of the installer jar.
+     */
+    public static class Entry
+    {
+
+        /**
+         * The entry name.
+         */
+        private final String name;
+
+        /**
+         * The entry size.
+         */
+        private final long size;
+
+        /**
+         * The CRC-32 checksum of the entry.
+         */
+        private final long crc;
+
+        /**
+         * The offsets of the pack file data in the uncompressed pack stream, keyed on pack file index.
+         */
+        private final Map<Integer, Long> offsets;
+
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param name    the entry name
+         * @param size    the entry size
+         * @param crc     the CRC-32 checksum of the entry
+         * @param offsets the offsets of the pack file data, keyed on pack file index
+         */
+        public Entry(String name, long size, long crc, Map<Integer, Long> offsets)
+        {
+            this.name = name;
+            this.size = size;
+            this.crc = crc;
+            this.offsets = offsets;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public long getCrc()
+        {
+            return crc;
+        }
+
+        /**
+         * Returns the offset of the data of a pack file in the uncompressed pack stream.
+         *
+         * @param index the pack file index
+         * @return the offset, or <tt>null</tt> if it isn't known
+         */
+        public Long getOffset(int index)
+        {
+            return offsets.get(index);
+        }
+
+        /**
+         * Formats the entry as <em>size;crc;index:offset,...;name</em>.
+         *
+         * @return the formatted entry
+         */
+        @Override
+        public String toString()
+        {
+            StringBuilder result = new StringBuilder();
+            result.append(size).append(';').append(crc).append(';');
+            boolean first = true;
+            for (Map.Entry<Integer, Long> offset : offsets.entrySet())
+            {
+                if (!first)
+                {
+                    result.append(',');
+                }
+                result.append(offset.getKey()).append(':').append(offset.getValue());
+                first = false;
+            }
+            result.append(';').append(name);
+            return result.toString();
+        }
+
+        /**
+         * Parses an entry formatted by {@link #toString()}.
+         *
+         * @param value the formatted entry
+         * @return the entry
+         * @throws IllegalArgumentException if the value is invalid
+         */
+        static Entry parse(String value)
+        {
+            String[] parts = value.split(";", 4);
+            if (parts.length != 4)
+            {
+                throw new IllegalArgumentException("Invalid pack index entry: " + value);
+            }
+            Map<Integer, Long> offsets = new HashMap<Integer, Long>();
+            if (parts[2].length() != 0)
+            {
+                for (String offset : parts[2].split(","))
+                {
+                    int index = offset.indexOf(':');
+                    offsets.put(Integer.valueOf(offset.substring(0, index)), Long.valueOf(offset.substring(index + 1)));
+                }
+            }
+            return new Entry(parts[3], Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                             Collections.unmodifiableMap(offsets));
+        }
+    }
+}
@@ -20,26 +20,52 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Pack200;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.output.NullOutputStream;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackFileWriter;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.data.CompilerMetrics;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.resolve.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
@@ -50,7 +76,7 @@ import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
-import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.file.FileUtils;
 
 /**
  * The packager class. The packager is used by the compiler to put files into an installer, and
@@ -68,6 +94,29 @@ public class Packager extends PackagerBase
      */
     private final OutputStream outputStream;
 
+    /**
+     * The minimum size of files that are stored in their own entry in the installer jar, rather than in the
+     * pack stream, when {@link Info#isPackBlocks() enabled}. These can be read directly by the installer, without
+     * reading the preceding pack data.
+     */
+    private static final long BLOCK_THRESHOLD = 128 * 1024;
+
+    /**
+     * The minimum size of files that are checked for being incompressible. Incompressible files are stored as is in
+     * their own entry, rather than compressed again.
+     */
+    private static final long STORE_THRESHOLD = 16 * 1024;
+
+    /**
+     * The metrics phase of the files stored in their own entry.
+     */
+    private static final String BLOCKS = "blocks";
+
+    /**
+     * Used to detect files that are already compressed.
+     */
+    private final IncompressibleFileDetector incompressibleFiles = new IncompressibleFileDetector();
+
 
     /**
      * Constructs a <tt>Packager</tt>.
@@ -92,6 +141,24 @@ public class Packager extends PackagerBase
         this.outputStream = outputStream;
     }
 
+    /**
+     * Sets the basic installer info.
+     * <p/>
+     * If packs are compressed concurrently or incrementally using the standard compression, they are deflated by
+     * the compression threads and stored in the installer jar, so the installer must inflate them itself.
+     *
+     * @param info the installer info
+     */
+    @Override
+    public void setInfo(Info info)
+    {
+        super.setInfo(info);
+        if (isPrecompressed() && getCompressor().useStandardCompression())
+        {
+            info.setPackDecoderClassName(InflaterInputStream.class.getName());
+        }
+    }
+
     /**
      * Write packs to the installer jar, or each to a separate jar.
      *
@@ -104,229 +171,1113 @@ public class Packager extends PackagerBase
         final int num = packs.size();
         sendMsg("Writing " + num + " Pack" + (num > 1 ? "s" : "") + " into installer");
 
-        // Map to remember pack number and bytes offsets of back references
-        Map<File, Object[]> storedFiles = new HashMap<File, Object[]>();
-
-        // Pack200 files map
-        Map<Integer, File> pack200Map = new HashMap<Integer, File>();
-        int pack200Counter = 0;
-
         // Force UTF-8 encoding in order to have proper ZipEntry names.
         JarOutputStream installerJar = getInstallerJar();
         installerJar.setEncoding("utf-8");
 
-        // First write the serialized files and file metadata data for each pack
-        // while counting bytes.
+        // Determine the files to write and the back references up front, so that packs can be written independently
+        final PackFileLayout layout = new PackFileLayout();
+        try
+        {
+            layoutPacks(packs, layout);
+            if (isIncremental())
+            {
+                layout.previousIndex = PackIndex.read(getCompilerData().getPackIndex());
+                layout.index = new PackIndex();
+                indexPacks(packs, layout);
+            }
+            writePacks(packs, layout);
+            if (layout.index != null)
+            {
+                layout.index.write(getCompilerData().getPackIndex());
+            }
+        }
+        finally
+        {
+            layout.close();
+        }
+        if (isIncremental())
+        {
+            // only discard the previous installer once the packs have been written, as if packaging fails, it is
+            // the only copy, and the cache for the next build
+            FileUtils.delete(getCompilerData().getPreviousOutput());
+        }
+    }
+
+    /**
+     * Writes the packs to the installer jar, given their layout.
+     * <p/>
+     * Pack200 is slow, so jars are packed by a pool of threads while the packs are written, and appended to the
+     * installer jar in key order once the packs have been written.
+     *
+     * @param packs  the packs
+     * @param layout the pack file layout
+     * @throws IOException for any I/O error
+     */
+    private void writePacks(List<PackInfo> packs, PackFileLayout layout) throws IOException
+    {
+        ExecutorService executor = null;
+        List<Future<CompressedPack>> packedJars = new ArrayList<Future<CompressedPack>>();
+        if (!layout.pack200Files.isEmpty())
+        {
+            int threads = (getCompilerData() != null) ? getCompilerData().getPackThreads() : 1;
+            sendMsg("Packing " + layout.pack200Files.size() + " jars with Pack200 using " + threads + " threads",
+                    PackagerListener.MSG_VERBOSE);
+            executor = Executors.newFixedThreadPool(threads);
+            for (final File file : layout.pack200Files.values())
+            {
+                // jars are opened by the packing task, so that only those being packed are open at once
+                packedJars.add(executor.submit(new Callable<CompressedPack>()
+                {
+                    @Override
+                    public CompressedPack call() throws Exception
+                    {
+                        return pack200(new JarFile(file));
+                    }
+                }));
+            }
+        }
 
-        int packNumber = 0;
-        IXMLElement root = new XMLElementImpl("packs");
+        try
+        {
+            writePackEntries(packs, layout);
 
-        for (PackInfo packInfo : packs)
+            int index = 0;
+            JarOutputStream installerJar = getInstallerJar();
+            for (Integer key : layout.pack200Files.keySet())
+            {
+                CompressedPack packed = getCompressedPack(packedJars.get(index++));
+                installerJar.putNextEntry(
+                        new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
+                packed.file.copyTo(installerJar, getBufferSize());
+                installerJar.closeEntry();
+                FileUtils.delete(packed.file.getFile());
+            }
+        }
+        finally
         {
-            Pack pack = packInfo.getPack();
-            pack.setSize(0);
-            if ((pack.getLangPackId() == null) || (pack.getLangPackId().length() == 0))
+            if (executor != null)
             {
-                pack.setLangPackId(pack.getName()); // TODO - see IZPACK-799
+                shutdown(executor, packedJars);
+            }
+        }
+    }
+
+    /**
+     * Writes the pack and block entries, and the pack metadata, to the installer jar.
+     *
+     * @param packs  the packs
+     * @param layout the pack file layout
+     * @throws IOException for any I/O error
+     */
+    private void writePackEntries(List<PackInfo> packs, final PackFileLayout layout) throws IOException
+    {
+        final int num = packs.size();
+        JarOutputStream installerJar = getInstallerJar();
+
+        ExecutorService executor = null;
+        List<Future<CompressedPack>> compressedPacks = null;
+        if (isPrecompressed())
+        {
+            int threads = getCompilerData().getPackThreads();
+            sendMsg("Compressing packs using " + threads + " threads", PackagerListener.MSG_VERBOSE);
+            executor = Executors.newFixedThreadPool(threads);
+            compressedPacks = new ArrayList<Future<CompressedPack>>();
+            for (final PackInfo packInfo : packs)
+            {
+                // reused packs have their offsets set before any pack referring to them is written
+                final CompressedPack previous = getPreviousPack(packInfo, layout);
+                compressedPacks.add(executor.submit(new Callable<CompressedPack>()
+                {
+                    @Override
+                    public CompressedPack call() throws Exception
+                    {
+                        if (previous != null)
+                        {
+                            return previous;
+                        }
+                        return compress(new PackContent()
+                        {
+                            @Override
+                            public void write(OutputStream out) throws IOException
+                            {
+                                writePack(packInfo, out, layout);
+                            }
+                        });
+                    }
+                }));
             }
+            for (Map.Entry<Integer, SourceFile> block : layout.blockFiles.entrySet())
+            {
+                final SourceFile file = block.getValue();
+                final boolean store = layout.storedBlocks.contains(block.getKey());
+                final CompressedPack previous = getPreviousBlock(block.getKey(), layout);
+                compressedPacks.add(executor.submit(new Callable<CompressedPack>()
+                {
+                    @Override
+                    public CompressedPack call() throws Exception
+                    {
+                        if (previous != null)
+                        {
+                            return previous;
+                        }
+                        if (store)
+                        {
+                            return checksum(file);
+                        }
+                        return compress(new PackContent()
+                        {
+                            @Override
+                            public void write(OutputStream out) throws IOException
+                            {
+                                writeBlock(file, out);
+                            }
+                        });
+                    }
+                }));
+            }
+        }
+
+        // First write the serialized files and file metadata data for each pack
+        // while counting bytes.
+
+        try
+        {
+            int packNumber = 0;
+            IXMLElement root = new XMLElementImpl("packs");
 
-            // create a pack specific jar if required
-            // REFACTOR : Repare web installer
-            // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
+            for (PackInfo packInfo : packs)
+            {
+                Pack pack = packInfo.getPack();
+
+                // create a pack specific jar if required
+                // REFACTOR : Repare web installer
+                // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
 
 //            if (packJarsSeparate) {
-            // See installer.Unpacker#getPackAsStream for the counterpart
+                // See installer.Unpacker#getPackAsStream for the counterpart
 //                String name = baseFile.getName() + ".pack-" + pack.id + ".jar";
 //                packStream = IoHelper.getJarOutputStream(name, baseFile.getParentFile());
 //            }
 
-            sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
+                sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
 
-            // Retrieve the correct output stream
-            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
-                    RESOURCES_PATH + "packs/pack-" + pack.getName());
-            installerJar.putNextEntry(entry);
-            installerJar.flush(); // flush before we start counting
+                // Retrieve the correct output stream
+                org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
+                        RESOURCES_PATH + "packs/pack-" + pack.getName());
+                if (compressedPacks != null)
+                {
+                    CompressedPack compressed = getCompressedPack(compressedPacks.get(packNumber));
+                    if (layout.index != null)
+                    {
+                        layout.index.put(layout.packKeys.get(pack.getName()),
+                                         createIndexEntry(entry, compressed, getOffsets(packInfo, layout)));
+                    }
+                    addBytesOut(CompilerMetrics.PACK_PREFIX + pack.getName(), compressed.file.length());
+                    writeCompressedPack(entry, compressed);
+                }
+                else
+                {
+                    installerJar.putNextEntry(entry);
+                    installerJar.flush(); // flush before we start counting
 
-            ByteCountingOutputStream dos = new ByteCountingOutputStream(outputStream);
-            ObjectOutputStream objOut = new ObjectOutputStream(dos);
+                    OutputStream out = getPackOutputStream();
+                    writePack(packInfo, out, layout);
 
-            // We write the actual pack files
-            objOut.writeInt(packInfo.getPackFiles().size());
+                    // Cleanup
+                    if (!getCompressor().useStandardCompression())
+                    {
+                        out.close();
+                    }
 
-            for (PackFile packFile : packInfo.getPackFiles())
-            {
-                boolean addFile = !pack.isLoose();
-                boolean pack200 = false;
-                File file = packInfo.getFile(packFile);
+                    installerJar.closeEntry();
+                    addBytesOut(CompilerMetrics.PACK_PREFIX + pack.getName(), entry.getCompressedSize());
+                }
 
-                if (file.getName().toLowerCase().endsWith(".jar") && getInfo().isPack200Compression()
-                        && isNotSignedJar(file))
+                // close pack specific jar if required
+                if (packSeparateJars())
                 {
-                    packFile.setPack200Jar(true);
-                    pack200 = true;
+                    installerJar.closeAlways();
                 }
 
-                // use a back reference if file was in previous pack, and in
-                // same jar
-                Object[] info = storedFiles.get(file);
-                if (info != null && !packSeparateJars())
+                IXMLElement child = new XMLElementImpl("pack", root);
+                child.setAttribute("nbytes", Long.toString(pack.getSize()));
+                child.setAttribute("name", pack.getName());
+                if (pack.getLangPackId() != null)
                 {
-                    packFile.setPreviousPackFileRef((String) info[0], (Long) info[1]);
-                    addFile = false;
+                    child.setAttribute("id", pack.getLangPackId());
                 }
+                root.addChild(child);
 
-                objOut.writeObject(packFile); // base info
+                packNumber++;
+            }
 
-                if (addFile && !packFile.isDirectory())
+            // Files large enough to be stored in their own entries
+            for (Map.Entry<Integer, SourceFile> block : layout.blockFiles.entrySet())
+            {
+                org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
+                        RESOURCES_PATH + getBlockName(block.getKey()));
+                if (compressedPacks != null)
                 {
-                    long pos = dos.getByteCount(); // get the position
-
-                    if (pack200)
+                    CompressedPack compressed = getCompressedPack(compressedPacks.get(num + block.getKey()));
+                    if (layout.index != null)
                     {
-                        /*
-                         * Warning!
-                         *
-                         * Pack200 archives must be stored in separated streams, as the Pack200 unpacker
-                         * reads the entire stream...
-                         *
-                         * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
-                         */
-                        pack200Map.put(pack200Counter, file);
-                        objOut.writeInt(pack200Counter);
-                        pack200Counter = pack200Counter + 1;
+                        layout.index.put(layout.blockKeys.get(block.getKey()),
+                                         createIndexEntry(entry, compressed, new HashMap<Integer, Long>()));
                     }
-                    else
+                    addBytesOut(BLOCKS, compressed.file.length());
+                    writeCompressedPack(entry, compressed);
+                }
+                else if (layout.storedBlocks.contains(block.getKey()))
+                {
+                    addBytesOut(BLOCKS, block.getValue().length());
+                    writeCompressedPack(entry, checksum(block.getValue()));
+                }
+                else
+                {
+                    installerJar.putNextEntry(entry);
+                    OutputStream out = getPackOutputStream();
+                    writeBlock(block.getValue(), out);
+                    if (!getCompressor().useStandardCompression())
                     {
-                        FileInputStream inStream = new FileInputStream(file);
-                        long bytesWritten = IoHelper.copyStream(inStream, objOut);
-                        inStream.close();
-                        if (bytesWritten != packFile.length())
-                        {
-                            throw new IOException("File size mismatch when reading " + file);
-                        }
+                        out.close();
                     }
-
-                    storedFiles.put(file, new Object[]{pack.getName(), pos}); // TODO - see IZPACK-799
+                    installerJar.closeEntry();
+                    addBytesOut(BLOCKS, entry.getCompressedSize());
                 }
-
-                // even if not written, it counts towards pack size
-                pack.addSize(packFile.size());
             }
+        }
+        finally
+        {
+            if (executor != null)
+            {
+                shutdown(executor, compressedPacks);
+            }
+        }
+
+        // Now that we know sizes, write pack metadata to primary jar.
+        installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs.info"));
+        ObjectOutputStream out = new ObjectOutputStream(installerJar);
+        out.writeInt(packs.size());
+
+        for (PackInfo packInfo : packs)
+        {
+            out.writeObject(packInfo.getPack());
+        }
+        out.flush();
+        installerJar.closeEntry();
+    }
+
+    /**
+     * Determines if packs are compressed concurrently.
+     * <p/>
+     * This is the case if more than one pack thread is configured, and the packs are written to the installer jar.
+     *
+     * @return <tt>true</tt> if packs are compressed concurrently
+     */
+    protected boolean isConcurrent()
+    {
+        CompilerData compilerData = getCompilerData();
+        return compilerData != null && compilerData.getPackThreads() > 1 && !packSeparateJars();
+    }
+
+    /**
+     * Determines if the installer is built incrementally.
+     * <p/>
+     * This is the case if requested by the compiler data, and the packs are written to the installer jar.
+     *
+     * @return <tt>true</tt> if unchanged packs are copied from the previous installer
+     */
+    protected boolean isIncremental()
+    {
+        CompilerData compilerData = getCompilerData();
+        return compilerData != null && compilerData.isIncremental() && !packSeparateJars();
+    }
+
+    /**
+     * Determines if packs are compressed before being stored in the installer jar.
+     * <p/>
+     * This is required for concurrent compression, and for incremental builds, so that pack entries can be copied
+     * as is from one installer to the next.
+     *
+     * @return <tt>true</tt> if packs are compressed before being stored
+     */
+    private boolean isPrecompressed()
+    {
+        return isConcurrent() || isIncremental();
+    }
 
-            // Write out information about parsable files
-            objOut.writeInt(packInfo.getParsables().size());
+    /**
+     * Calculates the keys of the packs and blocks used to look them up in the index of the previous installer.
+     * <p/>
+     * A key is a digest of everything that determines the content of the entry: the compression settings, the pack
+     * file meta-data, the packs and offsets of back references, and the identity of the source files, as given by
+     * their path, length and modification time.
+     *
+     * @param packs  the packs
+     * @param layout the pack file layout
+     * @throws IOException for any I/O error
+     */
+    private void indexPacks(List<PackInfo> packs, PackFileLayout layout) throws IOException
+    {
+        for (PackInfo packInfo : packs)
+        {
+            KeyBuilder key = new KeyBuilder();
+            ObjectOutputStream out = key.getOutputStream();
+            String name = packInfo.getPack().getName();
+            out.writeUTF("pack");
+            out.writeUTF(name);
+            PackFileWriter writer = new PackFileWriter(out);
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                StoredFile stored = layout.stored.get(packFile);
+                writer.write(packFile);
+                out.writeBoolean(stored != null && stored.isReferenced());
 
+                StoredFile reference = layout.references.get(packFile);
+                if (reference != null)
+                {
+                    // references within the pack are covered by the pack itself
+                    String referenceKey = layout.packKeys.get(reference.getPackName());
+                    out.writeUTF(reference.getPackName());
+                    out.writeUTF(referenceKey != null ? referenceKey : name);
+                    out.writeInt(reference.getIndex());
+                }
+                if (stored != null)
+                {
+                    Integer pack200Key = layout.pack200Keys.get(packFile);
+                    out.writeInt(pack200Key != null ? pack200Key : -1);
+                    if (pack200Key == null && packFile.getStreamResourceName() == null)
+                    {
+                        writeSource(SourceFile.getSource(packInfo, packFile, layout.archives), out);
+                    }
+                }
+            }
             for (ParsableFile parsableFile : packInfo.getParsables())
             {
-                objOut.writeObject(parsableFile);
+                out.writeObject(parsableFile);
             }
-
-            // Write out information about executable files
-            objOut.writeInt(packInfo.getExecutables().size());
             for (ExecutableFile executableFile : packInfo.getExecutables())
             {
-                objOut.writeObject(executableFile);
+                out.writeObject(executableFile);
             }
-
-            // Write out information about updatecheck files
-            objOut.writeInt(packInfo.getUpdateChecks().size());
             for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
             {
-                objOut.writeObject(updateCheck);
+                out.writeObject(updateCheck);
             }
+            layout.packKeys.put(name, key.getKey());
+        }
 
-            // Cleanup
-            objOut.flush();
-            if (!getCompressor().useStandardCompression())
-            {
-                outputStream.close();
-            }
+        for (Map.Entry<Integer, SourceFile> block : layout.blockFiles.entrySet())
+        {
+            KeyBuilder key = new KeyBuilder();
+            ObjectOutputStream out = key.getOutputStream();
+            out.writeUTF("block");
+            out.writeBoolean(layout.storedBlocks.contains(block.getKey()));
+            writeSource(block.getValue(), out);
+            layout.blockKeys.put(block.getKey(), key.getKey());
+        }
+    }
 
-            installerJar.closeEntry();
+    /**
+     * Writes the identity of a source file to a key.
+     *
+     * @param file the source file
+     * @param out  the key stream
+     * @throws IOException for any I/O error
+     */
+    private void writeSource(SourceFile file, ObjectOutputStream out) throws IOException
+    {
+        out.writeUTF(file.toString());
+        out.writeLong(file.length());
+        out.writeLong(file.getFile().lastModified());
+    }
 
-            // close pack specific jar if required
-            if (packSeparateJars())
+    /**
+     * Returns a pack from the previous installer, if its key is unchanged.
+     * <p/>
+     * If the pack can be reused, the offsets of its files are set from the index, so that packs referring to them
+     * can be written.
+     *
+     * @param packInfo the pack
+     * @param layout   the pack file layout
+     * @return the previous pack, or <tt>null</tt> if it must be written
+     * @throws IOException for any I/O error
+     */
+    private CompressedPack getPreviousPack(PackInfo packInfo, PackFileLayout layout) throws IOException
+    {
+        if (layout.index == null)
+        {
+            return null;
+        }
+        String name = packInfo.getPack().getName();
+        PackIndex.Entry entry = layout.previousIndex.get(layout.packKeys.get(name));
+        CompressedPack result = getPreviousEntry(entry, layout);
+        if (result != null)
+        {
+            Map<StoredFile, Long> offsets = new HashMap<StoredFile, Long>();
+            for (PackFile packFile : packInfo.getPackFiles())
             {
-                installerJar.closeAlways();
+                StoredFile stored = layout.stored.get(packFile);
+                if (stored != null)
+                {
+                    Long offset = entry.getOffset(stored.getIndex());
+                    if (offset == null)
+                    {
+                        return null;
+                    }
+                    offsets.put(stored, offset);
+                }
             }
-
-            IXMLElement child = new XMLElementImpl("pack", root);
-            child.setAttribute("nbytes", Long.toString(pack.getSize()));
-            child.setAttribute("name", pack.getName());
-            if (pack.getLangPackId() != null)
+            for (Map.Entry<StoredFile, Long> offset : offsets.entrySet())
             {
-                child.setAttribute("id", pack.getLangPackId());
+                offset.getKey().setOffset(offset.getValue());
             }
-            root.addChild(child);
-
-            packNumber++;
+            sendMsg("Reusing pack " + name + " from the previous installer", PackagerListener.MSG_VERBOSE);
         }
+        return result;
+    }
 
-        // Now that we know sizes, write pack metadata to primary jar.
-        installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs.info"));
-        ObjectOutputStream out = new ObjectOutputStream(installerJar);
-        out.writeInt(packs.size());
-
-        for (PackInfo packInfo : packs)
+    /**
+     * Returns a block from the previous installer, if its key is unchanged.
+     *
+     * @param key    the block key
+     * @param layout the pack file layout
+     * @return the previous block, or <tt>null</tt> if it must be written
+     * @throws IOException for any I/O error
+     */
+    private CompressedPack getPreviousBlock(int key, PackFileLayout layout) throws IOException
+    {
+        if (layout.index == null)
         {
-            out.writeObject(packInfo.getPack());
+            return null;
         }
-        out.flush();
-        installerJar.closeEntry();
-
-        // Pack200 files
-        Pack200.Packer packer = createAgressivePack200Packer();
-        for (Integer key : pack200Map.keySet())
+        CompressedPack result = getPreviousEntry(layout.previousIndex.get(layout.blockKeys.get(key)), layout);
+        if (result != null)
         {
-            File file = pack200Map.get(key);
-            installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
-            JarFile jar = new JarFile(file);
-            packer.pack(jar, installerJar);
-            jar.close();
-            installerJar.closeEntry();
+            sendMsg("Reusing " + getBlockName(key) + " from the previous installer", PackagerListener.MSG_VERBOSE);
         }
+        return result;
     }
 
-    private Pack200.Packer createAgressivePack200Packer()
-    {
-        Pack200.Packer packer = Pack200.newPacker();
-        Map<String, String> packerProperties = packer.properties();
-        packerProperties.put(Pack200.Packer.EFFORT, "9");
-        packerProperties.put(Pack200.Packer.SEGMENT_LIMIT, "-1");
-        packerProperties.put(Pack200.Packer.KEEP_FILE_ORDER, Pack200.Packer.FALSE);
-        packerProperties.put(Pack200.Packer.DEFLATE_HINT, Pack200.Packer.FALSE);
-        packerProperties.put(Pack200.Packer.MODIFICATION_TIME, Pack200.Packer.LATEST);
-        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LineNumberTable", Pack200.Packer.STRIP);
-        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LocalVariableTable", Pack200.Packer.STRIP);
-        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "SourceFile", Pack200.Packer.STRIP);
-        return packer;
-    }
-
-    private boolean isNotSignedJar(File file) throws IOException
+    /**
+     * Returns an entry of the previous installer, if it is stored in the installer as recorded by the index.
+     *
+     * @param entry  the index entry. May be <tt>null</tt>
+     * @param layout the pack file layout
+     * @return the previous entry, or <tt>null</tt> if it isn't present
+     */
+    private CompressedPack getPreviousEntry(PackIndex.Entry entry, PackFileLayout layout)
     {
-        JarFile jar = new JarFile(file);
-        Enumeration<JarEntry> entries = jar.entries();
-        while (entries.hasMoreElements())
+        File previous = getCompilerData().getPreviousOutput();
+        if (entry == null || !previous.isFile())
         {
-            JarEntry entry = entries.nextElement();
-            if (entry.getName().startsWith("META-INF") && entry.getName().endsWith(".SF"))
+            return null;
+        }
+        try
+        {
+            java.util.zip.ZipEntry zipEntry = layout.archives.getEntry(previous, entry.getName());
+            if (zipEntry == null || zipEntry.getMethod() != java.util.zip.ZipEntry.STORED
+                    || zipEntry.getSize() != entry.getSize() || zipEntry.getCrc() != entry.getCrc())
             {
-                jar.close();
-                return false;
+                return null;
             }
         }
-        jar.close();
-        return true;
+        catch (IOException exception)
+        {
+            sendMsg("Cannot read previous installer " + previous + ": " + exception.getMessage(),
+                    PackagerListener.MSG_VERBOSE);
+            return null;
+        }
+        return new CompressedPack(new SourceFile(previous, entry.getName(), entry.getSize(), layout.archives),
+                                  entry.getCrc(), false);
     }
 
     /**
-     * ********************************************************************************************
-     * Stream utilites for creation of the installer.
-     * ********************************************************************************************
+     * Creates an index entry for a pack or block written to the installer jar.
+     *
+     * @param entry   the installer jar entry
+     * @param pack    the compressed pack or block
+     * @param offsets the offsets of the pack file data, keyed on pack file index
+     * @return a new index entry
      */
+    private PackIndex.Entry createIndexEntry(org.apache.tools.zip.ZipEntry entry, CompressedPack pack,
+                                             Map<Integer, Long> offsets)
+    {
+        return new PackIndex.Entry(entry.getName(), pack.file.length(), pack.crc, offsets);
+    }
 
-    /* (non-Javadoc)
+    /**
+     * Returns the offsets of the data of the files of a pack that has been written.
+     *
+     * @param packInfo the pack
+     * @param layout   the pack file layout
+     * @return the offsets, keyed on pack file index
+     * @throws IOException if interrupted waiting for an offset
+     */
+    private Map<Integer, Long> getOffsets(PackInfo packInfo, PackFileLayout layout) throws IOException
+    {
+        Map<Integer, Long> result = new HashMap<Integer, Long>();
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            StoredFile stored = layout.stored.get(packFile);
+            if (stored != null)
+            {
+                result.put(stored.getIndex(), stored.getOffset());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines which pack files have their data written, which are back references to data written in a
+     * previous pack, and which are pack200 jars. This also calculates the size of each pack.
+     *
+     * @param packs  the packs
+     * @param layout the pack file layout to populate
+     * @throws IOException for any I/O error
+     */
+    private void layoutPacks(List<PackInfo> packs, PackFileLayout layout) throws IOException
+    {
+        // Index to remember pack names and bytes offsets of back references, keyed on content
+        StoredFileIndex storedFiles = new StoredFileIndex();
+        int pack200Counter = 0;
+
+        for (PackInfo packInfo : packs)
+        {
+            Pack pack = packInfo.getPack();
+            pack.setSize(0);
+            if ((pack.getLangPackId() == null) || (pack.getLangPackId().length() == 0))
+            {
+                pack.setLangPackId(pack.getName()); // TODO - see IZPACK-799
+            }
+
+            int index = 0;
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                boolean addFile = !pack.isLoose();
+                SourceFile file = SourceFile.getSource(packInfo, packFile, layout.archives);
+
+                // archive entries are read in place, so only plain files can be repacked with pack200
+                if (!file.isArchiveEntry() && file.getName().toLowerCase().endsWith(".jar")
+                        && getInfo().isPack200Compression() && isNotSignedJar(file.getFile(), layout))
+                {
+                    packFile.setPack200Jar(true);
+                }
+
+                // use a back reference if the same content was in a previous pack, and in
+                // same jar
+                StoredFile stored = null;
+                if (!packFile.isDirectory() && !packSeparateJars())
+                {
+                    stored = storedFiles.get(file, packFile.isPack200Jar());
+                }
+                if (stored != null && !pack.isLoose())
+                {
+                    if (stored.getResourceName() != null)
+                    {
+                        // the data is in its own entry, so can be read directly
+                        packFile.setStreamResourceName(stored.getResourceName());
+                        packFile.setStreamStored(stored.isResourceStored());
+                    }
+                    else
+                    {
+                        layout.references.put(packFile, stored);
+                        stored.setReferenced();
+                    }
+                    addFile = false;
+                }
+
+                if (addFile && !packFile.isDirectory())
+                {
+                    stored = new StoredFile(pack.getName(), index); // TODO - see IZPACK-799
+                    if (packFile.isPack200Jar())
+                    {
+                        layout.pack200Keys.put(packFile, pack200Counter);
+                        layout.pack200Files.put(pack200Counter, file.getFile());
+                        pack200Counter++;
+                    }
+                    else if (getInfo().isPackBlocks() && !packSeparateJars())
+                    {
+                        // data that is already compressed is stored as is in its own entry, to avoid compressing it
+                        // again when the installer is built, and decompressing it when it is installed
+                        boolean store = packFile.length() >= STORE_THRESHOLD
+                                && incompressibleFiles.isIncompressible(file);
+                        if (store || packFile.length() >= BLOCK_THRESHOLD)
+                        {
+                            int key = layout.blockFiles.size();
+                            layout.blockFiles.put(key, file);
+                            if (store)
+                            {
+                                layout.storedBlocks.add(key);
+                            }
+                            packFile.setStreamResourceName(getBlockName(key));
+                            packFile.setStreamStored(store);
+                            stored.setResourceName(getBlockName(key));
+                            stored.setResourceStored(store);
+                        }
+                    }
+                    storedFiles.put(file, packFile.isPack200Jar(), stored);
+                    layout.stored.put(packFile, stored);
+                }
+
+                // even if not written, it counts towards pack size
+                pack.addSize(packFile.size());
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Writes the files and file meta-data of a pack.
+     *
+     * @param packInfo the pack
+     * @param out      the stream to write to. This is not closed
+     * @param layout   the pack file layout
+     * @throws IOException for any I/O error
+     */
+    private void writePack(PackInfo packInfo, OutputStream out, PackFileLayout layout) throws IOException
+    {
+        CompilerMetrics.Timer timer = getMetrics().start(CompilerMetrics.PACK_PREFIX + packInfo.getPack().getName());
+        ByteCountingOutputStream dos = new ByteCountingOutputStream(out);
+        PackOutputStream objOut = new PackOutputStream(dos);
+        PackFileWriter writer = new PackFileWriter(objOut);
+
+        // We write the actual pack files
+        writer.writeHeader(packInfo.getPackFiles().size());
+
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            if (Thread.interrupted())
+            {
+                throw new InterruptedIOException("Interrupted writing pack " + packInfo.getPack().getName());
+            }
+
+            StoredFile reference = layout.references.get(packFile);
+            if (reference != null)
+            {
+                packFile.setPreviousPackFileRef(reference.getPackName(), reference.getOffset(), reference.getIndex());
+            }
+
+            StoredFile stored = layout.stored.get(packFile);
+            if (stored != null)
+            {
+                packFile.setBackReferenced(stored.isReferenced());
+            }
+
+            writer.write(packFile); // base info
+
+            if (stored != null)
+            {
+                // back references skip to the data, so it must start a new block
+                objOut.drain();
+                long pos = dos.getByteCount(); // get the position
+
+                Integer pack200Key = layout.pack200Keys.get(packFile);
+                if (pack200Key != null)
+                {
+                    /*
+                     * Warning!
+                     *
+                     * Pack200 archives must be stored in separated streams, as the Pack200 unpacker
+                     * reads the entire stream...
+                     *
+                     * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
+                     */
+                    objOut.writeInt(pack200Key);
+                }
+                else if (packFile.getStreamResourceName() == null)
+                {
+                    SourceFile file = SourceFile.getSource(packInfo, packFile, layout.archives);
+                    long bytesWritten = file.copyTo(objOut, getBufferSize());
+                    if (bytesWritten != packFile.length())
+                    {
+                        throw new IOException("File size mismatch when reading " + file);
+                    }
+                }
+
+                stored.setOffset(pos);
+            }
+        }
+
+        // Write out information about parsable files
+        objOut.writeInt(packInfo.getParsables().size());
+
+        for (ParsableFile parsableFile : packInfo.getParsables())
+        {
+            objOut.writeObject(parsableFile);
+        }
+
+        // Write out information about executable files
+        objOut.writeInt(packInfo.getExecutables().size());
+        for (ExecutableFile executableFile : packInfo.getExecutables())
+        {
+            objOut.writeObject(executableFile);
+        }
+
+        // Write out information about updatecheck files
+        objOut.writeInt(packInfo.getUpdateChecks().size());
+        for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
+        {
+            objOut.writeObject(updateCheck);
+        }
+
+        objOut.flush();
+
+        CompilerMetrics.Phase phase = timer.stop();
+        phase.addBytesIn(dos.getByteCount());
+        phase.addFiles(packInfo.getPackFiles().size());
+    }
+
+    /**
+     * Writes the data of a file stored in its own entry.
+     *
+     * @param file the file
+     * @param out  the stream to write to. This is not closed
+     * @throws IOException for any I/O error
+     */
+    private void writeBlock(SourceFile file, OutputStream out) throws IOException
+    {
+        CompilerMetrics.Timer timer = getMetrics().start(BLOCKS);
+        long bytesWritten = file.copyTo(out, getBufferSize());
+        if (bytesWritten != file.length())
+        {
+            throw new IOException("File size mismatch when reading " + file);
+        }
+        out.flush();
+
+        CompilerMetrics.Phase phase = timer.stop();
+        phase.addBytesIn(file.length());
+        phase.addFiles(1);
+    }
+
+    /**
+     * Returns the stream to write the current pack entry to, when packs are written sequentially.
+     * <p/>
+     * Unless the standard compression is used, each entry gets its own encoder, which must be closed once the
+     * entry has been written. The installer jar ignores the close.
+     *
+     * @return the stream to write to
+     * @throws IOException if the encoder cannot be created
+     */
+    private OutputStream getPackOutputStream() throws IOException
+    {
+        if (getCompressor().useStandardCompression())
+        {
+            return outputStream;
+        }
+        try
+        {
+            return getCompressor().getOutputStream(outputStream);
+        }
+        catch (IOException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new IOException("Failed to create the pack encoder", exception);
+        }
+    }
+
+    /**
+     * Returns the resource name of a file stored in its own entry.
+     *
+     * @param key the block key
+     * @return the resource name, relative to the installer resources
+     */
+    private String getBlockName(int key)
+    {
+        return "packs/block-" + key;
+    }
+
+    /**
+     * Compresses pack content to a temporary file.
+     * <p/>
+     * This is invoked by the compression threads when packs are compressed concurrently.
+     *
+     * @param content the content to compress
+     * @return the compressed content
+     * @throws Exception for any error
+     */
+    private CompressedPack compress(PackContent content) throws Exception
+    {
+        File file = FileUtils.createTempFile("pack-", ".tmp");
+        CRC32 crc = new CRC32();
+        Deflater deflater = null;
+        OutputStream out = null;
+        boolean written = false;
+        try
+        {
+            out = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(file)), crc);
+            if (getCompressor().useStandardCompression())
+            {
+                deflater = new Deflater(getDeflaterLevel());
+                out = new DeflaterOutputStream(out, deflater);
+            }
+            else
+            {
+                out = getCompressor().getOutputStream(out);
+            }
+            content.write(out);
+            out.close();
+            written = true;
+        }
+        finally
+        {
+            if (deflater != null)
+            {
+                deflater.end();
+            }
+            if (!written)
+            {
+                FileUtils.close(out);
+                FileUtils.delete(file);
+            }
+        }
+        return new CompressedPack(new SourceFile(file), crc.getValue(), true);
+    }
+
+    /**
+     * Calculates the checksum of a file that is stored in the installer jar as is.
+     *
+     * @param file the file
+     * @return the file, and its checksum
+     * @throws IOException for any I/O error
+     */
+    private CompressedPack checksum(SourceFile file) throws IOException
+    {
+        CompilerMetrics.Timer timer = getMetrics().start(BLOCKS);
+        CRC32 crc = new CRC32();
+        file.copyTo(new CheckedOutputStream(new NullOutputStream(), crc), getBufferSize());
+        CompilerMetrics.Phase phase = timer.stop();
+        phase.addBytesIn(file.length());
+        phase.addFiles(1);
+        return new CompressedPack(file, crc.getValue(), false);
+    }
+
+    /**
+     * Returns the deflater level to use when packs are compressed concurrently using the standard compression.
+     *
+     * @return the compression level of the compiler data, or {@link Deflater#BEST_COMPRESSION} if none is specified
+     */
+    private int getDeflaterLevel()
+    {
+        int level = getCompilerData().getComprLevel();
+        return (level >= 0 && level < 10) ? level : Deflater.BEST_COMPRESSION;
+    }
+
+    /**
+     * Waits for a pack to be compressed.
+     *
+     * @param future the future result of the compression
+     * @return the compressed pack
+     * @throws IOException if the pack couldn't be compressed, or the wait was interrupted
+     */
+    private CompressedPack getCompressedPack(Future<CompressedPack> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Interrupted waiting for pack compression");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to compress pack", cause);
+        }
+    }
+
+    /**
+     * Records the size of an entry written to the installer jar.
+     *
+     * @param phase the metrics phase of the entry
+     * @param bytes the size of the entry, or <tt>-1</tt> if it isn't known
+     */
+    private void addBytesOut(String phase, long bytes)
+    {
+        if (bytes > 0)
+        {
+            getMetrics().getPhase(phase).addBytesOut(bytes);
+        }
+    }
+
+    /**
+     * Writes a compressed pack to the installer jar.
+     * <p/>
+     * The pack is already compressed, so it is stored without further compression.
+     * Temporary files are deleted once written.
+     *
+     * @param entry the pack entry
+     * @param pack  the compressed pack
+     * @throws IOException for any I/O error
+     */
+    private void writeCompressedPack(org.apache.tools.zip.ZipEntry entry, CompressedPack pack) throws IOException
+    {
+        JarOutputStream installerJar = getInstallerJar();
+        entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+        entry.setSize(pack.file.length());
+        entry.setCrc(pack.crc);
+        installerJar.putNextEntry(entry);
+        pack.file.copyTo(installerJar, getBufferSize());
+        installerJar.closeEntry();
+        if (pack.temporary)
+        {
+            FileUtils.delete(pack.file.getFile());
+        }
+    }
+
+    /**
+     * Stops the compression threads, and removes the temporary files of any packs that weren't written.
+     *
+     * @param executor the executor running the compression threads
+     * @param packs    the compressed packs
+     */
+    private void shutdown(ExecutorService executor, List<Future<CompressedPack>> packs)
+    {
+        executor.shutdownNow();
+        try
+        {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+            {
+                sendMsg("Waiting for pack compression to stop", PackagerListener.MSG_VERBOSE);
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+        for (Future<CompressedPack> future : packs)
+        {
+            if (future.isDone() && !future.isCancelled())
+            {
+                try
+                {
+                    CompressedPack pack = future.get();
+                    if (pack.temporary)
+                    {
+                        FileUtils.delete(pack.file.getFile());
+                    }
+                }
+                catch (Exception ignore)
+                {
+                    // pack failed to compress, so there is nothing to remove
+                }
+            }
+        }
+    }
+
+    private Pack200.Packer createAgressivePack200Packer()
+    {
+        Pack200.Packer packer = Pack200.newPacker();
+        Map<String, String> packerProperties = packer.properties();
+        packerProperties.put(Pack200.Packer.EFFORT, "9");
+        packerProperties.put(Pack200.Packer.SEGMENT_LIMIT, "-1");
+        packerProperties.put(Pack200.Packer.KEEP_FILE_ORDER, Pack200.Packer.FALSE);
+        packerProperties.put(Pack200.Packer.DEFLATE_HINT, Pack200.Packer.FALSE);
+        packerProperties.put(Pack200.Packer.MODIFICATION_TIME, Pack200.Packer.LATEST);
+        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LineNumberTable", Pack200.Packer.STRIP);
+        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LocalVariableTable", Pack200.Packer.STRIP);
+        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "SourceFile", Pack200.Packer.STRIP);
+        return packer;
+    }
+
+    /**
+     * Packs a jar with Pack200 to a temporary file.
+     * <p/>
+     * This is invoked by the Pack200 threads. Each uses its own packer, as packers aren't thread safe.
+     *
+     * @param jar the jar. This is closed by the packer
+     * @return the packed jar
+     * @throws IOException for any I/O error
+     */
+    private CompressedPack pack200(JarFile jar) throws IOException
+    {
+        CompilerMetrics.Timer timer = getMetrics().start("pack200");
+        long length = new File(jar.getName()).length();
+        File file = FileUtils.createTempFile("pack200-", ".tmp");
+        CRC32 crc = new CRC32();
+        OutputStream out = null;
+        boolean written = false;
+        try
+        {
+            out = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(file)), crc);
+            createAgressivePack200Packer().pack(jar, out);
+            out.close();
+            written = true;
+        }
+        finally
+        {
+            if (!written)
+            {
+                FileUtils.close(out);
+                FileUtils.delete(file);
+            }
+        }
+        CompilerMetrics.Phase phase = timer.stop();
+        phase.addBytesIn(length);
+        phase.addBytesOut(file.length());
+        phase.addFiles(1);
+        return new CompressedPack(new SourceFile(file), crc.getValue(), true);
+    }
+
+    /**
+     * Determines if a jar isn't signed, and so can be packed with Pack200.
+     * <p/>
+     * The jar is closed once checked, and opened again by the task that packs it, so that no more jars are open
+     * at once than are being packed. The outcome is remembered by the layout, so each jar is only checked once.
+     *
+     * @param file   the jar
+     * @param layout the pack file layout
+     * @return <tt>true</tt> if the jar isn't signed
+     * @throws IOException if the jar cannot be read
+     */
+    private boolean isNotSignedJar(File file, PackFileLayout layout) throws IOException
+    {
+        if (layout.unsignedJars.contains(file))
+        {
+            return true;
+        }
+        if (layout.signedJars.contains(file))
+        {
+            return false;
+        }
+        JarFile jar = new JarFile(file);
+        try
+        {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements())
+            {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().startsWith("META-INF") && entry.getName().endsWith(".SF"))
+                {
+                    layout.signedJars.add(file);
+                    return false;
+                }
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+        layout.unsignedJars.add(file);
+        return true;
+    }
+
+    /**
+     * ********************************************************************************************
+     * Stream utilites for creation of the installer.
+     * ********************************************************************************************
+     */
+
+    /* (non-Javadoc)
     * @see com.izforge.izpack.compiler.packager.IPackager#addConfigurationInformation(com.izforge.izpack.api.adaptator.IXMLElement)
     */
     @Override
@@ -335,4 +1286,200 @@ public class Packager extends PackagerBase
         // TODO Auto-generated method stub
 
     }
+
+    /**
+     * Determines where the data of each pack file is written.
+     */
+    private static class PackFileLayout
+    {
+
+        /**
+         * The pack files whose data is written, and where it is written to.
+         */
+        private final Map<PackFile, StoredFile> stored = new HashMap<PackFile, StoredFile>();
+
+        /**
+         * The pack files written as back references, and the data they refer to.
+         */
+        private final Map<PackFile, StoredFile> references = new HashMap<PackFile, StoredFile>();
+
+        /**
+         * The keys of the pack200 jars.
+         */
+        private final Map<PackFile, Integer> pack200Keys = new HashMap<PackFile, Integer>();
+
+        /**
+         * The pack200 jars, in key order.
+         */
+        private final Map<Integer, File> pack200Files = new TreeMap<Integer, File>();
+
+        /**
+         * The files stored in their own entries, in key order.
+         */
+        private final Map<Integer, SourceFile> blockFiles = new TreeMap<Integer, SourceFile>();
+
+        /**
+         * The keys of the files stored in their own entries as is, as they don't compress.
+         */
+        private final Set<Integer> storedBlocks = new HashSet<Integer>();
+
+        /**
+         * The reader of the archives that pack files are read from.
+         */
+        private final ArchiveReader archives = new ArchiveReader();
+
+        /**
+         * The keys of the packs, keyed on pack name. Only populated for incremental builds.
+         */
+        private final Map<String, String> packKeys = new HashMap<String, String>();
+
+        /**
+         * The keys of the files stored in their own entries. Only populated for incremental builds.
+         */
+        private final Map<Integer, String> blockKeys = new HashMap<Integer, String>();
+
+        /**
+         * The index of the previous installer. Only set for incremental builds.
+         */
+        private PackIndex previousIndex;
+
+        /**
+         * The index of the installer being built. Only set for incremental builds.
+         */
+        private PackIndex index;
+
+        /**
+         * The jars that have been checked and aren't signed.
+         */
+        private final Set<File> unsignedJars = new HashSet<File>();
+
+        /**
+         * The jars that have been checked and are signed.
+         */
+        private final Set<File> signedJars = new HashSet<File>();
+
+        /**
+         * Closes the archives opened by the layout.
+         */
+        public void close()
+        {
+            archives.close();
+        }
+    }
+
+    /**
+     * Builds a key by digesting the data written to it, together with the compression settings.
+     */
+    private class KeyBuilder
+    {
+
+        /**
+         * The digest.
+         */
+        private final MessageDigest digest;
+
+        /**
+         * The stream to write the data to digest to.
+         */
+        private final ObjectOutputStream out;
+
+        public KeyBuilder() throws IOException
+        {
+            try
+            {
+                digest = MessageDigest.getInstance("SHA-256");
+            }
+            catch (NoSuchAlgorithmException exception)
+            {
+                throw new IOException("Cannot create SHA-256 digest", exception);
+            }
+            out = new ObjectOutputStream(new DigestOutputStream(new NullOutputStream(), digest));
+            out.writeUTF(getCompressor().getClass().getName());
+            out.writeInt(getCompilerData().getComprLevel());
+        }
+
+        public ObjectOutputStream getOutputStream()
+        {
+            return out;
+        }
+
+        /**
+         * Returns the key.
+         *
+         * @return the hex encoded digest of the data written
+         * @throws IOException for any I/O error
+         */
+        public String getKey() throws IOException
+        {
+            out.close();
+            return new BigInteger(1, digest.digest()).toString(16);
+        }
+    }
+
+    /**
+     * Content written to a pack entry.
+     */
+    private interface PackContent
+    {
+
+        /**
+         * Writes the content.
+         *
+         * @param out the stream to write to
+         * @throws IOException for any I/O error
+         */
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * A pack compressed to a temporary file, or a file that is written as is.
+     */
+    private static class CompressedPack
+    {
+
+        /**
+         * The file holding the pack.
+         */
+        private final SourceFile file;
+
+        /**
+         * The CRC-32 checksum of the file.
+         */
+        private final long crc;
+
+        /**
+         * Determines if the file is temporary, and should be deleted once written.
+         */
+        private final boolean temporary;
+
+        public CompressedPack(SourceFile file, long crc, boolean temporary)
+        {
+            this.file = file;
+            this.crc = crc;
+            this.temporary = temporary;
+        }
+    }
+
+    /**
+     * An <tt>ObjectOutputStream</tt> that can write out buffered block data without flushing the underlying stream.
+     */
+    private static class PackOutputStream extends ObjectOutputStream
+    {
+
+        public PackOutputStream(OutputStream out) throws IOException
+        {
+            super(out);
+        }
+
+        /**
+         * Writes out any buffered block data, so that subsequent data starts a new block.
+         *
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void drain() throws IOException
+        {
+            super.drain();
+        }
+    }
 }
@@ -44,11 +44,16 @@ import com.izforge.izpack.api.data.DynamicInstallerRequirementValidator;
 import com.izforge.izpack.api.data.DynamicVariable;
 import com.izforge.izpack.api.data.GUIPrefs;
 import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.data.CompilerMetrics;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.panel.PanelMerge;
 import com.izforge.izpack.compiler.merge.resolve.CompilerPathResolver;
@@ -56,6 +61,7 @@ import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.util.FileUtil;
@@ -189,6 +195,11 @@ public abstract class PackagerBase implements IPackager
      */
     private Map<FilterOutputStream, Set<String>> alreadyWrittenFiles = new HashMap<FilterOutputStream, Set<String>>();
 
+    /**
+     * The compiler metrics.
+     */
+    private final CompilerMetrics metrics;
+
 
     /**
      * Constructs a <tt>PackagerBase</tt>.
@@ -214,6 +225,7 @@ public abstract class PackagerBase implements IPackager
         this.mergeableResolver = mergeableResolver;
         this.compressor = compressor;
         this.compilerData = compilerData;
+        this.metrics = (compilerData != null) ? compilerData.getMetrics() : new CompilerMetrics();
     }
 
     /* (non-Javadoc)
@@ -433,7 +445,9 @@ public abstract class PackagerBase implements IPackager
     {
         // write the installer jar. MUST be first so manifest is not overwritten by an included jar
         writeManifest();
+        CompilerMetrics.Timer timer = metrics.start("skeleton");
         writeSkeletonInstaller();
+        timer.stop();
 
         writeInstallerObject("info", info);
         writeInstallerObject("vars", properties);
@@ -446,11 +460,24 @@ public abstract class PackagerBase implements IPackager
         writeInstallerObject("dynconditions", dynamicInstallerRequirements);
         writeInstallerObject("installerrequirements", installerRequirements);
 
+        timer = metrics.start("resources");
         writeInstallerResources();
+        timer.stop().addFiles(installerResourceURLMap.size());
+
+        timer = metrics.start("includedJars");
         writeIncludedJars();
+        timer.stop().addFiles(includedJarURLs.size());
+
+        if (info != null && info.isInlineParsing())
+        {
+            markParsables(packsList);
+        }
+        markSharedTargets(packsList);
 
         // Pack File Data may be written to separate jars
+        timer = metrics.start("writePacks");
         writePacks();
+        timer.stop();
     }
 
     /**
@@ -547,7 +574,7 @@ public abstract class PackagerBase implements IPackager
             }
             installerJar.putNextEntry(newEntry);
 
-            IoHelper.copyStream(in, installerJar);
+            metrics.getPhase("resources").addBytesIn(IoHelper.copyStream(in, installerJar));
             installerJar.closeEntry();
             in.close();
         }
@@ -570,6 +597,129 @@ public abstract class PackagerBase implements IPackager
         }
     }
 
+    /**
+     * Marks the files of each pack that have a parsable file, so that they are parsed as they are unpacked.
+     * <p/>
+     * A file is only marked if it is the only file of its pack with its target path, and the pack has exactly one
+     * parsable file with that path, without a condition or OS constraints, as these are evaluated at install time.
+     * The remainder are parsed once all packs have been unpacked.
+     *
+     * @param packs the packs
+     */
+    protected void markParsables(List<PackInfo> packs)
+    {
+        for (PackInfo pack : packs)
+        {
+            // the parsables for each path, or null if there is more than one, or it cannot be parsed inline
+            Map<String, ParsableFile> parsables = new HashMap<String, ParsableFile>();
+            for (ParsableFile parsable : pack.getParsables())
+            {
+                String path = parsable.path.replace(File.separatorChar, '/');
+                boolean inline = !parsable.hasCondition()
+                        && (parsable.osConstraints == null || parsable.osConstraints.isEmpty());
+                parsables.put(path, (inline && !parsables.containsKey(path)) ? parsable : null);
+            }
+            if (!parsables.isEmpty())
+            {
+                Map<String, PackFile> files = new HashMap<String, PackFile>();
+                for (PackFile file : pack.getPackFiles())
+                {
+                    String path = file.getTargetPath();
+                    if (parsables.get(path) != null)
+                    {
+                        files.put(path, (!file.isDirectory() && !files.containsKey(path)) ? file : null);
+                    }
+                }
+                for (Map.Entry<String, PackFile> entry : files.entrySet())
+                {
+                    PackFile file = entry.getValue();
+                    if (file != null)
+                    {
+                        ParsableFile parsable = parsables.get(entry.getKey());
+                        SubstitutionType type = (parsable.type != null) ? parsable.type
+                                : SubstitutionType.getDefault();
+                        file.setParsable(type, parsable.encoding);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the packs that install files to the same target path, where at least one of the files may not be
+     * overwritten unconditionally.
+     * <p/>
+     * The files installed then depend on the order the packs are unpacked in, so the unpacker won't unpack such
+     * packs concurrently. Paths are compared before variables are substituted.
+     *
+     * @param packs the packs
+     */
+    protected void markSharedTargets(List<PackInfo> packs)
+    {
+        Map<String, SharedTarget> targets = new HashMap<String, SharedTarget>();
+        for (PackInfo pack : packs)
+        {
+            for (PackFile file : pack.getPackFiles())
+            {
+                if (!file.isDirectory())
+                {
+                    SharedTarget target = targets.get(file.getTargetPath());
+                    if (target == null)
+                    {
+                        target = new SharedTarget();
+                        targets.put(file.getTargetPath(), target);
+                    }
+                    target.add(pack.getPack(), file);
+                }
+            }
+        }
+        for (SharedTarget target : targets.values())
+        {
+            if (target.packs.size() > 1 && !target.overwrite)
+            {
+                for (Pack pack : target.packs)
+                {
+                    for (Pack other : target.packs)
+                    {
+                        if (pack != other)
+                        {
+                            pack.addSharedTargetPack(other.getName());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The packs that install a target path.
+     */
+    private static class SharedTarget
+    {
+
+        /**
+         * The packs that install the path.
+         */
+        private final Set<Pack> packs = new HashSet<Pack>();
+
+        /**
+         * Determines if every file installed to the path is overwritten unconditionally.
+         */
+        private boolean overwrite = true;
+
+        /**
+         * Adds a pack file installed to the path.
+         *
+         * @param pack the pack that the file belongs to
+         * @param file the pack file
+         */
+        public void add(Pack pack, PackFile file)
+        {
+            packs.add(pack);
+            overwrite &= file.override() == OverrideType.OVERRIDE_TRUE;
+        }
+    }
+
     /**
      * Write packs to the installer jar, or each to a separate jar.
      *
@@ -597,6 +747,36 @@ public abstract class PackagerBase implements IPackager
         return compressor;
     }
 
+    /**
+     * Returns the compiler data.
+     *
+     * @return the compiler data
+     */
+    protected CompilerData getCompilerData()
+    {
+        return compilerData;
+    }
+
+    /**
+     * Returns the size of the buffer used to read the files of packs.
+     *
+     * @return the buffer size, in bytes
+     */
+    protected int getBufferSize()
+    {
+        return (compilerData != null) ? compilerData.getBufferSize() : CompilerData.DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * Returns the compiler metrics.
+     *
+     * @return the compiler metrics
+     */
+    protected CompilerMetrics getMetrics()
+    {
+        return metrics;
+    }
+
     /**
      * Dispatches a message to the listeners.
      *
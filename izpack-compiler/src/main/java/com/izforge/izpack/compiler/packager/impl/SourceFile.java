@@ -0,0 +1,245 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.data.PackInfo;
+
+/**
+ * The source of the data of a pack file. This is either a file, or an entry of an archive.
+ */
+class SourceFile
+{
+
+    /**
+     * The file, or the archive containing the entry.
+     */
+    private final File file;
+
+    /**
+     * The archive entry name, or <tt>null</tt> if the source is a file.
+     */
+    private final String entryName;
+
+    /**
+     * The length of the data.
+     */
+    private final long length;
+
+    /**
+     * The reader used to read archive entries. May be <tt>null</tt> if the source is a file.
+     */
+    private final ArchiveReader archives;
+
+
+    /**
+     * Constructs a <tt>SourceFile</tt> for a file.
+     *
+     * @param file the file
+     */
+    public SourceFile(File file)
+    {
+        this(file, null, file.length(), null);
+    }
+
+    /**
+     * Constructs a <tt>SourceFile</tt>.
+     *
+     * @param file      the file, or the archive containing the entry
+     * @param entryName the archive entry name, or <tt>null</tt> if the source is a file
+     * @param length    the length of the data
+     * @param archives  the reader used to read archive entries. May be <tt>null</tt> if the source is a file
+     */
+    public SourceFile(File file, String entryName, long length, ArchiveReader archives)
+    {
+        this.file = file;
+        this.entryName = entryName;
+        this.length = length;
+        this.archives = archives;
+    }
+
+    /**
+     * Returns the source of a pack file.
+     *
+     * @param packInfo the pack
+     * @param packFile the pack file
+     * @param archives the reader used to read archive entries
+     * @return the source of the pack file
+     */
+    public static SourceFile getSource(PackInfo packInfo, PackFile packFile, ArchiveReader archives)
+    {
+        File file = packInfo.getFile(packFile);
+        String entryName = packInfo.getArchiveEntryName(packFile);
+        if (entryName == null)
+        {
+            return new SourceFile(file);
+        }
+        return new SourceFile(file, entryName, packFile.length(), archives);
+    }
+
+    /**
+     * Returns the file, or the archive containing the entry.
+     *
+     * @return the file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Determines if the source is an archive entry.
+     *
+     * @return <tt>true</tt> if the source is an archive entry, <tt>false</tt> if it is a file
+     */
+    public boolean isArchiveEntry()
+    {
+        return entryName != null;
+    }
+
+    /**
+     * Returns the name of the source, excluding any directory.
+     *
+     * @return the name
+     */
+    public String getName()
+    {
+        if (entryName == null)
+        {
+            return file.getName();
+        }
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns the length of the data.
+     *
+     * @return the length, in bytes
+     */
+    public long length()
+    {
+        return length;
+    }
+
+    /**
+     * Opens the data for reading.
+     *
+     * @return a new stream
+     * @throws IOException if the data cannot be opened
+     */
+    public InputStream openStream() throws IOException
+    {
+        if (entryName == null)
+        {
+            return new FileInputStream(file);
+        }
+        return archives.getInputStream(file, entryName);
+    }
+
+    /**
+     * Copies the data to a stream.
+     * <p/>
+     * Files are read via their channel into a buffer of up to <tt>bufferSize</tt> bytes, so that large files are read
+     * in a few large reads, without the native buffer a <tt>FileInputStream</tt> allocates for each large read.
+     *
+     * @param out        the stream to write to. This is not closed
+     * @param bufferSize the maximum size of the buffer, in bytes
+     * @return the no. of bytes copied
+     * @throws IOException for any I/O error
+     */
+    public long copyTo(OutputStream out, int bufferSize) throws IOException
+    {
+        byte[] buffer = new byte[(int) Math.max(1, Math.min(bufferSize, length))];
+        long copied = 0;
+        int read;
+        if (entryName == null)
+        {
+            FileInputStream in = new FileInputStream(file);
+            try
+            {
+                FileChannel channel = in.getChannel();
+                ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+                while ((read = channel.read(wrapper)) != -1)
+                {
+                    out.write(buffer, 0, read);
+                    copied += read;
+                    wrapper.clear();
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        else
+        {
+            InputStream in = openStream();
+            try
+            {
+                while ((read = in.read(buffer)) != -1)
+                {
+                    out.write(buffer, 0, read);
+                    copied += read;
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return copied;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+        {
+            return true;
+        }
+        if (!(other instanceof SourceFile))
+        {
+            return false;
+        }
+        SourceFile source = (SourceFile) other;
+        return file.equals(source.file)
+                && (entryName == null ? source.entryName == null : entryName.equals(source.entryName));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return file.hashCode() * 31 + (entryName != null ? entryName.hashCode() : 0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return (entryName == null) ? file.toString() : file + "!/" + entryName;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Records where the data of a pack file is written, so that identical files in later packs may be written as back
+ * references to it.
+ * <p/>
+ * The offset is only known once the owning pack has been written. As packs may be written concurrently,
+ * {@link #getOffset()} blocks until it is available.
+ */
+class StoredFile
+{
+
+    /**
+     * The name of the pack the data is written to.
+     */
+    private final String packName;
+
+    /**
+     * The index of the pack file in the pack.
+     */
+    private final int index;
+
+    /**
+     * Determines if the data is referenced by later pack files.
+     */
+    private boolean referenced;
+
+    /**
+     * The offset of the data in the uncompressed pack stream, or <tt>-1</tt> if it hasn't been written yet.
+     */
+    private long offset = -1;
+
+    /**
+     * The name of the installer resource the data is written to, or <tt>null</tt> if it is written to the pack stream.
+     */
+    private String resourceName;
+
+    /**
+     * Determines if the data is stored in the installer resource as is, rather than encoded by the pack compressor.
+     */
+    private boolean resourceStored;
+
+
+    /**
+     * Constructs a <tt>StoredFile</tt>.
+     *
+     * @param packName the name of the pack the data is written to
+     * @param index    the index of the pack file in the pack
+     */
+    public StoredFile(String packName, int index)
+    {
+        this.packName = packName;
+        this.index = index;
+    }
+
+    /**
+     * Returns the name of the pack the data is written to.
+     *
+     * @return the pack name
+     */
+    public String getPackName()
+    {
+        return packName;
+    }
+
+    /**
+     * Returns the index of the pack file in the pack.
+     *
+     * @return the pack file index
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Determines if the data is referenced by later pack files.
+     *
+     * @return <tt>true</tt> if the data is referenced
+     */
+    public boolean isReferenced()
+    {
+        return referenced;
+    }
+
+    /**
+     * Marks the data as being referenced by later pack files.
+     */
+    public void setReferenced()
+    {
+        referenced = true;
+    }
+
+    /**
+     * Returns the name of the installer resource the data is written to.
+     *
+     * @return the resource name, or <tt>null</tt> if the data is written to the pack stream
+     */
+    public String getResourceName()
+    {
+        return resourceName;
+    }
+
+    /**
+     * Sets the name of the installer resource the data is written to.
+     *
+     * @param resourceName the resource name, or <tt>null</tt> if the data is written to the pack stream
+     */
+    public void setResourceName(String resourceName)
+    {
+        this.resourceName = resourceName;
+    }
+
+    /**
+     * Determines if the data is stored in the installer resource as is.
+     *
+     * @return <tt>true</tt> if the data is stored as is, <tt>false</tt> if it is encoded by the pack compressor
+     */
+    public boolean isResourceStored()
+    {
+        return resourceStored;
+    }
+
+    /**
+     * Determines if the data is stored in the installer resource as is.
+     *
+     * @param resourceStored if <tt>true</tt>, the data is stored as is
+     */
+    public void setResourceStored(boolean resourceStored)
+    {
+        this.resourceStored = resourceStored;
+    }
+
+    /**
+     * Sets the offset of the data in the uncompressed pack stream.
+     *
+     * @param offset the offset
+     */
+    public synchronized void setOffset(long offset)
+    {
+        this.offset = offset;
+        notifyAll();
+    }
+
+    /**
+     * Returns the offset of the data in the uncompressed pack stream, waiting for it to be written if required.
+     *
+     * @return the offset
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public synchronized long getOffset() throws InterruptedIOException
+    {
+        while (offset == -1)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException exception)
+            {
+                throw new InterruptedIOException("Interrupted waiting for data of pack " + packName);
+            }
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Content addressed index of the files whose data has been written to packs.
+ * <p/>
+ * Files are matched on their path first, and then on their SHA-256 digest, so that identical content reached via
+ * different paths is only stored once. Digests are only calculated for files that have the same length as a
+ * previously stored file.
+ */
+class StoredFileIndex
+{
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The stored files, keyed on source file.
+     */
+    private final Map<SourceFile, Entry> files = new HashMap<SourceFile, Entry>();
+
+    /**
+     * The stored files, keyed on length.
+     */
+    private final Map<Long, List<Entry>> lengths = new HashMap<Long, List<Entry>>();
+
+    /**
+     * The digests of source files that have been calculated.
+     */
+    private final Map<SourceFile, String> digests = new HashMap<SourceFile, String>();
+
+
+    /**
+     * Returns the stored file with the same content as the specified file.
+     *
+     * @param file    the source file
+     * @param pack200 determines if the file is written as a pack200 jar. Only files written the same way match
+     * @return the stored file, or <tt>null</tt> if no file with the same content has been stored
+     * @throws IOException if the file cannot be read
+     */
+    public StoredFile get(SourceFile file, boolean pack200) throws IOException
+    {
+        Entry entry = files.get(file);
+        if (entry != null)
+        {
+            return (entry.pack200 == pack200) ? entry.stored : null;
+        }
+        List<Entry> candidates = lengths.get(file.length());
+        if (candidates != null)
+        {
+            String digest = getDigest(file);
+            for (Entry candidate : candidates)
+            {
+                if (candidate.pack200 == pack200 && digest.equals(getDigest(candidate.file)))
+                {
+                    return candidate.stored;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a file whose data is written to a pack.
+     *
+     * @param file    the source file
+     * @param pack200 determines if the file is written as a pack200 jar
+     * @param stored  the stored file
+     */
+    public void put(SourceFile file, boolean pack200, StoredFile stored)
+    {
+        Entry entry = new Entry(file, pack200, stored);
+        files.put(file, entry);
+        List<Entry> list = lengths.get(file.length());
+        if (list == null)
+        {
+            list = new ArrayList<Entry>();
+            lengths.put(file.length(), list);
+        }
+        list.add(entry);
+    }
+
+    /**
+     * Returns the digest of a file, calculating it if required.
+     *
+     * @param file the file
+     * @return the hex encoded digest
+     * @throws IOException if the file cannot be read
+     */
+    private String getDigest(SourceFile file) throws IOException
+    {
+        String result = digests.get(file);
+        if (result == null)
+        {
+            MessageDigest digest;
+            try
+            {
+                digest = MessageDigest.getInstance(ALGORITHM);
+            }
+            catch (NoSuchAlgorithmException exception)
+            {
+                throw new IOException("Cannot create " + ALGORITHM + " digest", exception);
+            }
+            InputStream in = file.openStream();
+            try
+            {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            finally
+            {
+                IOUtils.closeQuietly(in);
+            }
+            result = new BigInteger(1, digest.digest()).toString(16);
+            digests.put(file, result);
+        }
+        return result;
+    }
+
+    /**
+     * A stored file entry.
+     */
+    private static class Entry
+    {
+        private final SourceFile file;
+
+        private final boolean pack200;
+
+        private final StoredFile stored;
+
+        public Entry(SourceFile file, boolean pack200, StoredFile stored)
+        {
+            this.file = file;
+            this.pack200 = pack200;
+            this.stored = stored;
+        }
+    }
+}
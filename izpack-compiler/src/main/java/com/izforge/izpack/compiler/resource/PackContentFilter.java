@@ -0,0 +1,229 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.resource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * SAX filter that leaves the contents of packs out of an installation file.
+ * <p/>
+ * The <em>file</em>, <em>singlefile</em> and <em>fileset</em> elements of each
+ * <em>/installation/packs/pack</em> element are the bulk of generated installation files. This filter removes them,
+ * so that their elements don't need to be held in memory while the rest of the installation is compiled. They can
+ * subsequently be streamed using {@link PackContentReader}.
+ * <p/>
+ * As with the parser style sheet, <em>xfragment</em> elements are transparent.
+ */
+public class PackContentFilter extends XMLFilterImpl
+{
+
+    /**
+     * The names of the pack content elements.
+     */
+    private static final List<String> CONTENT = Arrays.asList("file", "singlefile", "fileset");
+
+    /**
+     * The path to packs.
+     */
+    private static final List<String> PACK = Arrays.asList("installation", "packs", "pack");
+
+    /**
+     * The names of the open elements outside of pack content, excluding <em>xfragment</em> elements.
+     */
+    private final List<String> path = new ArrayList<String>();
+
+    /**
+     * The no. of open elements of the current pack content element, or <tt>0</tt> if outside of pack content.
+     */
+    private int depth;
+
+
+    @Override
+    public void startDocument() throws SAXException
+    {
+        path.clear();
+        depth = 0;
+        super.startDocument();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+    {
+        String name = getName(localName, qName);
+        if (depth == 0 && path.equals(PACK) && CONTENT.contains(name))
+        {
+            depth = 1;
+            startContent(uri, localName, qName, atts);
+        }
+        else if (depth != 0)
+        {
+            ++depth;
+            startContent(uri, localName, qName, atts);
+        }
+        else
+        {
+            if (!"xfragment".equals(name))
+            {
+                path.add(name);
+                if (path.equals(PACK))
+                {
+                    startPack();
+                }
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+        if (depth != 0)
+        {
+            --depth;
+            endContent(uri, localName, qName);
+        }
+        else
+        {
+            super.endElement(uri, localName, qName);
+            if (!"xfragment".equals(getName(localName, qName)))
+            {
+                if (path.equals(PACK))
+                {
+                    endPack();
+                }
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException
+    {
+        if (depth != 0)
+        {
+            contentCharacters(ch, start, length);
+        }
+        else
+        {
+            super.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+    {
+        if (depth == 0)
+        {
+            super.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException
+    {
+        if (depth == 0)
+        {
+            super.processingInstruction(target, data);
+        }
+    }
+
+    /**
+     * Invoked when a pack element starts.
+     * <p/>
+     * This implementation does nothing.
+     *
+     * @throws SAXException for any error
+     */
+    protected void startPack() throws SAXException
+    {
+    }
+
+    /**
+     * Invoked when a pack element ends.
+     * <p/>
+     * This implementation does nothing.
+     *
+     * @throws SAXException for any error
+     */
+    protected void endPack() throws SAXException
+    {
+    }
+
+    /**
+     * Invoked when a pack content element, or one of its descendants, starts.
+     * <p/>
+     * This implementation does nothing, leaving the element out of the document.
+     *
+     * @param uri       the namespace URI
+     * @param localName the local name
+     * @param qName     the qualified name
+     * @param atts      the attributes
+     * @throws SAXException for any error
+     */
+    protected void startContent(String uri, String localName, String qName, Attributes atts) throws SAXException
+    {
+    }
+
+    /**
+     * Invoked when a pack content element, or one of its descendants, ends.
+     * <p/>
+     * This implementation does nothing.
+     *
+     * @param uri       the namespace URI
+     * @param localName the local name
+     * @param qName     the qualified name
+     * @throws SAXException for any error
+     */
+    protected void endContent(String uri, String localName, String qName) throws SAXException
+    {
+    }
+
+    /**
+     * Invoked for character data within pack content.
+     * <p/>
+     * This implementation does nothing.
+     *
+     * @param ch     the characters
+     * @param start  the start position in the array
+     * @param length the no. of characters to use
+     * @throws SAXException for any error
+     */
+    protected void contentCharacters(char[] ch, int start, int length) throws SAXException
+    {
+    }
+
+    /**
+     * Returns the name of an element.
+     *
+     * @param localName the local name. May be empty
+     * @param qName     the qualified name
+     * @return the local name, or the qualified name if there is no local name
+     */
+    protected static String getName(String localName, String qName)
+    {
+        return (localName != null && localName.length() != 0) ? localName : qName;
+    }
+}
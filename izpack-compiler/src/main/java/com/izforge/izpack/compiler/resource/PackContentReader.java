@@ -0,0 +1,257 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.exception.CompilerException;
+
+/**
+ * Streams the contents of the packs of an installation file.
+ * <p/>
+ * Each <em>file</em>, <em>singlefile</em> and <em>fileset</em> element of a pack is built as a stand-alone element
+ * and passed to a {@link Handler} as soon as it has been parsed. Nothing refers to the element afterwards, so the
+ * installation tree doesn't grow with the no. of files listed. Note that the pack files created from the elements
+ * are still retained by their packs until the packs are written.
+ */
+public class PackContentReader extends PackContentFilter
+{
+
+    /**
+     * The handler.
+     */
+    private final Handler handler;
+
+    /**
+     * The document builder, used to create the document of each content element.
+     */
+    private final DocumentBuilder builder;
+
+    /**
+     * The open elements of the current content element.
+     */
+    private final LinkedList<Element> elements = new LinkedList<Element>();
+
+    /**
+     * The locator, used to record line numbers. May be <tt>null</tt>.
+     */
+    private Locator locator;
+
+    /**
+     * The index of the current pack.
+     */
+    private int pack = -1;
+
+
+    /**
+     * Constructs a <tt>PackContentReader</tt>.
+     *
+     * @param handler the handler
+     */
+    public PackContentReader(Handler handler)
+    {
+        this.handler = handler;
+        try
+        {
+            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        }
+        catch (ParserConfigurationException exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Reads an installation file.
+     *
+     * @param file the installation file
+     * @return the no. of packs read
+     * @throws CompilerException if the file cannot be parsed, or the handler fails
+     * @throws IOException       for any I/O error
+     */
+    public int read(File file) throws IOException
+    {
+        pack = -1;
+        try
+        {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setXIncludeAware(true);
+            setParent(factory.newSAXParser().getXMLReader());
+            parse(new InputSource(file.toURI().toString()));
+        }
+        catch (ParserConfigurationException exception)
+        {
+            throw new CompilerException(exception.getMessage(), exception);
+        }
+        catch (SAXParseException exception)
+        {
+            throw new CompilerException("Error in " + file + " at line " + exception.getLineNumber() + ", column "
+                                                + exception.getColumnNumber() + " : " + exception.getMessage(),
+                                        exception);
+        }
+        catch (SAXException exception)
+        {
+            if (exception.getException() instanceof CompilerException)
+            {
+                throw (CompilerException) exception.getException();
+            }
+            throw new CompilerException("Error in " + file + " : " + exception.getMessage(), exception);
+        }
+        finally
+        {
+            elements.clear();
+            locator = null;
+        }
+        return pack + 1;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator)
+    {
+        this.locator = locator;
+        super.setDocumentLocator(locator);
+    }
+
+    @Override
+    protected void startPack() throws SAXException
+    {
+        ++pack;
+        try
+        {
+            handler.startPack(pack);
+        }
+        catch (CompilerException exception)
+        {
+            throw new SAXException(exception);
+        }
+    }
+
+    @Override
+    protected void endPack() throws SAXException
+    {
+        try
+        {
+            handler.endPack(pack);
+        }
+        catch (CompilerException exception)
+        {
+            throw new SAXException(exception);
+        }
+    }
+
+    @Override
+    protected void startContent(String uri, String localName, String qName, Attributes atts)
+    {
+        Element element;
+        if (elements.isEmpty())
+        {
+            // each content element gets its own document, so that it can be discarded once handled.
+            // Elements are named by their qualified name, as they are by the parser style sheet
+            element = builder.newDocument().createElement(getName(qName, localName));
+        }
+        else
+        {
+            element = elements.getLast().getOwnerDocument().createElement(getName(qName, localName));
+            elements.getLast().appendChild(element);
+        }
+        for (int i = 0; i < atts.getLength(); ++i)
+        {
+            element.setAttribute(getName(atts.getQName(i), atts.getLocalName(i)), atts.getValue(i));
+        }
+        if (locator != null)
+        {
+            element.setUserData("ln", locator.getLineNumber(), null);
+        }
+        elements.add(element);
+    }
+
+    @Override
+    protected void endContent(String uri, String localName, String qName) throws SAXException
+    {
+        Element element = elements.removeLast();
+        if (elements.isEmpty())
+        {
+            try
+            {
+                handler.content(pack, new XMLElementImpl(element));
+            }
+            catch (CompilerException exception)
+            {
+                throw new SAXException(exception);
+            }
+        }
+    }
+
+    @Override
+    protected void contentCharacters(char[] ch, int start, int length)
+    {
+        Element element = elements.getLast();
+        element.appendChild(element.getOwnerDocument().createTextNode(new String(ch, start, length)));
+    }
+
+    /**
+     * Handles the contents of packs.
+     */
+    public interface Handler
+    {
+
+        /**
+         * Invoked when a pack starts.
+         *
+         * @param index the index of the pack, in document order
+         * @throws CompilerException for any error
+         */
+        void startPack(int index) throws CompilerException;
+
+        /**
+         * Invoked for each <em>file</em>, <em>singlefile</em> and <em>fileset</em> element of a pack.
+         *
+         * @param index   the index of the pack
+         * @param element the element
+         * @throws CompilerException for any error
+         */
+        void content(int index, IXMLElement element) throws CompilerException;
+
+        /**
+         * Invoked when a pack ends.
+         *
+         * @param index the index of the pack
+         * @throws CompilerException for any error
+         */
+        void endPack(int index) throws CompilerException;
+    }
+}
@@ -138,10 +138,11 @@ public class ResourceFinder
      */
     public IXMLElement getXMLTree() throws IOException
     {
-        IXMLParser parser = new XMLParser();
         IXMLElement data;
         if (compilerData.getInstallFile() != null)
         {
+            // when streaming, the contents of packs are read separately, when the packs are compiled
+            IXMLParser parser = new XMLParser(compilerData.isStreaming() ? new PackContentFilter() : null);
             File file = new File(compilerData.getInstallFile()).getAbsoluteFile();
             assertionHelper.assertIsNormalReadableFile(file, "Configuration file");
             FileInputStream inputStream = new FileInputStream(compilerData.getInstallFile());
@@ -152,6 +153,7 @@ public class ResourceFinder
         }
         else if (compilerData.getInstallText() != null)
         {
+            IXMLParser parser = new XMLParser();
             data = parser.parse(compilerData.getInstallText());
         }
         else
@@ -1,7 +1,9 @@
 package com.izforge.izpack.compiler;
 
+import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.merge.Mergeable;
 import com.izforge.izpack.compiler.container.TestCompilerContainer;
+import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.merge.resolve.CompilerPathResolver;
 import com.izforge.izpack.core.container.AbstractContainer;
 import com.izforge.izpack.matcher.MergeMatcher;
@@ -19,6 +21,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -26,6 +29,7 @@ import java.util.jar.JarFile;
 import java.util.zip.ZipFile;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
 
 /**
  * Test for an Izpack compilation
@@ -62,6 +66,26 @@ public class CompilerConfigTest
                 "com/izforge/izpack/img/JFrameIcon.png"));
     }
 
+    @Test
+    @InstallFile("samples/streaming/install.xml")
+    public void packContentsShouldBeStreamedFromInstallFile() throws Exception
+    {
+        testContainer.getComponent(CompilerData.class).setStreaming(true);
+        compilerConfig.executeCompiler();
+        jar = testContainer.getComponent(JarFile.class);
+
+        ObjectInputStream in = new ObjectInputStream(jar.getInputStream(jar.getEntry("resources/packs.info")));
+        assertThat(in.readInt(), is(2));
+        Pack base = (Pack) in.readObject();
+        Pack docs = (Pack) in.readObject();
+        in.close();
+        assertThat(base.getName(), is("Base"));
+        assertThat(base.getSize(), is(20L)); // readme.txt and license.txt
+        assertThat(docs.getName(), is("Docs"));
+        assertThat(docs.getSize(), is(32L)); // docs/index.html
+        assertThat(docs.getDependencies(), is(Arrays.asList("Base")));
+    }
+
     @Test
     public void mergeManagerShouldGetTheMergeableFromPanel() throws Exception
     {
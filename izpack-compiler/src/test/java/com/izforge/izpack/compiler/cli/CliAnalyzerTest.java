@@ -61,4 +61,20 @@ public class CliAnalyzerTest
         assertThat(data.getOutput(), Is.is("graou.jar"));
     }
 
+    @Test
+    public void packThreadsShouldBeParsed() throws Exception
+    {
+        CompilerData data = analyzer.parseArgs(new String[]{"myInstall.xml", "-t 4"});
+        assertThat(data.getPackThreads(), Is.is(4));
+    }
+
+    @Test
+    public void bufferSizeShouldBeParsed() throws Exception
+    {
+        assertThat(analyzer.parseArgs(new String[]{"myInstall.xml"}).getBufferSize(),
+                   Is.is(CompilerData.DEFAULT_BUFFER_SIZE));
+        CompilerData data = analyzer.parseArgs(new String[]{"myInstall.xml", "-r 65536"});
+        assertThat(data.getBufferSize(), Is.is(65536));
+    }
+
 }
@@ -0,0 +1,72 @@
+package com.izforge.izpack.compiler.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompilerMetrics}.
+ */
+public class CompilerMetricsTest
+{
+
+    /**
+     * Verifies that phases accumulate their metrics, and are returned in the order they were first used.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void phasesAccumulateMetrics() throws Exception
+    {
+        CompilerMetrics metrics = new CompilerMetrics();
+        CompilerMetrics.Phase parse = metrics.start("parse").stop();
+        CompilerMetrics.Phase pack = metrics.start(CompilerMetrics.PACK_PREFIX + "core").stop();
+        pack.addBytesIn(1000);
+        pack.addBytesOut(250);
+        pack.addFiles(3);
+        CompilerMetrics.Phase again = metrics.start(CompilerMetrics.PACK_PREFIX + "core").stop();
+        again.addBytesIn(1000);
+        again.addFiles(1);
+
+        assertSame(pack, again);
+        List<CompilerMetrics.Phase> phases = metrics.getPhases();
+        assertEquals(2, phases.size());
+        assertSame(parse, phases.get(0));
+        assertSame(pack, phases.get(1));
+        assertEquals(2000, pack.getBytesIn());
+        assertEquals(250, pack.getBytesOut());
+        assertEquals(4, pack.getFiles());
+        assertEquals(0.125, pack.getCompressionRatio(), 0.0);
+        assertTrue(Double.isNaN(parse.getCompressionRatio()));
+    }
+
+    /**
+     * Verifies that the JSON report contains each phase, and writes undefined values as <tt>null</tt>.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void writesJsonReport() throws Exception
+    {
+        CompilerMetrics metrics = new CompilerMetrics();
+        metrics.getPhase("parse");
+        CompilerMetrics.Phase pack = metrics.getPhase(CompilerMetrics.PACK_PREFIX + "\"core\"");
+        pack.addBytesIn(400);
+        pack.addBytesOut(100);
+
+        StringWriter writer = new StringWriter();
+        metrics.write(writer);
+        String expected = "{\n  \"phases\": [\n"
+                + "    {\"name\": \"parse\", \"timeMillis\": 0, \"bytesIn\": 0, \"bytesOut\": 0, "
+                + "\"compressionRatio\": null, \"files\": 0, \"filesPerSecond\": null},\n"
+                + "    {\"name\": \"pack:\\\"core\\\"\", \"timeMillis\": 0, \"bytesIn\": 400, \"bytesOut\": 100, "
+                + "\"compressionRatio\": 0.250, \"files\": 0, \"filesPerSecond\": null}\n"
+                + "  ]\n}\n";
+        assertEquals(expected, writer.toString());
+    }
+}
@@ -0,0 +1,146 @@
+package com.izforge.izpack.compiler.merge.resolve;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ClassPathIndex}.
+ */
+public class ClassPathIndexTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void listsEntriesOfJar() throws Exception
+    {
+        File jar = createJar("a.jar", "com/", "com/A.class", "com/B.class");
+        ClassPathIndex index = new ClassPathIndex(null);
+        assertEquals(Arrays.asList("com/", "com/A.class", "com/B.class"), index.getEntries(jar));
+    }
+
+    @Test
+    public void reusesSavedIndexWhileJarIsUnchanged() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), "classpath.index");
+        File jar = createJar("a.jar", "com/A.class");
+        long lastModified = jar.lastModified();
+
+        ClassPathIndex index = new ClassPathIndex(file);
+        index.load();
+        assertEquals(Arrays.asList("com/A.class"), index.getEntries(jar));
+        index.save();
+
+        // replace the jar with one of the same size and modification time. The index can't tell them apart
+        createJar("a.jar", "com/B.class");
+        assertTrue(jar.setLastModified(lastModified));
+        index = new ClassPathIndex(file);
+        index.load();
+        assertEquals(Arrays.asList("com/A.class"), index.getEntries(jar));
+
+        // now change the modification time, forcing the jar to be read again
+        assertTrue(jar.setLastModified(lastModified + 10000));
+        assertEquals(Arrays.asList("com/B.class"), index.getEntries(jar));
+    }
+
+    @Test
+    public void ignoresCorruptIndex() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), "classpath.index");
+        FileUtils.writeStringToFile(file, "corrupt");
+        File jar = createJar("a.jar", "com/A.class");
+
+        ClassPathIndex index = new ClassPathIndex(file);
+        index.load();
+        assertEquals(Arrays.asList("com/A.class"), index.getEntries(jar));
+        index.save();
+
+        index = new ClassPathIndex(file);
+        index.load();
+        assertEquals(Arrays.asList("com/A.class"), index.getEntries(jar));
+        // no temporary files are left behind
+        assertEquals(2, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void prunesJarsNotUsedByLastRun() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), "classpath.index");
+        File a = createJar("a.jar", "com/A.class");
+        File b = createJar("b.jar", "com/B.class");
+        long lastModified = b.lastModified();
+
+        ClassPathIndex index = new ClassPathIndex(file);
+        index.load();
+        index.getEntries(a);
+        index.getEntries(b);
+        index.save();
+
+        // a run that only uses a.jar drops b.jar from the index
+        index = new ClassPathIndex(file);
+        index.load();
+        index.getEntries(a);
+        index.save();
+
+        // replace b.jar with one of the same size and modification time. As it was pruned, it is read again
+        createJar("b.jar", "com/C.class");
+        assertTrue(b.setLastModified(lastModified));
+        index = new ClassPathIndex(file);
+        index.load();
+        assertEquals(Arrays.asList("com/C.class"), index.getEntries(b));
+    }
+
+    @Test
+    public void defaultsToFileInUserHome() throws Exception
+    {
+        String previous = System.getProperty(ClassPathIndex.INDEX_PROPERTY);
+        System.clearProperty(ClassPathIndex.INDEX_PROPERTY);
+        try
+        {
+            File expected = new File(new File(System.getProperty("user.home"), ".izpack"), "classpath.index");
+            assertEquals(expected, ClassPathIndex.getDefaultFile());
+        }
+        finally
+        {
+            if (previous != null)
+            {
+                System.setProperty(ClassPathIndex.INDEX_PROPERTY, previous);
+            }
+        }
+    }
+
+    /**
+     * Creates a jar with empty entries.
+     *
+     * @param name    the jar name
+     * @param entries the entry names
+     * @return the jar
+     * @throws IOException for any I/O error
+     */
+    private File createJar(String name, String... entries) throws IOException
+    {
+        File jar = new File(temporaryFolder.getRoot(), name);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        for (String entry : entries)
+        {
+            ZipEntry zipEntry = new ZipEntry(entry);
+            zipEntry.setTime(0);
+            out.putNextEntry(zipEntry);
+            out.closeEntry();
+        }
+        out.close();
+        return jar;
+    }
+}
@@ -0,0 +1,89 @@
+package com.izforge.izpack.compiler.packager.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link IncompressibleFileDetector}.
+ */
+public class IncompressibleFileDetectorTest
+{
+
+    /**
+     * Temporary folder to create files in.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The detector under test.
+     */
+    private final IncompressibleFileDetector detector = new IncompressibleFileDetector();
+
+    /**
+     * Verifies that files are recognised as compressed by extension, regardless of content.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testExtension() throws IOException
+    {
+        assertTrue(detector.isIncompressible(createFile("lib.jar", getText())));
+        assertTrue(detector.isIncompressible(createFile("IMAGE.PNG", getText())));
+        assertFalse(detector.isIncompressible(createFile("readme.txt", getText())));
+    }
+
+    /**
+     * Verifies that files without a known extension are sampled.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSample() throws IOException
+    {
+        byte[] random = new byte[100000];
+        new Random(42).nextBytes(random);
+        assertTrue(detector.isIncompressible(createFile("data.bin", random)));
+        assertFalse(detector.isIncompressible(createFile("text.bin", getText())));
+        assertFalse(detector.isIncompressible(createFile("empty.bin", new byte[0])));
+    }
+
+    /**
+     * Returns compressible text.
+     *
+     * @return the text
+     */
+    private byte[] getText()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; ++i)
+        {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString().getBytes();
+    }
+
+    /**
+     * Creates a file.
+     *
+     * @param name    the file name
+     * @param content the file content
+     * @return the source of a new file
+     * @throws IOException for any I/O error
+     */
+    private SourceFile createFile(String name, byte[] content) throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), name);
+        FileUtils.writeByteArrayToFile(file, content);
+        return new SourceFile(file);
+    }
+}
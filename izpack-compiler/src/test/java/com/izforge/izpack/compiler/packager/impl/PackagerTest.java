@@ -1,19 +1,65 @@
 package com.izforge.izpack.compiler.packager.impl;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.Pack200;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tukaani.xz.XZInputStream;
 
+import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.GUIPrefs;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackFileReader;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
+import com.izforge.izpack.compiler.compressor.LZ4PackCompressor;
+import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.compressor.XZPackCompressor;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.listener.PackagerListener;
+import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.merge.MergeManager;
+import com.izforge.izpack.util.compress.LZ4FrameInputStream;
 
 public class PackagerTest
 {
@@ -22,6 +68,12 @@ public class PackagerTest
      */
     private MergeManager mergeManager;
 
+    /**
+     * Temporary folder to create the packs in.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
     public void setUp()
     {
@@ -61,4 +113,782 @@ public class PackagerTest
         verify(mergeManager).addResourceToMerge(anyString(), anyString());
 
     }
+
+    @Test
+    public void sharedTargetsMarked() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File shared = createFile(baseDir, "shared.txt", 100);
+        File overwritten = createFile(baseDir, "overwritten.txt", 100);
+        PackInfo pack1 = createPack("pack1", baseDir, shared, overwritten);
+        PackInfo pack2 = createPack("pack2", baseDir, overwritten);
+        PackInfo pack3 = createPack("pack3", baseDir, overwritten);
+        pack3.addFile(baseDir, shared, "$INSTALL_PATH/shared.txt", null, OverrideType.OVERRIDE_UPDATE, null,
+                      Blockable.BLOCKABLE_NONE, null, null);
+
+        Packager packager = new Packager(null, null, null, null, null, mergeManager, null, null, null);
+        packager.markSharedTargets(Arrays.asList(pack1, pack2, pack3));
+
+        // files overwritten unconditionally don't depend on the order packs are unpacked in
+        assertEquals(Collections.singleton("pack3"), pack1.getPack().getSharedTargetPacks());
+        assertTrue(pack2.getPack().getSharedTargetPacks().isEmpty());
+        assertEquals(Collections.singleton("pack1"), pack3.getPack().getSharedTargetPacks());
+    }
+
+    @Test
+    public void onlySingleUnconditionalParsablesMarked() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File single = createFile(baseDir, "single.txt", 100);
+        File twice = createFile(baseDir, "twice.txt", 100);
+        File conditional = createFile(baseDir, "conditional.txt", 100);
+        File duplicated = createFile(baseDir, "duplicated.txt", 100);
+        PackInfo pack = createPack("pack", baseDir, single, twice, conditional, duplicated);
+        pack.addFile(baseDir, duplicated, "$INSTALL_PATH/duplicated.txt", null, OverrideType.OVERRIDE_TRUE, null,
+                     Blockable.BLOCKABLE_NONE, null, null);
+        pack.addParsable(new ParsableFile("$INSTALL_PATH/single.txt", SubstitutionType.TYPE_PLAIN, null, null));
+        pack.addParsable(new ParsableFile("$INSTALL_PATH/twice.txt", SubstitutionType.TYPE_PLAIN, null, null));
+        pack.addParsable(new ParsableFile("$INSTALL_PATH/twice.txt", SubstitutionType.TYPE_SHELL, null, null));
+        ParsableFile parsable = new ParsableFile("$INSTALL_PATH/conditional.txt", null, null, null);
+        parsable.setCondition("izpack.windowsinstall");
+        pack.addParsable(parsable);
+        pack.addParsable(new ParsableFile("$INSTALL_PATH/conditional.txt", null, null, null));
+        pack.addParsable(new ParsableFile("$INSTALL_PATH/duplicated.txt", null, null, null));
+
+        Packager packager = new Packager(null, null, null, null, null, mergeManager, null, null, null);
+        packager.markParsables(Arrays.asList(pack));
+
+        Map<String, Integer> parsed = new HashMap<String, Integer>();
+        for (PackFile file : pack.getPackFiles())
+        {
+            if (file.isParsable())
+            {
+                Integer count = parsed.get(file.getTargetPath());
+                parsed.put(file.getTargetPath(), (count == null) ? 1 : count + 1);
+            }
+        }
+        assertEquals(Collections.singletonMap("$INSTALL_PATH/single.txt", 1), parsed);
+    }
+
+    @Test
+    public void packsCompressedConcurrently() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File shared = createFile(baseDir, "shared.txt", 10000);
+        PackInfo pack1 = createPack("pack1", baseDir, shared, createFile(baseDir, "a.txt", 5000));
+        PackInfo pack2 = createPack("pack2", baseDir, createFile(baseDir, "b.txt", 20000), shared);
+
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        compilerData.setPackThreads(2);
+        JarOutputStream jar = new JarOutputStream(installer);
+        Packager packager = new Packager(null, null, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        Info info = new Info();
+        packager.setInfo(info);
+        packager.addPack(pack1);
+        packager.addPack(pack2);
+        packager.writePacks();
+        jar.closeAlways();
+
+        assertEquals(InflaterInputStream.class.getName(), info.getPackDecoderClassName());
+        assertEquals(15000, pack1.getPack().getSize());
+        assertEquals(30000, pack2.getPack().getSize());
+
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            Map<String, byte[]> pack1Data = readPack(zip, baseDir, "pack1", 0);
+            assertThat(pack1Data.size(), is(2));
+            assertTrue(pack1Data.containsKey("shared.txt"));
+            Map<String, byte[]> pack2Data = readPack(zip, baseDir, "pack2", 1);
+            assertThat(pack2Data.size(), is(1));
+            assertFalse(pack2Data.containsKey("shared.txt"));
+            assertTrue(pack2Data.containsKey("b.txt"));
+            assertTrue(Arrays.equals(FileUtils.readFileToByteArray(shared), readReference(zip, "pack2")));
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void unchangedPacksReusedByIncrementalBuild() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File shared = createFile(baseDir, "shared.txt", 10000);
+        File a = createFile(baseDir, "a.txt", 5000);
+        File b = createFile(baseDir, "b.txt", 20000);
+        File large = createFile(baseDir, "large.txt", 200000);
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        compilerData.setIncremental(true);
+
+        writeIncrementalInstaller(compilerData, mock(PackagerListener.class), baseDir, shared, a, b, large);
+        assertTrue(compilerData.getPackIndex().isFile());
+        long pack2Crc = getCrc(installer, "resources/packs/pack-pack2");
+
+        // change b.txt, and build again from the previous installer
+        FileUtils.writeStringToFile(b, "changed");
+        assertTrue(b.setLastModified(b.lastModified() + 10000));
+        assertTrue(installer.renameTo(compilerData.getPreviousOutput()));
+        PackagerListener listener = mock(PackagerListener.class);
+        Info info = writeIncrementalInstaller(compilerData, listener, baseDir, shared, a, b, large);
+
+        assertEquals(InflaterInputStream.class.getName(), info.getPackDecoderClassName());
+        verify(listener).packagerMsg("Reusing pack pack1 from the previous installer", PackagerListener.MSG_VERBOSE);
+        verify(listener).packagerMsg("Reusing pack pack3 from the previous installer", PackagerListener.MSG_VERBOSE);
+        verify(listener).packagerMsg("Reusing packs/block-0 from the previous installer",
+                                     PackagerListener.MSG_VERBOSE);
+        verify(listener, never()).packagerMsg("Reusing pack pack2 from the previous installer",
+                                              PackagerListener.MSG_VERBOSE);
+        assertFalse(compilerData.getPreviousOutput().exists());
+        assertThat(getCrc(installer, "resources/packs/pack-pack2") == pack2Crc, is(false));
+
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            Map<String, byte[]> pack1Data = readPack(zip, baseDir, "pack1", 0);
+            assertThat(pack1Data.size(), is(2));
+            Map<String, byte[]> pack2Data = readPack(zip, baseDir, "pack2", 1);
+            assertEquals("changed", new String(pack2Data.get("b.txt")));
+            InputStream in = zip.getInputStream(zip.getEntry("resources/packs/block-0"));
+            assertTrue(Arrays.equals(FileUtils.readFileToByteArray(large),
+                                     IOUtils.toByteArray(new InflaterInputStream(in))));
+            in.close();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void previousInstallerKeptWhenIncrementalBuildFails() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File shared = createFile(baseDir, "shared.txt", 10000);
+        File a = createFile(baseDir, "a.txt", 5000);
+        File b = createFile(baseDir, "b.txt", 20000);
+        File large = createFile(baseDir, "large.txt", 200000);
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        compilerData.setIncremental(true);
+
+        writeIncrementalInstaller(compilerData, mock(PackagerListener.class), baseDir, shared, a, b, large);
+        long length = installer.length();
+        assertTrue(installer.renameTo(compilerData.getPreviousOutput()));
+
+        // remove a source file once it has been added, so that packaging fails
+        JarOutputStream jar = new JarOutputStream(installer);
+        Packager packager = new Packager(null, null, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        packager.setInfo(createBlockInfo());
+        packager.addPack(createPack("pack1", baseDir, shared, a));
+        packager.addPack(createPack("pack2", baseDir, b, shared));
+        assertTrue(b.delete());
+        try
+        {
+            packager.writePacks();
+            fail("Expected packaging to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        finally
+        {
+            jar.closeAlways();
+        }
+        assertTrue(compilerData.getPreviousOutput().isFile());
+        assertEquals(length, compilerData.getPreviousOutput().length());
+    }
+
+    @Test
+    public void jarsPackedWithPack200Concurrently() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File jar1 = createJar(baseDir, "a.jar", "a.txt");
+        File jar2 = createJar(baseDir, "b.jar", "b.txt");
+        File signed = createJar(baseDir, "signed.jar", "c.txt", "META-INF/SIGNER.SF");
+        PackInfo pack1 = createPack("pack1", baseDir, jar1, signed);
+        PackInfo pack2 = createPack("pack2", baseDir, jar2, jar1);
+
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        compilerData.setPackThreads(2);
+        JarOutputStream jar = new JarOutputStream(installer);
+        Packager packager = new Packager(null, null, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        Info info = new Info();
+        info.setPack200Compression(true);
+        packager.setInfo(info);
+        packager.addPack(pack1);
+        packager.addPack(pack2);
+        packager.writePacks();
+        jar.closeAlways();
+
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            // the signed jar isn't packed, and the jar in both packs is only packed once
+            assertEquals(Arrays.asList("a.txt"), unpack200(zip, "resources/packs/pack200-0"));
+            assertEquals(Arrays.asList("b.txt"), unpack200(zip, "resources/packs/pack200-1"));
+            assertNull(zip.getEntry("resources/packs/pack200-2"));
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void largeFilesStoredInOwnEntry() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File large = createFile(baseDir, "large.txt", 200000);
+        File copy = createFile(temporaryFolder.newFolder("copy"), "large.txt", 200000);
+        PackInfo pack1 = createPack("pack1", baseDir, large, createFile(baseDir, "small.txt", 100));
+        PackInfo pack2 = createPack("pack2", baseDir, copy);
+
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        JarOutputStream jar = new JarOutputStream(installer);
+        Packager packager = new Packager(null, null, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        packager.setInfo(createBlockInfo());
+        packager.addPack(pack1);
+        packager.addPack(pack2);
+        packager.writePacks();
+        jar.closeAlways();
+
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            ZipEntry block = zip.getEntry("resources/packs/block-0");
+            InputStream in = zip.getInputStream(block);
+            assertTrue(Arrays.equals(FileUtils.readFileToByteArray(large), IOUtils.toByteArray(in)));
+            in.close();
+            assertNull(zip.getEntry("resources/packs/block-1"));
+
+            // the pack stream holds no data for the large file, and the copy refers to the same entry
+            ObjectInputStream objIn = new ObjectInputStream(zip.getInputStream(
+                    zip.getEntry("resources/packs/pack-pack2")));
+            PackFileReader reader = new PackFileReader(objIn);
+            assertEquals(1, reader.readHeader());
+            PackFile packFile = reader.read();
+            assertEquals("packs/block-0", packFile.getStreamResourceName());
+            assertFalse(packFile.isBackReference());
+            assertEquals(0, objIn.readInt()); // no parsables
+            objIn.close();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void largeFilesInlineByDefault() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        File large = createFile(baseDir, "large.txt", 200000);
+        PackInfo pack1 = createPack("pack1", baseDir, large);
+
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        JarOutputStream jar = new JarOutputStream(installer);
+        Packager packager = new Packager(null, null, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        packager.setInfo(new Info());
+        packager.addPack(pack1);
+        packager.writePacks();
+        jar.closeAlways();
+
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            assertNull(zip.getEntry("resources/packs/block-0"));
+            ObjectInputStream objIn = new ObjectInputStream(getPackStream(zip, "pack1"));
+            PackFileReader reader = new PackFileReader(objIn);
+            assertEquals(1, reader.readHeader());
+            PackFile packFile = reader.read();
+            assertNull(packFile.getStreamResourceName());
+            byte[] data = new byte[(int) packFile.length()];
+            objIn.readFully(data);
+            assertTrue(Arrays.equals(FileUtils.readFileToByteArray(large), data));
+            objIn.close();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void incompressibleFilesStoredAsIs() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        byte[] random = new byte[20000];
+        new Random(42).nextBytes(random);
+        File data = new File(baseDir, "data.bin");
+        FileUtils.writeByteArrayToFile(data, random);
+        File archive = createFile(baseDir, "lib.zip", 20000);
+        File text = createFile(baseDir, "text.txt", 30000);
+        PackInfo pack1 = createPack("pack1", baseDir, data, archive, text);
+
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        JarOutputStream jar = new JarOutputStream(installer);
+        Packager packager = new Packager(null, null, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        packager.setInfo(createBlockInfo());
+        packager.addPack(pack1);
+        packager.writePacks();
+        jar.closeAlways();
+
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            for (int i = 0; i < 2; ++i)
+            {
+                ZipEntry block = zip.getEntry("resources/packs/block-" + i);
+                assertEquals(ZipEntry.STORED, block.getMethod());
+                assertEquals(20000, block.getCompressedSize());
+            }
+            assertNull(zip.getEntry("resources/packs/block-2"));
+
+            // the compressible file remains in the pack stream
+            ObjectInputStream objIn = new ObjectInputStream(zip.getInputStream(
+                    zip.getEntry("resources/packs/pack-pack1")));
+            PackFileReader reader = new PackFileReader(objIn);
+            assertEquals(3, reader.readHeader());
+            for (int i = 0; i < 2; ++i)
+            {
+                PackFile packFile = reader.read();
+                assertEquals("packs/block-" + i, packFile.getStreamResourceName());
+                assertTrue(packFile.isStreamStored());
+            }
+            PackFile packFile = reader.read();
+            assertNull(packFile.getStreamResourceName());
+            assertFalse(packFile.isStreamStored());
+            objIn.close();
+
+            InputStream in = zip.getInputStream(zip.getEntry("resources/packs/block-0"));
+            assertTrue(Arrays.equals(random, IOUtils.toByteArray(in)));
+            in.close();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void archiveEntriesReadFromArchive() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        byte[] small = FileUtils.readFileToByteArray(createFile(baseDir, "small.txt", 5000));
+        byte[] large = FileUtils.readFileToByteArray(createFile(baseDir, "large.txt", 200000));
+        File archive = new File(baseDir, "content.zip");
+        ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(archive));
+        zipOut.putNextEntry(new ZipEntry("lib/"));
+        zipOut.closeEntry();
+        zipOut.putNextEntry(new ZipEntry("lib/small.txt"));
+        zipOut.write(small);
+        zipOut.closeEntry();
+        zipOut.putNextEntry(new ZipEntry("lib/large.txt"));
+        zipOut.write(large);
+        zipOut.closeEntry();
+        zipOut.close();
+
+        PackInfo pack1 = new PackInfo("pack1", "pack1", "", true, false, null, true);
+        ZipFile source = new ZipFile(archive);
+        for (String name : Arrays.asList("lib/", "lib/small.txt", "lib/large.txt"))
+        {
+            pack1.addArchiveEntry(baseDir, archive, source.getEntry(name), "$INSTALL_PATH/" + name, null,
+                                  OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+        }
+        source.close();
+
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        JarOutputStream jar = new JarOutputStream(installer);
+        Packager packager = new Packager(null, null, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        packager.setInfo(createBlockInfo());
+        packager.addPack(pack1);
+        packager.writePacks();
+        jar.closeAlways();
+
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            ObjectInputStream objIn = new ObjectInputStream(getPackStream(zip, "pack1"));
+            PackFileReader reader = new PackFileReader(objIn);
+            assertEquals(3, reader.readHeader());
+            PackFile dir = reader.read();
+            assertTrue(dir.isDirectory());
+
+            PackFile packFile = reader.read();
+            assertEquals(small.length, packFile.length());
+            byte[] data = new byte[small.length];
+            objIn.readFully(data);
+            assertTrue(Arrays.equals(small, data));
+
+            packFile = reader.read();
+            assertEquals(large.length, packFile.length());
+            assertEquals("packs/block-0", packFile.getStreamResourceName());
+            objIn.close();
+
+            InputStream in = zip.getInputStream(zip.getEntry("resources/packs/block-0"));
+            assertTrue(Arrays.equals(large, IOUtils.toByteArray(in)));
+            in.close();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void packsCompressedWithLZ4() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        ZipFile zip = writeInstaller(baseDir, new LZ4PackCompressor(), 1);
+        try
+        {
+            assertEquals(2, readPack(new LZ4FrameInputStream(getPackStream(zip, "pack1")), baseDir, 0).size());
+            assertEquals(1, readPack(new LZ4FrameInputStream(getPackStream(zip, "pack2")), baseDir, 1).size());
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void packsCompressedConcurrentlyWithXZ() throws Exception
+    {
+        File baseDir = temporaryFolder.newFolder("base");
+        ZipFile zip = writeInstaller(baseDir, new XZPackCompressor(mergeManager), 2);
+        try
+        {
+            assertEquals(ZipEntry.STORED, zip.getEntry("resources/packs/pack-pack1").getMethod());
+            assertEquals(2, readPack(new XZInputStream(getPackStream(zip, "pack1")), baseDir, 0).size());
+            assertEquals(1, readPack(new XZInputStream(getPackStream(zip, "pack2")), baseDir, 1).size());
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    /**
+     * Writes an installer containing two packs that share a file, using the specified compressor.
+     *
+     * @param baseDir    the directory to create the source files in
+     * @param compressor the pack compressor
+     * @param threads    the no. of compression threads
+     * @return the installer
+     * @throws Exception for any error
+     */
+    private ZipFile writeInstaller(File baseDir, PackCompressor compressor, int threads) throws Exception
+    {
+        File shared = createFile(baseDir, "shared.txt", 10000);
+        PackInfo pack1 = createPack("pack1", baseDir, shared, createFile(baseDir, "a.txt", 5000));
+        PackInfo pack2 = createPack("pack2", baseDir, createFile(baseDir, "b.txt", 20000), shared);
+
+        File installer = new File(temporaryFolder.getRoot(), "installer.jar");
+        CompilerData compilerData = new CompilerData("default", "standard", null, null, baseDir.getPath(),
+                                                     installer.getPath(), false, -1);
+        compilerData.setPackThreads(threads);
+        JarOutputStream jar = new JarOutputStream(installer);
+        jar.setPreventClose(true);
+        Packager packager = new Packager(null, null, jar, compressor, jar, mergeManager, null, null, compilerData);
+        Info info = new Info();
+        packager.setInfo(info);
+        packager.addPack(pack1);
+        packager.addPack(pack2);
+        packager.writePacks();
+        jar.closeAlways();
+
+        assertEquals(compressor.getDecoderMapperName(), info.getPackDecoderClassName());
+        return new ZipFile(installer);
+    }
+
+    /**
+     * Creates installer info that stores large and incompressible files in their own entries.
+     *
+     * @return the installer info
+     */
+    private Info createBlockInfo()
+    {
+        Info info = new Info();
+        info.setPackBlocks(true);
+        return info;
+    }
+
+    /**
+     * Writes an installer incrementally, with two packs that share a file, and a pack with a large file.
+     *
+     * @param compilerData the compiler data
+     * @param listener     the packager listener
+     * @param baseDir      the base directory
+     * @param shared       the file in both packs
+     * @param a            the other file of the first pack
+     * @param b            the other file of the second pack
+     * @param large        a file large enough to be stored in its own entry
+     * @return the installer info
+     * @throws Exception for any error
+     */
+    private Info writeIncrementalInstaller(CompilerData compilerData, PackagerListener listener, File baseDir,
+                                           File shared, File a, File b, File large) throws Exception
+    {
+        JarOutputStream jar = new JarOutputStream(new File(compilerData.getOutput()));
+        Packager packager = new Packager(null, listener, jar, new DefaultPackCompressor(), jar, mergeManager, null,
+                                         null, compilerData);
+        Info info = createBlockInfo();
+        packager.setInfo(info);
+        packager.addPack(createPack("pack1", baseDir, shared, a));
+        packager.addPack(createPack("pack2", baseDir, b, shared));
+        packager.addPack(createPack("pack3", baseDir, large));
+        packager.writePacks();
+        jar.closeAlways();
+        return info;
+    }
+
+    /**
+     * Returns the CRC-32 checksum of an installer entry.
+     *
+     * @param installer the installer
+     * @param name      the entry name
+     * @return the entry checksum
+     * @throws IOException for any I/O error
+     */
+    private long getCrc(File installer, String name) throws IOException
+    {
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            return zip.getEntry(name).getCrc();
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    /**
+     * Creates a jar with empty entries.
+     *
+     * @param dir     the directory
+     * @param name    the jar name
+     * @param entries the entry names
+     * @return a new jar
+     * @throws IOException for any I/O error
+     */
+    private File createJar(File dir, String name, String... entries) throws IOException
+    {
+        File jar = new File(dir, name);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        for (String entry : entries)
+        {
+            out.putNextEntry(new ZipEntry(entry));
+            out.closeEntry();
+        }
+        out.close();
+        return jar;
+    }
+
+    /**
+     * Unpacks a Pack200 entry of the installer.
+     *
+     * @param zip  the installer
+     * @param name the entry name
+     * @return the names of the entries of the unpacked jar
+     * @throws IOException for any I/O error
+     */
+    private List<String> unpack200(ZipFile zip, String name) throws IOException
+    {
+        File file = temporaryFolder.newFile();
+        java.util.jar.JarOutputStream out = new java.util.jar.JarOutputStream(new FileOutputStream(file));
+        InputStream in = zip.getInputStream(zip.getEntry(name));
+        Pack200.newUnpacker().unpack(in, out);
+        in.close();
+        out.close();
+        List<String> result = new ArrayList<String>();
+        ZipFile jar = new ZipFile(file);
+        Enumeration<? extends ZipEntry> entries = jar.entries();
+        while (entries.hasMoreElements())
+        {
+            result.add(entries.nextElement().getName());
+        }
+        jar.close();
+        result.remove("META-INF/");
+        result.remove("META-INF/MANIFEST.MF");
+        return result;
+    }
+
+    /**
+     * Returns the stream of a pack entry.
+     *
+     * @param zip  the installer
+     * @param name the pack name
+     * @return the pack entry stream
+     * @throws IOException for any I/O error
+     */
+    private InputStream getPackStream(ZipFile zip, String name) throws IOException
+    {
+        return zip.getInputStream(zip.getEntry("resources/packs/pack-" + name));
+    }
+
+    /**
+     * Creates a file of the specified size.
+     *
+     * @param dir  the directory
+     * @param name the file name
+     * @param size the file size
+     * @return a new file
+     * @throws IOException for any I/O error
+     */
+    private File createFile(File dir, String name, int size) throws IOException
+    {
+        File file = new File(dir, name);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < size; ++i)
+        {
+            content.append((char) ('a' + (i % 26)));
+        }
+        FileUtils.writeStringToFile(file, content.toString());
+        return file;
+    }
+
+    /**
+     * Creates a pack containing the specified files.
+     *
+     * @param name    the pack name
+     * @param baseDir the base directory
+     * @param files   the files
+     * @return a new pack
+     * @throws IOException for any I/O error
+     */
+    private PackInfo createPack(String name, File baseDir, File... files) throws IOException
+    {
+        PackInfo pack = new PackInfo(name, name, "", true, false, null, true);
+        for (File file : files)
+        {
+            pack.addFile(baseDir, file, "$INSTALL_PATH/" + file.getName(), null, OverrideType.OVERRIDE_TRUE, null,
+                         Blockable.BLOCKABLE_NONE, null, null);
+        }
+        return pack;
+    }
+
+    /**
+     * Reads a pack written with concurrent compression, verifying the content of each file.
+     *
+     * @param zip            the installer
+     * @param baseDir        the directory containing the source files
+     * @param name           the pack name
+     * @param backReferences the expected no. of back references
+     * @return the files written to the pack, keyed on name
+     * @throws Exception for any error
+     */
+    private Map<String, byte[]> readPack(ZipFile zip, File baseDir, String name, int backReferences)
+            throws Exception
+    {
+        ZipEntry entry = zip.getEntry("resources/packs/pack-" + name);
+        assertEquals(ZipEntry.STORED, entry.getMethod());
+        return readPack(new InflaterInputStream(zip.getInputStream(entry)), baseDir, backReferences);
+    }
+
+    /**
+     * Reads the data of the first back reference in a pack written with concurrent compression, by skipping to its
+     * offset in the referenced pack as the installer does.
+     *
+     * @param zip  the installer
+     * @param name the pack name
+     * @return the referenced data
+     * @throws Exception for any error
+     */
+    private byte[] readReference(ZipFile zip, String name) throws Exception
+    {
+        ObjectInputStream objIn = new ObjectInputStream(new InflaterInputStream(getPackStream(zip, name)));
+        PackFileReader reader = new PackFileReader(objIn);
+        int count = reader.readHeader();
+        PackFile reference = null;
+        for (int i = 0; i < count && reference == null; ++i)
+        {
+            PackFile packFile = reader.read();
+            if (packFile.isBackReference())
+            {
+                reference = packFile;
+            }
+            else
+            {
+                objIn.readFully(new byte[(int) packFile.length()]);
+            }
+        }
+        objIn.close();
+        assertNotNull(reference);
+
+        InputStream in = new InflaterInputStream(getPackStream(zip, reference.previousPackId));
+        objIn = new ObjectInputStream(in);
+        IOUtils.skipFully(in, reference.offsetInPreviousPack - 4); // the stream header has been read
+        byte[] data = new byte[(int) reference.length()];
+        objIn.readFully(data);
+        objIn.close();
+        return data;
+    }
+
+    /**
+     * Reads a decoded pack stream, verifying the content of each file.
+     *
+     * @param in             the decoded pack stream
+     * @param baseDir        the directory containing the source files
+     * @param backReferences the expected no. of back references
+     * @return the files written to the pack, keyed on name
+     * @throws Exception for any error
+     */
+    private Map<String, byte[]> readPack(InputStream in, File baseDir, int backReferences) throws Exception
+    {
+        ObjectInputStream objIn = new ObjectInputStream(in);
+        PackFileReader reader = new PackFileReader(objIn);
+        Map<String, byte[]> result = new HashMap<String, byte[]>();
+        int references = 0;
+        int count = reader.readHeader();
+        for (int i = 0; i < count; ++i)
+        {
+            PackFile packFile = reader.read();
+            if (packFile.isBackReference())
+            {
+                assertEquals("pack1", packFile.previousPackId);
+                assertTrue(packFile.offsetInPreviousPack > 0);
+                assertEquals(0, packFile.getPreviousPackFileIndex()); // shared.txt is the first file in pack1
+                ++references;
+            }
+            else
+            {
+                byte[] data = new byte[(int) packFile.length()];
+                objIn.readFully(data);
+                String fileName = new File(packFile.getTargetPath()).getName();
+                assertEquals(fileName.equals("shared.txt"), packFile.isBackReferenced());
+                assertTrue(Arrays.equals(FileUtils.readFileToByteArray(new File(baseDir, fileName)), data));
+                result.put(fileName, data);
+            }
+        }
+        assertEquals(backReferences, references);
+        assertEquals(0, objIn.readInt()); // no parsables
+        objIn.close();
+        return result;
+    }
 }
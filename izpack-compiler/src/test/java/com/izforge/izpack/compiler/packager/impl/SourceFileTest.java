@@ -0,0 +1,54 @@
+package com.izforge.izpack.compiler.packager.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link SourceFile}.
+ */
+public class SourceFileTest
+{
+
+    /**
+     * Temporary folder to create files in.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that files are copied whole, whether they are larger or smaller than the buffer.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCopyTo() throws IOException
+    {
+        byte[] content = new byte[100000];
+        new Random(42).nextBytes(content);
+        File file = temporaryFolder.newFile("data.bin");
+        FileUtils.writeByteArrayToFile(file, content);
+        SourceFile source = new SourceFile(file);
+
+        for (int bufferSize : new int[]{1, 4096, 100000, 1024 * 1024})
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(content.length, source.copyTo(out, bufferSize));
+            assertArrayEquals(content, out.toByteArray());
+        }
+
+        File empty = temporaryFolder.newFile("empty.bin");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, new SourceFile(empty).copyTo(out, 4096));
+        assertEquals(0, out.size());
+    }
+}
@@ -0,0 +1,84 @@
+package com.izforge.izpack.compiler.packager.impl;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link StoredFileIndex}.
+ */
+public class StoredFileIndexTest
+{
+
+    /**
+     * Temporary folder to create files in.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that files are matched on content, rather than path.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMatchOnContent() throws IOException
+    {
+        SourceFile file1 = createFile("a/lib.jar", "some content");
+        SourceFile file2 = createFile("b/lib.jar", "some content");
+        SourceFile file3 = createFile("c/lib.jar", "other content");
+        SourceFile file4 = createFile("d/lib.jar", "different");
+
+        StoredFileIndex index = new StoredFileIndex();
+        StoredFile stored = new StoredFile("pack1", 0);
+        assertNull(index.get(file1, false));
+        index.put(file1, false, stored);
+
+        assertSame(stored, index.get(file1, false));
+        assertSame(stored, index.get(file2, false));
+        assertNull(index.get(file3, false));
+        assertNull(index.get(file4, false));
+    }
+
+    /**
+     * Verifies that files written as pack200 jars only match other pack200 jars.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testPack200() throws IOException
+    {
+        SourceFile file1 = createFile("a/lib.jar", "some content");
+        SourceFile file2 = createFile("b/lib.zip", "some content");
+
+        StoredFileIndex index = new StoredFileIndex();
+        StoredFile stored = new StoredFile("pack1", 0);
+        index.put(file1, true, stored);
+
+        assertSame(stored, index.get(file1, true));
+        assertNull(index.get(file1, false));
+        assertNull(index.get(file2, false));
+    }
+
+    /**
+     * Creates a file.
+     *
+     * @param path    the file path, relative to the temporary folder
+     * @param content the file content
+     * @return the source of a new file
+     * @throws IOException for any I/O error
+     */
+    private SourceFile createFile(String path, String content) throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), path);
+        FileUtils.writeStringToFile(file, content);
+        return new SourceFile(file);
+    }
+}
@@ -0,0 +1,165 @@
+package com.izforge.izpack.compiler.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.exception.CompilerException;
+
+/**
+ * Tests the {@link PackContentFilter} and {@link PackContentReader}.
+ */
+public class PackContentReaderTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The installation file.
+     */
+    private static final String INSTALL = "<installation version=\"5.0\">\n"
+            + "  <info><appname>test</appname></info>\n"
+            + "  <packs>\n"
+            + "    <pack name=\"core\" required=\"yes\">\n"
+            + "      <description>Core</description>\n"
+            + "      <file src=\"a.txt\" targetdir=\"$INSTALL_PATH\">\n"
+            + "        <os family=\"unix\"/>\n"
+            + "      </file>\n"
+            + "      <depends packname=\"base\"/>\n"
+            + "      <singlefile src=\"b.txt\" target=\"$INSTALL_PATH/c.txt\"/>\n"
+            + "    </pack>\n"
+            + "    <xfragment>\n"
+            + "      <pack name=\"docs\" required=\"no\">\n"
+            + "        <description>Docs</description>\n"
+            + "        <fileset dir=\"docs\" targetdir=\"$INSTALL_PATH/docs\">\n"
+            + "          <include name=\"**/*.html\"/>\n"
+            + "        </fileset>\n"
+            + "      </pack>\n"
+            + "    </xfragment>\n"
+            + "  </packs>\n"
+            + "</installation>\n";
+
+    /**
+     * Verifies that the filter leaves the contents of packs out of the installation tree, and nothing else.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void filterRemovesPackContents() throws Exception
+    {
+        IXMLElement installation = new XMLParser(new PackContentFilter()).parse(INSTALL);
+        assertEquals("test", installation.getFirstChildNamed("info").getFirstChildNamed("appname").getContent());
+
+        List<IXMLElement> packs = installation.getFirstChildNamed("packs").getChildrenNamed("pack");
+        assertEquals(2, packs.size());
+        IXMLElement core = packs.get(0);
+        assertEquals("Core", core.getFirstChildNamed("description").getContent());
+        assertEquals("base", core.getFirstChildNamed("depends").getAttribute("packname"));
+        assertNull(core.getFirstChildNamed("file"));
+        assertNull(core.getFirstChildNamed("singlefile"));
+        assertEquals(2, core.getChildrenCount());
+        assertEquals("docs", packs.get(1).getAttribute("name"));
+        assertEquals(1, packs.get(1).getChildrenCount());
+    }
+
+    /**
+     * Verifies that the reader streams the contents of each pack in document order.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void readerStreamsPackContents() throws Exception
+    {
+        File file = temporaryFolder.newFile("install.xml");
+        FileUtils.writeStringToFile(file, INSTALL, "UTF-8");
+
+        final List<String> events = new ArrayList<String>();
+        final List<IXMLElement> elements = new ArrayList<IXMLElement>();
+        PackContentReader reader = new PackContentReader(new PackContentReader.Handler()
+        {
+            @Override
+            public void startPack(int index)
+            {
+                events.add("start " + index);
+            }
+
+            @Override
+            public void content(int index, IXMLElement element)
+            {
+                events.add(element.getName() + " " + index);
+                elements.add(element);
+            }
+
+            @Override
+            public void endPack(int index)
+            {
+                events.add("end " + index);
+            }
+        });
+        assertEquals(2, reader.read(file));
+        assertEquals("[start 0, file 0, singlefile 0, end 0, start 1, fileset 1, end 1]", events.toString());
+
+        IXMLElement fileElement = elements.get(0);
+        assertEquals("a.txt", fileElement.getAttribute("src"));
+        assertEquals("$INSTALL_PATH", fileElement.getAttribute("targetdir"));
+        assertEquals("unix", fileElement.getFirstChildNamed("os").getAttribute("family"));
+        assertEquals(6, fileElement.getLineNr());
+
+        IXMLElement fileSet = elements.get(2);
+        assertEquals("**/*.html", fileSet.getFirstChildNamed("include").getAttribute("name"));
+        assertEquals(15, fileSet.getLineNr());
+    }
+
+    /**
+     * Verifies that exceptions thrown by the handler are propagated.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void handlerExceptionsArePropagated() throws Exception
+    {
+        File file = temporaryFolder.newFile("install.xml");
+        FileUtils.writeStringToFile(file, INSTALL, "UTF-8");
+
+        final CompilerException failure = new CompilerException("failed");
+        PackContentReader reader = new PackContentReader(new PackContentReader.Handler()
+        {
+            @Override
+            public void startPack(int index)
+            {
+            }
+
+            @Override
+            public void content(int index, IXMLElement element) throws CompilerException
+            {
+                throw failure;
+            }
+
+            @Override
+            public void endPack(int index)
+            {
+            }
+        });
+        try
+        {
+            reader.read(file);
+            fail("Expected CompilerException");
+        }
+        catch (CompilerException exception)
+        {
+            assertSame(failure, exception);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.util.IoHelper;
+
+/**
+ * A string parsed into literal text and variable references, so that it can be substituted repeatedly without
+ * being parsed again.
+ * <p/>
+ * Templates are parsed using the same rules as {@link VariableSubstitutorBase#substitute(java.io.Reader,
+ * java.io.Writer, SubstitutionType)}, and produce the same result when substituted. Variable values are looked up
+ * each time the template is substituted, so templates may be cached and shared between threads.
+ * <p/>
+ * The {@link SubstitutionType#TYPE_ANT} type isn't supported, as whether the character following a reference is
+ * consumed depends on the value of the referenced variable.
+ */
+public final class SubstitutionTemplate
+{
+
+    /**
+     * The substitution type.
+     */
+    private final SubstitutionType type;
+
+    /**
+     * The literal text. The text at index <em>i</em> precedes the variable at index <em>i</em>; the last element
+     * follows the last variable.
+     */
+    private final String[] literals;
+
+    /**
+     * The variable references.
+     */
+    private final Reference[] references;
+
+    /**
+     * The total length of the literal text.
+     */
+    private final int length;
+
+
+    /**
+     * Constructs a <tt>SubstitutionTemplate</tt>.
+     *
+     * @param type       the substitution type
+     * @param literals   the literal text
+     * @param references the variable references
+     */
+    private SubstitutionTemplate(SubstitutionType type, List<String> literals, List<Reference> references)
+    {
+        this.type = type;
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.references = references.toArray(new Reference[references.size()]);
+        int total = 0;
+        for (String literal : literals)
+        {
+            total += literal.length();
+        }
+        this.length = total;
+    }
+
+    /**
+     * Parses a string into a template.
+     *
+     * @param str            the string to parse
+     * @param type           the substitution type, or <tt>null</tt> for the default
+     * @param bracesRequired if <tt>true</tt>, only references of the form <tt>${NAME}</tt> are substituted
+     * @return the template, or <tt>null</tt> if the type is {@link SubstitutionType#TYPE_ANT}
+     */
+    public static SubstitutionTemplate compile(String str, SubstitutionType type, boolean bracesRequired)
+    {
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
+
+        char start;
+        switch (type)
+        {
+            case TYPE_SHELL:
+                start = '%';
+                break;
+            case TYPE_AT:
+                start = '@';
+                break;
+            case TYPE_ANT:
+                return null;
+            default:
+                start = '$';
+                break;
+        }
+
+        List<String> literals = new ArrayList<String>();
+        List<Reference> references = new ArrayList<Reference>();
+        StringBuilder literal = new StringBuilder();
+        int length = str.length();
+        int index = 0;
+        int c = (index < length) ? str.charAt(index++) : -1;
+        while (true)
+        {
+            // find the next potential variable reference
+            while (c != -1 && c != start)
+            {
+                literal.append((char) c);
+                c = (index < length) ? str.charAt(index++) : -1;
+            }
+            if (c == -1)
+            {
+                break;
+            }
+
+            // check if braces used or start char escaped
+            boolean braces = false;
+            c = (index < length) ? str.charAt(index++) : -1;
+            if (c == '{')
+            {
+                braces = true;
+                c = (index < length) ? str.charAt(index++) : -1;
+            }
+            else if (bracesRequired)
+            {
+                literal.append(start);
+                continue;
+            }
+            else if (c == -1)
+            {
+                literal.append(start);
+                break;
+            }
+
+            // read the variable name
+            int nameStart = (c == -1) ? length : index - 1;
+            while ((c != -1 && braces && c != '}') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (braces && (c == '[' || c == ']'))
+                    || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && index - 1 > nameStart))
+            {
+                c = (index < length) ? str.charAt(index++) : -1;
+            }
+            String name = str.substring(nameStart, (c == -1) ? length : index - 1);
+
+            if ((!braces || c == '}') && name.length() > 0)
+            {
+                StringBuilder text = new StringBuilder().append(start);
+                if (braces)
+                {
+                    text.append('{').append(name).append('}');
+                    // the closing brace is consumed if the variable is substituted, and copied if not
+                    c = (index < length) ? str.charAt(index++) : -1;
+                }
+                else
+                {
+                    text.append(name);
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                references.add(new Reference(name, braces, text.toString()));
+            }
+            else
+            {
+                // not a legal reference, so copy it as is
+                literal.append(start);
+                if (braces)
+                {
+                    literal.append('{');
+                }
+                literal.append(name);
+            }
+        }
+        literals.add(literal.toString());
+        return new SubstitutionTemplate(type, literals, references);
+    }
+
+    /**
+     * Determines if the template contains no variable references.
+     *
+     * @return <tt>true</tt> if the template is literal text
+     */
+    public boolean isConstant()
+    {
+        return references.length == 0;
+    }
+
+    /**
+     * Substitutes the variables of the template.
+     *
+     * @param substitutor the substitutor supplying the variable values and escaping
+     * @return the string with substituted variables
+     * @throws Exception if a variable value cannot be resolved
+     */
+    public String substitute(VariableSubstitutorBase substitutor) throws Exception
+    {
+        if (references.length == 0)
+        {
+            return literals[0];
+        }
+        StringBuilder result = new StringBuilder(length + references.length * 16);
+        for (int i = 0; i < references.length; ++i)
+        {
+            result.append(literals[i]);
+            Reference reference = references[i];
+            String value = reference.getValue(substitutor);
+            if (value != null)
+            {
+                result.append(substitutor.escapeSpecialChars(value, type));
+            }
+            else
+            {
+                result.append(reference.text);
+            }
+        }
+        result.append(literals[references.length]);
+        return result.toString();
+    }
+
+    /**
+     * A variable reference.
+     */
+    private static class Reference
+    {
+
+        /**
+         * The variable name.
+         */
+        private final String name;
+
+        /**
+         * The environment variable name, if the reference is of the form <tt>${ENV[NAME]}</tt>.
+         */
+        private final String env;
+
+        /**
+         * The text of the reference, copied as is if the variable is undefined.
+         */
+        private final String text;
+
+        /**
+         * Constructs a <tt>Reference</tt>.
+         *
+         * @param name   the variable name
+         * @param braces determines if the name was enclosed in braces
+         * @param text   the text of the reference
+         */
+        public Reference(String name, boolean braces, String text)
+        {
+            this.name = name;
+            this.text = text;
+            if (braces && name.startsWith("ENV[") && name.lastIndexOf(']') == name.length() - 1)
+            {
+                env = name.substring(4, name.length() - 1);
+            }
+            else
+            {
+                env = null;
+            }
+        }
+
+        /**
+         * Returns the value of the variable.
+         *
+         * @param substitutor the substitutor supplying the variable values
+         * @return the value, or <tt>null</tt> if the variable is undefined
+         * @throws Exception if the value cannot be resolved
+         */
+        public String getValue(VariableSubstitutorBase substitutor) throws Exception
+        {
+            String result;
+            if (env != null)
+            {
+                result = IoHelper.getenv(env);
+                if (result == null)
+                {
+                    result = "";
+                }
+            }
+            else
+            {
+                Value value = substitutor.getValue(name);
+                result = (value != null) ? value.resolve() : null;
+            }
+            return result;
+        }
+    }
+}
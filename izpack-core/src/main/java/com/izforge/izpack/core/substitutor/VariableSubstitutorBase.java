@@ -27,7 +27,9 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.util.IoHelper;
 
 import java.io.*;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -91,6 +93,22 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      */
     protected final static int TYPE_ANT = 6;
 
+    /**
+     * The maximum no. of templates cached for each substitution type.
+     */
+    private static final int MAX_TEMPLATES = 1024;
+
+    /**
+     * The size of the buffers used when substituting streams.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The most recently used templates, keyed on substitution type and the string they were parsed from.
+     */
+    private final Map<SubstitutionType, Map<String, SubstitutionTemplate>> templates
+            = new EnumMap<SubstitutionType, Map<String, SubstitutionTemplate>>(SubstitutionType.class);
+
     /**
      * PLAIN = "plain"
      */
@@ -131,6 +149,59 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
     public void setBracesRequired(boolean braces)
     {
         bracesRequired = braces;
+        synchronized (templates)
+        {
+            templates.clear();
+        }
+    }
+
+    /**
+     * Returns a template for the specified string, so that its variables may be substituted without parsing it
+     * each time.
+     * <p/>
+     * The most recently used templates are cached.
+     *
+     * @param str  the string to parse
+     * @param type the escaping type or null for plain
+     * @return the template, or <tt>null</tt> if the type doesn't support templates
+     */
+    public SubstitutionTemplate getTemplate(String str, SubstitutionType type)
+    {
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
+        SubstitutionTemplate result;
+        Map<String, SubstitutionTemplate> cache;
+        synchronized (templates)
+        {
+            cache = templates.get(type);
+            if (cache == null)
+            {
+                cache = new LinkedHashMap<String, SubstitutionTemplate>(16, 0.75f, true)
+                {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, SubstitutionTemplate> eldest)
+                    {
+                        return size() > MAX_TEMPLATES;
+                    }
+                };
+                templates.put(type, cache);
+            }
+            result = cache.get(str);
+        }
+        if (result == null)
+        {
+            result = SubstitutionTemplate.compile(str, type, bracesRequired);
+            if (result != null)
+            {
+                synchronized (templates)
+                {
+                    cache.put(str, result);
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -162,23 +233,26 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
             return null;
         }
 
-        // Create reader and write for the strings
-        StringReader reader = new StringReader(str);
-        StringWriter writer = new StringWriter();
+        SubstitutionTemplate template = getTemplate(str, type);
 
         // Substitute any variables
         try
         {
-            substitute(reader, writer, type);
+            if (template != null)
+            {
+                return template.substitute(this);
+            }
+
+            // Create reader and write for the strings
+            StringWriter writer = new StringWriter();
+            substitute(new StringReader(str), writer, type);
+            return writer.getBuffer().toString();
         }
         catch (Exception e)
         {
             LOGGER.log(Level.SEVERE, "Error when substituting variables", e);
             throw new Error(e);
         }
-
-        // Return the resulting string
-        return writer.getBuffer().toString();
     }
 
     /**
@@ -290,6 +364,19 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      */
     public int substitute(Reader reader, Writer writer, SubstitutionType type) throws Exception
     {
+        // the data is processed a character at a time, so buffer it unless it is already in memory
+        if (!(reader instanceof BufferedReader) && !(reader instanceof StringReader))
+        {
+            reader = new BufferedReader(reader, BUFFER_SIZE);
+        }
+        if (!(writer instanceof BufferedWriter) && !(writer instanceof StringWriter))
+        {
+            BufferedWriter buffered = new BufferedWriter(writer, BUFFER_SIZE);
+            int subs = substitute(reader, buffered, type);
+            buffered.flush();
+            return subs;
+        }
+
         if (type == null)
         {
             type = SubstitutionType.getDefault();
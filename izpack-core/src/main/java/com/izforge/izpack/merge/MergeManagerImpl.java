@@ -2,12 +2,17 @@ package com.izforge.izpack.merge;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.tools.zip.ZipOutputStream;
 
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.MergeException;
 import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.jar.JarMerge;
 import com.izforge.izpack.merge.resolve.PathResolver;
 
 /**
@@ -50,21 +55,27 @@ public class MergeManagerImpl implements MergeManager
     @Override
     public void merge(ZipOutputStream outputStream)
     {
-        for (Mergeable mergeable : mergeableList)
+        try
         {
-            mergeable.merge(outputStream);
+            mergeAll(outputStream);
+        }
+        catch (IOException e)
+        {
+            throw new MergeException(e);
         }
-        mergeableList.clear();
     }
 
     @Override
     public void merge(java.util.zip.ZipOutputStream outputStream)
     {
-        for (Mergeable mergeable : mergeableList)
+        try
         {
-            mergeable.merge(outputStream);
+            mergeAll(outputStream);
+        }
+        catch (IOException e)
+        {
+            throw new IzPackException(e);
         }
-        mergeableList.clear();
     }
 
     @Override
@@ -92,6 +103,59 @@ public class MergeManagerImpl implements MergeManager
         return null;
     }
 
+    /**
+     * Merges all mergeables to the output stream.
+     * <p/>
+     * Consecutive mergeables reading from the same jar are merged in a single pass over the jar, rather than
+     * reading the jar once for each of them.
+     *
+     * @param outputStream the stream to merge to. Must be an {@link ZipOutputStream} or a
+     *                     {@link java.util.zip.ZipOutputStream}
+     * @throws IOException for any I/O error
+     */
+    private void mergeAll(OutputStream outputStream) throws IOException
+    {
+        List<JarMerge> jarMerges = new ArrayList<JarMerge>();
+        for (Mergeable mergeable : mergeableList)
+        {
+            if (!jarMerges.isEmpty() && !isSameJar(jarMerges.get(0), mergeable))
+            {
+                JarMerge.merge(jarMerges, outputStream);
+                jarMerges.clear();
+            }
+            if (mergeable instanceof JarMerge)
+            {
+                jarMerges.add((JarMerge) mergeable);
+            }
+            else if (outputStream instanceof ZipOutputStream)
+            {
+                mergeable.merge((ZipOutputStream) outputStream);
+            }
+            else
+            {
+                mergeable.merge((java.util.zip.ZipOutputStream) outputStream);
+            }
+        }
+        if (!jarMerges.isEmpty())
+        {
+            JarMerge.merge(jarMerges, outputStream);
+        }
+        mergeableList.clear();
+    }
+
+    /**
+     * Determines if a mergeable reads from the same jar as a jar mergeable.
+     *
+     * @param jarMerge  the jar mergeable
+     * @param mergeable the mergeable to compare
+     * @return <tt>true</tt> if the mergeable is a jar mergeable reading from the same jar
+     */
+    private boolean isSameJar(JarMerge jarMerge, Mergeable mergeable)
+    {
+        return mergeable instanceof JarMerge && jarMerge.getJarPath() != null
+                && jarMerge.getJarPath().equals(((JarMerge) mergeable).getJarPath());
+    }
+
     @Override
     public String toString()
     {
@@ -7,20 +7,26 @@ import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 import org.apache.tools.zip.ZipOutputStream;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.JarInputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 /**
  * Jar files merger.
@@ -34,6 +40,16 @@ public class JarMerge extends AbstractMerge
     private String regexp;
     private String destination;
 
+    /**
+     * The compiled regexp.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The size of the buffer used to read the jar.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
 
     /**
      * Create a new JarMerge with a destination
@@ -60,6 +76,7 @@ public class JarMerge extends AbstractMerge
             builder.append("/*(.*)");
         }
         regexp = builder.toString();
+        pattern = Pattern.compile(regexp);
     }
 
     /**
@@ -85,6 +102,7 @@ public class JarMerge extends AbstractMerge
             builder.append("/*(.*)");
         }
         regexp = builder.toString();
+        pattern = Pattern.compile(regexp);
     }
 
 
@@ -137,50 +155,29 @@ public class JarMerge extends AbstractMerge
 
     public ArrayList<String> getFileNameInZip() throws IOException
     {
-        ZipInputStream inputStream = new ZipInputStream(new FileInputStream(jarPath));
+        // read the names from the central directory, rather than reading through the entire jar
+        ZipFile zipFile = new ZipFile(jarPath);
         ArrayList<String> arrayList = new ArrayList<String>();
-        ZipEntry zipEntry;
-        while ((zipEntry = inputStream.getNextEntry()) != null)
+        try
+        {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements())
+            {
+                arrayList.add(entries.nextElement().getName());
+            }
+        }
+        finally
         {
-            arrayList.add(zipEntry.getName());
+            zipFile.close();
         }
         return arrayList;
     }
 
     public void merge(java.util.zip.ZipOutputStream outputStream)
     {
-        Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outputStream);
-        ZipEntry zentry;
         try
         {
-            JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
-            while ((zentry = jarInputStream.getNextEntry()) != null)
-            {
-                Matcher matcher = pattern.matcher(zentry.getName());
-                if (matcher.matches())
-                {
-                    if (mergeList.contains(zentry.getName()))
-                    {
-                        continue;
-                    }
-                    mergeList.add(zentry.getName());
-
-                    String matchFile = matcher.group(1);
-                    StringBuilder dest = new StringBuilder(destination);
-                    if (matchFile != null && matchFile.length() > 0)
-                    {
-                        if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
-                        {
-                            dest.append('/');
-                        }
-                        dest.append(matchFile);
-                    }
-                    IoHelper.copyStreamToJar(jarInputStream, outputStream, dest.toString().replaceAll("//", "/"), zentry.getTime());
-                }
-
-            }
-            jarInputStream.close();
+            merge(Collections.singletonList(this), outputStream);
         }
         catch (IOException e)
         {
@@ -190,41 +187,100 @@ public class JarMerge extends AbstractMerge
 
     public void merge(ZipOutputStream outJar)
     {
-        Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outJar);
-        ZipEntry zentry;
         try
         {
-            JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
+            merge(Collections.singletonList(this), outJar);
+        }
+        catch (IOException e)
+        {
+            throw new MergeException(e);
+        }
+    }
+
+    /**
+     * Returns the path to the jar to merge.
+     *
+     * @return the jar path
+     */
+    public String getJarPath()
+    {
+        return jarPath;
+    }
+
+    /**
+     * Merges several mergeables reading from the same jar, in a single pass over the jar.
+     * <p/>
+     * Each entry is merged by the first mergeable that matches it, unless an entry with the same name has
+     * already been merged to the output stream.
+     *
+     * @param merges       the mergeables. These must all have the same jar path
+     * @param outputStream the stream to merge to. Must be an {@link ZipOutputStream} or a
+     *                     {@link java.util.zip.ZipOutputStream}
+     * @throws IOException for any I/O error
+     */
+    public static void merge(List<JarMerge> merges, OutputStream outputStream) throws IOException
+    {
+        JarMerge first = merges.get(0);
+        List<String> mergeList = first.getMergeList(outputStream);
+        Set<String> merged = new HashSet<String>(mergeList);
+        JarInputStream jarInputStream = new JarInputStream(
+                new BufferedInputStream(new FileInputStream(new File(first.jarPath)), BUFFER_SIZE));
+        try
+        {
+            ZipEntry zentry;
             while ((zentry = jarInputStream.getNextEntry()) != null)
             {
-                Matcher matcher = pattern.matcher(zentry.getName());
-                if (matcher.matches())
+                String name = zentry.getName();
+                for (JarMerge merge : merges)
                 {
-                    if (mergeList.contains(zentry.getName()))
+                    Matcher matcher = merge.pattern.matcher(name);
+                    if (matcher.matches())
                     {
-                        continue;
-                    }
-                    mergeList.add(zentry.getName());
-                    String matchFile = matcher.group(1);
-                    StringBuilder dest = new StringBuilder(destination);
-                    if (matchFile != null && matchFile.length() > 0)
-                    {
-                        if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
+                        if (merged.add(name))
                         {
-                            dest.append('/');
+                            mergeList.add(name);
+                            merge.copyEntry(jarInputStream, outputStream, matcher.group(1), zentry.getTime());
                         }
-                        dest.append(matchFile);
+                        break;
                     }
-                    IoHelper.copyStreamToJar(jarInputStream, outJar, dest.toString().replaceAll("//", "/"), zentry.getTime());
                 }
-
             }
+        }
+        finally
+        {
             jarInputStream.close();
         }
-        catch (IOException e)
+    }
+
+    /**
+     * Copies the current jar entry to the output stream.
+     *
+     * @param in           the jar stream, positioned at the entry
+     * @param outputStream the stream to copy to
+     * @param matchFile    the path of the entry relative to the merged path. May be <tt>null</tt>
+     * @param time         the entry modification time
+     * @throws IOException for any I/O error
+     */
+    private void copyEntry(InputStream in, OutputStream outputStream, String matchFile, long time)
+            throws IOException
+    {
+        StringBuilder dest = new StringBuilder(destination);
+        if (matchFile != null && matchFile.length() > 0)
         {
-            throw new MergeException(e);
+            if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
+            {
+                dest.append('/');
+            }
+            dest.append(matchFile);
+        }
+        String name = dest.toString().replaceAll("//", "/");
+        if (outputStream instanceof ZipOutputStream)
+        {
+            IoHelper.copyStreamToJar(in, (ZipOutputStream) outputStream, name, time);
+        }
+        else
+        {
+            IoHelper.copyStreamToJar(in, (java.util.zip.ZipOutputStream) outputStream, name, time);
         }
     }
 
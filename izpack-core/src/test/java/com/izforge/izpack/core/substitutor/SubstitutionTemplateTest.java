@@ -0,0 +1,133 @@
+package com.izforge.izpack.core.substitutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+/**
+ * Tests the {@link SubstitutionTemplate}.
+ */
+public class SubstitutionTemplateTest
+{
+
+    /**
+     * Strings exercising the substitution rules.
+     */
+    private static final String[] STRINGS = {
+            "", "plain text", "$", "$$", "${", "${}", "$}", "${A", "$A", "${A}", "$A$B", "${A}${B}", "$A.B-C_1",
+            "$1A", "${UNDEFINED}", "$UNDEFINED/x", "${A}}", "${ENV[IZPACK_UNDEFINED_VARIABLE]}", "%A%B", "%{A}",
+            "@A@B@", "@{A}", "a $A b ${B} c $C", "$INSTALL_PATH/lib/${A}/file.txt", "<${XML}>", "${A[1]}",
+            "$ {A}", "${A }", "%", "@", "x$", "${A}$"};
+
+    /**
+     * The substitutor.
+     */
+    private VariableSubstitutorImpl substitutor;
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("A", "one");
+        properties.setProperty("B", "two");
+        properties.setProperty("A.B-C_1", "three");
+        properties.setProperty("C", "four\r\n");
+        properties.setProperty("XML", "<&'\">");
+        properties.setProperty("INSTALL_PATH", "/opt/app");
+        substitutor = new VariableSubstitutorImpl(properties);
+    }
+
+    /**
+     * Verifies that templates substitute the same as the stream based substitution.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSubstitute() throws Exception
+    {
+        for (boolean braces : new boolean[]{false, true})
+        {
+            substitutor.setBracesRequired(braces);
+            for (SubstitutionType type : SubstitutionType.values())
+            {
+                if (type != SubstitutionType.TYPE_ANT)
+                {
+                    for (String str : STRINGS)
+                    {
+                        SubstitutionTemplate template = SubstitutionTemplate.compile(str, type, braces);
+                        assertEquals(type + ", braces=" + braces + ": " + str, substitute(str, type),
+                                     template.substitute(substitutor));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies that templates reflect the current variable values.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testValuesNotCached() throws Exception
+    {
+        Properties properties = new Properties();
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+        SubstitutionTemplate template = substitutor.getTemplate("$INSTALL_PATH/bin", SubstitutionType.TYPE_PLAIN);
+        assertFalse(template.isConstant());
+        assertEquals("$INSTALL_PATH/bin", template.substitute(substitutor));
+
+        properties.setProperty("INSTALL_PATH", "/opt/app");
+        assertEquals("/opt/app/bin", substitutor.substitute("$INSTALL_PATH/bin"));
+        properties.setProperty("INSTALL_PATH", "/usr/local/app");
+        assertEquals("/usr/local/app/bin", substitutor.substitute("$INSTALL_PATH/bin"));
+    }
+
+    /**
+     * Verifies that templates are cached.
+     */
+    @Test
+    public void testCache()
+    {
+        SubstitutionTemplate template = substitutor.getTemplate("${A}", SubstitutionType.TYPE_PLAIN);
+        assertSame(template, substitutor.getTemplate("${A}", SubstitutionType.TYPE_PLAIN));
+        assertSame(template, substitutor.getTemplate("${A}", null));
+        assertTrue(template != substitutor.getTemplate("${A}", SubstitutionType.TYPE_XML));
+        assertTrue(substitutor.getTemplate("text", SubstitutionType.TYPE_PLAIN).isConstant());
+        assertNull(substitutor.getTemplate("@A@", SubstitutionType.TYPE_ANT));
+
+        // changing the parsing rules discards the cached templates
+        substitutor.setBracesRequired(true);
+        assertTrue(template != substitutor.getTemplate("${A}", SubstitutionType.TYPE_PLAIN));
+    }
+
+    /**
+     * Substitutes a string using the stream based substitution.
+     *
+     * @param str  the string
+     * @param type the substitution type
+     * @return the substituted string
+     * @throws Exception for any error
+     */
+    private String substitute(String str, SubstitutionType type) throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        substitutor.substitute(new StringReader(str), writer, type);
+        return writer.toString();
+    }
+}
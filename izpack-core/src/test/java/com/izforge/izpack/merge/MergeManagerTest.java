@@ -1,6 +1,7 @@
 package com.izforge.izpack.merge;
 
 import com.izforge.izpack.core.container.TestMergeContainer;
+import com.izforge.izpack.matcher.DuplicateMatcher;
 import com.izforge.izpack.matcher.MergeMatcher;
 import com.izforge.izpack.merge.resolve.ResolveUtils;
 import com.izforge.izpack.test.Container;
@@ -74,5 +75,18 @@ public class MergeManagerTest
         assertThat(mergeManager, MergeMatcher.isMergeableContainingFiles("com/dest/Assert.class"));
     }
 
+    @Test
+    public void testMergePackagesFromSameJar() throws Exception
+    {
+        mergeManager.addResourceToMerge("org/junit/");
+        mergeManager.addResourceToMerge("junit/framework/");
+        assertThat(mergeManager, MergeMatcher.isMergeableContainingFiles("org/junit/Assert.class",
+                                                                         "junit/framework/TestCase.class"));
 
+        mergeManager.addResourceToMerge("org/junit/");
+        mergeManager.addResourceToMerge("junit/framework/");
+        mergeManager.addResourceToMerge("org/junit/");
+        assertThat(mergeManager, MergeMatcher.isMergeableMatching(
+                DuplicateMatcher.isEntryUnique("org/junit/Assert.class")));
+    }
 }
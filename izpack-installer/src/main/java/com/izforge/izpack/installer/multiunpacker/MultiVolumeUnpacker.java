@@ -211,6 +211,19 @@ public class MultiVolumeUnpacker extends UnpackerBase
         // this operation is a no-op for MultiVolumeUnpacker as the file is not in the pack stream
     }
 
+    /**
+     * Returns the no. of threads to use to unpack packs concurrently.
+     * <p/>
+     * Packs are always unpacked sequentially, as the volumes must be read in order.
+     *
+     * @return <tt>1</tt>
+     */
+    @Override
+    protected int getUnpackThreads()
+    {
+        return 1;
+    }
+
     /**
      * Invoked after unpacking has completed, in order to clean up.
      */
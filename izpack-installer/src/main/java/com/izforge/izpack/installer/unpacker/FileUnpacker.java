@@ -71,6 +71,17 @@ public abstract class FileUnpacker
      */
     private boolean queued;
 
+    /**
+     * The parser used to parse {@link PackFile#isParsable() parsable} files as they are unpacked. May be
+     * <tt>null</tt>.
+     */
+    private ScriptParser parser;
+
+    /**
+     * Determines if the file was parsed as it was unpacked.
+     */
+    private boolean parsed;
+
     /**
      * The logger.
      */
@@ -109,6 +120,21 @@ public abstract class FileUnpacker
     public abstract FileQueue unpack(PackFile file, ObjectInputStream packInputStream, File target)
             throws IOException, InstallerException;
 
+    /**
+     * Unpacks a pack file whose data is stored in its own installer resource.
+     *
+     * @param file   the pack file meta-data
+     * @param in     the pack file stream
+     * @param target the target
+     * @return the file queue. May be <tt>null</tt>
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    public FileQueue unpackStream(PackFile file, InputStream in, File target) throws IOException, InstallerException
+    {
+        return copy(file, in, target);
+    }
+
     /**
      * Determines if the file was queued.
      *
@@ -119,6 +145,26 @@ public abstract class FileUnpacker
         return queued;
     }
 
+    /**
+     * Sets the parser used to parse {@link PackFile#isParsable() parsable} files as they are unpacked.
+     *
+     * @param parser the parser. If <tt>null</tt>, files are unpacked as is
+     */
+    public void setParser(ScriptParser parser)
+    {
+        this.parser = parser;
+    }
+
+    /**
+     * Determines if the file was parsed as it was unpacked.
+     *
+     * @return <tt>true</tt> if the file was parsed
+     */
+    public boolean isParsed()
+    {
+        return parsed;
+    }
+
     /**
      * Returns the file queue.
      *
@@ -146,16 +192,28 @@ public abstract class FileUnpacker
         OutputStream out = getTarget(file, target);
         try
         {
-            byte[] buffer = new byte[5120];
-            long bytesCopied = 0;
-            while (bytesCopied < file.length())
+            if (parser != null && file.isParsable())
             {
                 if (cancellable.isCancelled())
                 {
                     // operation cancelled
                     return queue;
                 }
-                bytesCopied = copy(file, buffer, in, out, bytesCopied);
+                parse(file, in, out);
+            }
+            else
+            {
+                byte[] buffer = new byte[5120];
+                long bytesCopied = 0;
+                while (bytesCopied < file.length())
+                {
+                    if (cancellable.isCancelled())
+                    {
+                        // operation cancelled
+                        return queue;
+                    }
+                    bytesCopied = copy(file, buffer, in, out, bytesCopied);
+                }
             }
         }
         finally
@@ -165,6 +223,33 @@ public abstract class FileUnpacker
         return postCopy(file);
     }
 
+    /**
+     * Substitutes the variables of a pack file as it is copied to the target.
+     *
+     * @param file the pack file
+     * @param in   the pack file stream
+     * @param out  the stream to write to
+     * @throws IOException for any I/O error, or if parsing fails
+     */
+    private void parse(PackFile file, InputStream in, OutputStream out) throws IOException
+    {
+        PackFileInputStream data = new PackFileInputStream(file, in);
+        try
+        {
+            parser.parse(data, out, file.getParseType(), file.getParseEncoding());
+        }
+        catch (IOException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new IOException("Failed to parse " + target + ": " + exception.getMessage(), exception);
+        }
+        data.skipRemaining();
+        parsed = true;
+    }
+
     /**
      * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
      *
@@ -316,4 +401,77 @@ public abstract class FileUnpacker
         queued = true;
     }
 
+    /**
+     * Limits reads of a pack stream to the data of a single file.
+     */
+    private static class PackFileInputStream extends InputStream
+    {
+
+        /**
+         * The pack stream.
+         */
+        private final InputStream in;
+
+        /**
+         * The no. of bytes of the file remaining to be read.
+         */
+        private long remaining;
+
+        /**
+         * Constructs a <tt>PackFileInputStream</tt>.
+         *
+         * @param file the pack file
+         * @param in   the pack stream
+         */
+        public PackFileInputStream(PackFile file, InputStream in)
+        {
+            this.in = in;
+            this.remaining = file.length();
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1) ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (remaining == 0)
+            {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        /**
+         * Skips any data of the file that hasn't been read, so that the pack stream is positioned at the next file.
+         *
+         * @throws IOException for any I/O error
+         */
+        public void skipRemaining() throws IOException
+        {
+            byte[] buffer = new byte[5120];
+            while (read(buffer, 0, buffer.length) != -1)
+            {
+                // no-op
+            }
+        }
+
+        /**
+         * Does nothing, as the pack stream must remain open.
+         */
+        @Override
+        public void close()
+        {
+        }
+    }
 }
@@ -0,0 +1,448 @@
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Writes pack files to their targets on background threads, so that decompressing the pack stream overlaps with
+ * disk I/O.
+ * <p/>
+ * The caller reads file data into a bounded pool of large buffers, which are drained by the writer threads. Each
+ * file is written by a single writer thread, in order. Writes are asynchronous; {@link #flush()} must be invoked
+ * before relying on the content of written files.
+ * <p/>
+ * Files may be written from several threads. Each file is given a writer thread of its own until all of its data
+ * has been queued, so the chunks of files written concurrently are never queued to the same writer. A thread
+ * writing a file waits for a writer if all are in use.
+ */
+public class PipelinedFileWriter
+{
+
+    /**
+     * The size of each buffer.
+     */
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The free buffers.
+     */
+    private final BlockingQueue<byte[]> buffers;
+
+    /**
+     * The writer threads.
+     */
+    private final Writer[] writers;
+
+    /**
+     * The writers that aren't being given a file.
+     */
+    private final BlockingQueue<Writer> idle;
+
+    /**
+     * The targets that haven't been completely written yet.
+     */
+    private final Set<File> pending = new HashSet<File>();
+
+    /**
+     * The first error encountered by a writer.
+     */
+    private IOException error;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PipelinedFileWriter.class.getName());
+
+
+    /**
+     * Constructs a <tt>PipelinedFileWriter</tt>.
+     *
+     * @param threads the no. of writer threads
+     */
+    public PipelinedFileWriter(int threads)
+    {
+        int count = threads * 2 + 2;
+        buffers = new ArrayBlockingQueue<byte[]>(count);
+        for (int i = 0; i < count; ++i)
+        {
+            buffers.add(new byte[BUFFER_SIZE]);
+        }
+        writers = new Writer[threads];
+        idle = new ArrayBlockingQueue<Writer>(threads);
+        for (int i = 0; i < threads; ++i)
+        {
+            writers[i] = new Writer();
+            writers[i].setName("IzPack file writer " + i);
+            writers[i].setDaemon(true);
+            writers[i].start();
+            idle.add(writers[i]);
+        }
+    }
+
+    /**
+     * Reads a pack file from a stream, and queues it for writing.
+     * <p/>
+     * Once written, the last modified timestamp of the target is set from the pack file.
+     *
+     * @param file        the pack file meta-data
+     * @param in          the stream to read from
+     * @param target      the file to write to
+     * @param cancellable determines if writing should be cancelled
+     * @throws IOException if the file cannot be read, or a previous write failed
+     */
+    public void write(PackFile file, InputStream in, File target, Cancellable cancellable) throws IOException
+    {
+        checkError();
+        Writer writer = getWriter();
+        synchronized (pending)
+        {
+            pending.add(target);
+        }
+
+        long remaining = file.length();
+        boolean last = false;
+        try
+        {
+            while (!last)
+            {
+                byte[] buffer = getBuffer();
+                int length = 0;
+                if (!cancellable.isCancelled())
+                {
+                    while (length < buffer.length && remaining > 0)
+                    {
+                        int read = in.read(buffer, length, (int) Math.min(remaining, buffer.length - length));
+                        if (read == -1)
+                        {
+                            buffers.add(buffer);
+                            throw new IOException("Unexpected end of stream (installer corrupted?)");
+                        }
+                        length += read;
+                        remaining -= read;
+                    }
+                }
+                last = remaining == 0 || cancellable.isCancelled();
+                writer.add(new Chunk(file, target, buffer, length, last));
+            }
+        }
+        finally
+        {
+            if (!last)
+            {
+                // the file is incomplete. Close it, so that the writer can be given another file
+                writer.add(new Chunk(file, target, null, 0, true));
+            }
+            idle.add(writer);
+        }
+    }
+
+    /**
+     * Determines if a file is queued for writing.
+     *
+     * @param target the file
+     * @return <tt>true</tt> if the file hasn't been completely written yet
+     */
+    public boolean isPending(File target)
+    {
+        synchronized (pending)
+        {
+            return pending.contains(target);
+        }
+    }
+
+    /**
+     * Waits for all queued files to be written.
+     *
+     * @throws IOException if a file couldn't be written
+     */
+    public void flush() throws IOException
+    {
+        synchronized (pending)
+        {
+            while (!pending.isEmpty())
+            {
+                try
+                {
+                    pending.wait();
+                }
+                catch (InterruptedException exception)
+                {
+                    throw new InterruptedIOException("Interrupted waiting for files to be written");
+                }
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Waits for a file to be written.
+     *
+     * @param target the file
+     * @throws IOException if a file couldn't be written
+     */
+    public void flush(File target) throws IOException
+    {
+        synchronized (pending)
+        {
+            while (pending.contains(target))
+            {
+                try
+                {
+                    pending.wait();
+                }
+                catch (InterruptedException exception)
+                {
+                    throw new InterruptedIOException("Interrupted waiting for " + target + " to be written");
+                }
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Stops the writer threads, discarding any queued files.
+     */
+    public void shutdown()
+    {
+        for (Writer writer : writers)
+        {
+            writer.interrupt();
+        }
+        for (Writer writer : writers)
+        {
+            try
+            {
+                writer.join();
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns a writer to give the next file to, waiting for one to become available if required.
+     * <p/>
+     * The writer must be returned to {@link #idle} once all of the file's chunks have been queued.
+     *
+     * @return the writer
+     * @throws IOException if interrupted
+     */
+    private Writer getWriter() throws IOException
+    {
+        try
+        {
+            return idle.take();
+        }
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Interrupted waiting for a writer");
+        }
+    }
+
+    /**
+     * Returns a free buffer, waiting for one to become available if required.
+     *
+     * @return a free buffer
+     * @throws IOException if interrupted
+     */
+    private byte[] getBuffer() throws IOException
+    {
+        try
+        {
+            return buffers.take();
+        }
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Interrupted waiting for a buffer");
+        }
+    }
+
+    /**
+     * Throws the first error encountered by a writer, if any.
+     *
+     * @throws IOException the writer error
+     */
+    private void checkError() throws IOException
+    {
+        synchronized (pending)
+        {
+            if (error != null)
+            {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Invoked by a writer when a file has been written, or has failed to be written.
+     *
+     * @param target    the file
+     * @param exception the error, or <tt>null</tt> if the file was written successfully
+     */
+    private void completed(File target, IOException exception)
+    {
+        synchronized (pending)
+        {
+            if (exception != null && error == null)
+            {
+                error = exception;
+            }
+            pending.remove(target);
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * A block of file data. A chunk without a buffer marks a file that couldn't be completely read.
+     */
+    private static class Chunk
+    {
+        private final PackFile file;
+
+        private final File target;
+
+        private final byte[] buffer;
+
+        private final int length;
+
+        private final boolean last;
+
+        public Chunk(PackFile file, File target, byte[] buffer, int length, boolean last)
+        {
+            this.file = file;
+            this.target = target;
+            this.buffer = buffer;
+            this.length = length;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Writes queued chunks to their target files.
+     */
+    private class Writer extends Thread
+    {
+
+        /**
+         * The chunks to write.
+         */
+        private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+
+        /**
+         * Queues a chunk for writing.
+         *
+         * @param chunk the chunk
+         */
+        public void add(Chunk chunk)
+        {
+            chunks.add(chunk);
+        }
+
+        @Override
+        public void run()
+        {
+            OutputStream out = null;
+            IOException failure = null;
+            try
+            {
+                while (true)
+                {
+                    Chunk chunk = chunks.take();
+                    if (chunk.buffer == null)
+                    {
+                        if (failure == null)
+                        {
+                            failure = new IOException("Failed to read the content of " + chunk.target);
+                        }
+                    }
+                    else
+                    {
+                        try
+                        {
+                            if (failure == null)
+                            {
+                                if (out == null)
+                                {
+                                    out = new FileOutputStream(chunk.target);
+                                }
+                                out.write(chunk.buffer, 0, chunk.length);
+                            }
+                        }
+                        catch (IOException exception)
+                        {
+                            failure = exception;
+                        }
+                        finally
+                        {
+                            buffers.add(chunk.buffer);
+                        }
+                    }
+                    if (chunk.last)
+                    {
+                        if (out != null)
+                        {
+                            try
+                            {
+                                out.close();
+                            }
+                            catch (IOException exception)
+                            {
+                                if (failure == null)
+                                {
+                                    failure = exception;
+                                }
+                            }
+                            out = null;
+                        }
+                        if (failure == null)
+                        {
+                            setLastModified(chunk.file, chunk.target);
+                        }
+                        completed(chunk.target, failure);
+                        failure = null;
+                    }
+                }
+            }
+            catch (InterruptedException ignore)
+            {
+                // shutting down
+            }
+            finally
+            {
+                FileUtils.close(out);
+            }
+        }
+
+        /**
+         * Sets the last-modified timestamp of a file from the pack-file meta-data.
+         *
+         * @param file   the pack file meta-data
+         * @param target the file
+         */
+        private void setLastModified(PackFile file, File target)
+        {
+            if (file.lastModified() >= 0 && !target.setLastModified(file.lastModified()))
+            {
+                logger.log(Level.WARNING, "Failed to set last modified timestamp for: " + target);
+            }
+        }
+    }
+}
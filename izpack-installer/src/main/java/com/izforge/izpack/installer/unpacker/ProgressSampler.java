@@ -0,0 +1,249 @@
+package com.izforge.izpack.installer.unpacker;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+import com.izforge.izpack.util.ByteProgressHandler;
+
+
+/**
+ * Coalesces the progress of unpacking, so that the progress handler is updated at a fixed rate rather than for
+ * every file.
+ * <p/>
+ * Unpacking threads publish their progress via {@link #progress(int, String)} without blocking. A background thread
+ * samples the latest progress, and forwards it to the handler if it has changed since the last sample. Step changes
+ * are forwarded immediately, after any pending progress, so the handler sees events in the order they were
+ * published.
+ * <p/>
+ * The no. of bytes unpacked is published via {@link #addBytes(long)}. If the handler is an
+ * {@link ByteProgressHandler}, it is also notified of the bytes unpacked, the throughput, and the estimated
+ * time remaining.
+ */
+public class ProgressSampler
+{
+
+    /**
+     * The default interval between samples, in milliseconds, i.e. 20 updates a second.
+     */
+    public static final long DEFAULT_INTERVAL = 50;
+
+    /**
+     * The progress handler.
+     */
+    private final AbstractUIProgressHandler handler;
+
+    /**
+     * The progress published since the last sample, or <tt>null</tt> if there is none.
+     */
+    private final AtomicReference<Progress> pending = new AtomicReference<Progress>();
+
+    /**
+     * The no. of bytes processed.
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * The total no. of bytes to process.
+     */
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    /**
+     * The no. of bytes processed, when the handler was last notified.
+     */
+    private long lastBytes = -1;
+
+    /**
+     * The throughput estimator.
+     */
+    private final ThroughputEstimator estimator = new ThroughputEstimator();
+
+    /**
+     * The sampling thread.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ProgressSampler.class.getName());
+
+
+    /**
+     * Constructs a <tt>ProgressSampler</tt>.
+     *
+     * @param handler  the handler to forward progress to
+     * @param interval the interval between samples, in milliseconds
+     */
+    public ProgressSampler(AbstractUIProgressHandler handler, long interval)
+    {
+        this.handler = handler;
+        estimator.start(System.currentTimeMillis(), 0);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack progress");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    flush();
+                }
+                catch (RuntimeException exception)
+                {
+                    // don't let a failing handler stop sampling
+                    logger.log(Level.WARNING, exception.getMessage(), exception);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes progress. This doesn't block; the handler is notified when the progress is next sampled.
+     *
+     * @param fileNo the no. of the file that will be unpacked next
+     * @param path   the path of the file
+     */
+    public void progress(int fileNo, String path)
+    {
+        pending.set(new Progress(fileNo, path));
+    }
+
+    /**
+     * Adds to the no. of bytes processed. This doesn't block.
+     *
+     * @param count the no. of bytes
+     */
+    public void addBytes(long count)
+    {
+        bytes.addAndGet(count);
+    }
+
+    /**
+     * Adds to the total no. of bytes to process. This doesn't block.
+     *
+     * @param count the no. of bytes. May be negative, to correct an over-estimate
+     */
+    public void addTotalBytes(long count)
+    {
+        totalBytes.addAndGet(count);
+    }
+
+    /**
+     * Returns the no. of bytes processed.
+     *
+     * @return the no. of bytes processed
+     */
+    public long getBytes()
+    {
+        return bytes.get();
+    }
+
+    /**
+     * Returns the total no. of bytes to process.
+     *
+     * @return the total no. of bytes
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes.get();
+    }
+
+    /**
+     * Notifies the handler of the start of a step, after any pending progress.
+     *
+     * @param stepName  the step name
+     * @param stepNo    the step number
+     * @param stepCount the no. of sub-steps in the step
+     */
+    public synchronized void nextStep(String stepName, int stepNo, int stepCount)
+    {
+        flush();
+        handler.nextStep(stepName, stepNo, stepCount);
+    }
+
+    /**
+     * Notifies the handler of any pending progress.
+     */
+    public synchronized void flush()
+    {
+        Progress progress = pending.getAndSet(null);
+        if (progress != null)
+        {
+            handler.progress(progress.fileNo, progress.path);
+        }
+        if (handler instanceof ByteProgressHandler)
+        {
+            long processed = bytes.get();
+            estimator.sample(System.currentTimeMillis(), processed);
+            if (processed != lastBytes)
+            {
+                lastBytes = processed;
+                long total = Math.max(totalBytes.get(), processed);
+                ((ByteProgressHandler) handler).byteProgress(processed, total, estimator.getBytesPerSecond(),
+                                                             estimator.getRemaining(processed, total));
+            }
+        }
+    }
+
+    /**
+     * Stops sampling, notifying the handler of any pending progress.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+        try
+        {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Published progress.
+     */
+    private static class Progress
+    {
+
+        /**
+         * The file number.
+         */
+        private final int fileNo;
+
+        /**
+         * The file path.
+         */
+        private final String path;
+
+        /**
+         * Constructs a <tt>Progress</tt>.
+         *
+         * @param fileNo the file number
+         * @param path   the file path
+         */
+        public Progress(int fileNo, String path)
+        {
+            this.fileNo = fileNo;
+            this.path = path;
+        }
+    }
+}
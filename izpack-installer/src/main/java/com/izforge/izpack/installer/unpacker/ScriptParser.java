@@ -27,7 +27,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.util.OsConstraintHelper;
@@ -40,6 +43,11 @@ import com.izforge.izpack.util.OsConstraintHelper;
  */
 public class ScriptParser
 {
+    /**
+     * The size of the buffers used to read and write files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     /**
      * The variable replacer.
      */
@@ -76,14 +84,23 @@ public class ScriptParser
         File parsedFile = File.createTempFile("izpp", null, file.getParentFile());
 
         // Parses the file
-        // (Use buffering because substitutor processes byte at a time)
-        FileInputStream inFile = new FileInputStream(file);
-        BufferedInputStream in = new BufferedInputStream(inFile, 5120);
-        FileOutputStream outFile = new FileOutputStream(parsedFile);
-        BufferedOutputStream out = new BufferedOutputStream(outFile, 5120);
-        replacer.substitute(in, out, parsable.type, parsable.encoding);
-        in.close();
-        out.close();
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            FileOutputStream out = new FileOutputStream(parsedFile);
+            try
+            {
+                parse(in, out, parsable.type, parsable.encoding);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
 
         // Replace the original file with the parsed one
         if (!file.delete())
@@ -95,4 +112,23 @@ public class ScriptParser
             throw new IOException("Could not rename file " + parsedFile + " to " + file);
         }
     }
+
+    /**
+     * Substitutes the variables of a stream, writing the result to another.
+     * <p/>
+     * This is used to parse files as they are unpacked. Neither stream is closed.
+     *
+     * @param in       the stream to parse
+     * @param out      the stream to write the parsed data to
+     * @param type     the type of the variables to substitute
+     * @param encoding the encoding of the stream. May be <tt>null</tt>
+     * @throws Exception if parsing fails
+     */
+    public void parse(InputStream in, OutputStream out, SubstitutionType type, String encoding) throws Exception
+    {
+        // Use buffering because substitutor processes byte at a time
+        BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        replacer.substitute(new BufferedInputStream(in, BUFFER_SIZE), buffered, type, encoding);
+        buffered.flush();
+    }
 }
@@ -0,0 +1,130 @@
+package com.izforge.izpack.installer.unpacker;
+
+
+/**
+ * Estimates the throughput of unpacking, and the time remaining.
+ * <p/>
+ * The throughput is an exponentially weighted moving average of the rate between samples, so that it follows
+ * changes in file sizes and disk speed without jumping on each sample.
+ */
+public class ThroughputEstimator
+{
+
+    /**
+     * The default time constant of the moving average, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_CONSTANT = 5000;
+
+    /**
+     * The time constant of the moving average, in milliseconds.
+     */
+    private final long timeConstant;
+
+    /**
+     * The time of the last sample, in milliseconds, or <tt>-1</tt> if none has been taken.
+     */
+    private long lastTime = -1;
+
+    /**
+     * The no. of bytes at the last sample.
+     */
+    private long lastBytes;
+
+    /**
+     * The average throughput, in bytes per millisecond, or <tt>-1</tt> if not yet known.
+     */
+    private double rate = -1;
+
+
+    /**
+     * Constructs a <tt>ThroughputEstimator</tt> with the default time constant.
+     */
+    public ThroughputEstimator()
+    {
+        this(DEFAULT_TIME_CONSTANT);
+    }
+
+    /**
+     * Constructs a <tt>ThroughputEstimator</tt>.
+     *
+     * @param timeConstant the time constant of the moving average, in milliseconds
+     */
+    public ThroughputEstimator(long timeConstant)
+    {
+        this.timeConstant = timeConstant;
+    }
+
+    /**
+     * Starts estimating.
+     *
+     * @param time  the current time, in milliseconds
+     * @param bytes the no. of bytes already processed
+     */
+    public synchronized void start(long time, long bytes)
+    {
+        lastTime = time;
+        lastBytes = bytes;
+        rate = -1;
+    }
+
+    /**
+     * Samples the no. of bytes processed.
+     *
+     * @param time  the current time, in milliseconds
+     * @param bytes the no. of bytes processed so far
+     */
+    public synchronized void sample(long time, long bytes)
+    {
+        if (lastTime == -1)
+        {
+            start(time, bytes);
+        }
+        else if (time > lastTime)
+        {
+            long elapsed = time - lastTime;
+            double current = (double) (bytes - lastBytes) / elapsed;
+            if (rate < 0)
+            {
+                rate = current;
+            }
+            else
+            {
+                double weight = 1 - Math.exp(-(double) elapsed / timeConstant);
+                rate += weight * (current - rate);
+            }
+            lastTime = time;
+            lastBytes = bytes;
+        }
+    }
+
+    /**
+     * Returns the throughput.
+     *
+     * @return the throughput, in bytes per second, or <tt>0</tt> if not yet known
+     */
+    public synchronized long getBytesPerSecond()
+    {
+        return (rate > 0) ? Math.round(rate * 1000) : 0;
+    }
+
+    /**
+     * Estimates the time remaining.
+     *
+     * @param bytes      the no. of bytes processed so far
+     * @param totalBytes the total no. of bytes to process
+     * @return the estimated time remaining, in milliseconds, or <tt>-1</tt> if it cannot be estimated yet
+     */
+    public synchronized long getRemaining(long bytes, long totalBytes)
+    {
+        long remaining = -1;
+        if (bytes >= totalBytes)
+        {
+            remaining = 0;
+        }
+        else if (rate > 0)
+        {
+            remaining = Math.round((totalBytes - bytes) / rate);
+        }
+        return remaining;
+    }
+}
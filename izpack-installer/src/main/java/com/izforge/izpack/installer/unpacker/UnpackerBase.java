@@ -35,17 +35,34 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Pack200;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.OverrideType;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackFileReader;
 import com.izforge.izpack.api.data.ResourceManager;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.event.InstallerListener;
@@ -73,6 +90,7 @@ import com.izforge.izpack.util.file.FileUtils;
 import com.izforge.izpack.util.file.GlobPatternMapper;
 import com.izforge.izpack.util.file.types.FileSet;
 import com.izforge.izpack.util.os.FileQueue;
+import com.izforge.izpack.util.os.FileQueueOperation;
 
 
 /**
@@ -172,6 +190,59 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private boolean disableInterrupt = false;
 
+    /**
+     * Installed copies of back referenced pack file data, keyed on pack name and pack file number.
+     */
+    private final Map<String, InstalledFile> canonicalFiles
+            = Collections.synchronizedMap(new HashMap<String, InstalledFile>());
+
+    /**
+     * The translated target directories of pack files, keyed on their untranslated path.
+     */
+    private final Map<String, String> translatedDirs = new ConcurrentHashMap<String, String>();
+
+    /**
+     * The directories known to exist, either created by the unpacker or found to exist.
+     */
+    private final Set<File> directories = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    /**
+     * The absolute paths of the files that were parsed as they were unpacked, mapped to the name of the pack that
+     * unpacked them.
+     */
+    private final Map<String, String> parsedFiles = new ConcurrentHashMap<String, String>();
+
+    /**
+     * The parsable files read from packs, mapped to the name of the pack they were read from.
+     */
+    private final Map<ParsableFile, String> parsablePacks
+            = Collections.synchronizedMap(new IdentityHashMap<ParsableFile, String>());
+
+    /**
+     * Parses {@link PackFile#isParsable() parsable} pack files as they are unpacked.
+     */
+    private ScriptParser parser;
+
+    /**
+     * Forwards file and byte progress to the handler at a fixed rate, while unpacking.
+     */
+    private ProgressSampler sampler;
+
+    /**
+     * Writes files on background threads, if pipelined unpacking is enabled.
+     */
+    private PipelinedFileWriter pipeline;
+
+    /**
+     * The pack being unpacked by the current thread, when packs are unpacked concurrently.
+     */
+    private final ThreadLocal<PackResult> concurrentPack = new ThreadLocal<PackResult>();
+
+    /**
+     * The files installed by packs unpacked concurrently, keyed on path.
+     */
+    private final Map<String, Claim> claims = new HashMap<String, Claim>();
+
     /**
      * The logger.
      */
@@ -250,7 +321,15 @@ public abstract class UnpackerBase implements IUnpacker
             List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
 
             preUnpack();
-            FileQueue queue = unpack(parsables, executables, updateChecks);
+            FileQueue queue;
+            try
+            {
+                queue = unpack(parsables, executables, updateChecks);
+            }
+            finally
+            {
+                stopSampler();
+            }
             postUnpack(queue, parsables, executables, updateChecks);
         }
         catch (Exception exception)
@@ -370,9 +449,17 @@ public abstract class UnpackerBase implements IUnpacker
         int count = installData.getSelectedPacks().size();
 
         logger.fine("Unpacker starting");
+        translatedDirs.clear();
+        directories.clear();
         handler.startAction("Unpacking", count);
 
         listeners.beforePacks(installData, count, handler);
+
+        sampler = new ProgressSampler(handler, ProgressSampler.DEFAULT_INTERVAL);
+        for (Pack pack : installData.getSelectedPacks())
+        {
+            sampler.addTotalBytes(pack.getSize());
+        }
     }
 
     /**
@@ -392,6 +479,23 @@ public abstract class UnpackerBase implements IUnpacker
         List<Pack> packs = getInstallData().getSelectedPacks();
         int count = packs.size();
 
+        // packs can only be unpacked concurrently if no listener needs to see each file as it is installed, and
+        // the files installed don't depend on the order the packs are unpacked in
+        int threads = Math.min(getUnpackThreads(), count);
+        if (threads > 1 && !listeners.isFileListener() && !hasSharedTargets(packs))
+        {
+            return unpackConcurrently(packs, threads, parsables, executables, updateChecks);
+        }
+
+        // files can only be written in the background if no listener needs to see each file once written. They
+        // aren't when packs are unpacked concurrently, as each file must be written while its claim is held
+        int writers = getInstallData().getInfo().getUnpackWriters();
+        if (writers > 0 && !listeners.isFileListener())
+        {
+            logger.fine("Writing files using " + writers + " threads");
+            pipeline = new PipelinedFileWriter(writers);
+        }
+
         // Unpack the selected packs
         for (int i = 0; i < count; i++)
         {
@@ -405,12 +509,208 @@ public abstract class UnpackerBase implements IUnpacker
                     break;
                 }
 
+                flushProgress();
                 listeners.afterPack(pack, i, handler);
             }
+            else
+            {
+                reportTotalBytes(-pack.getSize());
+            }
         }
         return queue;
     }
 
+    /**
+     * Determines if any of the packs install files to the same target path, where the files may not be overwritten
+     * unconditionally. The files installed then depend on the order the packs are unpacked in.
+     *
+     * @param packs the selected packs
+     * @return <tt>true</tt> if the packs must be unpacked sequentially
+     */
+    private boolean hasSharedTargets(List<Pack> packs)
+    {
+        Set<String> names = new HashSet<String>();
+        for (Pack pack : packs)
+        {
+            names.add(pack.getName());
+        }
+        for (Pack pack : packs)
+        {
+            for (String other : pack.getSharedTargetPacks())
+            {
+                if (names.contains(other))
+                {
+                    logger.fine("Unpacking packs sequentially, as packs " + pack.getName() + " and " + other
+                                        + " install the same files");
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unpacks the selected packs concurrently.
+     * <p/>
+     * Listener notifications are never concurrent. {@link InstallerListener#beforePack} is invoked in pack order, as
+     * each pack starts to be unpacked, and not until it has been invoked for the preceding pack.
+     * {@link InstallerListener#afterPack} is invoked in pack order, once a pack and all preceding packs have been
+     * unpacked. As later packs may start before earlier packs complete, <em>beforePack</em> for a pack may be
+     * invoked before <em>afterPack</em> for the preceding packs.
+     * Progress is reported for one pack at a time, in pack order, and the installed files are registered with the
+     * {@link UninstallData} in pack order, so that the outcome is the same as when packs are unpacked sequentially.
+     *
+     * @param packs        the selected packs
+     * @param threads      the no. of threads to use
+     * @param parsables    used to collect parsable files in the pack
+     * @param executables  used to collect executable files files in the pack
+     * @param updateChecks used to collect update checks in the pack
+     * @return the file queue, or <tt>null</tt> if no queuing is required
+     * @throws Exception for any error
+     */
+    private FileQueue unpackConcurrently(List<Pack> packs, int threads, List<ParsableFile> parsables,
+                                         List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
+            throws Exception
+    {
+        FileQueue queue = null;
+        logger.fine("Unpacking packs using " + threads + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<PackResult> results = new ArrayList<PackResult>();
+            PackResult last = null;
+            for (int i = 0; i < packs.size(); i++)
+            {
+                final Pack pack = packs.get(i);
+                if (shouldUnpack(pack))
+                {
+                    final PackResult result = new PackResult(i);
+                    final PackResult previous = last;
+                    result.future = executor.submit(new Callable<FileQueue>()
+                    {
+                        @Override
+                        public FileQueue call() throws Exception
+                        {
+                            try
+                            {
+                                // the preceding pack was submitted first, so has been started by the pool
+                                if (previous != null)
+                                {
+                                    previous.started.await();
+                                    if (!previous.notified)
+                                    {
+                                        // the preceding pack failed, and its error will be reported instead
+                                        return null;
+                                    }
+                                }
+                                synchronized (listeners)
+                                {
+                                    listeners.beforePack(pack, result.packNo, handler);
+                                }
+                                result.notified = true;
+                            }
+                            finally
+                            {
+                                result.started.countDown();
+                            }
+                            concurrentPack.set(result);
+                            try
+                            {
+                                return unpack(pack, result.packNo, null, result.parsables, result.executables,
+                                              result.updateChecks);
+                            }
+                            finally
+                            {
+                                concurrentPack.remove();
+                            }
+                        }
+                    });
+                    results.add(result);
+                    last = result;
+                }
+                else
+                {
+                    reportTotalBytes(-pack.getSize());
+                }
+            }
+
+            for (PackResult result : results)
+            {
+                Pack pack = packs.get(result.packNo);
+                result.startReporting();
+                FileQueue packQueue = result.get();
+
+                for (String path : result.files)
+                {
+                    uninstallData.addFile(path, pack.isUninstall());
+                }
+                parsables.addAll(result.parsables);
+                executables.addAll(result.executables);
+                updateChecks.addAll(result.updateChecks);
+                if (packQueue != null)
+                {
+                    if (queue == null)
+                    {
+                        queue = packQueue;
+                    }
+                    else
+                    {
+                        for (FileQueueOperation operation : packQueue.getOperations())
+                        {
+                            queue.add(operation);
+                        }
+                    }
+                }
+                if (isInterrupted())
+                {
+                    break;
+                }
+
+                flushProgress();
+                synchronized (listeners)
+                {
+                    listeners.afterPack(pack, result.packNo, handler);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        return queue;
+    }
+
+    /**
+     * Returns the no. of threads to use to unpack packs concurrently.
+     *
+     * @return the no. of threads. If <tt>1</tt> or less, packs are unpacked sequentially
+     */
+    protected int getUnpackThreads()
+    {
+        return installData.getInfo().getUnpackThreads();
+    }
+
+    /**
+     * Returns the claim on a file installed by packs unpacked concurrently.
+     *
+     * @param path the file path
+     * @return the claim
+     */
+    private Claim getClaim(String path)
+    {
+        synchronized (claims)
+        {
+            Claim claim = claims.get(path);
+            if (claim == null)
+            {
+                claim = new Claim();
+                claims.put(path, claim);
+            }
+            return claim;
+        }
+    }
+
     /**
      * Unpacks a pack.
      *
@@ -433,17 +733,26 @@ public abstract class UnpackerBase implements IUnpacker
         {
             in = getPackStream(pack.getName(), pack.isUninstall());
             packInputStream = new ObjectInputStream(in);
+            PackFileReader reader = new PackFileReader(packInputStream);
 
-            int fileCount = packInputStream.readInt();
+            int fileCount = reader.readHeader();
 
-            AbstractUIProgressHandler handler = getHandler();
             String stepName = getStepName(pack);
-            handler.nextStep(stepName, packNo + 1, fileCount);
+            PackResult result = concurrentPack.get();
+            if (result != null)
+            {
+                result.nextStep(stepName, packNo + 1, fileCount);
+            }
+            else
+            {
+                reportNextStep(stepName, packNo + 1, fileCount);
+            }
 
+            long bytes = 0;
             for (int i = 0; i < fileCount; ++i)
             {
                 // read the header
-                PackFile file = (PackFile) packInputStream.readObject();
+                PackFile file = reader.read();
                 if ((file.hasCondition() && !isConditionTrue(file.getCondition()))
                         || !OsConstraintHelper.oneMatchesCurrentSystem(file.osConstraints()))
                 {
@@ -455,8 +764,23 @@ public abstract class UnpackerBase implements IUnpacker
                     // unpack the file
                     queue = unpack(file, packInputStream, i, pack, queue);
                 }
+                // skipped files count towards progress, as they are included in the pack size
+                bytes += file.length();
+                reportBytes(file.length());
             }
+            // correct the total for packs whose size doesn't match their files
+            reportTotalBytes(bytes - pack.getSize());
+            if (pipeline != null)
+            {
+                // wait for the files of the pack to be written
+                pipeline.flush();
+            }
+            int parsableCount = parsables.size();
             readParsableFiles(packInputStream, parsables);
+            for (ParsableFile parsable : parsables.subList(parsableCount, parsables.size()))
+            {
+                parsablePacks.put(parsable, pack.getName());
+            }
             readExecutableFiles(packInputStream, executables);
             readUpdateChecks(packInputStream, updateChecks);
         }
@@ -484,8 +808,7 @@ public abstract class UnpackerBase implements IUnpacker
             throws Exception
     {
         // translate & build the path
-        Variables variables = getInstallData().getVariables();
-        String path = IoHelper.translatePath(file.getTargetPath(), variables);
+        String path = getTargetPath(file);
         File target = new File(path);
         File dir = target;
         if (!file.isDirectory())
@@ -496,48 +819,164 @@ public abstract class UnpackerBase implements IUnpacker
         createDirectory(dir, file);
 
         // Add path to the log
-        getUninstallData().addFile(path, pack.isUninstall());
+        PackResult result = concurrentPack.get();
+        if (result != null)
+        {
+            result.addFile(path);
+        }
+        else
+        {
+            getUninstallData().addFile(path, pack.isUninstall());
+        }
 
         if (file.isDirectory())
         {
             return queue;
         }
 
+        if (result != null)
+        {
+            // serialize installation of the same file by different packs, with the later pack taking precedence.
+            // Files aren't written in the background here, so the file has been written when the claim is released
+            Claim claim = getClaim(path);
+            synchronized (claim)
+            {
+                if (claim.packNo > result.packNo)
+                {
+                    // a later pack has already installed the file, which would have replaced this one. Packs are only
+                    // unpacked concurrently if shared files are overwritten unconditionally
+                    skipData(file, pack, packInputStream);
+                    return queue;
+                }
+                claim.packNo = result.packNo;
+                result.progress(fileNo, path);
+                return unpack(file, target, packInputStream, fileNo, pack, queue);
+            }
+        }
+        reportProgress(fileNo, path);
+        return unpack(file, target, packInputStream, fileNo, pack, queue);
+    }
+
+    /**
+     * Translates the target path of a pack file.
+     * <p/>
+     * Pack files in the same directory share the translated directory, so that variables are only substituted
+     * once for each directory. Variables are substituted as is for names that may contain variable references or
+     * masked slashes.
+     *
+     * @param file the pack file
+     * @return the translated path
+     */
+    private String getTargetPath(PackFile file)
+    {
+        Variables variables = getInstallData().getVariables();
+        String path = file.getTargetPath();
+        int index = path.lastIndexOf('/') + 1;
+        if (index == 0 || !isPlainName(path, index) || path.lastIndexOf("${", index) > path.lastIndexOf('}', index))
+        {
+            return IoHelper.translatePath(path, variables);
+        }
+        String dir = path.substring(0, index);
+        String translated = translatedDirs.get(dir);
+        if (translated == null)
+        {
+            translated = IoHelper.translatePath(dir, variables);
+            translatedDirs.put(dir, translated);
+        }
+        return translated + path.substring(index);
+    }
+
+    /**
+     * Determines if the name part of a path is unaffected by variable substitution and path translation.
+     *
+     * @param path  the path
+     * @param start the start of the name
+     * @return <tt>true</tt> if the name can be used as is
+     */
+    private static boolean isPlainName(String path, int start)
+    {
+        for (int i = start; i < path.length(); ++i)
+        {
+            char c = path.charAt(i);
+            if (c == '$' || c == '\\' || c == '~')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unpacks a pack file to its target.
+     *
+     * @param file            the pack file
+     * @param target          the target
+     * @param packInputStream the pack file input stream
+     * @param fileNo          the pack file number
+     * @param pack            the pack that the pack file comes from
+     * @param queue           the file queue. If <tt>null</tt>, and file queueing is required, one will be created
+     * @return the file queue. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     * @throws Exception   for any other error
+     */
+    private FileQueue unpack(PackFile file, File target, ObjectInputStream packInputStream, int fileNo, Pack pack,
+                             FileQueue queue) throws Exception
+    {
         listeners.beforeFile(target, file);
 
-        AbstractUIProgressHandler handler = getHandler();
-        handler.progress(fileNo, path);
+        if (pipeline != null && pipeline.isPending(target))
+        {
+            // the file is being written by an earlier pack file
+            pipeline.flush(target);
+        }
 
         // if this file exists and should not be overwritten, check what to do
         if (target.exists() && (file.override() != OverrideType.OVERRIDE_TRUE))
         {
             if (!isOverwriteFile(file, target))
             {
-                if (!file.isBackReference() && !pack.isLoose())
-                {
-                    if (file.isPack200Jar())
-                    {
-                        skip(packInputStream, Integer.SIZE / 8);
-                    }
-                    else
-                    {
-                        skip(packInputStream, file.length());
-                    }
-                }
+                skipData(file, pack, packInputStream);
                 return queue;
             }
         }
 
         handleOverrideRename(file, target);
-        queue = extract(file, target, packInputStream, pack, queue);
+        queue = extract(file, fileNo, target, packInputStream, pack, queue);
 
         return queue;
     }
 
+    /**
+     * Skips the data of a pack file that won't be installed.
+     *
+     * @param file            the pack file
+     * @param pack            the pack that the pack file comes from
+     * @param packInputStream the pack file input stream
+     * @throws IOException for any I/O error
+     */
+    private void skipData(PackFile file, Pack pack, ObjectInputStream packInputStream) throws IOException
+    {
+        if (!file.isBackReference() && !pack.isLoose() && file.getStreamResourceName() == null)
+        {
+            if (file.isPack200Jar())
+            {
+                skip(packInputStream, Integer.SIZE / 8);
+            }
+            else
+            {
+                skip(packInputStream, file.length());
+            }
+        }
+    }
+
     /**
      * Extracts a pack file.
+     * <p/>
+     * Back references are resolved by copying a previously installed copy of the referenced data where possible,
+     * to avoid re-reading the referenced pack.
      *
      * @param file            the pack file
+     * @param fileNo          the pack file number
      * @param target          the file to write to
      * @param packInputStream the pack file input stream
      * @param pack            the pack that the pack file comes from
@@ -546,8 +985,8 @@ public abstract class UnpackerBase implements IUnpacker
      * @throws IOException for any I/O error
      * @throws Exception   for any other error
      */
-    protected FileQueue extract(PackFile file, File target, ObjectInputStream packInputStream, Pack pack,
-                                FileQueue queue)
+    protected FileQueue extract(PackFile file, int fileNo, File target, ObjectInputStream packInputStream,
+                                Pack pack, FileQueue queue)
             throws Exception
     {
         ObjectInputStream packStream = packInputStream;
@@ -556,27 +995,105 @@ public abstract class UnpackerBase implements IUnpacker
         {
             FileUnpacker unpacker;
 
-            if (!pack.isLoose() && file.isBackReference())
+            // the key of the installed data that later back references may copy. Files parsed as they are
+            // unpacked don't hold the data as packed, so cannot be shared
+            String canonicalKey = null;
+            File canonical = null;
+            if (!pack.isLoose() && file.getStreamResourceName() == null && !file.isParsable())
             {
-                in = getPackStream(file.previousPackId, pack.isUninstall());
-                packStream = new ObjectInputStream(in);
-                // must wrap for blockdata use by ObjectStream (otherwise strange result)
-                // skip on underlying stream (for some reason not possible on ObjectStream)
-                skip(in, file.offsetInPreviousPack - 4);
-                // but the stream header is now already read (== 4 bytes)
+                if (!file.isBackReference())
+                {
+                    if (file.isBackReferenced())
+                    {
+                        canonicalKey = getCanonicalKey(pack.getName(), fileNo);
+                    }
+                }
+                else if (file.getPreviousPackFileIndex() != -1)
+                {
+                    canonicalKey = getCanonicalKey(file.previousPackId, file.getPreviousPackFileIndex());
+                    InstalledFile installed = canonicalFiles.get(canonicalKey);
+                    if (installed != null && installed.isUnchanged())
+                    {
+                        canonical = installed.file;
+                    }
+                }
             }
 
             unpacker = createFileUnpacker(file, pack, queue, cancellable);
-            unpacker.unpack(file, packStream, target);
+            if (file.isParsable())
+            {
+                unpacker.setParser(getParser());
+            }
+            boolean pipelined = canonicalKey == null && !file.isParsable() && isPipelined(file, unpacker);
 
+            if (!pack.isLoose() && file.getStreamResourceName() != null)
+            {
+                // the data is stored in its own resource, so read it directly
+                if (file.isStreamStored())
+                {
+                    in = resourceManager.getInputStream(file.getStreamResourceName());
+                }
+                else
+                {
+                    in = getStream(file.getStreamResourceName());
+                }
+                if (pipelined)
+                {
+                    pipeline.write(file, in, target, cancellable);
+                }
+                else
+                {
+                    unpacker.unpackStream(file, in, target);
+                }
+            }
+            else if (canonical != null)
+            {
+                // the referenced data has already been installed, so copy it
+                in = new FileInputStream(canonical);
+                unpacker.unpackStream(file, in, target);
+            }
+            else
+            {
+                if (!pack.isLoose() && file.isBackReference())
+                {
+                    in = getPackStream(file.previousPackId, pack.isUninstall());
+                    packStream = new ObjectInputStream(in);
+                    // must wrap for blockdata use by ObjectStream (otherwise strange result)
+                    // skip on underlying stream (for some reason not possible on ObjectStream)
+                    skip(in, file.offsetInPreviousPack - 4);
+                    // but the stream header is now already read (== 4 bytes)
+                }
+
+                if (pipelined)
+                {
+                    pipeline.write(file, packStream, target, cancellable);
+                }
+                else
+                {
+                    unpacker.unpack(file, packStream, target);
+                }
+            }
 
             if (isInterrupted())
             {
                 return queue;
             }
 
+            if (unpacker.isParsed())
+            {
+                parsedFiles.put(target.getAbsolutePath(), pack.getName());
+            }
+            else
+            {
+                parsedFiles.remove(target.getAbsolutePath());
+            }
+
             if (!unpacker.isQueued())
             {
+                if (canonicalKey != null && canonical == null)
+                {
+                    canonicalFiles.put(canonicalKey, new InstalledFile(target));
+                }
                 listeners.afterFile(target, file);
             }
         }
@@ -591,6 +1108,47 @@ public abstract class UnpackerBase implements IUnpacker
         return queue;
     }
 
+    /**
+     * Determines if a pack file can be written in the background.
+     * <p/>
+     * This only applies to plain files that don't need to be queued.
+     *
+     * @param file     the pack file
+     * @param unpacker the unpacker for the file
+     * @return <tt>true</tt> if the file can be written in the background
+     */
+    private boolean isPipelined(PackFile file, FileUnpacker unpacker)
+    {
+        return pipeline != null && unpacker instanceof DefaultFileUnpacker
+                && (file.blockable() == Blockable.BLOCKABLE_NONE || !platform.isA(Platform.Name.WINDOWS));
+    }
+
+    /**
+     * Returns the parser used to parse pack files as they are unpacked.
+     *
+     * @return the parser
+     */
+    private synchronized ScriptParser getParser()
+    {
+        if (parser == null)
+        {
+            parser = new ScriptParser(getVariableSubstitutor());
+        }
+        return parser;
+    }
+
+    /**
+     * Returns the key of installed pack file data, for back reference resolution.
+     *
+     * @param packName the pack name
+     * @param fileNo   the pack file number
+     * @return the key
+     */
+    private String getCanonicalKey(String packName, int fileNo)
+    {
+        return packName + "/" + fileNo;
+    }
+
     /**
      * Skips a pack file.
      *
@@ -601,7 +1159,7 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void skip(PackFile file, Pack pack, ObjectInputStream packInputStream) throws IOException
     {
-        if (!pack.isLoose() && !file.isBackReference())
+        if (!pack.isLoose() && !file.isBackReference() && file.getStreamResourceName() == null)
         {
             skip(packInputStream, file.length());
         }
@@ -702,9 +1260,109 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void cleanup()
     {
+        stopSampler();
+        if (pipeline != null)
+        {
+            pipeline.shutdown();
+            pipeline = null;
+        }
         state = State.READY;
     }
 
+    /**
+     * Notifies the handler of the start of a pack, after any pending file progress.
+     *
+     * @param stepName  the step name
+     * @param stepNo    the step number
+     * @param stepCount the no. of files in the pack
+     */
+    private void reportNextStep(String stepName, int stepNo, int stepCount)
+    {
+        ProgressSampler sampler = this.sampler;
+        if (sampler != null)
+        {
+            sampler.nextStep(stepName, stepNo, stepCount);
+        }
+        else
+        {
+            handler.nextStep(stepName, stepNo, stepCount);
+        }
+    }
+
+    /**
+     * Reports the unpacking of a file.
+     * <p/>
+     * While unpacking, progress is coalesced and forwarded to the handler at a fixed rate, so that packs of small
+     * files aren't throttled by the user interface.
+     *
+     * @param fileNo the file number
+     * @param path   the file path
+     */
+    private void reportProgress(int fileNo, String path)
+    {
+        ProgressSampler sampler = this.sampler;
+        if (sampler != null)
+        {
+            sampler.progress(fileNo, path);
+        }
+        else
+        {
+            handler.progress(fileNo, path);
+        }
+    }
+
+    /**
+     * Reports the no. of bytes of pack files processed, whether installed or skipped.
+     *
+     * @param bytes the no. of bytes
+     */
+    private void reportBytes(long bytes)
+    {
+        ProgressSampler sampler = this.sampler;
+        if (sampler != null && bytes != 0)
+        {
+            sampler.addBytes(bytes);
+        }
+    }
+
+    /**
+     * Adjusts the total no. of bytes to unpack.
+     *
+     * @param bytes the no. of bytes to add. May be negative
+     */
+    private void reportTotalBytes(long bytes)
+    {
+        ProgressSampler sampler = this.sampler;
+        if (sampler != null && bytes != 0)
+        {
+            sampler.addTotalBytes(bytes);
+        }
+    }
+
+    /**
+     * Notifies the handler of any pending file progress.
+     */
+    private void flushProgress()
+    {
+        ProgressSampler sampler = this.sampler;
+        if (sampler != null)
+        {
+            sampler.flush();
+        }
+    }
+
+    /**
+     * Stops forwarding file progress to the handler, after notifying it of any pending progress.
+     */
+    private void stopSampler()
+    {
+        if (sampler != null)
+        {
+            sampler.shutdown();
+            sampler = null;
+        }
+    }
+
     /**
      * Returns the installation data.
      *
@@ -869,7 +1527,15 @@ public abstract class UnpackerBase implements IUnpacker
             try
             {
                 tempFile = WebRepositoryAccessor.getCachedUrl(packURL, tempFolder);
-                uninstallData.addFile(tempFile, uninstall);
+                PackResult result = concurrentPack.get();
+                if (result != null)
+                {
+                    result.addFile(tempFile);
+                }
+                else
+                {
+                    uninstallData.addFile(tempFile, uninstall);
+                }
             }
             catch (Exception e)
             {
@@ -897,6 +1563,30 @@ public abstract class UnpackerBase implements IUnpacker
                                              new FileNotFoundException(url.toString()));
             }
         }
+        return decode(in);
+    }
+
+    /**
+     * Returns a stream to the data of a pack file stored in its own installer resource.
+     *
+     * @param name the resource name
+     * @return the stream
+     * @throws Exception if the resource cannot be found or decoded
+     */
+    protected InputStream getStream(String name) throws Exception
+    {
+        return decode(resourceManager.getInputStream(name));
+    }
+
+    /**
+     * Decodes a stream using the pack decoder, if one is configured.
+     *
+     * @param in the stream to decode. May be <tt>null</tt>
+     * @return the decoded stream
+     * @throws Exception if the decoder cannot be created
+     */
+    private InputStream decode(InputStream in) throws Exception
+    {
         if (in != null && installData.getInfo().getPackDecoderClassName() != null)
         {
             Class<Object> decoder = (Class<Object>) Class.forName(installData.getInfo().getPackDecoderClassName());
@@ -933,17 +1623,23 @@ public abstract class UnpackerBase implements IUnpacker
     protected boolean createDirectory(File dir, PackFile file) throws Exception
     {
         boolean ok = true;
+        if (directories.contains(dir))
+        {
+            // already created or found to exist
+            return true;
+        }
         if (!dir.exists())
         {
             if (!listeners.isFileListener())
             {
-                // Create it in one step.
-                if (!dir.mkdirs())
+                // Create it in one step. It may have been created concurrently by another pack
+                if (!dir.mkdirs() && !dir.isDirectory())
                 {
                     handler.emitError("Error creating directories",
                                       "Could not create directory\n" + dir.getPath());
                     handler.stopAction();
                     result = false;
+                    ok = false;
                 }
             }
             else
@@ -969,33 +1665,134 @@ public abstract class UnpackerBase implements IUnpacker
                 }
             }
         }
-        else
+        if (ok)
         {
-            ok = true;
+            directories.add(dir);
         }
         return ok;
     }
 
     /**
      * Parses {@link ParsableFile} instances collected during unpacking.
+     * <p/>
+     * A file is skipped if it was parsed as it was unpacked, by the pack it was read from. The compiler only marks a
+     * pack file to be parsed as it is unpacked if its pack has no other parsable file with the same path, so this
+     * skips that parsable file alone. If
+     * {@link com.izforge.izpack.api.data.Info#getParsers()} is greater than <tt>1</tt>, files are parsed
+     * concurrently, with each file parsed by a single thread.
      *
      * @param files the files to parse
      * @throws Exception if parsing fails
      */
     private void parseFiles(List<ParsableFile> files) throws Exception
     {
-        if (!files.isEmpty())
+        // group the files by path, so that files parsed more than once are parsed in order
+        Map<String, List<ParsableFile>> paths = new LinkedHashMap<String, List<ParsableFile>>();
+        for (ParsableFile file : files)
+        {
+            String path = new File(file.path).getAbsolutePath();
+            String pack = parsablePacks.get(file);
+            if (pack == null || !pack.equals(parsedFiles.get(path)))
+            {
+                List<ParsableFile> list = paths.get(path);
+                if (list == null)
+                {
+                    list = new ArrayList<ParsableFile>();
+                    paths.put(path, list);
+                }
+                list.add(file);
+            }
+        }
+        if (!paths.isEmpty())
         {
             ScriptParser parser = new ScriptParser(getVariableSubstitutor());
-            for (ParsableFile file : files)
+            int threads = Math.min(getInstallData().getInfo().getParsers(), paths.size());
+            if (threads > 1)
             {
-                parser.parse(file);
-                if (isInterrupted())
+                parseFiles(parser, paths.values(), threads);
+            }
+            else
+            {
+                for (List<ParsableFile> list : paths.values())
+                {
+                    parseFiles(parser, list);
+                    if (isInterrupted())
+                    {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses files concurrently.
+     *
+     * @param parser  the parser
+     * @param files   the files to parse, grouped by path
+     * @param threads the no. of threads to use
+     * @throws Exception if parsing fails
+     */
+    private void parseFiles(final ScriptParser parser, Collection<List<ParsableFile>> files, int threads)
+            throws Exception
+    {
+        logger.fine("Parsing files using " + threads + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final List<ParsableFile> list : files)
+            {
+                futures.add(executor.submit(new Callable<Void>()
                 {
-                    return;
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        if (!isInterrupted())
+                        {
+                            parseFiles(parser, list);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException exception)
+                {
+                    Throwable cause = exception.getCause();
+                    if (cause instanceof Exception)
+                    {
+                        throw (Exception) cause;
+                    }
+                    throw exception;
                 }
             }
         }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Parses the files with the same path, in order.
+     *
+     * @param parser the parser
+     * @param files  the files to parse
+     * @throws Exception if parsing fails
+     */
+    private void parseFiles(ScriptParser parser, List<ParsableFile> files) throws Exception
+    {
+        for (ParsableFile file : files)
+        {
+            parser.parse(file);
+        }
     }
 
     /**
@@ -1075,8 +1872,8 @@ public abstract class UnpackerBase implements IUnpacker
                         }
                     }
                 }
+                // the scanner has already scanned the install path
                 DirectoryScanner scanner = fileset.getDirectoryScanner();
-                scanner.scan();
                 String[] srcFiles = scanner.getIncludedFiles();
                 String[] srcDirs = scanner.getIncludedDirectories();
 
@@ -1437,5 +2234,201 @@ public abstract class UnpackerBase implements IUnpacker
         return state == State.INTERRUPT || state == State.INTERRUPTED;
     }
 
-}
 
+    /**
+     * An installed file, used to detect if the file has changed since installation.
+     */
+    private static class InstalledFile
+    {
+        private final File file;
+
+        private final long length;
+
+        private final long lastModified;
+
+        public InstalledFile(File file)
+        {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        /**
+         * Determines if the file is unchanged since it was installed.
+         *
+         * @return <tt>true</tt> if the file is unchanged
+         */
+        public boolean isUnchanged()
+        {
+            return file.isFile() && file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * A file installed by packs unpacked concurrently.
+     */
+    private static class Claim
+    {
+        /**
+         * The no. of the last pack to install the file.
+         */
+        private int packNo = -1;
+    }
+
+    /**
+     * The result of unpacking a pack concurrently.
+     * <p/>
+     * This collects the side effects of unpacking, so that they can be applied in pack order.
+     */
+    private class PackResult
+    {
+        /**
+         * The pack number.
+         */
+        private final int packNo;
+
+        /**
+         * The paths of the installed files, in installation order.
+         */
+        private final List<String> files = Collections.synchronizedList(new ArrayList<String>());
+
+        /**
+         * The parsable files.
+         */
+        private final List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+
+        /**
+         * The executable files.
+         */
+        private final List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
+
+        /**
+         * The update checks.
+         */
+        private final List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
+
+        /**
+         * The future result of unpacking the pack.
+         */
+        private Future<FileQueue> future;
+
+        /**
+         * Released once listeners have been notified that the pack is starting, or that failed.
+         */
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        /**
+         * Determines if listeners were notified that the pack is starting.
+         */
+        private volatile boolean notified;
+
+        /**
+         * Determines if progress is reported to the handler.
+         */
+        private boolean reporting;
+
+        /**
+         * The last reported step.
+         */
+        private String stepName;
+
+        private int stepNo;
+
+        private int stepCount;
+
+        /**
+         * The last reported file.
+         */
+        private String path;
+
+        private int fileNo;
+
+        public PackResult(int packNo)
+        {
+            this.packNo = packNo;
+        }
+
+        /**
+         * Registers an installed file.
+         *
+         * @param path the file path
+         */
+        public void addFile(String path)
+        {
+            files.add(path);
+        }
+
+        /**
+         * Reports the start of the pack.
+         *
+         * @param stepName  the step name
+         * @param stepNo    the step number
+         * @param stepCount the no. of files in the pack
+         */
+        public synchronized void nextStep(String stepName, int stepNo, int stepCount)
+        {
+            this.stepName = stepName;
+            this.stepNo = stepNo;
+            this.stepCount = stepCount;
+            if (reporting)
+            {
+                reportNextStep(stepName, stepNo, stepCount);
+            }
+        }
+
+        /**
+         * Reports the installation of a file.
+         *
+         * @param fileNo the file number
+         * @param path   the file path
+         */
+        public synchronized void progress(int fileNo, String path)
+        {
+            this.fileNo = fileNo;
+            this.path = path;
+            if (reporting)
+            {
+                reportProgress(fileNo, path);
+            }
+        }
+
+        /**
+         * Reports progress to the handler from now on, including any progress already made.
+         */
+        public synchronized void startReporting()
+        {
+            reporting = true;
+            if (stepName != null)
+            {
+                reportNextStep(stepName, stepNo, stepCount);
+                if (path != null)
+                {
+                    reportProgress(fileNo, path);
+                }
+            }
+        }
+
+        /**
+         * Waits for the pack to be unpacked.
+         *
+         * @return the file queue. May be <tt>null</tt>
+         * @throws Exception if the pack couldn't be unpacked
+         */
+        public FileQueue get() throws Exception
+        {
+            try
+            {
+                return future.get();
+            }
+            catch (ExecutionException exception)
+            {
+                Throwable cause = exception.getCause();
+                if (cause instanceof Exception)
+                {
+                    throw (Exception) cause;
+                }
+                throw exception;
+            }
+        }
+    }
+}
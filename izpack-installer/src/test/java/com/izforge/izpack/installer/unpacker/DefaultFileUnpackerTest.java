@@ -1,6 +1,9 @@
 package com.izforge.izpack.installer.unpacker;
 
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -8,7 +11,15 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
 
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.Platforms;
 
@@ -21,6 +32,40 @@ import com.izforge.izpack.util.Platforms;
 public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
 {
 
+    /**
+     * Verifies that parsable files are parsed as they are unpacked, leaving the pack stream positioned at the data
+     * that follows the file.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testParse() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.txt");
+        FileUtils.writeStringToFile(source, "Hello ${NAME}", "UTF-8");
+        File target = getTargetFile(baseDir);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        IoHelper.copyStream(new FileInputStream(source), out);
+        out.writeInt(42);
+        out.close();
+        ObjectInputStream packStream = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        Properties properties = new Properties();
+        properties.setProperty("NAME", "World");
+        FileUnpacker unpacker = createUnpacker(baseDir);
+        unpacker.setParser(new ScriptParser(new VariableSubstitutorImpl(properties)));
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        file.setParsable(SubstitutionType.TYPE_PLAIN, "UTF-8");
+
+        unpacker.unpack(file, packStream, target);
+        assertTrue(unpacker.isParsed());
+        assertEquals("Hello World", FileUtils.readFileToString(target, "UTF-8"));
+        assertEquals(42, packStream.readInt());
+    }
+
     /**
      * Creates a pack file stream.
      *
@@ -0,0 +1,251 @@
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+
+
+/**
+ * Tests the {@link PipelinedFileWriter}.
+ */
+public class PipelinedFileWriterTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The writer under test.
+     */
+    private PipelinedFileWriter writer;
+
+    /**
+     * Cancellable implementation.
+     */
+    private Cancellable cancellable = new Cancellable()
+    {
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+    };
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        writer = new PipelinedFileWriter(2);
+    }
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        writer.shutdown();
+    }
+
+    /**
+     * Verifies that files read sequentially from a single stream are written to their targets, including files
+     * larger than a buffer and empty files.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testWrite() throws Exception
+    {
+        File sourceDir = temporaryFolder.newFolder("source");
+        File targetDir = temporaryFolder.newFolder("target");
+        int[] sizes = {0, 10, PipelinedFileWriter.BUFFER_SIZE, PipelinedFileWriter.BUFFER_SIZE * 3 + 7, 1000};
+
+        ByteArrayOutputStream pack = new ByteArrayOutputStream();
+        List<PackFile> files = new ArrayList<PackFile>();
+        List<byte[]> contents = new ArrayList<byte[]>();
+        for (int i = 0; i < sizes.length; ++i)
+        {
+            byte[] content = new byte[sizes[i]];
+            for (int j = 0; j < content.length; ++j)
+            {
+                content[j] = (byte) (i + j);
+            }
+            File source = new File(sourceDir, "file" + i);
+            FileUtils.writeByteArrayToFile(source, content);
+            source.setLastModified(1000000000L * (i + 1));
+            files.add(new PackFile(sourceDir, source, "file" + i, null, OverrideType.OVERRIDE_TRUE, null,
+                                   Blockable.BLOCKABLE_NONE));
+            contents.add(content);
+            pack.write(content);
+        }
+
+        InputStream in = new ByteArrayInputStream(pack.toByteArray());
+        for (PackFile file : files)
+        {
+            writer.write(file, in, new File(targetDir, file.getTargetPath()), cancellable);
+        }
+        writer.flush();
+
+        for (int i = 0; i < files.size(); ++i)
+        {
+            File target = new File(targetDir, files.get(i).getTargetPath());
+            assertFalse(writer.isPending(target));
+            assertArrayEquals(contents.get(i), FileUtils.readFileToByteArray(target));
+            assertEquals(files.get(i).lastModified(), target.lastModified());
+        }
+    }
+
+    /**
+     * Verifies that files larger than a buffer can be written by more threads than there are writers, without their
+     * data being mixed up.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConcurrentWrite() throws Exception
+    {
+        final File sourceDir = temporaryFolder.newFolder("source");
+        final File targetDir = temporaryFolder.newFolder("target");
+        final int size = PipelinedFileWriter.BUFFER_SIZE * 3;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i)
+        {
+            final int threadNo = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < 3; ++j)
+                        {
+                            byte[] content = new byte[size];
+                            Arrays.fill(content, (byte) (threadNo * 3 + j));
+                            File source = new File(sourceDir, "file" + threadNo + "-" + j);
+                            FileUtils.writeByteArrayToFile(source, content);
+                            PackFile file = new PackFile(sourceDir, source, source.getName(), null,
+                                                         OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE);
+                            writer.write(file, new ByteArrayInputStream(content), new File(targetDir, source.getName()),
+                                         cancellable);
+                        }
+                    }
+                    catch (Throwable exception)
+                    {
+                        errors.add(exception);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        writer.flush();
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+
+        for (int i = 0; i < threads.length; ++i)
+        {
+            for (int j = 0; j < 3; ++j)
+            {
+                byte[] expected = new byte[size];
+                Arrays.fill(expected, (byte) (i * 3 + j));
+                assertArrayEquals(expected, FileUtils.readFileToByteArray(new File(targetDir, "file" + i + "-" + j)));
+            }
+        }
+    }
+
+    /**
+     * Verifies that a file that cannot be completely read is reported as failed, and is closed by its writer.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testIncompleteRead() throws Exception
+    {
+        writer.shutdown();
+        writer = new PipelinedFileWriter(1);
+        File sourceDir = temporaryFolder.newFolder("source");
+        File targetDir = temporaryFolder.newFolder("target");
+        File source = new File(sourceDir, "file");
+        FileUtils.writeByteArrayToFile(source, new byte[PipelinedFileWriter.BUFFER_SIZE * 2]);
+        PackFile file = new PackFile(sourceDir, source, "file", null, OverrideType.OVERRIDE_TRUE, null,
+                                     Blockable.BLOCKABLE_NONE);
+        try
+        {
+            // the stream holds less than the file length
+            writer.write(file, new ByteArrayInputStream(new byte[10]), new File(targetDir, "file"), cancellable);
+            fail("Expected write to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected behaviour
+        }
+        try
+        {
+            writer.flush();
+            fail("Expected flush to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected behaviour
+        }
+        assertFalse(writer.isPending(new File(targetDir, "file")));
+    }
+
+    /**
+     * Verifies that a failure to write a file is reported.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testWriteFailure() throws Exception
+    {
+        File sourceDir = temporaryFolder.newFolder("source");
+        File source = new File(sourceDir, "file");
+        FileUtils.writeByteArrayToFile(source, new byte[100]);
+        PackFile file = new PackFile(sourceDir, source, "file", null, OverrideType.OVERRIDE_TRUE, null,
+                                     Blockable.BLOCKABLE_NONE);
+
+        // target is a directory, so can't be written
+        File target = temporaryFolder.newFolder("target");
+        writer.write(file, new ByteArrayInputStream(new byte[100]), target, cancellable);
+        try
+        {
+            writer.flush();
+            fail("Expected flush to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected behaviour
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+import com.izforge.izpack.util.ByteProgressHandler;
+
+/**
+ * Tests the {@link ProgressSampler}.
+ */
+public class ProgressSamplerTest
+{
+
+    /**
+     * Verifies that progress published between samples is coalesced, with the latest progress forwarded.
+     */
+    @Test
+    public void testCoalesce()
+    {
+        AbstractUIProgressHandler handler = mock(AbstractUIProgressHandler.class);
+        ProgressSampler sampler = new ProgressSampler(handler, 60 * 60 * 1000);
+        for (int i = 0; i < 1000; ++i)
+        {
+            sampler.progress(i, "file" + i);
+        }
+        verify(handler, never()).progress(anyInt(), anyString());
+
+        sampler.shutdown();
+        verify(handler, times(1)).progress(anyInt(), anyString());
+        verify(handler).progress(999, "file999");
+
+        // nothing pending, so nothing more to forward
+        sampler.flush();
+        verify(handler, times(1)).progress(anyInt(), anyString());
+    }
+
+    /**
+     * Verifies that pending progress is forwarded before the next step.
+     */
+    @Test
+    public void testNextStep()
+    {
+        AbstractUIProgressHandler handler = mock(AbstractUIProgressHandler.class);
+        ProgressSampler sampler = new ProgressSampler(handler, 60 * 60 * 1000);
+        sampler.nextStep("pack1", 1, 2);
+        sampler.progress(0, "a");
+        sampler.progress(1, "b");
+        sampler.nextStep("pack2", 2, 1);
+        sampler.progress(0, "c");
+        sampler.shutdown();
+
+        InOrder order = inOrder(handler);
+        order.verify(handler).nextStep("pack1", 1, 2);
+        order.verify(handler).progress(1, "b");
+        order.verify(handler).nextStep("pack2", 2, 1);
+        order.verify(handler).progress(0, "c");
+        verify(handler, never()).progress(0, "a");
+    }
+
+    /**
+     * Verifies that progress is forwarded periodically.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSample() throws Exception
+    {
+        AbstractUIProgressHandler handler = mock(AbstractUIProgressHandler.class);
+        ProgressSampler sampler = new ProgressSampler(handler, 10);
+        sampler.progress(5, "file");
+        long end = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < end)
+        {
+            try
+            {
+                verify(handler).progress(5, "file");
+                break;
+            }
+            catch (AssertionError retry)
+            {
+                Thread.sleep(10);
+            }
+        }
+        sampler.shutdown();
+        verify(handler).progress(5, "file");
+    }
+
+    /**
+     * Verifies that the bytes processed are forwarded to an {@link ByteProgressHandler}, when they change.
+     */
+    @Test
+    public void testBytes()
+    {
+        AbstractUIProgressHandler handler = mock(AbstractUIProgressHandler.class,
+                                                 withSettings().extraInterfaces(ByteProgressHandler.class));
+        ByteProgressHandler extended = (ByteProgressHandler) handler;
+        ProgressSampler sampler = new ProgressSampler(handler, 60 * 60 * 1000);
+        sampler.addTotalBytes(1000);
+        sampler.addBytes(100);
+        sampler.addBytes(200);
+        sampler.flush();
+        verify(extended).byteProgress(eq(300L), eq(1000L), anyLong(), anyLong());
+
+        // unchanged, so not forwarded again
+        sampler.flush();
+        verify(extended, times(1)).byteProgress(anyLong(), anyLong(), anyLong(), anyLong());
+
+        // the total is corrected, and never reported as less than the bytes processed
+        sampler.addTotalBytes(-800);
+        sampler.addBytes(100);
+        sampler.shutdown();
+        verify(extended).byteProgress(eq(400L), eq(400L), anyLong(), eq(0L));
+        assertEquals(400, sampler.getBytes());
+        assertEquals(200, sampler.getTotalBytes());
+    }
+}
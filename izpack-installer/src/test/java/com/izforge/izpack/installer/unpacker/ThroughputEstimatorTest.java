@@ -0,0 +1,83 @@
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link ThroughputEstimator}.
+ */
+public class ThroughputEstimatorTest
+{
+
+    /**
+     * Verifies that the throughput and time remaining are unknown until a rate has been sampled.
+     */
+    @Test
+    public void testUnknown()
+    {
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        assertEquals(0, estimator.getBytesPerSecond());
+        assertEquals(-1, estimator.getRemaining(0, 1000));
+
+        estimator.start(0, 0);
+        estimator.sample(0, 500);
+        assertEquals(0, estimator.getBytesPerSecond());
+        assertEquals(-1, estimator.getRemaining(500, 1000));
+
+        // nothing remains once all bytes have been processed, regardless of the rate
+        assertEquals(0, estimator.getRemaining(1000, 1000));
+    }
+
+    /**
+     * Verifies the throughput and time remaining at a constant rate.
+     */
+    @Test
+    public void testConstantRate()
+    {
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        estimator.start(0, 0);
+        for (int i = 1; i <= 100; ++i)
+        {
+            estimator.sample(i * 50, i * 50000);
+        }
+        assertEquals(1000000, estimator.getBytesPerSecond());
+        assertEquals(5000, estimator.getRemaining(5000000, 10000000));
+    }
+
+    /**
+     * Verifies that the throughput follows a change in rate, without jumping to it.
+     */
+    @Test
+    public void testChangingRate()
+    {
+        ThroughputEstimator estimator = new ThroughputEstimator(1000);
+        estimator.start(0, 0);
+        long bytes = 0;
+        long time = 0;
+        for (int i = 0; i < 100; ++i)
+        {
+            time += 50;
+            bytes += 50000;
+            estimator.sample(time, bytes);
+        }
+        assertEquals(1000000, estimator.getBytesPerSecond());
+
+        // the rate halves. One sample only moves the estimate part of the way
+        time += 50;
+        bytes += 25000;
+        estimator.sample(time, bytes);
+        long rate = estimator.getBytesPerSecond();
+        assertTrue(rate < 1000000 && rate > 900000);
+
+        // after several time constants, the estimate has converged on the new rate
+        for (int i = 0; i < 200; ++i)
+        {
+            time += 50;
+            bytes += 25000;
+            estimator.sample(time, bytes);
+        }
+        assertEquals(500000, estimator.getBytesPerSecond(), 1000);
+    }
+}
@@ -16,6 +16,7 @@ import com.izforge.izpack.api.data.binding.IzpackProjectInstaller;
 import com.izforge.izpack.compiler.CompilerConfig;
 import com.izforge.izpack.compiler.container.CompilerContainer;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.data.CompilerMetrics;
 import com.izforge.izpack.compiler.data.PropertyManager;
 
 /**
@@ -48,7 +49,7 @@ public class IzPackNewMojo extends AbstractMojo
     private MavenProjectHelper projectHelper;
 
     /**
-     * Format compression. Choices are bzip2, default
+     * Format compression. Choices are default, bzip2, xz, lz4 and raw
      *
      * @parameter default-value="default"
      */
@@ -97,6 +98,44 @@ public class IzPackNewMojo extends AbstractMojo
      */
     private int comprLevel;
 
+    /**
+     * Number of threads used to compress packs. 0 uses one thread per processor
+     *
+     * @parameter default-value="1"
+     */
+    private int packThreads = 1;
+
+    /**
+     * Size in bytes of the buffer used to read the files of packs
+     *
+     * @parameter default-value="1048576"
+     */
+    private int bufferSize = CompilerData.DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Whether to copy packs whose inputs are unchanged from the previously built installer,
+     * rather than compressing them again
+     *
+     * @parameter default-value="false"
+     */
+    private boolean incremental;
+
+    /**
+     * Whether to compile the files of packs as they are read from the installation file,
+     * rather than holding their elements in memory
+     *
+     * @parameter default-value="false"
+     */
+    private boolean streaming;
+
+    /**
+     * Whether to write the time and throughput of each compiler phase to a JSON report next to the
+     * installer, and to log them
+     *
+     * @parameter default-value="false"
+     */
+    private boolean metrics;
+
     /**
      * Whether to automatically include project.url from Maven into
      * IzPack info header
@@ -184,6 +223,14 @@ public class IzPackNewMojo extends AbstractMojo
             throw new AssertionError(e);
         }
 
+        if (metrics)
+        {
+            for (CompilerMetrics.Phase phase : compilerData.getMetrics().getPhases())
+            {
+                getLog().info(phase.toString());
+            }
+        }
+
         if (classifier != null && !classifier.isEmpty())
         {
             if (enableAttachArtifact)
@@ -273,8 +320,14 @@ public class IzPackNewMojo extends AbstractMojo
                 info.setAppURL(project.getUrl());
             }
         }
-        return new CompilerData(comprFormat, kind, installFile, null, baseDir, jarFile.getPath(),
-                                mkdirs, comprLevel, info);
+        CompilerData compilerData = new CompilerData(comprFormat, kind, installFile, null, baseDir,
+                                                     jarFile.getPath(), mkdirs, comprLevel, info);
+        compilerData.setPackThreads(packThreads);
+        compilerData.setBufferSize(bufferSize);
+        compilerData.setIncremental(incremental);
+        compilerData.setStreaming(streaming);
+        compilerData.setMetrics(metrics);
+        return compilerData;
     }
 
 }
@@ -21,13 +21,17 @@
 
 package com.izforge.izpack.panels.extendedinstall;
 
+import javax.swing.SwingUtilities;
+
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.data.ResourceManager;
 import com.izforge.izpack.gui.log.Log;
 import com.izforge.izpack.installer.data.GUIInstallData;
 import com.izforge.izpack.installer.gui.InstallerFrame;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
+import com.izforge.izpack.panels.install.ByteProgressReporter;
 import com.izforge.izpack.panels.install.InstallPanel;
+import com.izforge.izpack.util.ByteProgressHandler;
 import com.izforge.izpack.util.ExtendedUIProgressHandler;
 
 /**
@@ -35,13 +39,33 @@ import com.izforge.izpack.util.ExtendedUIProgressHandler;
  *
  * @author Klaus Bartz
  */
-public class ExtendedInstallPanel extends InstallPanel implements ExtendedUIProgressHandler
+public class ExtendedInstallPanel extends InstallPanel implements ExtendedUIProgressHandler, ByteProgressHandler
 {
 
     private static final long serialVersionUID = 3257291344052500789L;
 
     protected int currentStep = 0;
 
+    /**
+     * The resolution of the overall progress bar, when it shows the bytes unpacked.
+     */
+    private static final int BYTE_SCALE = 1000;
+
+    /**
+     * The no. of packs to install.
+     */
+    private volatile int noOfPacks;
+
+    /**
+     * The number of the pack being installed.
+     */
+    private volatile int packNo;
+
+    /**
+     * Determines if the overall progress bar shows the bytes unpacked, rather than the packs installed.
+     */
+    private volatile boolean bytesReported;
+
     /**
      * The constructor.
      *
@@ -73,6 +97,21 @@ public class ExtendedInstallPanel extends InstallPanel implements ExtendedUIProg
         startAction(name, no_of_steps);
     }
 
+    /**
+     * The unpacker starts.
+     *
+     * @param name     the action name
+     * @param noOfJobs the no. of packs to install
+     */
+    @Override
+    public void startAction(String name, int noOfJobs)
+    {
+        noOfPacks = noOfJobs;
+        packNo = 0;
+        bytesReported = false;
+        super.startAction(name, noOfJobs);
+    }
+
     /**
      * Normal progress indicator.
      *
@@ -107,10 +146,59 @@ public class ExtendedInstallPanel extends InstallPanel implements ExtendedUIProg
      * @param stepno   The number of the pack.
      * @param max      The new maximum progress.
      */
-    public void nextStep(String packName, int stepno, int max)
+    public void nextStep(final String packName, int stepno, final int max)
     {
         currentStep = 0;
-        super.nextStep(packName, stepno, max);
+        packNo = stepno;
+        if (!bytesReported)
+        {
+            super.nextStep(packName, stepno, max);
+        }
+        else
+        {
+            // the overall progress bar is updated by byteProgress()
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                public void run()
+                {
+                    packProgressBar.setValue(0);
+                    packProgressBar.setMinimum(0);
+                    packProgressBar.setMaximum(max);
+                    packProgressBar.setString(packName);
+                }
+            });
+        }
+    }
+
+    /**
+     * Bytes unpacked. The overall progress bar shows the proportion of bytes unpacked, and the estimated time
+     * remaining, so that it advances with the size of the files rather than the no. of packs.
+     *
+     * @param bytes          the no. of bytes unpacked so far
+     * @param totalBytes     the total no. of bytes to unpack
+     * @param bytesPerSecond the current throughput
+     * @param remaining      the estimated time remaining, in milliseconds, or <tt>-1</tt> if it is not yet known
+     */
+    public void byteProgress(long bytes, long totalBytes, long bytesPerSecond, final long remaining)
+    {
+        bytesReported = true;
+        final int value = (totalBytes > 0) ? (int) (bytes * BYTE_SCALE / totalBytes) : BYTE_SCALE;
+        final String step = packNo + " / " + noOfPacks;
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                StringBuilder text = new StringBuilder(step);
+                text.append(" - ").append(value * 100 / BYTE_SCALE).append('%');
+                if (remaining >= 0 && value < BYTE_SCALE)
+                {
+                    text.append(" (").append(ByteProgressReporter.formatTime(remaining)).append(')');
+                }
+                overallProgressBar.setMaximum(BYTE_SCALE);
+                overallProgressBar.setValue(value);
+                overallProgressBar.setString(text.toString());
+            }
+        });
     }
 
 }
@@ -0,0 +1,128 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.panels.install;
+
+import com.izforge.izpack.api.data.Pack;
+
+/**
+ * Formats the byte progress of unpacking for console and automated installations.
+ * <p/>
+ * Progress is reported each time another {@link #STEP_PERCENT} percent has been unpacked, or after
+ * {@link #INTERVAL} milliseconds without a report, so that logs of unattended installations stay short.
+ */
+public class ByteProgressReporter
+{
+
+    /**
+     * The percentage of bytes between reports.
+     */
+    static final int STEP_PERCENT = 10;
+
+    /**
+     * The maximum time between reports, in milliseconds.
+     */
+    static final long INTERVAL = 30000;
+
+    /**
+     * The percentage at the last report, or <tt>-1</tt> if none has been made.
+     */
+    private int lastPercent = -1;
+
+    /**
+     * The time of the last report, in milliseconds.
+     */
+    private long lastTime;
+
+
+    /**
+     * Resets the reporter, at the start of unpacking.
+     */
+    public void reset()
+    {
+        lastPercent = -1;
+        lastTime = 0;
+    }
+
+    /**
+     * Returns a progress report, if one is due.
+     *
+     * @param bytes          the no. of bytes unpacked so far
+     * @param totalBytes     the total no. of bytes to unpack
+     * @param bytesPerSecond the current throughput, or <tt>0</tt> if it is not yet known
+     * @param remaining      the estimated time remaining, in milliseconds, or <tt>-1</tt> if it is not yet known
+     * @param time           the current time, in milliseconds
+     * @return the report, or <tt>null</tt> if none is due
+     */
+    public String update(long bytes, long totalBytes, long bytesPerSecond, long remaining, long time)
+    {
+        int percent = (totalBytes > 0) ? (int) (bytes * 100 / totalBytes) : 100;
+        if (lastPercent != -1 && percent / STEP_PERCENT == lastPercent / STEP_PERCENT
+                && time - lastTime < INTERVAL)
+        {
+            return null;
+        }
+        lastPercent = percent;
+        lastTime = time;
+
+        StringBuilder result = new StringBuilder("[ ");
+        result.append(percent).append("% - ");
+        result.append(Pack.toByteUnitsString(bytes)).append(" of ").append(Pack.toByteUnitsString(totalBytes));
+        if (bytesPerSecond > 0)
+        {
+            result.append(", ").append(Pack.toByteUnitsString(bytesPerSecond)).append("/s");
+        }
+        if (remaining >= 0 && percent < 100)
+        {
+            result.append(", ").append(formatTime(remaining)).append(" remaining");
+        }
+        result.append(" ]");
+        return result.toString();
+    }
+
+    /**
+     * Formats a duration as <em>[h:]mm:ss</em>.
+     *
+     * @param millis the duration, in milliseconds
+     * @return the formatted duration
+     */
+    public static String formatTime(long millis)
+    {
+        long seconds = (millis + 999) / 1000;
+        long hours = seconds / 3600;
+        long minutes = (seconds / 60) % 60;
+        seconds %= 60;
+        StringBuilder result = new StringBuilder();
+        if (hours > 0)
+        {
+            result.append(hours).append(':');
+            if (minutes < 10)
+            {
+                result.append('0');
+            }
+        }
+        result.append(minutes).append(':');
+        if (seconds < 10)
+        {
+            result.append('0');
+        }
+        result.append(seconds);
+        return result.toString();
+    }
+}
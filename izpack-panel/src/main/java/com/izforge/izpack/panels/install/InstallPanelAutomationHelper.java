@@ -28,6 +28,7 @@ import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
 import com.izforge.izpack.installer.automation.PanelAutomation;
 import com.izforge.izpack.installer.automation.PanelAutomationHelper;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
+import com.izforge.izpack.util.ByteProgressHandler;
 import com.izforge.izpack.util.Housekeeper;
 
 /**
@@ -36,7 +37,7 @@ import com.izforge.izpack.util.Housekeeper;
  * @author Jonathan Halliday
  */
 public class InstallPanelAutomationHelper extends PanelAutomationHelper implements PanelAutomation,
-        AbstractUIProgressHandler
+        AbstractUIProgressHandler, ByteProgressHandler
 {
 
     /**
@@ -46,6 +47,11 @@ public class InstallPanelAutomationHelper extends PanelAutomationHelper implemen
 
     private int noOfPacks = 0;
 
+    /**
+     * Reports the no. of bytes unpacked.
+     */
+    private final ByteProgressReporter reporter = new ByteProgressReporter();
+
     /**
      * Constructs an <tt>InstallPanelAutomationHelper</tt>.
      *
@@ -77,6 +83,7 @@ public class InstallPanelAutomationHelper extends PanelAutomationHelper implemen
      */
     public void runAutomated(AutomatedInstallData idata, IXMLElement panelRoot) throws InstallerException
     {
+        unpacker.setHandler(this);
         unpacker.run();
         if (!unpacker.getResult())
         {
@@ -93,6 +100,7 @@ public class InstallPanelAutomationHelper extends PanelAutomationHelper implemen
     {
         System.out.println("[ Starting to unpack ]");
         this.noOfPacks = no_of_steps;
+        reporter.reset();
     }
 
     /**
@@ -142,4 +150,22 @@ public class InstallPanelAutomationHelper extends PanelAutomationHelper implemen
     {
         // not used here
     }
+
+    /**
+     * Reports the no. of bytes unpacked and the estimated time remaining to System.out, at intervals.
+     *
+     * @param bytes          the no. of bytes unpacked so far
+     * @param totalBytes     the total no. of bytes to unpack
+     * @param bytesPerSecond the current throughput
+     * @param remaining      the estimated time remaining, in milliseconds
+     * @see ByteProgressHandler#byteProgress(long, long, long, long)
+     */
+    public void byteProgress(long bytes, long totalBytes, long bytesPerSecond, long remaining)
+    {
+        String report = reporter.update(bytes, totalBytes, bytesPerSecond, remaining, System.currentTimeMillis());
+        if (report != null)
+        {
+            System.out.println(report);
+        }
+    }
 }
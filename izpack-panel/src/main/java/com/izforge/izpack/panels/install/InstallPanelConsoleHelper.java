@@ -29,6 +29,7 @@ import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
 import com.izforge.izpack.installer.console.PanelConsole;
 import com.izforge.izpack.installer.console.PanelConsoleHelper;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
+import com.izforge.izpack.util.ByteProgressHandler;
 import com.izforge.izpack.util.Console;
 
 /**
@@ -37,7 +38,7 @@ import com.izforge.izpack.util.Console;
  * @author Mounir el hajj
  */
 public class InstallPanelConsoleHelper extends PanelConsoleHelper implements PanelConsole,
-        AbstractUIProgressHandler
+        AbstractUIProgressHandler, ByteProgressHandler
 {
     /**
      * The unpacker.
@@ -46,6 +47,11 @@ public class InstallPanelConsoleHelper extends PanelConsoleHelper implements Pan
 
     private int noOfPacks = 0;
 
+    /**
+     * Reports the no. of bytes unpacked.
+     */
+    private final ByteProgressReporter reporter = new ByteProgressReporter();
+
     public InstallPanelConsoleHelper(IUnpacker unpacker)
     {
         this.unpacker = unpacker;
@@ -108,6 +114,7 @@ public class InstallPanelConsoleHelper extends PanelConsoleHelper implements Pan
     {
         System.out.println("[ Starting to unpack ]");
         this.noOfPacks = no_of_steps;
+        reporter.reset();
     }
 
     public void stopAction()
@@ -134,4 +141,13 @@ public class InstallPanelConsoleHelper extends PanelConsoleHelper implements Pan
     {
 
     }
+
+    public void byteProgress(long bytes, long totalBytes, long bytesPerSecond, long remaining)
+    {
+        String report = reporter.update(bytes, totalBytes, bytesPerSecond, remaining, System.currentTimeMillis());
+        if (report != null)
+        {
+            System.out.println(report);
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package com.izforge.izpack.panels.install;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link ByteProgressReporter}.
+ */
+public class ByteProgressReporterTest
+{
+
+    /**
+     * Verifies that reports are made every {@link ByteProgressReporter#STEP_PERCENT} percent.
+     */
+    @Test
+    public void testStep()
+    {
+        ByteProgressReporter reporter = new ByteProgressReporter();
+        assertEquals("[ 0% - 0 bytes of 1000 bytes ]", reporter.update(0, 1000, 0, -1, 0));
+        assertNull(reporter.update(50, 1000, 0, -1, 10));
+        assertNull(reporter.update(99, 1000, 0, -1, 20));
+        assertEquals("[ 10% - 100 bytes of 1000 bytes, 1:30 remaining ]", reporter.update(100, 1000, 0, 90000, 30));
+        assertNull(reporter.update(150, 1000, 0, 90000, 40));
+        assertEquals("[ 100% - 1000 bytes of 1000 bytes ]", reporter.update(1000, 1000, 0, 0, 50));
+    }
+
+    /**
+     * Verifies that a report is made after {@link ByteProgressReporter#INTERVAL} without one, even if
+     * the percentage hasn't advanced.
+     */
+    @Test
+    public void testInterval()
+    {
+        ByteProgressReporter reporter = new ByteProgressReporter();
+        assertEquals("[ 0% - 1 bytes of 1000 bytes ]", reporter.update(1, 1000, 0, -1, 0));
+        assertNull(reporter.update(2, 1000, 0, -1, ByteProgressReporter.INTERVAL - 1));
+        assertEquals("[ 0% - 3 bytes of 1000 bytes, 1:00:01 remaining ]",
+                     reporter.update(3, 1000, 0, 3601000, ByteProgressReporter.INTERVAL));
+
+        // reporting starts again after a reset
+        reporter.reset();
+        assertEquals("[ 0% - 4 bytes of 1000 bytes ]", reporter.update(4, 1000, 0, -1, ByteProgressReporter.INTERVAL));
+    }
+
+    /**
+     * Tests {@link ByteProgressReporter#formatTime(long)}.
+     */
+    @Test
+    public void testFormatTime()
+    {
+        assertEquals("0:00", ByteProgressReporter.formatTime(0));
+        assertEquals("0:01", ByteProgressReporter.formatTime(1));
+        assertEquals("1:05", ByteProgressReporter.formatTime(65000));
+        assertEquals("1:02:03", ByteProgressReporter.formatTime(3723000));
+    }
+}
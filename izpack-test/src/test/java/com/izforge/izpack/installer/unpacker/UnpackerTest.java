@@ -0,0 +1,276 @@
+package com.izforge.izpack.installer.unpacker;
+
+import static com.izforge.izpack.test.util.TestHelper.assertFileEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.ResourceManager;
+import com.izforge.izpack.api.event.InstallerListener;
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.listener.PackagerListener;
+import com.izforge.izpack.compiler.merge.resolve.CompilerPathResolver;
+import com.izforge.izpack.compiler.packager.impl.Packager;
+import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.installer.data.InstallData;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.merge.MergeManager;
+import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.test.util.TestHelper;
+import com.izforge.izpack.util.Housekeeper;
+import com.izforge.izpack.util.Librarian;
+import com.izforge.izpack.util.Platforms;
+
+/**
+ * Tests the {@link Unpacker}.
+ */
+public class UnpackerTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    /**
+     * Verifies that packs unpacked concurrently with writer threads configured install the content of each file
+     * intact, and that a file installed by several packs has the content of the last of them.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackConcurrently() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File installerJar = new File(baseDir, "installer.jar");
+
+        // files larger than the writer buffers, so that each is written in several chunks
+        int size = PipelinedFileWriter.BUFFER_SIZE * 3;
+        File dir1 = temporaryFolder.newFolder("pack1");
+        File dir2 = temporaryFolder.newFolder("pack2");
+        List<File> files1 = new ArrayList<File>();
+        List<File> files2 = new ArrayList<File>();
+        for (int i = 0; i < 4; ++i)
+        {
+            files1.add(TestHelper.createFile(dir1, "a" + i + ".dat", size));
+            files2.add(TestHelper.createFile(dir2, "b" + i + ".dat", size));
+        }
+        File shared1 = TestHelper.createFile(dir1, "shared.dat", size);
+        File shared2 = TestHelper.createFile(dir2, "shared.dat", size);
+
+        PackInfo pack1 = createPack("pack1", dir1, files1);
+        PackInfo pack2 = createPack("pack2", dir2, files2);
+        pack1.addFile(dir1, shared1, "$INSTALL_PATH/shared.dat", null, OverrideType.OVERRIDE_TRUE, null,
+                      Blockable.BLOCKABLE_NONE, null, null);
+        pack2.addFile(dir2, shared2, "$INSTALL_PATH/shared.dat", null, OverrideType.OVERRIDE_TRUE, null,
+                      Blockable.BLOCKABLE_NONE, null, null);
+
+        Packager packager = createPackager(baseDir, installerJar);
+        packager.addPack(pack1);
+        packager.addPack(pack2);
+        packager.createInstaller();
+
+        ResourceManager resources = createResourceManager(installerJar);
+        List<Pack> packs = getPacks(resources);
+
+        // the outcome depends on thread scheduling, so install several times
+        for (int i = 0; i < 5; ++i)
+        {
+            File installDir = new File(baseDir, "install" + i);
+            AutomatedInstallData installData = new InstallData(new DefaultVariables());
+            installData.setInstallPath(installDir.getPath());
+            Info info = new Info();
+            info.setUnpackThreads(2);
+            info.setUnpackWriters(2);
+            installData.setInfo(info);
+            installData.setAvailablePacks(packs);
+            installData.getSelectedPacks().addAll(packs);
+
+            Unpacker unpacker = createUnpacker(resources, installData, new InstallerListeners());
+            unpacker.unpack();
+            assertTrue(unpacker.getResult());
+
+            for (File file : files1)
+            {
+                assertFileEquals(file, installDir, file.getName());
+            }
+            for (File file : files2)
+            {
+                assertFileEquals(file, installDir, file.getName());
+            }
+            assertFileEquals(shared2, installDir, "shared.dat");
+        }
+    }
+
+    /**
+     * Verifies that when packs are unpacked concurrently, listeners are notified of the start and end of each pack in
+     * pack order.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackConcurrentlyNotifiesInPackOrder() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File installerJar = new File(baseDir, "installer.jar");
+        Packager packager = createPackager(baseDir, installerJar);
+        for (int i = 0; i < 6; ++i)
+        {
+            // earlier packs are larger, so that later packs tend to complete first
+            File dir = temporaryFolder.newFolder("pack" + i);
+            List<File> files = new ArrayList<File>();
+            files.add(TestHelper.createFile(dir, "file" + i + ".dat", (6 - i) * 100000));
+            packager.addPack(createPack("pack" + i, dir, files));
+        }
+        packager.createInstaller();
+
+        ResourceManager resources = createResourceManager(installerJar);
+        List<Pack> packs = getPacks(resources);
+        for (int i = 0; i < 5; ++i)
+        {
+            AutomatedInstallData installData = new InstallData(new DefaultVariables());
+            installData.setInstallPath(new File(baseDir, "install" + i).getPath());
+            Info info = new Info();
+            info.setUnpackThreads(3);
+            installData.setInfo(info);
+            installData.setAvailablePacks(packs);
+            installData.getSelectedPacks().addAll(packs);
+
+            InstallerListener listener = Mockito.mock(InstallerListener.class);
+            InstallerListeners listeners = new InstallerListeners();
+            listeners.add(listener);
+            Unpacker unpacker = createUnpacker(resources, installData, listeners);
+            unpacker.unpack();
+            assertTrue(unpacker.getResult());
+
+            InOrder before = Mockito.inOrder(listener);
+            InOrder after = Mockito.inOrder(listener);
+            for (int j = 0; j < packs.size(); ++j)
+            {
+                before.verify(listener).beforePack(Mockito.eq(packs.get(j)), Mockito.eq(j),
+                                                   Mockito.any(AbstractUIProgressHandler.class));
+                after.verify(listener).afterPack(Mockito.eq(packs.get(j)), Mockito.eq(j),
+                                                 Mockito.any(AbstractUIProgressHandler.class));
+            }
+        }
+    }
+
+    /**
+     * Creates a new pack.
+     *
+     * @param name    the pack name
+     * @param baseDir the base directory
+     * @param files   the files to add
+     * @return a new pack
+     * @throws IOException for any I/O error
+     */
+    private PackInfo createPack(String name, File baseDir, List<File> files) throws IOException
+    {
+        PackInfo pack = new PackInfo(name, name, "The " + name + " package", false, false, null, true);
+        for (File file : files)
+        {
+            pack.addFile(baseDir, file, "$INSTALL_PATH/" + file.getName(), null, OverrideType.OVERRIDE_TRUE, null,
+                         Blockable.BLOCKABLE_NONE, null, null);
+        }
+        return pack;
+    }
+
+    /**
+     * Creates a new unpacker.
+     *
+     * @param resources   the resources
+     * @param installData the installation data
+     * @param listeners   the installer listeners
+     * @return a new unpacker
+     */
+    private Unpacker createUnpacker(ResourceManager resources, AutomatedInstallData installData,
+                                    InstallerListeners listeners)
+    {
+        Unpacker unpacker = new Unpacker(installData, resources, Mockito.mock(RulesEngine.class),
+                                         new VariableSubstitutorImpl(installData.getVariables()),
+                                         new UninstallData(), Platforms.UNIX, Mockito.mock(Librarian.class),
+                                         Mockito.mock(Housekeeper.class), listeners);
+        unpacker.setHandler(Mockito.mock(AbstractUIProgressHandler.class));
+        return unpacker;
+    }
+
+    /**
+     * Creates a {@link Packager}.
+     *
+     * @param baseDir      the base directory
+     * @param installerJar the jar to create
+     * @return a new packager
+     * @throws IOException for any I/O error
+     */
+    private Packager createPackager(File baseDir, File installerJar) throws IOException
+    {
+        JarOutputStream jar = new JarOutputStream(installerJar);
+        CompilerData data = new CompilerData(null, baseDir.getPath(), installerJar.getPath(), true);
+        Packager packager = new Packager(new Properties(), Mockito.mock(PackagerListener.class), jar,
+                                         new DefaultPackCompressor(), jar, Mockito.mock(MergeManager.class),
+                                         Mockito.mock(CompilerPathResolver.class),
+                                         Mockito.mock(MergeableResolver.class), data);
+        packager.setInfo(new Info());
+        return packager;
+    }
+
+    /**
+     * Creates a new {@link ResourceManager} that reads resources from the supplied jar.
+     *
+     * @param installerJar the installer jar
+     * @return a new resource manager
+     * @throws IOException for any I/O error
+     */
+    private ResourceManager createResourceManager(File installerJar) throws IOException
+    {
+        URLClassLoader loader = new URLClassLoader(new URL[]{installerJar.toURI().toURL()},
+                                                   getClass().getClassLoader());
+        return new ResourceManager(new Properties(), loader);
+    }
+
+    /**
+     * Helper to read the pack meta-data.
+     *
+     * @param resources the resources
+     * @return the pack meta-data
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    private List<Pack> getPacks(ResourceManager resources) throws IOException, ClassNotFoundException
+    {
+        InputStream in = resources.getInputStream("packs.info");
+        ObjectInputStream objIn = new ObjectInputStream(in);
+        int size = objIn.readInt();
+        List<Pack> packs = new ArrayList<Pack>();
+        for (int i = 0; i < size; i++)
+        {
+            packs.add((Pack) objIn.readObject());
+        }
+        objIn.close();
+        return packs;
+    }
+}
@@ -26,10 +26,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.ZipEntry;
 
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.OverrideType;
@@ -67,6 +69,11 @@ public class PackInfo implements Serializable
      */
     private Map<PackFile, File> files = new LinkedHashMap<PackFile, File>();
 
+    /**
+     * The names of the archive entries of files added from archives.
+     */
+    private Map<PackFile, String> archiveEntries = new HashMap<PackFile, String>();
+
     /**
      * Parsables files in this Pack.
      */
@@ -239,6 +246,32 @@ public class PackInfo implements Serializable
         files.put(packFile, file);
     }
 
+    /**
+     * Add an entry of an archive to be installed.
+     * <p/>
+     * The entry is read from the archive when the pack is written, rather than being extracted beforehand.
+     *
+     * @param baseDir    the base directory
+     * @param archive    the archive containing the entry
+     * @param entry      the archive entry
+     * @param targetfile path file will be installed to.
+     * @param osList     the target operation system(s) of this pack.
+     * @param override   what to do if the file already exists when installing
+     * @param condition  the condition for the file to be installed. May be <tt>null</tt>
+     * @throws IOException if the archive does not exist
+     */
+    public void addArchiveEntry(File baseDir, File archive, ZipEntry entry, String targetfile, List<OsModel> osList,
+                                OverrideType override, String overrideRenameTo, Blockable blockable, Map additionals,
+                                String condition) throws IOException
+    {
+        PackFile packFile = new PackFile(baseDir, archive, entry, targetfile, osList, override, overrideRenameTo,
+                                         blockable, additionals);
+        packFile.setLoosePackInfo(pack.isLoose());
+        packFile.setCondition(condition);
+        files.put(packFile, archive);
+        archiveEntries.put(packFile, entry.getName());
+    }
+
     /**
      * Set of PackFile objects for this Pack.
      */
@@ -256,6 +289,18 @@ public class PackInfo implements Serializable
         return files.get(packFile);
     }
 
+    /**
+     * Returns the name of the archive entry described by the specified PackFile, for files added via
+     * {@link #addArchiveEntry}. For these, {@link #getFile(PackFile)} returns the archive.
+     *
+     * @param packFile the pack file
+     * @return the archive entry name, or <tt>null</tt> if the pack file doesn't come from an archive
+     */
+    public String getArchiveEntryName(PackFile packFile)
+    {
+        return archiveEntries.get(packFile);
+    }
+
     /**
      * Parsable files have variables substituted after installation.
      */
@@ -0,0 +1,43 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+/**
+ * Optional interface for user interface handlers that report unpacking progress in bytes.
+ * <p/>
+ * The unpacker checks if its handler implements this interface, so existing handlers are unaffected.
+ */
+public interface ByteProgressHandler
+{
+
+    /**
+     * Notify of the no. of bytes unpacked.
+     * <p/>
+     * This is invoked periodically while unpacking, so that progress reflects the size of the files rather than
+     * their count.
+     *
+     * @param bytes          the no. of bytes unpacked so far
+     * @param totalBytes     the total no. of bytes to unpack
+     * @param bytesPerSecond the current throughput, or <tt>0</tt> if it is not yet known
+     * @param remaining      the estimated time remaining, in milliseconds, or <tt>-1</tt> if it is not yet known
+     */
+    public void byteProgress(long bytes, long totalBytes, long bytesPerSecond, long remaining);
+
+}
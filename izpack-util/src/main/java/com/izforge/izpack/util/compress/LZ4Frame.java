@@ -0,0 +1,210 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.compress;
+
+/**
+ * Constants and helpers shared by the LZ4 frame streams.
+ */
+final class LZ4Frame
+{
+
+    /**
+     * The frame magic number.
+     */
+    static final int MAGIC = 0x184D2204;
+
+    /**
+     * The frame format version, in the FLG byte.
+     */
+    static final int VERSION = 0x40;
+
+    /**
+     * The version mask of the FLG byte.
+     */
+    static final int VERSION_MASK = 0xC0;
+
+    /**
+     * FLG flag indicating that blocks are independent of each other.
+     */
+    static final int BLOCK_INDEPENDENCE = 0x20;
+
+    /**
+     * FLG flag indicating that each block is followed by a checksum.
+     */
+    static final int BLOCK_CHECKSUM = 0x10;
+
+    /**
+     * FLG flag indicating that the descriptor contains the content size.
+     */
+    static final int CONTENT_SIZE = 0x08;
+
+    /**
+     * FLG flag indicating that the frame ends with a content checksum.
+     */
+    static final int CONTENT_CHECKSUM = 0x04;
+
+    /**
+     * FLG flag indicating that the descriptor contains a dictionary id.
+     */
+    static final int DICTIONARY_ID = 0x01;
+
+    /**
+     * The block maximum size code for 256KB blocks, in the BD byte.
+     */
+    static final int BLOCK_SIZE_256KB = 5;
+
+    /**
+     * The block size flag indicating that a block is stored uncompressed.
+     */
+    static final int UNCOMPRESSED = 0x80000000;
+
+    /**
+     * The minimum length of a match.
+     */
+    static final int MIN_MATCH = 4;
+
+    /**
+     * The maximum distance of a match.
+     */
+    static final int MAX_DISTANCE = 0xFFFF;
+
+    /**
+     * The no. of bytes at the end of a block that are always literals.
+     */
+    static final int LAST_LITERALS = 5;
+
+    /**
+     * Matches must start at least this many bytes before the end of a block.
+     */
+    static final int MATCH_FIND_LIMIT = 12;
+
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private LZ4Frame()
+    {
+    }
+
+    /**
+     * Returns the maximum size of a block, given its BD byte code.
+     *
+     * @param code the block maximum size code
+     * @return the block size, in bytes
+     */
+    static int getBlockSize(int code)
+    {
+        return 1 << (2 * code + 8);
+    }
+
+    /**
+     * Calculates the header checksum of a frame descriptor.
+     *
+     * @param buffer the buffer containing the descriptor, excluding the magic number
+     * @param length the length of the descriptor
+     * @return the header checksum
+     */
+    static int getHeaderChecksum(byte[] buffer, int length)
+    {
+        return (hash(buffer, length) >>> 8) & 0xFF;
+    }
+
+    /**
+     * Reads a little-endian int.
+     *
+     * @param buffer the buffer to read from
+     * @param offset the offset to read from
+     * @return the int
+     */
+    static int readInt(byte[] buffer, int offset)
+    {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8 | (buffer[offset + 2] & 0xFF) << 16
+                | (buffer[offset + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * Writes a little-endian int.
+     *
+     * @param value  the value to write
+     * @param buffer the buffer to write to
+     * @param offset the offset to write to
+     */
+    static void writeInt(int value, byte[] buffer, int offset)
+    {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+        buffer[offset + 2] = (byte) (value >>> 16);
+        buffer[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Calculates the 32-bit xxHash of a buffer, with a zero seed.
+     *
+     * @param buffer the buffer
+     * @param length the no. of bytes to hash
+     * @return the hash
+     */
+    private static int hash(byte[] buffer, int length)
+    {
+        int offset = 0;
+        int h;
+        if (length >= 16)
+        {
+            int v1 = PRIME1 + PRIME2;
+            int v2 = PRIME2;
+            int v3 = 0;
+            int v4 = -PRIME1;
+            int limit = length - 16;
+            while (offset <= limit)
+            {
+                v1 = Integer.rotateLeft(v1 + readInt(buffer, offset) * PRIME2, 13) * PRIME1;
+                v2 = Integer.rotateLeft(v2 + readInt(buffer, offset + 4) * PRIME2, 13) * PRIME1;
+                v3 = Integer.rotateLeft(v3 + readInt(buffer, offset + 8) * PRIME2, 13) * PRIME1;
+                v4 = Integer.rotateLeft(v4 + readInt(buffer, offset + 12) * PRIME2, 13) * PRIME1;
+                offset += 16;
+            }
+            h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12)
+                    + Integer.rotateLeft(v4, 18);
+        }
+        else
+        {
+            h = PRIME5;
+        }
+        h += length;
+        while (offset <= length - 4)
+        {
+            h = Integer.rotateLeft(h + readInt(buffer, offset) * PRIME3, 17) * PRIME4;
+            offset += 4;
+        }
+        while (offset < length)
+        {
+            h = Integer.rotateLeft(h + (buffer[offset] & 0xFF) * PRIME5, 11) * PRIME1;
+            ++offset;
+        }
+        h ^= h >>> 15;
+        h *= PRIME2;
+        h ^= h >>> 13;
+        h *= PRIME3;
+        h ^= h >>> 16;
+        return h;
+    }
+}
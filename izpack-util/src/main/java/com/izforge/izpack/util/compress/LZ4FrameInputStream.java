@@ -0,0 +1,371 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that decompresses a single frame in the LZ4 frame format.
+ * <p/>
+ * Both independent and linked blocks are supported. Optional block and content checksums are skipped rather than
+ * verified; installer resources are already protected by the CRC of their jar entry.
+ *
+ * @see LZ4FrameOutputStream
+ */
+public class LZ4FrameInputStream extends InputStream
+{
+
+    /**
+     * The size of the history retained for linked blocks.
+     */
+    private static final int HISTORY = 64 * 1024;
+
+    /**
+     * The stream to read compressed data from.
+     */
+    private final InputStream in;
+
+    /**
+     * The frame flags.
+     */
+    private final int flags;
+
+    /**
+     * The maximum size of a block.
+     */
+    private final int blockSize;
+
+    /**
+     * The decompressed data. For linked blocks, this is preceded by the history of previous blocks.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The compressed data of the current block.
+     */
+    private final byte[] compressed;
+
+    /**
+     * The read position in the buffer.
+     */
+    private int position;
+
+    /**
+     * The end of the decompressed data in the buffer.
+     */
+    private int limit;
+
+    /**
+     * Determines if the end of the frame has been reached.
+     */
+    private boolean finished;
+
+
+    /**
+     * Constructs an <tt>LZ4FrameInputStream</tt>.
+     *
+     * @param in the stream to read compressed data from
+     * @throws IOException if the frame header is invalid or cannot be read
+     */
+    public LZ4FrameInputStream(InputStream in) throws IOException
+    {
+        this.in = in;
+        byte[] header = new byte[15];
+        readFully(header, 0, 4);
+        if (LZ4Frame.readInt(header, 0) != LZ4Frame.MAGIC)
+        {
+            throw new IOException("Not an LZ4 frame");
+        }
+        readFully(header, 0, 2);
+        flags = header[0] & 0xFF;
+        if ((flags & LZ4Frame.VERSION_MASK) != LZ4Frame.VERSION)
+        {
+            throw new IOException("Unsupported LZ4 frame version");
+        }
+        int length = 2;
+        if ((flags & LZ4Frame.CONTENT_SIZE) != 0)
+        {
+            length += 8;
+        }
+        if ((flags & LZ4Frame.DICTIONARY_ID) != 0)
+        {
+            length += 4;
+        }
+        readFully(header, 2, length - 2);
+        int checksum = in.read();
+        if (checksum != LZ4Frame.getHeaderChecksum(header, length))
+        {
+            throw new IOException("Corrupt LZ4 frame header");
+        }
+        int code = (header[1] >> 4) & 0x07;
+        if (code < 4)
+        {
+            throw new IOException("Unsupported LZ4 block size");
+        }
+        blockSize = LZ4Frame.getBlockSize(code);
+        int history = (flags & LZ4Frame.BLOCK_INDEPENDENCE) != 0 ? 0 : HISTORY;
+        buffer = new byte[history + blockSize];
+        compressed = new byte[blockSize];
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @return the byte, or <tt>-1</tt> if the end of the frame has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read() throws IOException
+    {
+        if (position == limit && !readBlock())
+        {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Reads bytes.
+     *
+     * @param b      the buffer to read into
+     * @param offset the offset into the buffer
+     * @param count  the maximum no. of bytes to read
+     * @return the no. of bytes read, or <tt>-1</tt> if the end of the frame has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read(byte[] b, int offset, int count) throws IOException
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        if (position == limit && !readBlock())
+        {
+            return -1;
+        }
+        int n = Math.min(count, limit - position);
+        System.arraycopy(buffer, position, b, offset, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Returns the no. of bytes that can be read without blocking.
+     *
+     * @return the no. of decompressed bytes available
+     */
+    @Override
+    public int available()
+    {
+        return limit - position;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Reads and decompresses the next block.
+     *
+     * @return <tt>true</tt> if a block was read, <tt>false</tt> if the end of the frame has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean readBlock() throws IOException
+    {
+        while (!finished)
+        {
+            readFully(compressed, 0, 4);
+            int size = LZ4Frame.readInt(compressed, 0);
+            if (size == 0)
+            {
+                if ((flags & LZ4Frame.CONTENT_CHECKSUM) != 0)
+                {
+                    readFully(compressed, 0, 4);
+                }
+                finished = true;
+                break;
+            }
+            boolean uncompressed = (size & LZ4Frame.UNCOMPRESSED) != 0;
+            size &= ~LZ4Frame.UNCOMPRESSED;
+            if (size > blockSize)
+            {
+                throw new IOException("Corrupt LZ4 block size: " + size);
+            }
+            int start = getBlockStart();
+            if (uncompressed)
+            {
+                readFully(buffer, start, size);
+                limit = start + size;
+            }
+            else
+            {
+                readFully(compressed, 0, size);
+                limit = decompress(size, start);
+            }
+            position = start;
+            if ((flags & LZ4Frame.BLOCK_CHECKSUM) != 0)
+            {
+                readFully(compressed, 0, 4);
+            }
+            if (limit > position)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the position in the buffer to decompress the next block to, moving the history of linked blocks to
+     * the start of the buffer if required.
+     *
+     * @return the block start position
+     */
+    private int getBlockStart()
+    {
+        if ((flags & LZ4Frame.BLOCK_INDEPENDENCE) != 0)
+        {
+            return 0;
+        }
+        if (limit + blockSize > buffer.length)
+        {
+            int history = Math.min(limit, HISTORY);
+            System.arraycopy(buffer, limit - history, buffer, 0, history);
+            limit = history;
+        }
+        return limit;
+    }
+
+    /**
+     * Decompresses the current block.
+     *
+     * @param length the length of the compressed data
+     * @param start  the position in the buffer to decompress to
+     * @return the end of the decompressed data in the buffer
+     * @throws IOException if the block is corrupt
+     */
+    private int decompress(int length, int start) throws IOException
+    {
+        byte[] src = compressed;
+        byte[] dst = buffer;
+        int end = start + blockSize;
+        int ip = 0;
+        int op = start;
+        try
+        {
+            while (true)
+            {
+                int token = src[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15)
+                {
+                    int b;
+                    do
+                    {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    }
+                    while (b == 255);
+                }
+                if (ip + literals > length || op + literals > end)
+                {
+                    throw new IOException("Corrupt LZ4 block");
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip == length)
+                {
+                    // the last sequence only has literals
+                    break;
+                }
+
+                int offset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15)
+                {
+                    int b;
+                    do
+                    {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    }
+                    while (b == 255);
+                }
+                matchLength += LZ4Frame.MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0 || op + matchLength > end)
+                {
+                    throw new IOException("Corrupt LZ4 block");
+                }
+                if (offset >= matchLength)
+                {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                }
+                else
+                {
+                    // overlapping match, which repeats the preceding bytes
+                    for (int i = 0; i < matchLength; ++i)
+                    {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException exception)
+        {
+            throw new IOException("Corrupt LZ4 block");
+        }
+        return op;
+    }
+
+    /**
+     * Reads the specified no. of bytes from the underlying stream.
+     *
+     * @param b      the buffer to read into
+     * @param offset the offset into the buffer
+     * @param count  the no. of bytes to read
+     * @throws IOException for any I/O error, or if the end of the stream is reached
+     */
+    private void readFully(byte[] b, int offset, int count) throws IOException
+    {
+        while (count > 0)
+        {
+            int read = in.read(b, offset, count);
+            if (read == -1)
+            {
+                throw new EOFException("Unexpected end of LZ4 frame");
+            }
+            offset += read;
+            count -= read;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.compress;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output stream that compresses data in the LZ4 frame format.
+ * <p/>
+ * Data is written in independent blocks of up to 256KB, without checksums. Blocks that don't compress are stored
+ * as is. LZ4 trades compression ratio for very fast decompression.
+ *
+ * @see LZ4FrameInputStream
+ */
+public class LZ4FrameOutputStream extends FilterOutputStream
+{
+
+    /**
+     * The maximum size of a block.
+     */
+    private static final int BLOCK_SIZE = LZ4Frame.getBlockSize(LZ4Frame.BLOCK_SIZE_256KB);
+
+    /**
+     * The no. of bits of the match hash table index.
+     */
+    private static final int HASH_BITS = 16;
+
+    /**
+     * The uncompressed data of the current block.
+     */
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    /**
+     * The compressed data of the current block, preceded by its size.
+     */
+    private final byte[] compressed = new byte[4 + BLOCK_SIZE + BLOCK_SIZE / 255 + 16];
+
+    /**
+     * The positions of previously seen sequences, keyed on hash.
+     */
+    private final int[] table = new int[1 << HASH_BITS];
+
+    /**
+     * The no. of bytes in the current block.
+     */
+    private int length;
+
+    /**
+     * Determines if the end of the frame has been written.
+     */
+    private boolean finished;
+
+
+    /**
+     * Constructs an <tt>LZ4FrameOutputStream</tt>.
+     *
+     * @param out the stream to write the compressed data to
+     * @throws IOException if the frame header cannot be written
+     */
+    public LZ4FrameOutputStream(OutputStream out) throws IOException
+    {
+        super(out);
+        byte[] header = new byte[7];
+        LZ4Frame.writeInt(LZ4Frame.MAGIC, header, 0);
+        header[4] = (byte) (LZ4Frame.VERSION | LZ4Frame.BLOCK_INDEPENDENCE);
+        header[5] = (byte) (LZ4Frame.BLOCK_SIZE_256KB << 4);
+        byte[] descriptor = {header[4], header[5]};
+        header[6] = (byte) LZ4Frame.getHeaderChecksum(descriptor, descriptor.length);
+        out.write(header);
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param b the byte to write
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void write(int b) throws IOException
+    {
+        if (length == block.length)
+        {
+            writeBlock();
+        }
+        block[length++] = (byte) b;
+    }
+
+    /**
+     * Writes bytes.
+     *
+     * @param buffer the bytes to write
+     * @param offset the offset into the buffer
+     * @param count  the no. of bytes to write
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void write(byte[] buffer, int offset, int count) throws IOException
+    {
+        while (count > 0)
+        {
+            if (length == block.length)
+            {
+                writeBlock();
+            }
+            int n = Math.min(count, block.length - length);
+            System.arraycopy(buffer, offset, block, length, n);
+            length += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Writes the current block and the end of the frame, without closing the underlying stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    public void finish() throws IOException
+    {
+        if (!finished)
+        {
+            if (length > 0)
+            {
+                writeBlock();
+            }
+            byte[] end = new byte[4];
+            out.write(end);
+            finished = true;
+        }
+    }
+
+    /**
+     * Finishes the frame and closes the underlying stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Compresses and writes the current block.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void writeBlock() throws IOException
+    {
+        int size = compress(block, length, compressed, 4);
+        if (size < length)
+        {
+            LZ4Frame.writeInt(size, compressed, 0);
+            out.write(compressed, 0, 4 + size);
+        }
+        else
+        {
+            LZ4Frame.writeInt(length | LZ4Frame.UNCOMPRESSED, compressed, 0);
+            out.write(compressed, 0, 4);
+            out.write(block, 0, length);
+        }
+        length = 0;
+    }
+
+    /**
+     * Compresses a block.
+     *
+     * @param src    the data to compress
+     * @param srcLen the length of the data
+     * @param dst    the buffer to write the compressed data to
+     * @param dstOff the offset to write from
+     * @return the length of the compressed data
+     */
+    private int compress(byte[] src, int srcLen, byte[] dst, int dstOff)
+    {
+        int op = dstOff;
+        int anchor = 0;
+        if (srcLen > LZ4Frame.MATCH_FIND_LIMIT)
+        {
+            Arrays.fill(table, -1);
+            int matchLimit = srcLen - LZ4Frame.MATCH_FIND_LIMIT;
+            int matchEnd = srcLen - LZ4Frame.LAST_LITERALS;
+            int ip = 0;
+            int misses = 0;
+            while (ip < matchLimit)
+            {
+                int sequence = LZ4Frame.readInt(src, ip);
+                int hash = hash(sequence);
+                int ref = table[hash];
+                table[hash] = ip;
+                if (ref < 0 || ip - ref > LZ4Frame.MAX_DISTANCE || LZ4Frame.readInt(src, ref) != sequence)
+                {
+                    // skip faster through data that doesn't compress
+                    ip += 1 + (misses++ >> 6);
+                    continue;
+                }
+                misses = 0;
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1])
+                {
+                    --ip;
+                    --ref;
+                }
+                int matchLength = LZ4Frame.MIN_MATCH;
+                while (ip + matchLength < matchEnd && src[ip + matchLength] == src[ref + matchLength])
+                {
+                    ++matchLength;
+                }
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        op = writeLiterals(src, anchor, srcLen - anchor, dst, op);
+        return op - dstOff;
+    }
+
+    /**
+     * Writes a sequence of literals followed by a match.
+     *
+     * @return the new output offset
+     */
+    private int writeSequence(byte[] src, int anchor, int literals, int offset, int matchLength, byte[] dst, int op)
+    {
+        int token = op;
+        op = writeLiterals(src, anchor, literals, dst, op);
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        int remaining = matchLength - LZ4Frame.MIN_MATCH;
+        if (remaining >= 15)
+        {
+            dst[token] |= 0x0F;
+            op = writeLength(remaining - 15, dst, op);
+        }
+        else
+        {
+            dst[token] |= remaining;
+        }
+        return op;
+    }
+
+    /**
+     * Writes a token and the literals that follow it.
+     *
+     * @return the new output offset
+     */
+    private int writeLiterals(byte[] src, int anchor, int literals, byte[] dst, int op)
+    {
+        int token = op++;
+        if (literals >= 15)
+        {
+            dst[token] = (byte) 0xF0;
+            op = writeLength(literals - 15, dst, op);
+        }
+        else
+        {
+            dst[token] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, anchor, dst, op, literals);
+        return op + literals;
+    }
+
+    /**
+     * Writes the extension bytes of a literal or match length.
+     *
+     * @return the new output offset
+     */
+    private int writeLength(int length, byte[] dst, int op)
+    {
+        while (length >= 255)
+        {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    /**
+     * Hashes a 4 byte sequence.
+     *
+     * @param sequence the sequence
+     * @return the hash table index
+     */
+    private static int hash(int sequence)
+    {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Cache of directory listings, shared by the {@link DirectoryScanner}s of file sets rooted in the same tree.
+ * <p/>
+ * Each entry of a listing records whether it is a directory or a file, so that a file system entry is only
+ * examined once, however many scanners visit it. When a directory is listed, its subdirectories are listed ahead of
+ * time by a pool of threads, so that the scanner rarely waits for the file system while walking large trees.
+ * Scanners still walk the listings in order, so their results don't depend on the no. of threads.
+ * <p/>
+ * The cache assumes the tree doesn't change while it is in use.
+ */
+public class DirectoryCache
+{
+
+    /**
+     * The listings, keyed on directory.
+     */
+    private final ConcurrentMap<File, FutureTask<Entry[]>> listings =
+            new ConcurrentHashMap<File, FutureTask<Entry[]>>();
+
+    /**
+     * The threads that list directories ahead of time. May be <tt>null</tt>.
+     */
+    private final ExecutorService executor;
+
+
+    /**
+     * Constructs a <tt>DirectoryCache</tt> that lists subdirectories ahead of time using one thread per processor.
+     */
+    public DirectoryCache()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a <tt>DirectoryCache</tt>.
+     *
+     * @param threads the no. of threads to list subdirectories ahead of time. If less than <tt>2</tt>, directories
+     *                are only listed when required
+     */
+    public DirectoryCache(int threads)
+    {
+        executor = (threads > 1) ? Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "DirectoryCache");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+    }
+
+    /**
+     * Returns the entries of a directory.
+     *
+     * @param dir the directory
+     * @return the directory entries, in the order returned by {@link File#list()}
+     * @throws IOException if the directory cannot be listed
+     */
+    public Entry[] list(File dir) throws IOException
+    {
+        FutureTask<Entry[]> future = listings.get(dir);
+        if (future == null)
+        {
+            FutureTask<Entry[]> task = new FutureTask<Entry[]>(new Lister(dir));
+            future = listings.putIfAbsent(dir, task);
+            if (future == null)
+            {
+                future = task;
+            }
+        }
+        // a listing queued ahead of time may not have started, and never will if the cache is closed, so list the
+        // directory here rather than wait for it. This does nothing if the listing has already started
+        future.run();
+        Entry[] result = get(dir, future);
+        if (executor != null)
+        {
+            for (Entry entry : result)
+            {
+                if (entry.isDirectory())
+                {
+                    listAhead(entry.getFile());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops the threads listing directories ahead of time.
+     * <p/>
+     * Listings already cached remain available. Directories queued to be listed ahead of time are listed by
+     * {@link #list(File)} when required instead.
+     */
+    public void close()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists a directory in the background, if it hasn't already been listed.
+     *
+     * @param dir the directory
+     */
+    private void listAhead(File dir)
+    {
+        if (!listings.containsKey(dir) && !executor.isShutdown())
+        {
+            FutureTask<Entry[]> task = new FutureTask<Entry[]>(new Lister(dir));
+            if (listings.putIfAbsent(dir, task) == null)
+            {
+                try
+                {
+                    executor.execute(task);
+                }
+                catch (RuntimeException exception)
+                {
+                    // the cache has been closed, so list the directory when it is required
+                    listings.remove(dir, task);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for a listing.
+     *
+     * @param dir    the directory
+     * @param future the listing
+     * @return the directory entries
+     * @throws IOException if the directory cannot be listed
+     */
+    private Entry[] get(File dir, Future<Entry[]> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted listing " + dir);
+        }
+        catch (ExecutionException exception)
+        {
+            // don't cache failures, as they may be transient
+            listings.remove(dir, future);
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to list " + dir, cause);
+        }
+    }
+
+    /**
+     * An entry of a directory.
+     */
+    public static class Entry
+    {
+
+        /**
+         * The entry name.
+         */
+        private final String name;
+
+        /**
+         * The entry file.
+         */
+        private final File file;
+
+        /**
+         * Determines if the entry is a directory.
+         */
+        private final boolean directory;
+
+        /**
+         * Determines if the entry is a normal file.
+         */
+        private final boolean normalFile;
+
+        public Entry(String name, File file, boolean directory, boolean normalFile)
+        {
+            this.name = name;
+            this.file = file;
+            this.directory = directory;
+            this.normalFile = normalFile;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public boolean isDirectory()
+        {
+            return directory;
+        }
+
+        public boolean isFile()
+        {
+            return normalFile;
+        }
+    }
+
+    /**
+     * Lists a directory.
+     */
+    private static class Lister implements Callable<Entry[]>
+    {
+
+        /**
+         * The directory to list.
+         */
+        private final File dir;
+
+        public Lister(File dir)
+        {
+            this.dir = dir;
+        }
+
+        @Override
+        public Entry[] call() throws IOException
+        {
+            String[] names = dir.list();
+            if (names == null)
+            {
+                throw new IOException("IO error scanning directory " + dir.getAbsolutePath());
+            }
+            Entry[] result = new Entry[names.length];
+            for (int i = 0; i < names.length; ++i)
+            {
+                File file = new File(dir, names[i]);
+                boolean directory = file.isDirectory();
+                result[i] = new Entry(names[i], file, directory, !directory && file.isFile());
+            }
+            return result;
+        }
+    }
+}
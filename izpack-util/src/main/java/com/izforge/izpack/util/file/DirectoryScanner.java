@@ -281,6 +281,26 @@ public class DirectoryScanner
      */
     private Set<String> scannedDirs = new HashSet<String>();
 
+    /**
+     * The names of the files that are included, excluded or deselected.
+     */
+    private Set<String> accountedFiles = new HashSet<String>();
+
+    /**
+     * The names of the directories that are included, excluded or deselected.
+     */
+    private Set<String> accountedDirs = new HashSet<String>();
+
+    /**
+     * The cache of directory listings shared with other scanners. May be <code>null</code>.
+     */
+    private DirectoryCache directoryCache;
+
+    /**
+     * The cache of directory listings private to the current scan, used if no shared cache is set.
+     */
+    private DirectoryCache scanCache;
+
     /**
      * Set of all include patterns that are full file names and don't
      * contain any wildcards.
@@ -615,6 +635,16 @@ public class DirectoryScanner
         this.followSymlinks = followSymlinks;
     }
 
+    /**
+     * Sets the cache of directory listings to share with other scanners of the same tree.
+     *
+     * @param directoryCache the cache. May be <code>null</code>
+     */
+    public synchronized void setDirectoryCache(DirectoryCache directoryCache)
+    {
+        this.directoryCache = directoryCache;
+    }
+
     /**
      * Set the list of include patterns to use. All '/' and '\' characters
      * are replaced by <code>File.separatorChar</code>, so the separator used
@@ -808,6 +838,7 @@ public class DirectoryScanner
                 }
                 if (isIncluded(""))
                 {
+                    accountedDirs.add("");
                     if (!isExcluded(""))
                     {
                         if (isSelected("", basedir))
@@ -978,6 +1009,8 @@ public class DirectoryScanner
         dirsNotIncluded = new Vector<String>();
         dirsExcluded = new Vector<String>();
         dirsDeselected = new Vector<String>();
+        accountedFiles.clear();
+        accountedDirs.clear();
         everythingIncluded = (basedir != null);
         scannedDirs.clear();
     }
@@ -1101,33 +1134,29 @@ public class DirectoryScanner
         {
             return;
         }
-        String[] newfiles = dir.list();
+        // the listing records the type of each entry, so that each is only examined once
+        DirectoryCache.Entry[] newfiles = getDirectoryCache().list(dir);
 
-        if (newfiles == null)
-        {
-            /*
-             * two reasons are mentioned in the API docs for File.list
-             * (1) dir is not a directory. This is impossible as
-             *     we wouldn't get here in this case.
-             * (2) an IO error occurred (why doesn't it throw an exception
-             *     then???)
-             */
-            throw new Exception("IO error scanning directory "
-                    + dir.getAbsolutePath());
-        }
         if (!followSymlinks)
         {
-            Vector<String> noLinks = new Vector<String>();
-            for (String newfile : newfiles)
+            Vector<DirectoryCache.Entry> noLinks = new Vector<DirectoryCache.Entry>();
+            for (DirectoryCache.Entry newfile : newfiles)
             {
                 try
                 {
-                    if (FILE_UTILS.isSymbolicLink(dir, newfile))
+                    if (FILE_UTILS.isSymbolicLink(dir, newfile.getName()))
                     {
-                        String name = vpath + newfile;
-                        File file = new File(dir, newfile);
-                        (file.isDirectory()
-                                ? dirsExcluded : filesExcluded).addElement(name);
+                        String name = vpath + newfile.getName();
+                        if (newfile.isDirectory())
+                        {
+                            dirsExcluded.addElement(name);
+                            accountedDirs.add(name);
+                        }
+                        else
+                        {
+                            filesExcluded.addElement(name);
+                            accountedFiles.add(name);
+                        }
                     }
                     else
                     {
@@ -1143,14 +1172,14 @@ public class DirectoryScanner
                     noLinks.addElement(newfile);
                 }
             }
-            newfiles = new String[noLinks.size()];
+            newfiles = new DirectoryCache.Entry[noLinks.size()];
             noLinks.copyInto(newfiles);
         }
-        for (String newfile : newfiles)
+        for (DirectoryCache.Entry newfile : newfiles)
         {
-            String name = vpath + newfile;
-            File file = new File(dir, newfile);
-            if (file.isDirectory())
+            String name = vpath + newfile.getName();
+            File file = newfile.getFile();
+            if (newfile.isDirectory())
             {
                 if (isIncluded(name))
                 {
@@ -1170,7 +1199,7 @@ public class DirectoryScanner
                     scandir(file, name + File.separator, fast);
                 }
             }
-            else if (file.isFile())
+            else if (newfile.isFile())
             {
                 if (isIncluded(name))
                 {
@@ -1193,9 +1222,8 @@ public class DirectoryScanner
      */
     private void accountForIncludedFile(String name, File file) throws Exception
     {
-        if (filesIncluded.contains(name)
-                || filesExcluded.contains(name)
-                || filesDeselected.contains(name))
+        // the accounted names mirror the included, excluded and deselected files, so are checked in constant time
+        if (!accountedFiles.add(name))
         {
             return;
         }
@@ -1227,9 +1255,7 @@ public class DirectoryScanner
     private void accountForIncludedDir(String name, File file, boolean fast)
             throws Exception
     {
-        if (dirsIncluded.contains(name)
-                || dirsExcluded.contains(name)
-                || dirsDeselected.contains(name))
+        if (!accountedDirs.add(name))
         {
             return;
         }
@@ -1767,12 +1793,31 @@ public class DirectoryScanner
         return scannedDirs;
     }
 
+    /**
+     * Returns the cache of directory listings.
+     *
+     * @return the cache set by {@link #setDirectoryCache}, or a cache private to the current scan if none was set
+     */
+    private synchronized DirectoryCache getDirectoryCache()
+    {
+        if (directoryCache != null)
+        {
+            return directoryCache;
+        }
+        if (scanCache == null)
+        {
+            scanCache = new DirectoryCache(1);
+        }
+        return scanCache;
+    }
+
     /**
      * Clear internal caches.
      */
     private synchronized void clearCaches()
     {
         fileListMap.clear();
+        scanCache = null;
         includeNonPatterns.clear();
         excludeNonPatterns.clear();
         includePatterns = null;
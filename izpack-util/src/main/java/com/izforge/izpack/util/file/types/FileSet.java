@@ -23,6 +23,7 @@ import java.util.Enumeration;
 import java.util.Vector;
 import java.util.logging.Logger;
 
+import com.izforge.izpack.util.file.DirectoryCache;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileScanner;
 import com.izforge.izpack.util.file.types.selectors.*;
@@ -45,6 +46,7 @@ public class FileSet extends DataType
     private boolean useDefaultExcludes = true;
     private boolean isCaseSensitive = true;
     private boolean followSymlinks = true;
+    private DirectoryCache directoryCache;
 
     /**
      * Construct a new <code>FileSet</code>.
@@ -187,6 +189,16 @@ public class FileSet extends DataType
         return followSymlinks;
     }
 
+    /**
+     * Sets the cache of directory listings to share with other file sets in the same tree.
+     *
+     * @param directoryCache the cache. May be <code>null</code>
+     */
+    public void setDirectoryCache(DirectoryCache directoryCache)
+    {
+        this.directoryCache = directoryCache;
+    }
+
     /**
      * Returns the directory scanner needed to access the files to process.
      *
@@ -210,6 +222,7 @@ public class FileSet extends DataType
         DirectoryScanner ds = new DirectoryScanner();
         setupDirectoryScanner(ds);
         ds.setFollowSymlinks(followSymlinks);
+        ds.setDirectoryCache(directoryCache);
         ds.scan();
         return ds;
     }
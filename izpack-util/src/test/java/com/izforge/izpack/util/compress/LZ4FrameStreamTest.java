@@ -0,0 +1,153 @@
+package com.izforge.izpack.util.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link LZ4FrameOutputStream} and {@link LZ4FrameInputStream}.
+ */
+public class LZ4FrameStreamTest
+{
+
+    /**
+     * Verifies that an empty stream can be written and read.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testEmpty() throws IOException
+    {
+        byte[] compressed = compress(new byte[0]);
+        assertEquals(11, compressed.length); // header and end mark
+        assertArrayEquals(new byte[0], decompress(compressed));
+    }
+
+    /**
+     * Verifies that repetitive data spanning several blocks is compressed, and decompressed to the original data.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCompressible() throws IOException
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 1000000; ++i)
+        {
+            text.append("line ").append(i % 1000).append(" of some text that repeats\n");
+        }
+        byte[] data = text.toString().getBytes("UTF-8");
+        byte[] compressed = compress(data);
+        assertTrue(compressed.length < data.length / 4);
+        assertArrayEquals(data, decompress(compressed));
+    }
+
+    /**
+     * Verifies that random data is stored, and decompressed to the original data.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testIncompressible() throws IOException
+    {
+        byte[] data = new byte[600000];
+        new Random(42).nextBytes(data);
+        byte[] compressed = compress(data);
+        assertTrue(compressed.length <= data.length + 30);
+        assertArrayEquals(data, decompress(compressed));
+    }
+
+    /**
+     * Verifies that runs of a single byte, which produce overlapping matches, are decompressed correctly.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRuns() throws IOException
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < 100; ++i)
+        {
+            for (int j = 0; j < i * 37; ++j)
+            {
+                data.write(i);
+            }
+            data.write(new byte[]{1, 2, 3});
+        }
+        byte[] bytes = data.toByteArray();
+        assertArrayEquals(bytes, decompress(compress(bytes)));
+    }
+
+    /**
+     * Verifies that a corrupt frame header is detected.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCorruptHeader() throws IOException
+    {
+        byte[] compressed = compress("some text".getBytes("UTF-8"));
+        compressed[5] ^= 0x10;
+        try
+        {
+            decompress(compressed);
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected behaviour
+        }
+    }
+
+    /**
+     * Compresses data, writing it one byte at a time and in chunks.
+     *
+     * @param data the data to compress
+     * @return the compressed data
+     * @throws IOException for any I/O error
+     */
+    private byte[] compress(byte[] data) throws IOException
+    {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream out = new LZ4FrameOutputStream(result);
+        int split = Math.min(data.length, 1000);
+        for (int i = 0; i < split; ++i)
+        {
+            out.write(data[i]);
+        }
+        out.write(data, split, data.length - split);
+        out.close();
+        return result.toByteArray();
+    }
+
+    /**
+     * Decompresses data.
+     *
+     * @param compressed the compressed data
+     * @return the decompressed data
+     * @throws IOException for any I/O error
+     */
+    private byte[] decompress(byte[] compressed) throws IOException
+    {
+        InputStream in = new LZ4FrameInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7919];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            result.write(buffer, 0, read);
+        }
+        in.close();
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,170 @@
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link DirectoryScanner}.
+ */
+public class DirectoryScannerTest
+{
+
+    /**
+     * Temporary folder to create the tree to scan in.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The root of the tree.
+     */
+    private File root;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        root = temporaryFolder.newFolder("root");
+        for (int i = 0; i < 5; ++i)
+        {
+            for (int j = 0; j < 5; ++j)
+            {
+                createFile("dir" + i + "/sub" + j + "/file.txt");
+                createFile("dir" + i + "/sub" + j + "/file.xml");
+            }
+            createFile("dir" + i + "/file.txt");
+        }
+    }
+
+    /**
+     * Verifies that scanners sharing a directory cache produce the same results as those that don't.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void sharedCacheGivesSameResults() throws Exception
+    {
+        DirectoryCache cache = new DirectoryCache(4);
+        try
+        {
+            DirectoryScanner all = scan(null, null, null);
+            DirectoryScanner cachedAll = scan(cache, null, null);
+            assertEquals(5 * 5 * 2 + 5, all.getIncludedFilesCount());
+            assertArrayEquals(all.getIncludedFiles(), cachedAll.getIncludedFiles());
+            assertArrayEquals(all.getIncludedDirectories(), cachedAll.getIncludedDirectories());
+
+            String[] includes = {"**/*.xml"};
+            String[] excludes = {"dir1/**"};
+            DirectoryScanner xml = scan(null, includes, excludes);
+            DirectoryScanner cachedXml = scan(cache, includes, excludes);
+            assertEquals(4 * 5, xml.getIncludedFilesCount());
+            assertArrayEquals(xml.getIncludedFiles(), cachedXml.getIncludedFiles());
+            assertArrayEquals(xml.getExcludedFiles(), cachedXml.getExcludedFiles());
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    /**
+     * Verifies that the directory cache records the type of each entry.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void cacheRecordsEntryTypes() throws Exception
+    {
+        DirectoryCache cache = new DirectoryCache(2);
+        try
+        {
+            DirectoryCache.Entry[] entries = cache.list(new File(root, "dir0"));
+            assertEquals(6, entries.length);
+            int dirs = 0;
+            for (DirectoryCache.Entry entry : entries)
+            {
+                assertEquals(entry.isDirectory(), entry.getName().startsWith("sub"));
+                assertEquals(!entry.isDirectory(), entry.isFile());
+                assertEquals(new File(new File(root, "dir0"), entry.getName()), entry.getFile());
+                dirs += entry.isDirectory() ? 1 : 0;
+            }
+            assertEquals(5, dirs);
+            assertEquals(Arrays.asList(entries), Arrays.asList(cache.list(new File(root, "dir0"))));
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    /**
+     * Verifies that directories queued to be listed ahead of time can still be listed once the cache is closed.
+     *
+     * @throws Exception for any error
+     */
+    @Test(timeout = 10000)
+    public void listAfterClose() throws Exception
+    {
+        DirectoryCache cache = new DirectoryCache(2);
+        DirectoryCache.Entry[] dirs = cache.list(root);
+        for (DirectoryCache.Entry dir : dirs)
+        {
+            cache.list(dir.getFile());
+        }
+        cache.close();
+        for (DirectoryCache.Entry dir : dirs)
+        {
+            for (DirectoryCache.Entry sub : cache.list(dir.getFile()))
+            {
+                if (sub.isDirectory())
+                {
+                    assertEquals(2, cache.list(sub.getFile()).length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the tree.
+     *
+     * @param cache    the directory cache. May be <tt>null</tt>
+     * @param includes the include patterns. May be <tt>null</tt>
+     * @param excludes the exclude patterns. May be <tt>null</tt>
+     * @return the scanner
+     * @throws Exception for any error
+     */
+    private DirectoryScanner scan(DirectoryCache cache, String[] includes, String[] excludes) throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(root);
+        scanner.setIncludes(includes);
+        scanner.setExcludes(excludes);
+        scanner.setDirectoryCache(cache);
+        scanner.scan();
+        return scanner;
+    }
+
+    /**
+     * Creates a file in the tree, along with its parent directories.
+     *
+     * @param path the file path, relative to the root of the tree
+     * @throws IOException for any I/O error
+     */
+    private void createFile(String path) throws IOException
+    {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        writer.write(path);
+        writer.close();
+    }
+}